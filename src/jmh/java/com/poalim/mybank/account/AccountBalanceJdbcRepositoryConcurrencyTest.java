@@ -0,0 +1,140 @@
+package com.poalim.mybank.account;
+
+import com.poalim.mybank.benchmark.BenchmarkDatabase;
+import com.poalim.mybank.money.Money;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Parallel deposits and withdrawals against one account on embedded PostgreSQL, each in its own transaction.
+ * Needs the benchmark profile: {@code mvn -Pbenchmark test}.
+ */
+class AccountBalanceJdbcRepositoryConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 200;
+    private static final Money AMOUNT = Money.ofMajor(1);
+
+    private static BenchmarkDatabase database;
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+
+    private AccountBalanceJdbcRepository repository;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        database = BenchmarkDatabase.start();
+        jdbcTemplate = database.jdbcTemplate();
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database.dataSource()));
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        database.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE account_balance_bucket, account, transfer_record, outbox, audit RESTART IDENTITY");
+        repository = new AccountBalanceJdbcRepository(jdbcTemplate);
+    }
+
+    @Test
+    void credit_FromManyThreads_ShouldApplyEveryDeposit() throws Exception {
+        // Arrange
+        long accountId = createAccount(Money.ZERO);
+
+        // Act
+        runInParallel(() -> transactionTemplate.execute(status -> repository.credit(accountId, AMOUNT)).isPresent());
+
+        // Assert
+        Account account = repository.find(accountId).orElseThrow();
+        assertThat(account.getBalance()).isEqualTo(AMOUNT.times(THREADS * OPERATIONS_PER_THREAD));
+        assertThat(account.getVersion()).isEqualTo((long) THREADS * OPERATIONS_PER_THREAD);
+    }
+
+    @Test
+    void debit_FromManyThreads_ShouldNeverSpendMoreThanTheBalance() throws Exception {
+        // Arrange
+        int affordable = OPERATIONS_PER_THREAD;
+        long accountId = createAccount(AMOUNT.times(affordable));
+
+        // Act
+        int debited = runInParallel(
+                () -> transactionTemplate.execute(status -> repository.debit(accountId, AMOUNT)).isPresent());
+
+        // Assert
+        assertThat(debited).isEqualTo(affordable);
+        assertThat(repository.find(accountId).orElseThrow().getBalance()).isEqualTo(Money.ZERO);
+    }
+
+    @Test
+    void debit_FromNonActiveAccount_ShouldMatchNoRow() {
+        // Arrange
+        long accountId = createAccount(AMOUNT);
+        jdbcTemplate.update("UPDATE account SET status = 'INACTIVE' WHERE id = ?", accountId);
+
+        // Act
+        Optional<Account> debited = repository.debit(accountId, AMOUNT);
+
+        // Assert
+        assertThat(debited).isEmpty();
+        assertThat(repository.find(accountId).orElseThrow().getBalance()).isEqualTo(AMOUNT);
+    }
+
+    private long createAccount(Money balance) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO account (owner_name, balance, status, version) VALUES ('Concurrent', ?, 'ACTIVE', 0) RETURNING id",
+                Long.class, balance.minorUnits());
+    }
+
+    /**
+     * Starts every thread at once and runs the operation {@link #OPERATIONS_PER_THREAD} times on each.
+     *
+     * @return how many calls returned true
+     */
+    private static int runInParallel(BooleanSupplier operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+                        if (operation.getAsBoolean()) {
+                            succeeded.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return succeeded.get();
+    }
+}
@@ -0,0 +1,105 @@
+package com.poalim.mybank.benchmark;
+
+import com.poalim.mybank.account.AccountResponse;
+import com.poalim.mybank.account.AccountService;
+import com.poalim.mybank.account.CreateAccountRequest;
+import com.poalim.mybank.account.TransferRequest;
+import com.poalim.mybank.account.TransferResponse;
+import com.poalim.mybank.money.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AccountService#transfer} and {@link AccountService#deposit} through the Spring proxies, so each call
+ * includes the transaction, the audit aspect, the idempotency check and the outbox insert. Run with
+ * {@code -t N} to measure contention; deposits are spread so that threads never touch the same account
+ * (see {@link HotAccountDepositBenchmark} for deposits to a single one), transfers pick both accounts at random.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountServiceBenchmark {
+
+    private static final Money INITIAL_BALANCE = Money.ofMajor(1_000_000_000);
+    private static final Money AMOUNT = Money.ofMajor(1);
+
+    @Param({"jpa", "sharded"})
+    public String engineMode;
+
+    @Param({"1000"})
+    public int accounts;
+
+    private BenchmarkDatabase database;
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private long[] accountIds;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private final SplittableRandom random = new SplittableRandom();
+        private int threadIndex;
+        private int threadCount;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            threadIndex = threadParams.getThreadIndex();
+            threadCount = threadParams.getThreadCount();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        database.jdbcTemplate().execute("TRUNCATE account_balance_bucket, account, transfer_record, outbox, audit RESTART IDENTITY");
+        context = BenchmarkApplication.start(database, "mybank.engine.mode=" + engineMode);
+        accountService = context.getBean(AccountService.class);
+
+        accountIds = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = accountService.createAccount(new CreateAccountRequest("Account " + i, INITIAL_BALANCE)).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+        database.close();
+    }
+
+    @Benchmark
+    public TransferResponse transfer(ThreadState thread) {
+        int from = thread.random.nextInt(accounts);
+        int to = (from + 1 + thread.random.nextInt(accounts - 1)) % accounts;
+        return accountService.transfer(new TransferRequest(accountIds[from], accountIds[to], AMOUNT,
+                UUID.randomUUID().toString()));
+    }
+
+    @Benchmark
+    public AccountResponse deposit(ThreadState thread) {
+        // Keep each thread on its own accounts
+        int slots = Math.max(1, accounts / thread.threadCount);
+        int account = thread.threadIndex * slots + thread.random.nextInt(slots);
+        return accountService.deposit(accountIds[account % accounts], AMOUNT);
+    }
+}
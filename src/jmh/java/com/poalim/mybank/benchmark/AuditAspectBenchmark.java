@@ -0,0 +1,159 @@
+package com.poalim.mybank.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poalim.mybank.account.TransferRequest;
+import com.poalim.mybank.account.TransferResponse;
+import com.poalim.mybank.audit.Audit;
+import com.poalim.mybank.audit.AuditAspect;
+import com.poalim.mybank.audit.AuditCaptureMode;
+import com.poalim.mybank.audit.AuditCaptureProperties;
+import com.poalim.mybank.audit.AuditWriter;
+import com.poalim.mybank.audit.AuditWriterProperties;
+import com.poalim.mybank.audit.Auditable;
+import com.poalim.mybank.config.JacksonConfiguration;
+import com.poalim.mybank.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost the {@link AuditAspect} adds to an audited call, with the writer replaced by a sink so only the
+ * aspect itself is measured. {@code direct} is the same call without the proxy. {@code sampled} captures
+ * parameters and result of 1% of calls and {@code errorsOnly} of failed calls only, so for these successful
+ * calls they should cost about as much as {@code withoutCapture}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuditAspectBenchmark {
+
+    private static final LocalDateTime COMPLETED_AT = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final TransferRequest request = new TransferRequest(1L, 2L, Money.ofMajor(100), "key-1");
+    private AuditedOperations target;
+    private AuditedOperations proxy;
+
+    public static class AuditedOperations {
+
+        public TransferResponse direct(TransferRequest request) {
+            return complete(request);
+        }
+
+        @Auditable(operationType = "TRANSFER", captureParameters = false, captureResult = false)
+        public TransferResponse withoutCapture(TransferRequest request) {
+            return complete(request);
+        }
+
+        @Auditable(operationType = "TRANSFER", captureResult = false)
+        public TransferResponse withParameters(TransferRequest request) {
+            return complete(request);
+        }
+
+        @Auditable(operationType = "TRANSFER")
+        public TransferResponse withParametersAndResult(TransferRequest request) {
+            return complete(request);
+        }
+
+        @Auditable(operationType = "SAMPLED_TRANSFER")
+        public TransferResponse sampled(TransferRequest request) {
+            return complete(request);
+        }
+
+        @Auditable(operationType = "ERRORS_ONLY_TRANSFER")
+        public TransferResponse errorsOnly(TransferRequest request) {
+            return complete(request);
+        }
+
+        private static TransferResponse complete(TransferRequest request) {
+            return new TransferResponse("transfer-1", request.getFromAccountId(), request.getToAccountId(),
+                    request.getAmount(), COMPLETED_AT, "COMPLETED");
+        }
+    }
+
+    /**
+     * Keeps the last record so the aspect's work cannot be optimized away.
+     */
+    static class SinkAuditWriter extends AuditWriter {
+
+        volatile Audit last;
+
+        SinkAuditWriter(ObjectMapper objectMapper) {
+            super(new AuditWriterProperties(), null, null, objectMapper, new SimpleMeterRegistry());
+        }
+
+        @Override
+        public void write(Audit audit) {
+            last = audit;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new JacksonConfiguration().objectMapper();
+        AuditAspect aspect = new AuditAspect();
+        ReflectionTestUtils.setField(aspect, "auditWriter", new SinkAuditWriter(objectMapper));
+        ReflectionTestUtils.setField(aspect, "objectMapper", objectMapper);
+        aspect.setMeterRegistry(new SimpleMeterRegistry());
+        AuditCaptureProperties captureProperties = new AuditCaptureProperties();
+        AuditCaptureProperties.Policy sampled = new AuditCaptureProperties.Policy();
+        sampled.setMode(AuditCaptureMode.SAMPLED);
+        sampled.setSamplePercent(1);
+        captureProperties.getOperations().put("SAMPLED_TRANSFER", sampled);
+        AuditCaptureProperties.Policy errorsOnly = new AuditCaptureProperties.Policy();
+        errorsOnly.setMode(AuditCaptureMode.ERRORS);
+        captureProperties.getOperations().put("ERRORS_ONLY_TRANSFER", errorsOnly);
+        aspect.setCaptureProperties(captureProperties);
+
+        target = new AuditedOperations();
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        proxy = factory.getProxy();
+    }
+
+    @Benchmark
+    public TransferResponse direct() {
+        return target.direct(request);
+    }
+
+    @Benchmark
+    public TransferResponse withoutCapture() {
+        return proxy.withoutCapture(request);
+    }
+
+    @Benchmark
+    public TransferResponse withParameters() {
+        return proxy.withParameters(request);
+    }
+
+    @Benchmark
+    public TransferResponse withParametersAndResult() {
+        return proxy.withParametersAndResult(request);
+    }
+
+    @Benchmark
+    public TransferResponse sampled() {
+        return proxy.sampled(request);
+    }
+
+    @Benchmark
+    public TransferResponse errorsOnly() {
+        return proxy.errorsOnly(request);
+    }
+}
@@ -0,0 +1,114 @@
+package com.poalim.mybank.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file with a stored baseline run. A benchmark regresses when its score is worse
+ * than the baseline by more than the threshold and by more than both runs' error margins together.
+ * Exits with status 1 if anything regressed, so it can gate a build.
+ * <p>
+ * Arguments: {@code <result.json> <baseline.json> [threshold]}, threshold as a fraction (default 0.10).
+ * With {@code --update} as the first argument, the result replaces the baseline instead.
+ */
+public final class BaselineComparison {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private BaselineComparison() {
+    }
+
+    record Score(String mode, double value, double error, String unit) {
+
+        boolean higherIsBetter() {
+            return "thrpt".equals(mode);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && "--update".equals(args[0])) {
+            Path baseline = Paths.get(args[2]);
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.copy(Paths.get(args[1]), baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Baseline " + baseline + " updated from " + args[1]);
+            return;
+        }
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison [--update] <result.json> <baseline.json> [threshold]");
+            System.exit(2);
+        }
+        Path baselinePath = Paths.get(args[1]);
+        if (!Files.exists(baselinePath)) {
+            System.err.println("No baseline at " + baselinePath + ", record one with --update");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+
+        Map<String, Score> current = read(Paths.get(args[0]));
+        Map<String, Score> baseline = read(baselinePath);
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", entry.getKey(), "-", now.value(), "new");
+                continue;
+            }
+            if (!before.unit().equals(now.unit()) || !before.mode().equals(now.mode())) {
+                System.out.printf("%-90s %14s %14s %9s%n", entry.getKey(), before.unit(), now.unit(), "skipped");
+                continue;
+            }
+            double change = (now.value() - before.value()) / before.value();
+            double worse = now.higherIsBetter() ? -change : change;
+            double delta = Math.abs(now.value() - before.value());
+            boolean regressed = worse > threshold && delta > before.error() + now.error();
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), before.value(), now.value(),
+                    change * 100, regressed ? "  REGRESSION" : "");
+        }
+
+        if (regressions > 0) {
+            System.err.printf("%d benchmark(s) regressed by more than %.0f%%%n", regressions, threshold * 100);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return scores keyed by benchmark, mode, thread count and sorted parameters
+     */
+    static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : MAPPER.readTree(file.toFile())) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText())
+                    .append(" [").append(run.path("mode").asText())
+                    .append(", threads=").append(run.path("threads").asInt());
+            Map<String, String> params = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = run.path("params").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                params.put(field.getKey(), field.getValue().asText());
+            }
+            params.forEach((name, value) -> key.append(", ").append(name).append('=').append(value));
+            key.append(']');
+
+            JsonNode metric = run.path("primaryMetric");
+            double error = metric.path("scoreError").asDouble(0);
+            scores.put(key.toString(), new Score(run.path("mode").asText(), metric.path("score").asDouble(),
+                    Double.isNaN(error) ? 0 : error, metric.path("scoreUnit").asText()));
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,41 @@
+package com.poalim.mybank.benchmark;
+
+import com.poalim.mybank.TestApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The application context without the web server, on a {@link BenchmarkDatabase}. No broker is needed:
+ * listeners are not started, topics are not created and the outbox relay is off, so events stay in the
+ * outbox table. Everything else, including transactions, the audit aspect and its writer, runs as in production.
+ */
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * @param properties application properties as {@code name=value}, taking precedence over application.properties
+     */
+    public static ConfigurableApplicationContext start(BenchmarkDatabase database, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "spring.main.banner-mode=off",
+                "spring.jpa.show-sql=false",
+                "logging.level.root=WARN",
+                "logging.level.org.flywaydb=WARN",
+                "spring.kafka.listener.auto-startup=false",
+                "spring.kafka.admin.auto-create=false",
+                "mybank.outbox.relay.enabled=false",
+                "mybank.ledger.checkpoint.enabled=false"));
+        args.addAll(Arrays.asList(properties));
+        return new SpringApplicationBuilder(TestApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(context -> context.getBeanFactory().registerSingleton("dataSource", database.dataSource()))
+                .run(args.stream().map(arg -> "--" + arg).toArray(String[]::new));
+    }
+}
@@ -0,0 +1,58 @@
+package com.poalim.mybank.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+
+/**
+ * PostgreSQL for benchmarks, migrated with the application's Flyway scripts. Uses an embedded server
+ * unless {@code benchmark.jdbc.url} points at an existing database.
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+
+    private final EmbeddedPostgres embedded;
+    private final HikariDataSource dataSource;
+
+    private BenchmarkDatabase(EmbeddedPostgres embedded, HikariDataSource dataSource) {
+        this.embedded = embedded;
+        this.dataSource = dataSource;
+    }
+
+    public static BenchmarkDatabase start() throws IOException {
+        EmbeddedPostgres postgres = null;
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setMaximumPoolSize(Integer.getInteger("benchmark.jdbc.pool-size", 16));
+        String url = System.getProperty("benchmark.jdbc.url");
+        if (url != null) {
+            dataSource.setJdbcUrl(url);
+            dataSource.setUsername(System.getProperty("benchmark.jdbc.username", "postgres"));
+            dataSource.setPassword(System.getProperty("benchmark.jdbc.password", ""));
+        } else {
+            postgres = EmbeddedPostgres.builder().start();
+            dataSource.setJdbcUrl(postgres.getJdbcUrl("postgres", "postgres"));
+        }
+        dataSource.addDataSourceProperty("reWriteBatchedInserts", "true");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        return new BenchmarkDatabase(postgres, dataSource);
+    }
+
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    public JdbcTemplate jdbcTemplate() {
+        return new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataSource.close();
+        if (embedded != null) {
+            embedded.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.poalim.mybank.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.poalim.mybank.config.JacksonConfiguration;
+import com.poalim.mybank.events.DepositCompletedEvent;
+import com.poalim.mybank.events.TransactionCompletedEvent;
+import com.poalim.mybank.events.serialization.BankEventCodec;
+import com.poalim.mybank.money.Money;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON round trip of the Kafka event payloads with the application's {@link ObjectMapper}, as done by the
+ * outbox when enqueueing and by the consumers when deserializing, against the {@link BankEventCodec} binary
+ * format ({@code ...Binary}). Setup prints the bytes per event on the wire in both formats, JSON counting the
+ * type header {@code JsonSerializer} adds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ObjectReader transactionReader;
+    private ObjectReader depositReader;
+    private TransactionCompletedEvent transactionEvent;
+    private DepositCompletedEvent depositEvent;
+    private byte[] transactionJson;
+    private byte[] depositJson;
+    private byte[] transactionBinary;
+    private byte[] depositBinary;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = new JacksonConfiguration().objectMapper();
+        transactionReader = objectMapper.readerFor(TransactionCompletedEvent.class);
+        depositReader = objectMapper.readerFor(DepositCompletedEvent.class);
+
+        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_456_000);
+        transactionEvent = new TransactionCompletedEvent(UUID.randomUUID().toString(), "1001", "1002",
+                Money.valueOf("1250.75"), timestamp);
+        depositEvent = new DepositCompletedEvent(UUID.randomUUID().toString(), "1001",
+                Money.ofMajor(500), timestamp);
+        transactionJson = objectMapper.writeValueAsBytes(transactionEvent);
+        depositJson = objectMapper.writeValueAsBytes(depositEvent);
+        transactionBinary = BankEventCodec.encode(transactionEvent);
+        depositBinary = BankEventCodec.encode(depositEvent);
+
+        System.out.printf("%nbytes per event: transaction json %d, binary %d; deposit json %d, binary %d%n",
+                jsonRecordBytes(transactionEvent), transactionBinary.length,
+                jsonRecordBytes(depositEvent), depositBinary.length);
+    }
+
+    @Benchmark
+    public byte[] serializeTransaction() throws Exception {
+        return objectMapper.writeValueAsBytes(transactionEvent);
+    }
+
+    @Benchmark
+    public TransactionCompletedEvent deserializeTransaction() throws Exception {
+        return transactionReader.readValue(transactionJson);
+    }
+
+    @Benchmark
+    public byte[] serializeDeposit() throws Exception {
+        return objectMapper.writeValueAsBytes(depositEvent);
+    }
+
+    @Benchmark
+    public DepositCompletedEvent deserializeDeposit() throws Exception {
+        return depositReader.readValue(depositJson);
+    }
+
+    @Benchmark
+    public byte[] serializeTransactionBinary() {
+        return BankEventCodec.encode(transactionEvent);
+    }
+
+    @Benchmark
+    public Object deserializeTransactionBinary() {
+        return BankEventCodec.decode(transactionBinary);
+    }
+
+    @Benchmark
+    public byte[] serializeDepositBinary() {
+        return BankEventCodec.encode(depositEvent);
+    }
+
+    @Benchmark
+    public Object deserializeDepositBinary() {
+        return BankEventCodec.decode(depositBinary);
+    }
+
+    private int jsonRecordBytes(Object event) {
+        RecordHeaders headers = new RecordHeaders();
+        try (JsonSerializer<Object> serializer = new JsonSerializer<>(objectMapper)) {
+            int bytes = serializer.serialize("topic", headers, event).length;
+            for (Header header : headers) {
+                bytes += header.key().length() + header.value().length;
+            }
+            return bytes;
+        }
+    }
+}
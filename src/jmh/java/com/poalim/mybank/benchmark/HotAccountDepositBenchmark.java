@@ -0,0 +1,150 @@
+package com.poalim.mybank.benchmark;
+
+import com.poalim.mybank.account.Account;
+import com.poalim.mybank.account.AccountBalanceJdbcRepository;
+import com.poalim.mybank.account.hot.AccountBucketJdbcRepository;
+import com.poalim.mybank.money.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parallel deposits to one account, each in its own transaction:
+ * <ul>
+ *     <li>{@code atomicUpdate}: the single {@code UPDATE ... RETURNING} of {@link AccountBalanceJdbcRepository}</li>
+ *     <li>{@code bucketCredit}: a credit to one of the account's {@value #BUCKETS} hot-account buckets, see
+ *     {@link AccountBucketJdbcRepository}</li>
+ *     <li>{@code lockThenUpdate}: {@code SELECT ... FOR UPDATE}, then write the new balance</li>
+ *     <li>{@code readThenUpdate}: read, then write the new balance without a lock, as deposits used to</li>
+ * </ul>
+ * After every iteration the balance, buckets included, must have grown by exactly one amount per completed
+ * deposit; the first three fail the run otherwise, {@code readThenUpdate} prints the deposits it lost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class HotAccountDepositBenchmark {
+
+    private static final Money AMOUNT = Money.ofMajor(1);
+    private static final int BUCKETS = 16;
+    private static final String LOCK_SQL = "SELECT balance FROM account WHERE id = ? FOR UPDATE";
+    private static final String READ_SQL = "SELECT balance FROM account WHERE id = ?";
+    private static final String WRITE_SQL = "UPDATE account SET balance = ?, version = version + 1 WHERE id = ?";
+    private static final String TOTAL_SQL = "SELECT a.balance + COALESCE((SELECT SUM(b.balance)::BIGINT " +
+            "FROM account_balance_bucket b WHERE b.account_id = a.id), 0) FROM account a WHERE a.id = ?";
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private AccountBalanceJdbcRepository repository;
+    private AccountBucketJdbcRepository bucketRepository;
+    private long accountId;
+    private Money iterationStartBalance;
+    private final LongAdder completed = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        jdbcTemplate = database.jdbcTemplate();
+        jdbcTemplate.execute("TRUNCATE account_balance_bucket, account, transfer_record, outbox, audit RESTART IDENTITY");
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database.dataSource()));
+        repository = new AccountBalanceJdbcRepository(jdbcTemplate);
+        bucketRepository = new AccountBucketJdbcRepository(jdbcTemplate);
+        accountId = jdbcTemplate.queryForObject(
+                "INSERT INTO account (owner_name, balance, status, version) VALUES ('Hot account', 0, 'ACTIVE', 0) RETURNING id",
+                Long.class);
+        bucketRepository.setBuckets(accountId, BUCKETS);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        completed.reset();
+        iterationStartBalance = balance();
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkTotal(BenchmarkParams params) {
+        Money expected = iterationStartBalance.plus(AMOUNT.times(completed.sum()));
+        Money actual = balance();
+        if (actual.equals(expected)) {
+            return;
+        }
+        long lost = expected.minus(actual).minorUnits() / AMOUNT.minorUnits();
+        if (params.getBenchmark().endsWith(".readThenUpdate")) {
+            System.out.printf("%n%d of %d deposits lost%n", lost, completed.sum());
+        } else {
+            throw new IllegalStateException("Balance is " + actual + ", expected " + expected + ": " + lost + " deposits lost");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public Account atomicUpdate() {
+        Account account = transactionTemplate.execute(status -> repository.credit(accountId, AMOUNT).orElseThrow());
+        completed.increment();
+        return account;
+    }
+
+    @Benchmark
+    public Boolean bucketCredit() {
+        int bucket = ThreadLocalRandom.current().nextInt(BUCKETS);
+        Boolean credited = transactionTemplate.execute(status -> bucketRepository.credit(accountId, bucket, AMOUNT));
+        if (!credited) {
+            throw new IllegalStateException("Bucket " + bucket + " was not credited");
+        }
+        completed.increment();
+        return credited;
+    }
+
+    @Benchmark
+    public Money lockThenUpdate() {
+        Money balance = transactionTemplate.execute(status -> {
+            Money newBalance = Money.ofMinor(jdbcTemplate.queryForObject(LOCK_SQL, Long.class, accountId)).plus(AMOUNT);
+            jdbcTemplate.update(WRITE_SQL, newBalance.minorUnits(), accountId);
+            return newBalance;
+        });
+        completed.increment();
+        return balance;
+    }
+
+    @Benchmark
+    public Money readThenUpdate() {
+        Money balance = transactionTemplate.execute(status -> {
+            Money newBalance = Money.ofMinor(jdbcTemplate.queryForObject(READ_SQL, Long.class, accountId)).plus(AMOUNT);
+            jdbcTemplate.update(WRITE_SQL, newBalance.minorUnits(), accountId);
+            return newBalance;
+        });
+        completed.increment();
+        return balance;
+    }
+
+    private Money balance() {
+        return Money.ofMinor(jdbcTemplate.queryForObject(TOTAL_SQL, Long.class, accountId));
+    }
+}
@@ -0,0 +1,98 @@
+package com.poalim.mybank.benchmark;
+
+import com.poalim.mybank.events.repository.LedgerCheckpointJdbcRepository;
+import com.poalim.mybank.events.repository.LedgerPartitionJdbcRepository;
+import com.poalim.mybank.money.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * As-of balance of one account whose history grows from 10k to 1M entries, one entry per second.
+ * The checkpointed query should stay flat while the full-history sum grows with the history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LedgerBalanceBenchmark {
+
+    private static final long ACCOUNT_ID = 1;
+    private static final LocalDateTime START = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final int CHECKPOINT_EVERY = 10_000;
+    private static final String FULL_HISTORY_SQL =
+            "SELECT SUM(amount)::BIGINT FROM ledger_entries WHERE account_id = ? AND timestamp <= ?";
+
+    @Param({"10000", "100000", "1000000"})
+    public int historySize;
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private LedgerCheckpointJdbcRepository checkpoints;
+    private LocalDateTime asOf;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        jdbcTemplate = database.jdbcTemplate();
+        checkpoints = new LedgerCheckpointJdbcRepository(jdbcTemplate);
+
+        jdbcTemplate.execute("TRUNCATE ledger_entries, ledger_balance_checkpoint");
+        new LedgerPartitionJdbcRepository(jdbcTemplate).ensureMonthlyPartitions(START.toLocalDate(),
+                START.plusSeconds(historySize).toLocalDate());
+        // The benchmarked account plus the same volume spread over other accounts
+        jdbcTemplate.update("INSERT INTO ledger_entries (transaction_id, account_id, amount, timestamp, entry_type) " +
+                "SELECT md5(g::text)::uuid, CASE WHEN g % 2 = 0 THEN ? ELSE 2 + g % 100 END, 100, " +
+                "?::timestamp + (g / 2) * INTERVAL '1 second', 'CREDIT' FROM generate_series(1, ?) g",
+                ACCOUNT_ID, Timestamp.valueOf(START), historySize * 2);
+
+        LocalDateTime end = START.plusSeconds(historySize);
+        LocalDateTime from = checkpoints.latestCheckpoint();
+        for (LocalDateTime horizon = START.plusSeconds(CHECKPOINT_EVERY); !horizon.isAfter(end);
+             horizon = horizon.plusSeconds(CHECKPOINT_EVERY)) {
+            checkpoints.compact(from, horizon, 1);
+            from = horizon;
+        }
+        jdbcTemplate.execute("ANALYZE ledger_entries");
+        jdbcTemplate.execute("ANALYZE ledger_balance_checkpoint");
+
+        // Halfway between the last two checkpoints, so both queries also sum a tail of entries
+        asOf = end.minusSeconds(CHECKPOINT_EVERY / 2);
+        if (!checkpointed().equals(fullHistorySum())) {
+            throw new IllegalStateException("Checkpointed balance differs from the full history sum");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public Money checkpointed() {
+        return checkpoints.balanceAsOf(ACCOUNT_ID, asOf);
+    }
+
+    @Benchmark
+    public Money fullHistorySum() {
+        return Money.ofMinor(jdbcTemplate.queryForObject(FULL_HISTORY_SQL, Long.class, ACCOUNT_ID,
+                Timestamp.valueOf(asOf)));
+    }
+}
@@ -0,0 +1,154 @@
+package com.poalim.mybank.benchmark;
+
+import com.poalim.mybank.events.repository.LedgerPartitionJdbcRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ledger_entries layouts before and after monthly partitioning: {@code flat} is the earlier single table
+ * with VARCHAR account ids and btree indexes on account_id, timestamp and (account_id, timestamp), while
+ * {@code partitioned} is the current table. Both hold {@code rows} entries spread over {@code accounts}
+ * accounts and {@code months} months in time order. Each invocation picks a random account and, for the
+ * ranges, a random week or day:
+ * <ul>
+ *     <li>{@code accountEntriesBetween}: one account's entries in a week, as findAccountEntriesBetween</li>
+ *     <li>{@code balanceAsOf}: one account's full history sum, as getAccountBalanceAsOf</li>
+ *     <li>{@code dayScan}: every entry of a day, as findByTimestampBetween and the checkpoint compactor</li>
+ * </ul>
+ * Teardown prints table and index sizes. Filling 100M rows takes a while; pass {@code -p rows=...} for less.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LedgerLayoutBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+    private static final long FILL_BATCH = 1_000_000;
+
+    @Param({"flat", "partitioned"})
+    public String layout;
+
+    @Param({"100000000"})
+    public long rows;
+
+    @Param({"100000"})
+    public int accounts;
+
+    @Param({"24"})
+    public int months;
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private String table;
+    private long spanSeconds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        jdbcTemplate = database.jdbcTemplate();
+        LocalDateTime end = START.plusMonths(months);
+        spanSeconds = Duration.between(START, end).getSeconds();
+
+        if ("flat".equals(layout)) {
+            table = "ledger_entries_flat";
+            jdbcTemplate.execute("CREATE TABLE ledger_entries_flat (" +
+                    "id BIGSERIAL PRIMARY KEY, transaction_id UUID NOT NULL, account_id VARCHAR(255) NOT NULL, " +
+                    "amount BIGINT NOT NULL, timestamp TIMESTAMP NOT NULL, entry_type VARCHAR(10) NOT NULL)");
+        } else {
+            table = "ledger_entries";
+            jdbcTemplate.execute("TRUNCATE ledger_entries");
+            new LedgerPartitionJdbcRepository(jdbcTemplate).ensureMonthlyPartitions(START.toLocalDate(),
+                    end.toLocalDate());
+        }
+        String accountId = "flat".equals(layout) ? "((g * 7919) % ?)::text" : "(g * 7919) % ?";
+        for (long from = 1; from <= rows; from += FILL_BATCH) {
+            jdbcTemplate.update("INSERT INTO " + table + " (transaction_id, account_id, amount, timestamp, entry_type) " +
+                    "SELECT md5(g::text)::uuid, " + accountId + ", 100, " +
+                    "?::timestamp + (g * ?::float8 / ?) * INTERVAL '1 second', 'CREDIT' " +
+                    "FROM generate_series(?::bigint, ?::bigint) g",
+                    accounts, Timestamp.valueOf(START), spanSeconds, rows, from, Math.min(rows, from + FILL_BATCH - 1));
+        }
+        if ("flat".equals(layout)) {
+            // The indexes from V4 and V7, built after the load like the migration builds the partitioned ones
+            jdbcTemplate.execute("CREATE INDEX ON ledger_entries_flat(transaction_id)");
+            jdbcTemplate.execute("CREATE INDEX ON ledger_entries_flat(account_id)");
+            jdbcTemplate.execute("CREATE INDEX ON ledger_entries_flat(timestamp)");
+            jdbcTemplate.execute("CREATE INDEX ON ledger_entries_flat(account_id, timestamp) INCLUDE (amount)");
+        }
+        jdbcTemplate.execute("VACUUM ANALYZE " + table);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            jdbcTemplate.query("SELECT pg_size_pretty(SUM(pg_table_size(relid))), " +
+                    "pg_size_pretty(SUM(pg_indexes_size(relid))) FROM " +
+                    "(SELECT ?::regclass AS relid UNION SELECT relid FROM pg_partition_tree(?::regclass)) t",
+                    resultSet -> {
+                        System.out.printf("%n%s: table %s, indexes %s%n", table, resultSet.getString(1),
+                                resultSet.getString(2));
+                    }, table, table);
+        } finally {
+            database.close();
+        }
+    }
+
+    @Benchmark
+    public long accountEntriesBetween() {
+        LocalDateTime from = randomTime(Duration.ofDays(7));
+        return jdbcTemplate.query("SELECT id, transaction_id, amount, timestamp, entry_type FROM " + table +
+                        " WHERE account_id = ? AND timestamp BETWEEN ? AND ?",
+                resultSet -> {
+                    long count = 0;
+                    while (resultSet.next()) {
+                        count++;
+                    }
+                    return count;
+                }, randomAccount(), Timestamp.valueOf(from), Timestamp.valueOf(from.plusDays(7)));
+    }
+
+    @Benchmark
+    public Long balanceAsOf() {
+        return jdbcTemplate.queryForObject("SELECT SUM(amount)::BIGINT FROM " + table +
+                " WHERE account_id = ? AND timestamp <= ?", Long.class,
+                randomAccount(), Timestamp.valueOf(randomTime(Duration.ZERO)));
+    }
+
+    @Benchmark
+    public Long dayScan() {
+        LocalDateTime from = randomTime(Duration.ofDays(1));
+        return jdbcTemplate.queryForObject("SELECT SUM(amount)::BIGINT FROM " + table +
+                " WHERE timestamp >= ? AND timestamp < ?", Long.class,
+                Timestamp.valueOf(from), Timestamp.valueOf(from.plusDays(1)));
+    }
+
+    private Object randomAccount() {
+        long accountId = ThreadLocalRandom.current().nextLong(accounts);
+        return "flat".equals(layout) ? Long.toString(accountId) : accountId;
+    }
+
+    private LocalDateTime randomTime(Duration before) {
+        return START.plusSeconds(ThreadLocalRandom.current().nextLong(spanSeconds - before.getSeconds()));
+    }
+}
@@ -0,0 +1,132 @@
+package com.poalim.mybank.benchmark;
+
+import com.poalim.mybank.config.KafkaTopicsConfiguration;
+import com.poalim.mybank.events.DepositCompletedEvent;
+import com.poalim.mybank.events.TransactionCompletedEvent;
+import com.poalim.mybank.events.repository.LedgerBatchJdbcRepository;
+import com.poalim.mybank.events.repository.LedgerCheckpointJdbcRepository;
+import com.poalim.mybank.events.service.DepositEventListener;
+import com.poalim.mybank.events.service.LedgerBatchProcessor;
+import com.poalim.mybank.events.service.TransactionEventListener;
+import com.poalim.mybank.id.UuidV7Generator;
+import com.poalim.mybank.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One poll handed to the ledger listeners, from the record list to the committed projection. Time is per poll;
+ * divide by {@code batchSize} for the per-event cost. {@code redeliveredTransactions} replays a poll that was
+ * already processed, which only costs the dedupe claim. With {@code workers} above 1 the poll is split by account
+ * into lanes written in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LedgerListenerBenchmark {
+
+    private static final Money AMOUNT = Money.ofMajor(10);
+
+    @Param({"1", "100", "500"})
+    public int batchSize;
+
+    @Param({"1000"})
+    public int accounts;
+
+    @Param({"1", "4"})
+    public int workers;
+
+    private final AtomicLong nextTransaction = new AtomicLong();
+    private final UuidV7Generator transactionIds = new UuidV7Generator();
+    private BenchmarkDatabase database;
+    private TransactionEventListener transactionListener;
+    private DepositEventListener depositListener;
+    private LedgerBatchProcessor processor;
+    private List<ConsumerRecord<String, TransactionCompletedEvent>> processedPoll;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        JdbcTemplate jdbcTemplate = database.jdbcTemplate();
+        jdbcTemplate.execute("TRUNCATE processed_events, audit_log, ledger_entries, daily_traffic_stats_stripe, " +
+                "ledger_balance_checkpoint");
+        processor = new LedgerBatchProcessor(new LedgerBatchJdbcRepository(jdbcTemplate),
+                new LedgerCheckpointJdbcRepository(jdbcTemplate),
+                new DataSourceTransactionManager(database.dataSource()), new SimpleMeterRegistry(), 16, workers);
+        processor.start();
+        transactionListener = new TransactionEventListener(processor);
+        depositListener = new DepositEventListener(processor);
+
+        processedPoll = transactionPoll();
+        transactionListener.processTransactionEvents(processedPoll);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        processor.stop();
+        database.close();
+    }
+
+    @Benchmark
+    public void transactions() {
+        transactionListener.processTransactionEvents(transactionPoll());
+    }
+
+    @Benchmark
+    public void deposits() {
+        List<ConsumerRecord<String, DepositCompletedEvent>> records = new ArrayList<>(batchSize);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < batchSize; i++) {
+            long id = nextTransaction.incrementAndGet();
+            DepositCompletedEvent event = new DepositCompletedEvent(transactionIds.nextId().toString(), accountId(id),
+                    AMOUNT, now);
+            records.add(new ConsumerRecord<>(KafkaTopicsConfiguration.DEPOSIT_TOPIC, 0, id, event.accountId(), event));
+        }
+        depositListener.processDepositEvents(records);
+    }
+
+    @Benchmark
+    public void redeliveredTransactions() {
+        transactionListener.processTransactionEvents(processedPoll);
+    }
+
+    private List<ConsumerRecord<String, TransactionCompletedEvent>> transactionPoll() {
+        List<ConsumerRecord<String, TransactionCompletedEvent>> records = new ArrayList<>(batchSize);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < batchSize; i++) {
+            long id = nextTransaction.incrementAndGet();
+            TransactionCompletedEvent event = new TransactionCompletedEvent(transactionIds.nextId().toString(),
+                    accountId(id), accountId(id + 1), AMOUNT, now);
+            records.add(new ConsumerRecord<>(KafkaTopicsConfiguration.TRANSACTION_TOPIC, 0, id, event.sourceAccountId(),
+                    event));
+        }
+        return records;
+    }
+
+    private String accountId(long transaction) {
+        return Long.toString(transaction % accounts + 1);
+    }
+}
@@ -0,0 +1,96 @@
+package com.poalim.mybank.benchmark;
+
+import com.poalim.mybank.events.repository.LedgerCheckpointJdbcRepository;
+import com.poalim.mybank.events.repository.LedgerPartitionJdbcRepository;
+import com.poalim.mybank.events.repository.LedgerStatementJdbcRepository;
+import com.poalim.mybank.events.service.LedgerStatementService;
+import com.poalim.mybank.events.service.StatementFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full statement export of one account to a discarding stream. Time per export divided by
+ * {@code rows} gives the per-row cost; it should not grow with the size of the export.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class StatementExportBenchmark {
+
+    private static final long ACCOUNT_ID = 1;
+    private static final LocalDateTime START = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"CSV", "NDJSON"})
+    public StatementFormat format;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private BenchmarkDatabase database;
+    private LedgerStatementService service;
+    private TransactionTemplate readOnlyTransaction;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        JdbcTemplate jdbcTemplate = database.jdbcTemplate();
+        jdbcTemplate.execute("TRUNCATE ledger_entries, ledger_balance_checkpoint");
+        new LedgerPartitionJdbcRepository(jdbcTemplate).ensureMonthlyPartitions(START.toLocalDate(),
+                START.plusMinutes(rows).toLocalDate());
+        jdbcTemplate.update("INSERT INTO ledger_entries (transaction_id, account_id, amount, timestamp, entry_type) " +
+                "SELECT md5(g::text)::uuid, ?, CASE WHEN g % 3 = 0 THEN -725 ELSE 1250 END, " +
+                "?::timestamp + g * INTERVAL '1 minute', CASE WHEN g % 3 = 0 THEN 'DEBIT' ELSE 'CREDIT' END " +
+                "FROM generate_series(1, ?) g", ACCOUNT_ID, Timestamp.valueOf(START), rows);
+        jdbcTemplate.execute("ANALYZE ledger_entries");
+
+        service = new LedgerStatementService(new LedgerCheckpointJdbcRepository(jdbcTemplate),
+                new LedgerStatementJdbcRepository(jdbcTemplate), 5000);
+        readOnlyTransaction = new TransactionTemplate(new DataSourceTransactionManager(database.dataSource()));
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public long export() {
+        Long exported = readOnlyTransaction.execute(status -> {
+            try {
+                return service.export(ACCOUNT_ID, START, START.plusMinutes(rows + 1L), format, gzip, OutputStream.nullOutputStream());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        if (exported == null || exported != rows) {
+            throw new IllegalStateException("Exported " + exported + " of " + rows + " rows");
+        }
+        return exported;
+    }
+}
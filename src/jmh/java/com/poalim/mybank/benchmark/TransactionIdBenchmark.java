@@ -0,0 +1,113 @@
+package com.poalim.mybank.benchmark;
+
+import com.poalim.mybank.events.repository.LedgerBatchJdbcRepository;
+import com.poalim.mybank.id.TransactionIdGenerator;
+import com.poalim.mybank.id.UuidV7Generator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claims in the idempotency table, processed_events, with random version 4 against time-ordered version 7
+ * transaction ids: {@code claim} inserts a poll of {@code batchSize} new ids through
+ * {@link LedgerBatchJdbcRepository#claimUnprocessed}, on top of {@code existingRows} ids of the same kind.
+ * Teardown prints the primary key's size per row and the WAL written per claim. {@code nextId} is the
+ * generator alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionIdBenchmark {
+
+    private static final int FILL_BATCH = 10_000;
+
+    @Param({"random", "uuid-v7"})
+    public String generator;
+
+    @Param({"1000000"})
+    public int existingRows;
+
+    @Param({"500"})
+    public int batchSize;
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private LedgerBatchJdbcRepository repository;
+    private TransactionIdGenerator transactionIds;
+    private String walStart;
+    private long claims;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        jdbcTemplate = database.jdbcTemplate();
+        repository = new LedgerBatchJdbcRepository(jdbcTemplate);
+        transactionIds = "random".equals(generator) ? UUID::randomUUID : new UuidV7Generator();
+
+        jdbcTemplate.execute("TRUNCATE processed_events");
+        for (int filled = 0; filled < existingRows; filled += FILL_BATCH) {
+            repository.claimUnprocessed(nextIds(Math.min(FILL_BATCH, existingRows - filled)), LocalDateTime.now());
+        }
+        jdbcTemplate.execute("VACUUM ANALYZE processed_events");
+        jdbcTemplate.execute("CHECKPOINT");
+        walStart = jdbcTemplate.queryForObject("SELECT pg_current_wal_lsn()::text", String.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            if (claims == 0) {
+                return;
+            }
+            Long walBytes = jdbcTemplate.queryForObject("SELECT pg_current_wal_lsn() - ?::pg_lsn", Long.class, walStart);
+            Double indexBytesPerRow = jdbcTemplate.queryForObject(
+                    "SELECT pg_relation_size('processed_events_pkey')::float8 / count(*) FROM processed_events",
+                    Double.class);
+            System.out.printf("%nprocessed_events_pkey %.1f bytes per row; WAL per claim of %d ids: %d kB%n",
+                    indexBytesPerRow, batchSize, walBytes / claims / 1024);
+        } finally {
+            database.close();
+        }
+    }
+
+    @Benchmark
+    public Set<String> claim() {
+        claims++;
+        return repository.claimUnprocessed(nextIds(batchSize), LocalDateTime.now());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public UUID nextId() {
+        return transactionIds.nextId();
+    }
+
+    private List<String> nextIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(transactionIds.nextId().toString());
+        }
+        return ids;
+    }
+}
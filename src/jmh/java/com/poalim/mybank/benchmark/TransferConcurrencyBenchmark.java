@@ -0,0 +1,110 @@
+package com.poalim.mybank.benchmark;
+
+import com.poalim.mybank.account.AccountService;
+import com.poalim.mybank.account.CreateAccountRequest;
+import com.poalim.mybank.account.TransferRequest;
+import com.poalim.mybank.account.TransferResponse;
+import com.poalim.mybank.money.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JPA-mode transfers between random accounts under {@code mybank.transfer.concurrency.mode} pessimistic,
+ * optimistic and adaptive. Few accounts means most transfers collide, many accounts means they rarely do.
+ * After the run the money in all accounts must still add up; the optimistic attempt counters are printed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class TransferConcurrencyBenchmark {
+
+    private static final Money INITIAL_BALANCE = Money.ofMajor(1_000_000_000);
+    private static final Money AMOUNT = Money.ofMajor(1);
+
+    @Param({"pessimistic", "optimistic", "adaptive"})
+    public String concurrencyMode;
+
+    @Param({"4", "1000"})
+    public int accounts;
+
+    private BenchmarkDatabase database;
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private long[] accountIds;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        database.jdbcTemplate().execute("TRUNCATE account_balance_bucket, account, transfer_record, outbox, audit RESTART IDENTITY");
+        context = BenchmarkApplication.start(database,
+                "mybank.engine.mode=jpa",
+                "mybank.transfer.concurrency.mode=" + concurrencyMode);
+        accountService = context.getBean(AccountService.class);
+
+        accountIds = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = accountService.createAccount(new CreateAccountRequest("Account " + i, INITIAL_BALANCE)).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            Money total = Money.ofMinor(database.jdbcTemplate().queryForObject(
+                    "SELECT SUM(balance)::BIGINT FROM account", Long.class));
+            Money expected = INITIAL_BALANCE.times(accounts);
+            if (!total.equals(expected)) {
+                throw new IllegalStateException("Accounts hold " + total + ", expected " + expected);
+            }
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            System.out.printf("%noptimistic attempts: committed %.0f, conflict %.0f, fallback %.0f%n",
+                    optimistic(meterRegistry, "committed"), optimistic(meterRegistry, "conflict"),
+                    optimistic(meterRegistry, "fallback"));
+        } finally {
+            context.close();
+            database.close();
+        }
+    }
+
+    @Benchmark
+    public TransferResponse transfer(ThreadState thread) {
+        int from = thread.random.nextInt(accounts);
+        int to = (from + 1 + thread.random.nextInt(accounts - 1)) % accounts;
+        return accountService.transfer(new TransferRequest(accountIds[from], accountIds[to], AMOUNT,
+                UUID.randomUUID().toString()));
+    }
+
+    private static double optimistic(MeterRegistry meterRegistry, String result) {
+        return Search.in(meterRegistry).name("transfer.optimistic").tag("result", result).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+}
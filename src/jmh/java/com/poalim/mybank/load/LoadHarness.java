@@ -0,0 +1,264 @@
+package com.poalim.mybank.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.poalim.mybank.TestApplication;
+import com.poalim.mybank.benchmark.BenchmarkDatabase;
+import com.poalim.mybank.config.KafkaTopicsConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the whole application offline, on embedded PostgreSQL and an embedded Kafka broker, and drives it over
+ * HTTP with an open-loop request mix at a fixed rate. Reports latency percentiles and throughput per operation,
+ * then how long the ledger consumers need after the load stops until {@code ledger_entries} holds an entry for
+ * every successful deposit and transfer.
+ * <p>
+ * Settings are {@code load.*} system properties, see {@link LoadOptions}. Any application property can be
+ * overridden the same way, e.g. {@code -Dmybank.engine.mode=sharded}.
+ */
+public final class LoadHarness {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String INITIAL_BALANCE = "1000000.00";
+    private static final String AMOUNT = "1.00";
+
+    private final LoadOptions options;
+    private final HttpClient client;
+    private final String baseUrl;
+    private final LoadStatistics statistics = new LoadStatistics();
+    private final SplittableRandom random = new SplittableRandom();
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private long[] accountIds;
+
+    private LoadHarness(LoadOptions options, HttpClient client, String baseUrl) {
+        this.options = options;
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.operations = options.mix().keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += options.mix().get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.fromSystemProperties();
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, 3,
+                KafkaTopicsConfiguration.TRANSACTION_TOPIC, KafkaTopicsConfiguration.DEPOSIT_TOPIC,
+                KafkaTopicsConfiguration.TRANSACTION_DLT, KafkaTopicsConfiguration.DEPOSIT_DLT);
+        broker.afterPropertiesSet();
+        ExecutorService httpExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try (BenchmarkDatabase database = BenchmarkDatabase.start();
+             ConfigurableApplicationContext context = new SpringApplicationBuilder(TestApplication.class)
+                     // a bean rather than a singleton, so that it is post-processed like the application's own pool
+                     .initializers(ctx -> ((GenericApplicationContext) ctx).registerBean("dataSource", DataSource.class,
+                             database::dataSource))
+                     .run(
+                             "--server.port=0",
+                             "--spring.main.banner-mode=off",
+                             "--spring.jpa.show-sql=false",
+                             "--logging.level.root=WARN",
+                             "--logging.level.org.flywaydb=WARN",
+                             "--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString())) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(httpExecutor)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            new LoadHarness(options, client, baseUrl).run(database.jdbcTemplate());
+        } finally {
+            httpExecutor.shutdownNow();
+            broker.destroy();
+        }
+    }
+
+    private void run(JdbcTemplate jdbcTemplate) throws Exception {
+        System.out.printf("Creating %d accounts%n", options.accounts());
+        createAccounts();
+
+        System.out.printf("Warming up for %ds at %d requests/s%n", options.warmup().toSeconds(), options.rate());
+        generate(options.warmup());
+        statistics.reset();
+
+        System.out.printf("Measuring for %ds at %d requests/s, mix %s%n",
+                options.duration().toSeconds(), options.rate(), options.mix());
+        generate(options.duration());
+        Map<Operation, LoadStatistics.OperationResult> results = statistics.snapshot();
+
+        long expected = statistics.expectedLedgerEntries();
+        System.out.printf("Waiting for the ledger to reach %d entries%n", expected);
+        long catchUpStart = System.nanoTime();
+        long entries = ledgerEntries(jdbcTemplate);
+        long deadline = catchUpStart + options.catchUpTimeout().toNanos();
+        while (entries < expected && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+            entries = ledgerEntries(jdbcTemplate);
+        }
+        Double catchUpSeconds = entries >= expected ? (System.nanoTime() - catchUpStart) / 1e9 : null;
+
+        print(results, expected, entries, catchUpSeconds);
+        writeReport(results, expected, entries, catchUpSeconds);
+    }
+
+    private void createAccounts() throws Exception {
+        accountIds = new long[options.accounts()];
+        for (int i = 0; i < accountIds.length; i++) {
+            HttpResponse<String> response = client.send(createRequest(i), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                throw new IllegalStateException("Creating account failed: " + response.statusCode() + " " + response.body());
+            }
+            JsonNode account = MAPPER.readTree(response.body());
+            accountIds[i] = account.path("id").asLong();
+        }
+    }
+
+    /**
+     * Sends one request every {@code 1/rate} seconds until {@code duration} has passed, then waits for the
+     * responses still outstanding. A slow server makes requests queue behind the in-flight limit; their
+     * latency still counts from the time they were due.
+     */
+    private void generate(Duration duration) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(options.maxInFlight());
+        long interval = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = nextOperation();
+            HttpRequest request = request(operation);
+            inFlight.acquire();
+            long intendedStart = due;
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        statistics.record(operation, intendedStart, failure == null ? response.statusCode() : -1);
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(options.maxInFlight());
+    }
+
+    private Operation nextOperation() {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException("Weights exhausted");
+    }
+
+    private HttpRequest request(Operation operation) {
+        long account = randomAccount();
+        return switch (operation) {
+            case CREATE -> createRequest(random.nextInt(1_000_000));
+            case DEPOSIT -> HttpRequest.newBuilder(uri("/api/accounts/" + account + "/deposit?amount=" + AMOUNT))
+                    .PUT(HttpRequest.BodyPublishers.noBody()).build();
+            case WITHDRAWAL -> HttpRequest.newBuilder(uri("/api/accounts/" + account + "/withdrawal?amount=" + AMOUNT))
+                    .PUT(HttpRequest.BodyPublishers.noBody()).build();
+            case TRANSFER -> {
+                long to = randomAccount();
+                while (to == account) {
+                    to = randomAccount();
+                }
+                yield json(uri("/api/accounts/transfer"), String.format(
+                        "{\"fromAccountId\":%d,\"toAccountId\":%d,\"amount\":%s,\"idempotencyKey\":\"%s\"}",
+                        account, to, AMOUNT, UUID.randomUUID()));
+            }
+            case GET -> HttpRequest.newBuilder(uri("/api/accounts/" + account)).GET().build();
+        };
+    }
+
+    private HttpRequest createRequest(int n) {
+        return json(uri("/api/accounts"),
+                String.format("{\"ownerName\":\"Load %d\",\"initialBalance\":%s}", n, INITIAL_BALANCE));
+    }
+
+    private long randomAccount() {
+        return accountIds[random.nextInt(accountIds.length)];
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static HttpRequest json(URI uri, String body) {
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static long ledgerEntries(JdbcTemplate jdbcTemplate) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_entries", Long.class);
+        return count != null ? count : 0;
+    }
+
+    private void print(Map<Operation, LoadStatistics.OperationResult> results, long expected, long entries,
+                       Double catchUpSeconds) {
+        System.out.printf("%n%-11s %9s %8s %8s %10s %9s %9s %9s %9s %9s%n", "Operation", "OK", "4xx", "Errors",
+                "Req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        double total = 0;
+        for (Map.Entry<Operation, LoadStatistics.OperationResult> entry : results.entrySet()) {
+            LoadStatistics.OperationResult r = entry.getValue();
+            total += r.throughput();
+            System.out.printf("%-11s %9d %8d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(),
+                    r.succeeded(), r.rejected(), r.failed(), r.throughput(), r.p50Ms(), r.p90Ms(), r.p99Ms(),
+                    r.p999Ms(), r.maxMs());
+        }
+        System.out.printf("Total throughput: %.1f requests/s (target %d)%n", total, options.rate());
+        if (catchUpSeconds != null) {
+            System.out.printf("Ledger caught up %.2fs after the load stopped (%d entries)%n", catchUpSeconds, entries);
+        } else {
+            System.out.printf("Ledger did not catch up within %ds: %d of %d entries%n",
+                    options.catchUpTimeout().toSeconds(), entries, expected);
+        }
+    }
+
+    private void writeReport(Map<Operation, LoadStatistics.OperationResult> results, long expected, long entries,
+                             Double catchUpSeconds) throws Exception {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+        report.put("operations", results);
+        report.put("expectedLedgerEntries", expected);
+        report.put("ledgerEntries", entries);
+        report.put("catchUpSeconds", catchUpSeconds);
+        File file = new File(options.reportFile());
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        MAPPER.copy().registerModule(new JavaTimeModule())
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(file, report);
+        System.out.println("Report written to " + file);
+    }
+}
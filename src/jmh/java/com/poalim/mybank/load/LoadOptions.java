@@ -0,0 +1,56 @@
+package com.poalim.mybank.load;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Harness settings, read from {@code load.*} system properties.
+ *
+ * @param rate        requests per second the generator schedules, independent of how fast responses come back
+ * @param warmup      load before measuring starts; its requests still count towards the ledger catch-up
+ * @param duration    measured load
+ * @param accounts    accounts created before the run; deposits, withdrawals, transfers and reads pick from these
+ * @param maxInFlight requests outstanding at once before the generator waits
+ * @param mix         relative weights of the operations
+ * @param catchUpTimeout how long to wait for the ledger consumers after the load stops
+ */
+record LoadOptions(int rate, Duration warmup, Duration duration, int accounts, int maxInFlight,
+                   Map<Operation, Integer> mix, Duration catchUpTimeout, String reportFile) {
+
+    static final String DEFAULT_MIX = "create=5,deposit=25,withdrawal=15,transfer=40,get=15";
+
+    static LoadOptions fromSystemProperties() {
+        return new LoadOptions(
+                Integer.getInteger("load.rate", 200),
+                Duration.ofSeconds(Integer.getInteger("load.warmup-seconds", 10)),
+                Duration.ofSeconds(Integer.getInteger("load.duration-seconds", 60)),
+                Integer.getInteger("load.accounts", 1000),
+                Integer.getInteger("load.max-in-flight", 256),
+                parseMix(System.getProperty("load.mix", DEFAULT_MIX)),
+                Duration.ofSeconds(Integer.getInteger("load.catch-up-timeout-seconds", 300)),
+                System.getProperty("load.report-file", "target/load-report.json"));
+    }
+
+    /**
+     * @param mix comma separated {@code operation=weight} pairs, e.g. {@code transfer=80,get=20}
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected operation=weight in load.mix, got: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in load.mix: " + part);
+            }
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase()), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("load.mix has no operation with a positive weight");
+        }
+        return weights;
+    }
+}
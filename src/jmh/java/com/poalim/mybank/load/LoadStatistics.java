@@ -0,0 +1,103 @@
+package com.poalim.mybank.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and outcome counts per operation. Latency is measured from the time a request was
+ * scheduled to be sent, not from when it actually went out, so a stalled server is not hidden by the
+ * generator slowing down with it (coordinated omission).
+ */
+class LoadStatistics {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> succeeded = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> rejected = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> failed = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> totalSucceeded = new EnumMap<>(Operation.class);
+    private final AtomicLong measuringSince = new AtomicLong(System.nanoTime());
+
+    LoadStatistics() {
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(MAX_LATENCY_MICROS, 3));
+            succeeded.put(operation, new LongAdder());
+            rejected.put(operation, new LongAdder());
+            failed.put(operation, new LongAdder());
+            totalSucceeded.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * @param status HTTP status, or -1 if the request did not complete
+     */
+    void record(Operation operation, long intendedStartNanos, int status) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStartNanos);
+        recorders.get(operation).recordValue(Math.min(Math.max(micros, 1), MAX_LATENCY_MICROS));
+        if (status >= 200 && status < 300) {
+            succeeded.get(operation).increment();
+            totalSucceeded.get(operation).increment();
+        } else if (status >= 400 && status < 500) {
+            rejected.get(operation).increment();
+        } else {
+            failed.get(operation).increment();
+        }
+    }
+
+    /**
+     * Drops what was recorded so far, e.g. at the end of the warmup. Ledger expectations are kept.
+     */
+    void reset() {
+        recorders.values().forEach(Recorder::reset);
+        succeeded.values().forEach(LongAdder::reset);
+        rejected.values().forEach(LongAdder::reset);
+        failed.values().forEach(LongAdder::reset);
+        measuringSince.set(System.nanoTime());
+    }
+
+    /**
+     * @return ledger entries that the successful requests since the start, warmup included, should produce
+     */
+    long expectedLedgerEntries() {
+        long entries = 0;
+        for (Operation operation : Operation.values()) {
+            entries += totalSucceeded.get(operation).sum() * operation.ledgerEntries();
+        }
+        return entries;
+    }
+
+    Map<Operation, OperationResult> snapshot() {
+        double seconds = (System.nanoTime() - measuringSince.get()) / 1e9;
+        Map<Operation, OperationResult> results = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            long ok = succeeded.get(operation).sum();
+            long clientErrors = rejected.get(operation).sum();
+            long errors = failed.get(operation).sum();
+            if (ok + clientErrors + errors == 0) {
+                continue;
+            }
+            results.put(operation, new OperationResult(ok, clientErrors, errors, (ok + clientErrors + errors) / seconds,
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue())));
+        }
+        return results;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    record OperationResult(long succeeded, long rejected, long failed, double throughput,
+                           double p50Ms, double p90Ms, double p99Ms, double p999Ms, double maxMs) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.poalim.mybank.load;
+
+/**
+ * Requests the harness sends, with the number of ledger entries a successful one produces.
+ */
+enum Operation {
+    CREATE(0),
+    DEPOSIT(1),
+    WITHDRAWAL(0),
+    TRANSFER(2),
+    GET(0);
+
+    private final int ledgerEntries;
+
+    Operation(int ledgerEntries) {
+        this.ledgerEntries = ledgerEntries;
+    }
+
+    int ledgerEntries() {
+        return ledgerEntries;
+    }
+}
@@ -7,10 +7,10 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import com.poalim.mybank.money.Money;
 import lombok.*;
 
-import java.math.BigDecimal;
-
 @Entity
 @Table(name = "account")
 @Data
@@ -24,9 +24,16 @@ public class Account {
 
     private String ownerName;
 
-    private BigDecimal balance;
+    private Money balance;
 
     @Enumerated(EnumType.STRING)
     private AccountStatus status;
+
+    @Version
+    private Long version;
+
+    public Account(Long id, String ownerName, Money balance, AccountStatus status) {
+        this(id, ownerName, balance, status, null);
+    }
 }
 
@@ -0,0 +1,108 @@
+package com.poalim.mybank.account;
+
+import com.poalim.mybank.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Single-statement balance changes for deposits and withdrawals. The checks are part of the UPDATE's WHERE
+ * clause, so the row is validated and changed in one round trip under the lock the UPDATE takes anyway:
+ * concurrent changes to one account queue in the database instead of overwriting each other.
+ * <p>
+ * Optimistic transfers read with {@link #findAll} and write with {@link #updateIfUnchanged}, which only
+ * changes rows whose version is still the one that was read.
+ */
+@Repository
+public class AccountBalanceJdbcRepository {
+
+    private static final String RETURNING = " RETURNING id, owner_name, balance, status, version";
+    private static final String CREDIT_SQL =
+            "UPDATE account SET balance = balance + ?, version = version + 1 " +
+            "WHERE id = ? AND status = 'ACTIVE'" + RETURNING;
+    private static final String DEBIT_SQL =
+            "UPDATE account SET balance = balance - ?, version = version + 1 " +
+            "WHERE id = ? AND status = 'ACTIVE' AND balance >= ?" + RETURNING;
+    private static final String VERSIONED_UPDATE_SQL =
+            "UPDATE account SET balance = ?, version = version + 1 WHERE id = ? AND version = ?" + RETURNING;
+    private static final String FIND_SQL = "SELECT id, owner_name, balance, status, version FROM account WHERE id = ?";
+    private static final String FIND_TWO_SQL =
+            "SELECT id, owner_name, balance, status, version FROM account WHERE id IN (?, ?)";
+    private static final String SAVEPOINT = "optimistic_update";
+
+    private static final RowMapper<Account> ACCOUNT_MAPPER = (rs, rowNum) -> new Account(
+            rs.getLong("id"),
+            rs.getString("owner_name"),
+            Money.ofMinor(rs.getLong("balance")),
+            AccountStatus.valueOf(rs.getString("status")),
+            rs.getLong("version"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountBalanceJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the updated account, or empty if it does not exist or is not active
+     */
+    public Optional<Account> credit(Long id, Money amount) {
+        return single(jdbcTemplate.query(CREDIT_SQL, ACCOUNT_MAPPER, amount.minorUnits(), id));
+    }
+
+    /**
+     * @return the updated account, or empty if it does not exist, is not active or has less than {@code amount}
+     */
+    public Optional<Account> debit(Long id, Money amount) {
+        return single(jdbcTemplate.query(DEBIT_SQL, ACCOUNT_MAPPER, amount.minorUnits(), id, amount.minorUnits()));
+    }
+
+    /**
+     * Reads the current row, to tell why a credit or debit was rejected.
+     */
+    public Optional<Account> find(Long id) {
+        return single(jdbcTemplate.query(FIND_SQL, ACCOUNT_MAPPER, id));
+    }
+
+    /**
+     * Reads two accounts without locking them. Missing accounts are left out.
+     */
+    public List<Account> findAll(Long firstId, Long secondId) {
+        return jdbcTemplate.query(FIND_TWO_SQL, ACCOUNT_MAPPER, firstId, secondId);
+    }
+
+    /**
+     * Writes the accounts' balances if none of the rows changed since it was read, in id order so that
+     * concurrent callers cannot deadlock. Must run in a transaction: if a later row turns out to be changed,
+     * the rows already written are rolled back to a savepoint and the transaction carries on as before.
+     *
+     * @param accounts the new balances, with the versions they were read at
+     * @return the updated accounts, or empty if any of them changed in the meantime
+     */
+    public Optional<List<Account>> updateIfUnchanged(List<Account> accounts) {
+        List<Account> ordered = new ArrayList<>(accounts);
+        ordered.sort(Comparator.comparing(Account::getId));
+        jdbcTemplate.execute("SAVEPOINT " + SAVEPOINT);
+        List<Account> updated = new ArrayList<>(ordered.size());
+        for (Account account : ordered) {
+            List<Account> rows = jdbcTemplate.query(VERSIONED_UPDATE_SQL, ACCOUNT_MAPPER,
+                    account.getBalance().minorUnits(), account.getId(), account.getVersion());
+            if (rows.isEmpty()) {
+                jdbcTemplate.execute("ROLLBACK TO SAVEPOINT " + SAVEPOINT);
+                return Optional.empty();
+            }
+            updated.add(rows.get(0));
+        }
+        // Left to the commit to release, saving a round trip
+        return Optional.of(updated);
+    }
+
+    private static Optional<Account> single(List<Account> accounts) {
+        return accounts.isEmpty() ? Optional.empty() : Optional.of(accounts.get(0));
+    }
+}
@@ -1,21 +1,24 @@
 package com.poalim.mybank.account;
 
+import com.poalim.mybank.money.Money;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
-
 @RestController
 @RequestMapping("/api/accounts")
 public class AccountController {
 
     private final AccountService accountService;
+    private final BatchTransferService batchTransferService;
 
     @Autowired
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService, BatchTransferService batchTransferService) {
         this.accountService = accountService;
+        this.batchTransferService = batchTransferService;
     }
 
     @PostMapping
@@ -35,14 +38,19 @@ public class AccountController {
         return ResponseEntity.ok(accountService.changeAccountStatus(id, status));
     }
 
+    @PutMapping("/{id}/hot-buckets")
+    public ResponseEntity<AccountResponse> changeHotBuckets(@PathVariable Long id, @RequestParam int buckets) {
+        return ResponseEntity.ok(accountService.changeHotBuckets(id, buckets));
+    }
+
     @PutMapping("/{id}/deposit")
-    public ResponseEntity<AccountResponse> deposit(@PathVariable Long id, @RequestParam BigDecimal amount) {
+    public ResponseEntity<AccountResponse> deposit(@PathVariable Long id, @RequestParam Money amount) {
         AccountResponse response = accountService.deposit(id, amount);
         return ResponseEntity.ok(response);
     }
 
     @PutMapping("/{id}/withdrawal")
-    public ResponseEntity<AccountResponse> withdrawal(@PathVariable Long id, @RequestParam BigDecimal amount) {
+    public ResponseEntity<AccountResponse> withdrawal(@PathVariable Long id, @RequestParam Money amount) {
         AccountResponse response = accountService.withdrawal(id, amount);
         return ResponseEntity.ok(response);
     }
@@ -53,13 +61,32 @@ public class AccountController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/transfers/batch")
+    public ResponseEntity<BatchTransferResponse> transferBatch(@RequestBody BatchTransferRequest request) {
+        BatchTransferResponse response = batchTransferService.transferBatch(request);
+        return ResponseEntity.ok(response);
+    }
+
     @ExceptionHandler(AccountNotFoundException.class)
     public ResponseEntity<String> handleAccountNotFound(AccountNotFoundException ex) {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(ActionNotAllowedException.class)
     public ResponseEntity<String> handleActionNotAllowed(ActionNotAllowedException ex) {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.UNAUTHORIZED);
     }
+
+    /**
+     * No database connection within the pool's or the bulkhead's timeout: the service is overloaded.
+     */
+    @ExceptionHandler({CannotCreateTransactionException.class, CannotGetJdbcConnectionException.class})
+    public ResponseEntity<String> handleNoConnection(RuntimeException ex) {
+        return new ResponseEntity<>("Service is busy, please retry", HttpStatus.SERVICE_UNAVAILABLE);
+    }
 }
\ No newline at end of file
@@ -1,15 +1,14 @@
 package com.poalim.mybank.account;
 
+import com.poalim.mybank.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
-import java.math.BigDecimal;
-
 @Data
 @AllArgsConstructor
 public class AccountResponse {
     private Long id;
     private String ownerName;
-    private BigDecimal balance;
+    private Money balance;
     private AccountStatus status;
 }
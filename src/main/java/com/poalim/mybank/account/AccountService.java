@@ -1,19 +1,37 @@
 package com.poalim.mybank.account;
 
+import com.poalim.mybank.account.cache.AccountCache;
+import com.poalim.mybank.account.concurrency.TransferConcurrencyPolicy;
+import com.poalim.mybank.account.engine.AccountSnapshot;
+import com.poalim.mybank.account.engine.ShardedBalanceEngine;
+import com.poalim.mybank.account.hot.HotAccountBuckets;
+import com.poalim.mybank.account.idempotency.TransferIdempotencyFilter;
 import com.poalim.mybank.audit.Auditable;
 import com.poalim.mybank.config.KafkaTopicsConfiguration;
 import com.poalim.mybank.events.DepositCompletedEvent;
 import com.poalim.mybank.events.TransactionCompletedEvent;
+import com.poalim.mybank.id.TransactionIdGenerator;
+import com.poalim.mybank.money.Money;
+import com.poalim.mybank.outbox.OutboxService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -21,16 +39,115 @@ import java.util.UUID;
 public class AccountService {
 
     private final AccountRepository accountRepository;
+    private final AccountBalanceJdbcRepository accountBalanceRepository;
     private final TransferRecordRepository transferRecordRepository;
-    private final KafkaTemplate<String, TransactionCompletedEvent> kafkaTemplate;
-    private final KafkaTemplate<String, DepositCompletedEvent> depositKafkaTemplate;
+    private final OutboxService outboxService;
+    private final TransactionIdGenerator transactionIds;
+    private final TransactionTemplate separateReadTransaction;
+    private final Timer lockWait;
+    private final Counter idempotencyReplayed;
+    private final Counter idempotencyNew;
+    private final Counter optimisticCommitted;
+    private final Counter optimisticConflicts;
+    private final Counter optimisticFallbacks;
+    private ShardedBalanceEngine balanceEngine;
+    private TransferConcurrencyPolicy concurrencyPolicy;
+    private TransferIdempotencyFilter idempotencyFilter;
+    private AccountCache accountCache;
+    private HotAccountBuckets hotAccounts;
 
     @Autowired
-    public AccountService(AccountRepository accountRepository, TransferRecordRepository transferRecordRepository, KafkaTemplate<String, TransactionCompletedEvent> kafkaTemplate, KafkaTemplate<String, DepositCompletedEvent> depositKafkaTemplate) {
+    public AccountService(AccountRepository accountRepository, AccountBalanceJdbcRepository accountBalanceRepository,
+                          TransferRecordRepository transferRecordRepository, OutboxService outboxService,
+                          TransactionIdGenerator transactionIds, PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry) {
         this.accountRepository = accountRepository;
+        this.accountBalanceRepository = accountBalanceRepository;
         this.transferRecordRepository = transferRecordRepository;
-        this.kafkaTemplate = kafkaTemplate;
-        this.depositKafkaTemplate = depositKafkaTemplate;
+        this.outboxService = outboxService;
+        this.transactionIds = transactionIds;
+        this.separateReadTransaction = new TransactionTemplate(transactionManager);
+        this.separateReadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.separateReadTransaction.setReadOnly(true);
+
+        this.lockWait = lockWaitTimer(meterRegistry, "transfer");
+        this.idempotencyReplayed = idempotencyCounter(meterRegistry, "transfer", "replayed");
+        this.idempotencyNew = idempotencyCounter(meterRegistry, "transfer", "new");
+        this.optimisticCommitted = optimisticCounter(meterRegistry, "committed");
+        this.optimisticConflicts = optimisticCounter(meterRegistry, "conflict");
+        this.optimisticFallbacks = optimisticCounter(meterRegistry, "fallback");
+    }
+
+    /**
+     * Time spent in {@code findByIdsForUpdate}, i.e. mostly waiting for other transactions' row locks.
+     */
+    static Timer lockWaitTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("account.lock.wait")
+                .description("Time to acquire the pessimistic account row locks")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    static Counter idempotencyCounter(MeterRegistry meterRegistry, String operation, String result) {
+        return Counter.builder("transfer.idempotency")
+                .description("Transfers by whether their idempotency key was seen before")
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Optimistic transfer attempts: committed, lost to a concurrent change, or given up in favour of row locks.
+     */
+    static Counter optimisticCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("transfer.optimistic")
+                .description("Optimistic transfer attempts by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Present only when {@code mybank.engine.mode=sharded}; otherwise balances are changed under JPA row locks.
+     */
+    @Autowired(required = false)
+    public void setBalanceEngine(ShardedBalanceEngine balanceEngine) {
+        this.balanceEngine = balanceEngine;
+    }
+
+    /**
+     * Absent with the default {@code mybank.transfer.concurrency.mode=pessimistic}: JPA-mode transfers then
+     * always lock both account rows.
+     */
+    @Autowired(required = false)
+    public void setConcurrencyPolicy(TransferConcurrencyPolicy concurrencyPolicy) {
+        this.concurrencyPolicy = concurrencyPolicy;
+    }
+
+    /**
+     * Absent in sharded mode and when {@code mybank.account.hot.enabled=false}; every credit then goes to the
+     * account row.
+     */
+    @Autowired(required = false)
+    public void setHotAccounts(HotAccountBuckets hotAccounts) {
+        this.hotAccounts = hotAccounts;
+    }
+
+    /**
+     * Absent when {@code mybank.idempotency.filter.enabled=false}; every key is then looked up in transfer_record.
+     */
+    @Autowired(required = false)
+    public void setIdempotencyFilter(TransferIdempotencyFilter idempotencyFilter) {
+        this.idempotencyFilter = idempotencyFilter;
+    }
+
+    /**
+     * Absent when {@code mybank.account.cache.enabled=false}. Not used in sharded mode, where reads are served
+     * from the engine's memory anyway.
+     */
+    @Autowired(required = false)
+    public void setAccountCache(AccountCache accountCache) {
+        this.accountCache = accountCache;
     }
 
     @Transactional
@@ -42,7 +159,7 @@ public class AccountService {
         }
 
         // Validate initial balance
-        if (request.getInitialBalance() == null || request.getInitialBalance().compareTo(BigDecimal.ZERO) < 0) {
+        if (request.getInitialBalance() == null || request.getInitialBalance().signum() < 0) {
             throw new IllegalArgumentException("Initial balance must be greater than or equal to 0.");
         }
 
@@ -54,6 +171,7 @@ public class AccountService {
         );
 
         Account savedAccount = accountRepository.save(account);
+        cacheAfterCommit(savedAccount);
 
         return new AccountResponse(
                 savedAccount.getId(),
@@ -63,10 +181,22 @@ public class AccountService {
         );
     }
 
-    @Transactional
+    /**
+     * Not transactional: cache hits need no connection, and a miss reads through the repository's own
+     * read-only transaction.
+     */
     @Auditable(operationType = "GET_ACCOUNT")
     public AccountResponse getAccount(Long id) throws AccountNotFoundException {
-        return accountRepository.findById(id)
+        if (balanceEngine != null) {
+            return toResponse(balanceEngine.getAccount(id));
+        }
+
+        if (accountCache != null) {
+            return accountCache.get(id, this::loadAccount)
+                    .orElseThrow(() -> new AccountNotFoundException(id));
+        }
+
+        return loadAccount(id)
                 .map(account -> new AccountResponse(
                         account.getId(),
                         account.getOwnerName(),
@@ -75,95 +205,125 @@ public class AccountService {
                 .orElseThrow(() -> new AccountNotFoundException(id));
     }
 
+    @Transactional
     @Auditable(operationType = "CHANGE_ACCOUNT_STATUS")
     public AccountResponse changeAccountStatus(Long id, AccountStatus status) {
+        if (balanceEngine != null) {
+            AccountStatus previous = balanceEngine.changeStatus(id, status);
+            onRollback(() -> balanceEngine.restoreStatus(id, previous));
+            return toResponse(balanceEngine.getAccount(id));
+        }
+
+        if (hotAccounts != null) {
+            // Lock the row and fold the buckets in, so the balance checked below is complete and no credit
+            // lands in a bucket until the new status is committed
+            hotAccounts.consolidate(id);
+        }
+
         Account account = accountRepository.findById(id)
                 .orElseThrow(() -> new AccountNotFoundException(id));
 
-        if (status == AccountStatus.CLOSED && account.getBalance().compareTo(BigDecimal.ZERO) != 0) {
+        if (status == AccountStatus.CLOSED && account.getBalance().signum() != 0) {
             throw new ActionNotAllowedException(id, "Account balance must be 0 to close the account.");
         }
 
         account.setStatus(status);
         Account savedAccount = accountRepository.save(account);
+        cacheAfterCommit(savedAccount);
 
         return new AccountResponse(savedAccount.getId(), savedAccount.getOwnerName(), savedAccount.getBalance(), savedAccount.getStatus());
     }
 
+    /**
+     * Flags the account as hot, spreading its incoming credits over {@code buckets} bucket rows, or back to a
+     * regular account with 0.
+     */
     @Transactional
-    @Auditable(operationType = "DEPOSIT")
-    public AccountResponse deposit(Long id, BigDecimal amount) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new ActionNotAllowedException(id, "Deposit amount must be positive.");
+    @Auditable(operationType = "CHANGE_HOT_BUCKETS")
+    public AccountResponse changeHotBuckets(Long id, int buckets) {
+        if (hotAccounts == null) {
+            throw new ActionNotAllowedException(id, "Hot account buckets are not enabled.");
         }
-
-        Account account = accountRepository.findById(id)
+        hotAccounts.changeBuckets(id, buckets);
+        invalidateAfterCommit(id);
+        return hotAccounts.findWithBuckets(id)
+                .map(AccountService::toResponse)
                 .orElseThrow(() -> new AccountNotFoundException(id));
+    }
 
-        if (account.getStatus() != AccountStatus.ACTIVE) {
-            throw new ActionNotAllowedException(id, "Cannot deposit to a non-active account.");
+    @Transactional
+    @Auditable(operationType = "DEPOSIT")
+    public AccountResponse deposit(Long id, Money amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new ActionNotAllowedException(id, "Deposit amount must be positive.");
         }
 
-        account.setBalance(account.getBalance().add(amount));
-        Account savedAccount = accountRepository.save(account);
+        AccountResponse response;
+        if (balanceEngine != null) {
+            response = toResponse(balanceEngine.deposit(id, amount));
+            afterCompletion(() -> balanceEngine.settleCredit(id, amount),
+                    () -> balanceEngine.cancelCredit(id, amount));
+        } else if (hotAccounts != null && hotAccounts.credit(id, amount)) {
+            invalidateAfterCommit(id);
+            response = hotAccounts.findWithBuckets(id)
+                    .map(AccountService::toResponse)
+                    .orElseThrow(() -> new AccountNotFoundException(id));
+        } else {
+            // One statement checks and credits the row, so concurrent deposits cannot overwrite each other
+            Account account = accountBalanceRepository.credit(id, amount)
+                    .orElseThrow(() -> depositRejected(id));
+            cacheAfterCommit(account);
+            response = new AccountResponse(
+                    account.getId(),
+                    account.getOwnerName(),
+                    account.getBalance(),
+                    account.getStatus()
+            );
+        }
 
-        // Create and send the deposit event
-        String transactionId = UUID.randomUUID().toString();
+        // Record the deposit event in the outbox, in this transaction, keyed by account so the account's
+        // events stay on one partition and in order
         DepositCompletedEvent event = new DepositCompletedEvent(
-                transactionId,
+                transactionIds.nextId().toString(),
                 id.toString(),
                 amount,
                 LocalDateTime.now()
         );
+        outboxService.enqueue(KafkaTopicsConfiguration.DEPOSIT_TOPIC, event.accountId(), event);
 
-        try {
-            depositKafkaTemplate.send(KafkaTopicsConfiguration.DEPOSIT_TOPIC,
-                            event.transactionId(),
-                            event)
-                    .whenComplete((result, ex) -> {
-                        if (ex != null) {
-                            log.error("Failed to send deposit event: {}", ex.getMessage());
-                        }
-                    });
-        } catch (Exception e) {
-            log.error("Failed to send deposit event: {}", e.getMessage());
-        }
-
-        return new AccountResponse(
-                savedAccount.getId(),
-                savedAccount.getOwnerName(),
-                savedAccount.getBalance(),
-                savedAccount.getStatus()
-        );
+        return response;
     }
 
     @Transactional
     @Auditable(operationType = "WITHDRAWAL")
-    public AccountResponse withdrawal(Long id, BigDecimal amount) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+    public AccountResponse withdrawal(Long id, Money amount) {
+        if (amount == null || amount.signum() <= 0) {
             throw new ActionNotAllowedException(id, "Withdrawal amount must be positive.");
         }
 
-        Account account = accountRepository.findById(id)
-                .orElseThrow(() -> new AccountNotFoundException(id));
-
-        if (account.getStatus() != AccountStatus.ACTIVE) {
-            throw new ActionNotAllowedException(id, "Cannot withdraw from a non-active account.");
+        if (balanceEngine != null) {
+            AccountResponse response = toResponse(balanceEngine.withdraw(id, amount));
+            onRollback(() -> balanceEngine.compensateWithdrawal(id, amount));
+            return response;
         }
 
-        BigDecimal newBalance = account.getBalance().subtract(amount);
-        if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
-            throw new ActionNotAllowedException(id, "Insufficient funds for withdrawal.");
+        // The funds check is part of the UPDATE, so two withdrawals cannot both spend the same balance
+        Optional<Account> debited = accountBalanceRepository.debit(id, amount);
+        if (debited.isEmpty() && hotAccounts != null && hotAccounts.consolidate(id).signum() != 0) {
+            // Part of the balance was still in buckets
+            debited = accountBalanceRepository.debit(id, amount);
+        }
+        Account account = debited.orElseThrow(() -> withdrawalRejected(id));
+        cacheAfterCommit(account);
+        if (hotAccounts != null && hotAccounts.isHot(id)) {
+            account = hotAccounts.findWithBuckets(id).orElse(account);
         }
-
-        account.setBalance(newBalance);
-        Account savedAccount = accountRepository.save(account);
 
         return new AccountResponse(
-                savedAccount.getId(),
-                savedAccount.getOwnerName(),
-                savedAccount.getBalance(),
-                savedAccount.getStatus()
+                account.getId(),
+                account.getOwnerName(),
+                account.getBalance(),
+                account.getStatus()
         );
     }
 
@@ -172,22 +332,16 @@ public class AccountService {
     public TransferResponse transfer(TransferRequest request) {
         // Handle idempotency
         if (request.getIdempotencyKey() != null) {
-            var existingTransfer = transferRecordRepository.findByIdempotencyKey(request.getIdempotencyKey());
+            var existingTransfer = findExistingTransfer(request.getIdempotencyKey());
             if (existingTransfer.isPresent()) {
-                TransferRecord record = existingTransfer.get();
-                return new TransferResponse(
-                        record.getId().toString(),
-                        record.getFromAccountId(),
-                        record.getToAccountId(),
-                        record.getAmount(),
-                        record.getCompletedAt() != null ? record.getCompletedAt() : record.getCreatedAt(),
-                        record.getStatus().toString()
-                );
+                idempotencyReplayed.increment();
+                return replay(existingTransfer.get());
             }
+            idempotencyNew.increment();
         }
 
         // Validate transfer request
-        if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+        if (request.getAmount() == null || request.getAmount().signum() <= 0) {
             throw new ActionNotAllowedException(null, "Transfer amount must be positive.");
         }
 
@@ -196,84 +350,52 @@ public class AccountService {
         }
 
         // Create transfer record for idempotency
-        String transferId = UUID.randomUUID().toString();
+        UUID transactionId = transactionIds.nextId();
         TransferRecord transferRecord = new TransferRecord();
+        transferRecord.setTransactionId(transactionId);
         transferRecord.setIdempotencyKey(request.getIdempotencyKey());
         transferRecord.setFromAccountId(request.getFromAccountId());
         transferRecord.setToAccountId(request.getToAccountId());
         transferRecord.setAmount(request.getAmount());
         transferRecord.setStatus(TransferStatus.PENDING);
-        transferRecord = transferRecordRepository.save(transferRecord);
-
         try {
-            // Lock accounts in consistent order to prevent deadlocks
-            List<Long> accountIds = Arrays.asList(request.getFromAccountId(), request.getToAccountId());
-            accountIds.sort(Long::compareTo);
-            List<Account> lockedAccounts = accountRepository.findByIdsForUpdate(accountIds);
-
-            if (lockedAccounts.size() != 2) {
-                throw new AccountNotFoundException(null);
-            }
-
-            Account fromAccount = lockedAccounts.stream()
-                    .filter(acc -> acc.getId().equals(request.getFromAccountId()))
-                    .findFirst()
-                    .orElseThrow(() -> new AccountNotFoundException(request.getFromAccountId()));
-
-            Account toAccount = lockedAccounts.stream()
-                    .filter(acc -> acc.getId().equals(request.getToAccountId()))
-                    .findFirst()
-                    .orElseThrow(() -> new AccountNotFoundException(request.getToAccountId()));
-
-            // Validate account statuses
-            if (fromAccount.getStatus() != AccountStatus.ACTIVE) {
-                throw new ActionNotAllowedException(request.getFromAccountId(), "Source account is not active.");
-            }
-
-            if (toAccount.getStatus() != AccountStatus.ACTIVE) {
-                throw new ActionNotAllowedException(request.getToAccountId(), "Destination account is not active.");
-            }
+            transferRecord = transferRecordRepository.save(transferRecord);
+        } catch (DataIntegrityViolationException e) {
+            // The key was used on another node, typically by a client retrying after a timeout there
+            return replayConcurrentTransfer(request.getIdempotencyKey()).orElseThrow(() -> e);
+        }
+        if (idempotencyFilter != null) {
+            idempotencyFilter.record(transferRecord.getIdempotencyKey());
+        }
 
-            // Check for sufficient funds
-            BigDecimal newFromBalance = fromAccount.getBalance().subtract(request.getAmount());
-            if (newFromBalance.compareTo(BigDecimal.ZERO) < 0) {
-                throw new ActionNotAllowedException(request.getFromAccountId(), "Insufficient funds for transfer.");
+        try {
+            if (balanceEngine != null) {
+                balanceEngine.transfer(request.getFromAccountId(), request.getToAccountId(), request.getAmount());
+                settleAfterCommit(request.getFromAccountId(), request.getToAccountId(), request.getAmount());
+            } else if (hotAccounts != null && hotAccounts.isHot(request.getToAccountId())) {
+                transferToHotAccount(request);
+            } else if (concurrencyPolicy != null
+                    && concurrencyPolicy.optimistic(request.getFromAccountId(), request.getToAccountId())) {
+                transferOptimistically(request);
+            } else {
+                transferPessimistically(request);
             }
 
-            // Perform the transfer
-            fromAccount.setBalance(newFromBalance);
-            toAccount.setBalance(toAccount.getBalance().add(request.getAmount()));
-
-            accountRepository.save(fromAccount);
-            accountRepository.save(toAccount);
-
             // Update transfer record
             transferRecord.setStatus(TransferStatus.COMPLETED);
             transferRecord.setCompletedAt(LocalDateTime.now());
             transferRecordRepository.save(transferRecord);
 
             TransactionCompletedEvent event = new TransactionCompletedEvent(
-                    transferRecord.getId().toString(),
+                    transactionId.toString(),
                     request.getFromAccountId().toString(),
                     request.getToAccountId().toString(),
                     request.getAmount(),
                     LocalDateTime.now()
             );
 
-            // Send the event
-            try {
-                kafkaTemplate.send(KafkaTopicsConfiguration.TRANSACTION_TOPIC,
-                                event.transactionId(),
-                                event)
-                        .whenComplete((result, ex) -> {
-                            if (ex != null) {
-                                log.error("Failed to send transaction event: {}", ex.getMessage());
-                            }
-                        });
-            } catch (Exception e) {
-                log.error("Failed to send transaction event: {}", e.getMessage());
-            }
-
+            // Record the event in the outbox, in this transaction, keyed by the debited account
+            outboxService.enqueue(KafkaTopicsConfiguration.TRANSACTION_TOPIC, event.sourceAccountId(), event);
 
             return new TransferResponse(
                     transferRecord.getId().toString(),
@@ -292,4 +414,278 @@ public class AccountService {
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Looks up the transfer that took the key in a separate transaction, since this one is aborted by the
+     * failed insert, and marks this one to roll back quietly instead of failing the commit.
+     */
+    private Optional<TransferResponse> replayConcurrentTransfer(String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return Optional.empty();
+        }
+        Optional<TransferRecord> existing = separateReadTransaction.execute(
+                status -> transferRecordRepository.findByIdempotencyKey(idempotencyKey));
+        if (existing == null || existing.isEmpty()) {
+            return Optional.empty();
+        }
+        if (idempotencyFilter != null) {
+            idempotencyFilter.record(idempotencyKey);
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
+        idempotencyReplayed.increment();
+        return Optional.of(replay(existing.get()));
+    }
+
+    private static TransferResponse replay(TransferRecord record) {
+        return new TransferResponse(
+                record.getId().toString(),
+                record.getFromAccountId(),
+                record.getToAccountId(),
+                record.getAmount(),
+                record.getCompletedAt() != null ? record.getCompletedAt() : record.getCreatedAt(),
+                record.getStatus().toString()
+        );
+    }
+
+    private void transferPessimistically(TransferRequest request) {
+        // Lock accounts in consistent order to prevent deadlocks
+        List<Long> accountIds = Arrays.asList(request.getFromAccountId(), request.getToAccountId());
+        accountIds.sort(Long::compareTo);
+        List<Account> lockedAccounts = lockWait.record(() -> accountRepository.findByIdsForUpdate(accountIds));
+
+        Account fromAccount = accountIn(lockedAccounts, request.getFromAccountId());
+        Account toAccount = accountIn(lockedAccounts, request.getToAccountId());
+        borrowFromBuckets(fromAccount, request.getAmount());
+        applyTransfer(request, fromAccount, toAccount);
+
+        accountRepository.save(fromAccount);
+        accountRepository.save(toAccount);
+        cacheAfterCommit(fromAccount);
+        cacheAfterCommit(toAccount);
+    }
+
+    /**
+     * Reads both accounts without locks and writes them only if neither changed in between. A conflict is
+     * retried after a jittered backoff; once the attempts are used up the transfer locks the rows instead.
+     */
+    private void transferOptimistically(TransferRequest request) {
+        int maxAttempts = concurrencyPolicy.maxAttempts();
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            List<Account> accounts = accountBalanceRepository.findAll(request.getFromAccountId(), request.getToAccountId());
+            Account fromAccount = accountIn(accounts, request.getFromAccountId());
+            Account toAccount = accountIn(accounts, request.getToAccountId());
+            if (hotAccounts != null && fromAccount.getBalance().isLessThan(request.getAmount())) {
+                // Buckets can only be drained under the row lock
+                transferPessimistically(request);
+                return;
+            }
+            applyTransfer(request, fromAccount, toAccount);
+
+            Optional<List<Account>> updated = accountBalanceRepository.updateIfUnchanged(List.of(fromAccount, toAccount));
+            concurrencyPolicy.recordAttempt(request.getFromAccountId(), request.getToAccountId(), updated.isEmpty());
+            if (updated.isPresent()) {
+                optimisticCommitted.increment();
+                updated.get().forEach(this::cacheAfterCommit);
+                return;
+            }
+            optimisticConflicts.increment();
+            if (attempt < maxAttempts) {
+                concurrencyPolicy.backoff(attempt);
+            }
+        }
+        optimisticFallbacks.increment();
+        transferPessimistically(request);
+    }
+
+    /**
+     * Locks only the source: the amount goes to a bucket of the hot destination, so transfers into it do
+     * not queue on its row lock. The bucket credit share-locks the destination row; when the destination has
+     * the lower id, that lock is taken before the source's, keeping the id order of the other transfer paths.
+     */
+    private void transferToHotAccount(TransferRequest request) {
+        if (request.getToAccountId() < request.getFromAccountId()) {
+            hotAccounts.lockForCredit(request.getToAccountId());
+        }
+        List<Account> lockedAccounts = lockWait.record(() ->
+                accountRepository.findByIdsForUpdate(List.of(request.getFromAccountId())));
+        if (lockedAccounts.isEmpty()) {
+            throw new AccountNotFoundException(request.getFromAccountId());
+        }
+        Account fromAccount = lockedAccounts.get(0);
+        if (fromAccount.getStatus() != AccountStatus.ACTIVE) {
+            throw new ActionNotAllowedException(request.getFromAccountId(), "Source account is not active.");
+        }
+
+        borrowFromBuckets(fromAccount, request.getAmount());
+        Money newFromBalance = fromAccount.getBalance().minus(request.getAmount());
+        if (newFromBalance.signum() < 0) {
+            throw new ActionNotAllowedException(request.getFromAccountId(), "Insufficient funds for transfer.");
+        }
+
+        if (!hotAccounts.credit(request.getToAccountId(), request.getAmount())) {
+            // Missing, not active, or no longer hot: the row credit tells which
+            accountBalanceRepository.credit(request.getToAccountId(), request.getAmount())
+                    .orElseThrow(() -> accountBalanceRepository.find(request.getToAccountId()).isPresent()
+                            ? new ActionNotAllowedException(request.getToAccountId(), "Destination account is not active.")
+                            : new AccountNotFoundException(request.getToAccountId()));
+        }
+
+        fromAccount.setBalance(newFromBalance);
+        accountRepository.save(fromAccount);
+        cacheAfterCommit(fromAccount);
+        invalidateAfterCommit(request.getToAccountId());
+    }
+
+    /**
+     * Tops the locked source account up from its buckets when its own balance does not cover the amount.
+     */
+    private void borrowFromBuckets(Account account, Money amount) {
+        if (hotAccounts != null && account.getBalance().isLessThan(amount)) {
+            account.setBalance(account.getBalance().plus(hotAccounts.drain(account.getId())));
+        }
+    }
+
+    private static Account accountIn(List<Account> accounts, Long id) {
+        if (accounts.size() != 2) {
+            throw new AccountNotFoundException(null);
+        }
+        return accounts.stream()
+                .filter(acc -> acc.getId().equals(id))
+                .findFirst()
+                .orElseThrow(() -> new AccountNotFoundException(id));
+    }
+
+    /**
+     * Validates the transfer against the accounts' current state and moves the amount between them.
+     */
+    private static void applyTransfer(TransferRequest request, Account fromAccount, Account toAccount) {
+        // Validate account statuses
+        if (fromAccount.getStatus() != AccountStatus.ACTIVE) {
+            throw new ActionNotAllowedException(request.getFromAccountId(), "Source account is not active.");
+        }
+
+        if (toAccount.getStatus() != AccountStatus.ACTIVE) {
+            throw new ActionNotAllowedException(request.getToAccountId(), "Destination account is not active.");
+        }
+
+        // Check for sufficient funds
+        Money newFromBalance = fromAccount.getBalance().minus(request.getAmount());
+        if (newFromBalance.signum() < 0) {
+            throw new ActionNotAllowedException(request.getFromAccountId(), "Insufficient funds for transfer.");
+        }
+
+        // Perform the transfer
+        fromAccount.setBalance(newFromBalance);
+        toAccount.setBalance(toAccount.getBalance().plus(request.getAmount()));
+    }
+
+    /**
+     * Tells why the credit matched no row. Read after the fact, so a concurrent change may show up here.
+     */
+    private RuntimeException depositRejected(Long id) {
+        if (accountBalanceRepository.find(id).isEmpty()) {
+            return new AccountNotFoundException(id);
+        }
+        return new ActionNotAllowedException(id, "Cannot deposit to a non-active account.");
+    }
+
+    private RuntimeException withdrawalRejected(Long id) {
+        Optional<Account> account = accountBalanceRepository.find(id);
+        if (account.isEmpty()) {
+            return new AccountNotFoundException(id);
+        }
+        if (account.get().getStatus() != AccountStatus.ACTIVE) {
+            return new ActionNotAllowedException(id, "Cannot withdraw from a non-active account.");
+        }
+        return new ActionNotAllowedException(id, "Insufficient funds for withdrawal.");
+    }
+
+    /**
+     * Hot accounts are only invalidated: their bucket credits do not change the row version, so a cached copy
+     * could not tell it is older than a concurrent credit.
+     */
+    private void cacheAfterCommit(Account account) {
+        if (accountCache == null) {
+            return;
+        }
+        if (hotAccounts != null && hotAccounts.isHot(account.getId())) {
+            accountCache.invalidateAfterCommit(List.of(account.getId()));
+        } else {
+            accountCache.putAfterCommit(account);
+        }
+    }
+
+    private void invalidateAfterCommit(Long id) {
+        if (accountCache != null) {
+            accountCache.invalidateAfterCommit(List.of(id));
+        }
+    }
+
+    private Optional<Account> loadAccount(Long id) {
+        if (hotAccounts != null && hotAccounts.isHot(id)) {
+            return hotAccounts.findWithBuckets(id);
+        }
+        return accountRepository.findById(id);
+    }
+
+    private Optional<TransferRecord> findExistingTransfer(String idempotencyKey) {
+        if (idempotencyFilter == null) {
+            return transferRecordRepository.findByIdempotencyKey(idempotencyKey);
+        }
+        return idempotencyFilter.find(idempotencyKey, transferRecordRepository::findByIdempotencyKey);
+    }
+
+    private void settleAfterCommit(Long fromAccountId, Long toAccountId, Money amount) {
+        afterCompletion(() -> balanceEngine.settleCredit(toAccountId, amount),
+                () -> balanceEngine.compensateTransfer(fromAccountId, toAccountId, amount));
+    }
+
+    /**
+     * Runs {@code settle} once the current transaction commits, or {@code compensation} if it rolls back, for
+     * engine credits that must not be spendable before then. Without a transaction, settles at once.
+     */
+    private static void afterCompletion(Runnable settle, Runnable compensation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            settle.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    compensation.run();
+                } else {
+                    settle.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs {@code compensation} if the current transaction rolls back, to undo engine changes that are not
+     * part of it.
+     */
+    private static void onRollback(Runnable compensation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    compensation.run();
+                }
+            }
+        });
+    }
+
+    private static AccountResponse toResponse(Account account) {
+        return new AccountResponse(account.getId(), account.getOwnerName(), account.getBalance(), account.getStatus());
+    }
+
+    private static AccountResponse toResponse(AccountSnapshot snapshot) {
+        return new AccountResponse(snapshot.id(), snapshot.ownerName(), snapshot.balance(), snapshot.status());
+    }
+}
@@ -0,0 +1,22 @@
+package com.poalim.mybank.account;
+
+import com.poalim.mybank.money.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class BatchTransferLegResult {
+    private int index;
+    private String idempotencyKey;
+    private String transferId;
+    private Long fromAccountId;
+    private Long toAccountId;
+    private Money amount;
+    private LocalDateTime timestamp;
+    private String status;
+    private boolean replayed;
+    private String message;
+}
@@ -0,0 +1,14 @@
+package com.poalim.mybank.account;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchTransferRequest {
+    private List<TransferRequest> transfers;
+}
@@ -0,0 +1,14 @@
+package com.poalim.mybank.account;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BatchTransferResponse {
+    private int completed;
+    private int failed;
+    private List<BatchTransferLegResult> results;
+}
@@ -0,0 +1,351 @@
+package com.poalim.mybank.account;
+
+import com.poalim.mybank.account.cache.AccountCache;
+import com.poalim.mybank.account.engine.ShardedBalanceEngine;
+import com.poalim.mybank.account.hot.HotAccountBuckets;
+import com.poalim.mybank.account.idempotency.TransferIdempotencyFilter;
+import com.poalim.mybank.audit.Auditable;
+import com.poalim.mybank.config.KafkaTopicsConfiguration;
+import com.poalim.mybank.events.TransactionCompletedEvent;
+import com.poalim.mybank.id.TransactionIdGenerator;
+import com.poalim.mybank.money.Money;
+import com.poalim.mybank.outbox.OutboxService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies many transfers in one transaction: every involved account is locked once, in id order, and all rows,
+ * including the outbox events, are written with JDBC batching. Legs are validated in request order against
+ * running balances, so a failing leg does not affect the others.
+ */
+@Service
+public class BatchTransferService {
+
+    private final AccountRepository accountRepository;
+    private final TransferRecordRepository transferRecordRepository;
+    private final TransferBatchJdbcRepository transferBatchJdbcRepository;
+    private final OutboxService outboxService;
+    private final TransactionIdGenerator transactionIds;
+    private final int maxLegs;
+    private final Timer lockWait;
+    private final Counter idempotencyReplayed;
+    private final Counter idempotencyNew;
+    private ShardedBalanceEngine balanceEngine;
+    private TransferIdempotencyFilter idempotencyFilter;
+    private AccountCache accountCache;
+    private HotAccountBuckets hotAccounts;
+
+    @Autowired
+    public BatchTransferService(AccountRepository accountRepository,
+                                TransferRecordRepository transferRecordRepository,
+                                TransferBatchJdbcRepository transferBatchJdbcRepository,
+                                OutboxService outboxService,
+                                TransactionIdGenerator transactionIds,
+                                MeterRegistry meterRegistry,
+                                @Value("${mybank.transfer.batch.max-legs:10000}") int maxLegs) {
+        this.accountRepository = accountRepository;
+        this.transferRecordRepository = transferRecordRepository;
+        this.transferBatchJdbcRepository = transferBatchJdbcRepository;
+        this.outboxService = outboxService;
+        this.transactionIds = transactionIds;
+        this.maxLegs = maxLegs;
+
+        this.lockWait = AccountService.lockWaitTimer(meterRegistry, "batch_transfer");
+        this.idempotencyReplayed = AccountService.idempotencyCounter(meterRegistry, "batch_transfer", "replayed");
+        this.idempotencyNew = AccountService.idempotencyCounter(meterRegistry, "batch_transfer", "new");
+    }
+
+    @Autowired(required = false)
+    public void setBalanceEngine(ShardedBalanceEngine balanceEngine) {
+        this.balanceEngine = balanceEngine;
+    }
+
+    @Autowired(required = false)
+    public void setIdempotencyFilter(TransferIdempotencyFilter idempotencyFilter) {
+        this.idempotencyFilter = idempotencyFilter;
+    }
+
+    @Autowired(required = false)
+    public void setAccountCache(AccountCache accountCache) {
+        this.accountCache = accountCache;
+    }
+
+    /**
+     * Batches lock every account row anyway, so hot destinations are credited on the row; buckets are only
+     * drained when a source needs them.
+     */
+    @Autowired(required = false)
+    public void setHotAccounts(HotAccountBuckets hotAccounts) {
+        this.hotAccounts = hotAccounts;
+    }
+
+    @Transactional
+    @Auditable(operationType = "BATCH_TRANSFER", captureParameters = false, captureResult = false)
+    public BatchTransferResponse transferBatch(BatchTransferRequest request) {
+        List<TransferRequest> legs = request.getTransfers();
+        if (legs == null || legs.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one transfer.");
+        }
+        if (legs.size() > maxLegs) {
+            throw new IllegalArgumentException("Batch must not contain more than " + maxLegs + " transfers.");
+        }
+
+        BatchTransferLegResult[] results = new BatchTransferLegResult[legs.size()];
+        LocalDateTime now = LocalDateTime.now();
+
+        // Idempotency: one lookup for every key in the batch
+        List<String> keys = legs.stream()
+                .map(TransferRequest::getIdempotencyKey)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<String, TransferRecord> existing = findExistingTransfers(keys);
+
+        Map<String, Integer> firstLegByKey = new HashMap<>();
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < legs.size(); i++) {
+            TransferRequest leg = legs.get(i);
+            String key = leg.getIdempotencyKey();
+            if (key == null) {
+                results[i] = failed(i, leg, "Idempotency key is required.");
+            } else if (existing.containsKey(key)) {
+                idempotencyReplayed.increment();
+                results[i] = replayed(i, existing.get(key));
+            } else if (firstLegByKey.putIfAbsent(key, i) != null) {
+                // resolved once the first leg with this key has an outcome
+                idempotencyReplayed.increment();
+                continue;
+            } else if (leg.getAmount() == null || leg.getAmount().signum() <= 0) {
+                results[i] = failed(i, leg, "Transfer amount must be positive.");
+            } else if (leg.getFromAccountId() == null || leg.getToAccountId() == null) {
+                results[i] = failed(i, leg, "Source and destination accounts are required.");
+            } else if (leg.getFromAccountId().equals(leg.getToAccountId())) {
+                results[i] = failed(i, leg, "Cannot transfer to the same account.");
+            } else {
+                pending.add(i);
+            }
+        }
+        idempotencyNew.increment(firstLegByKey.size());
+
+        if (balanceEngine != null) {
+            applyWithEngine(legs, pending, results, now);
+        } else {
+            applyWithLocks(legs, pending, results, now);
+        }
+
+        // Persist completed legs with pre-allocated ids
+        List<Integer> completedLegs = pending.stream()
+                .filter(i -> TransferStatus.COMPLETED.toString().equals(results[i].getStatus()))
+                .toList();
+        List<TransferRecord> records = new ArrayList<>(completedLegs.size());
+        if (!completedLegs.isEmpty()) {
+            List<Long> ids = transferBatchJdbcRepository.nextTransferRecordIds(completedLegs.size());
+            for (int n = 0; n < completedLegs.size(); n++) {
+                int i = completedLegs.get(n);
+                TransferRequest leg = legs.get(i);
+                TransferRecord record = new TransferRecord(ids.get(n), transactionIds.nextId(),
+                        leg.getIdempotencyKey(), leg.getFromAccountId(), leg.getToAccountId(), leg.getAmount(),
+                        TransferStatus.COMPLETED, now, now);
+                records.add(record);
+                results[i].setTransferId(record.getId().toString());
+            }
+            transferBatchJdbcRepository.insertTransferRecords(records);
+            if (idempotencyFilter != null) {
+                records.forEach(record -> idempotencyFilter.record(record.getIdempotencyKey()));
+            }
+        }
+
+        // Later legs that reused a key in this batch get the first leg's outcome
+        for (int i = 0; i < legs.size(); i++) {
+            if (results[i] == null) {
+                BatchTransferLegResult first = results[firstLegByKey.get(legs.get(i).getIdempotencyKey())];
+                results[i] = new BatchTransferLegResult(i, first.getIdempotencyKey(), first.getTransferId(),
+                        first.getFromAccountId(), first.getToAccountId(), first.getAmount(),
+                        first.getTimestamp(), first.getStatus(), true, first.getMessage());
+            }
+        }
+
+        publishEvents(records);
+
+        int completed = 0;
+        int failed = 0;
+        for (BatchTransferLegResult result : results) {
+            if (result.isReplayed()) {
+                continue;
+            }
+            if (TransferStatus.COMPLETED.toString().equals(result.getStatus())) {
+                completed++;
+            } else {
+                failed++;
+            }
+        }
+        return new BatchTransferResponse(completed, failed, List.of(results));
+    }
+
+    private Map<String, TransferRecord> findExistingTransfers(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+        if (idempotencyFilter != null) {
+            return idempotencyFilter.findAll(keys, transferRecordRepository::findByIdempotencyKeyIn);
+        }
+        return transferRecordRepository.findByIdempotencyKeyIn(keys).stream()
+                .collect(Collectors.toMap(TransferRecord::getIdempotencyKey, Function.identity()));
+    }
+
+    private void applyWithLocks(List<TransferRequest> legs, List<Integer> pending,
+                                BatchTransferLegResult[] results, LocalDateTime now) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Lock every involved account once, in a consistent order to prevent deadlocks
+        TreeSet<Long> accountIds = new TreeSet<>();
+        for (int i : pending) {
+            accountIds.add(legs.get(i).getFromAccountId());
+            accountIds.add(legs.get(i).getToAccountId());
+        }
+        Map<Long, Account> accounts = new HashMap<>();
+        List<Account> locked = lockWait.record(() -> accountRepository.findByIdsForUpdate(new ArrayList<>(accountIds)));
+        for (Account account : locked) {
+            accounts.put(account.getId(), account);
+        }
+
+        Map<Long, Money> balances = new LinkedHashMap<>();
+        Set<Long> drained = new HashSet<>();
+        for (int i : pending) {
+            TransferRequest leg = legs.get(i);
+            Account from = accounts.get(leg.getFromAccountId());
+            Account to = accounts.get(leg.getToAccountId());
+
+            if (from == null || to == null) {
+                results[i] = failed(i, leg, "Account not found with id: "
+                        + (from == null ? leg.getFromAccountId() : leg.getToAccountId()));
+                continue;
+            }
+            if (from.getStatus() != AccountStatus.ACTIVE) {
+                results[i] = failed(i, leg, "Source account is not active.");
+                continue;
+            }
+            if (to.getStatus() != AccountStatus.ACTIVE) {
+                results[i] = failed(i, leg, "Destination account is not active.");
+                continue;
+            }
+
+            Money fromBalance = balances.getOrDefault(from.getId(), from.getBalance());
+            Money newFromBalance = fromBalance.minus(leg.getAmount());
+            if (newFromBalance.signum() < 0 && hotAccounts != null && drained.add(from.getId())) {
+                // Fold the account's buckets in once; written back even if this leg still fails
+                fromBalance = fromBalance.plus(hotAccounts.drain(from.getId()));
+                balances.put(from.getId(), fromBalance);
+                newFromBalance = fromBalance.minus(leg.getAmount());
+            }
+            if (newFromBalance.signum() < 0) {
+                results[i] = failed(i, leg, "Insufficient funds for transfer.");
+                continue;
+            }
+
+            balances.put(from.getId(), newFromBalance);
+            balances.put(to.getId(), balances.getOrDefault(to.getId(), to.getBalance()).plus(leg.getAmount()));
+            results[i] = completed(i, leg, now);
+        }
+
+        if (!balances.isEmpty()) {
+            transferBatchJdbcRepository.updateBalances(balances);
+            if (accountCache != null) {
+                accountCache.invalidateAfterCommit(balances.keySet());
+            }
+        }
+    }
+
+    private void applyWithEngine(List<TransferRequest> legs, List<Integer> pending,
+                                 BatchTransferLegResult[] results, LocalDateTime now) {
+        List<TransferRequest> applied = new ArrayList<>();
+        for (int i : pending) {
+            TransferRequest leg = legs.get(i);
+            try {
+                balanceEngine.transfer(leg.getFromAccountId(), leg.getToAccountId(), leg.getAmount());
+                applied.add(leg);
+                results[i] = completed(i, leg, now);
+            } catch (AccountNotFoundException | ActionNotAllowedException e) {
+                results[i] = failed(i, leg, e.getMessage());
+            }
+        }
+
+        // The credits only become spendable once the batch commits
+        if (applied.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applied.forEach(leg -> balanceEngine.settleCredit(leg.getToAccountId(), leg.getAmount()));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    applied.forEach(leg -> balanceEngine.compensateTransfer(
+                            leg.getFromAccountId(), leg.getToAccountId(), leg.getAmount()));
+                } else {
+                    applied.forEach(leg -> balanceEngine.settleCredit(leg.getToAccountId(), leg.getAmount()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Records every event in the outbox with one JDBC batch; the relay publishes them in producer batches.
+     * Events are keyed by the debited account, like single transfers.
+     */
+    private void publishEvents(List<TransferRecord> records) {
+        List<OutboxService.KeyedEvent> events = new ArrayList<>(records.size());
+        for (TransferRecord record : records) {
+            TransactionCompletedEvent event = new TransactionCompletedEvent(
+                    record.getTransactionId().toString(),
+                    record.getFromAccountId().toString(),
+                    record.getToAccountId().toString(),
+                    record.getAmount(),
+                    record.getCompletedAt()
+            );
+            events.add(new OutboxService.KeyedEvent(event.sourceAccountId(), event));
+        }
+        outboxService.enqueueAll(KafkaTopicsConfiguration.TRANSACTION_TOPIC, events);
+    }
+
+    private static BatchTransferLegResult completed(int index, TransferRequest leg, LocalDateTime now) {
+        return new BatchTransferLegResult(index, leg.getIdempotencyKey(), null, leg.getFromAccountId(),
+                leg.getToAccountId(), leg.getAmount(), now, TransferStatus.COMPLETED.toString(), false, null);
+    }
+
+    private static BatchTransferLegResult failed(int index, TransferRequest leg, String message) {
+        return new BatchTransferLegResult(index, leg.getIdempotencyKey(), null, leg.getFromAccountId(),
+                leg.getToAccountId(), leg.getAmount(), null, TransferStatus.FAILED.toString(), false, message);
+    }
+
+    private static BatchTransferLegResult replayed(int index, TransferRecord record) {
+        return new BatchTransferLegResult(index, record.getIdempotencyKey(), record.getId().toString(),
+                record.getFromAccountId(), record.getToAccountId(), record.getAmount(),
+                record.getCompletedAt() != null ? record.getCompletedAt() : record.getCreatedAt(),
+                record.getStatus().toString(), true, null);
+    }
+}
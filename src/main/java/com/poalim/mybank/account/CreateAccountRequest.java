@@ -1,15 +1,14 @@
 package com.poalim.mybank.account;
 
+import com.poalim.mybank.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
-
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class CreateAccountRequest {
     private String ownerName;
-    private BigDecimal initialBalance;
+    private Money initialBalance;
 }
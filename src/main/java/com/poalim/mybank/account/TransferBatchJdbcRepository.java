@@ -0,0 +1,62 @@
+package com.poalim.mybank.account;
+
+import com.poalim.mybank.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC batch writes for the batch transfer path, where per-entity JPA saves would cost one round trip per row.
+ */
+@Repository
+public class TransferBatchJdbcRepository {
+
+    private static final String NEXT_IDS_SQL =
+            "SELECT nextval('transfer_record_id_seq') FROM generate_series(1, ?)";
+    private static final String INSERT_TRANSFER_SQL =
+            "INSERT INTO transfer_record (id, transaction_id, idempotency_key, from_account_id, to_account_id, amount, status, " +
+            "created_at, completed_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_BALANCE_SQL = "UPDATE account SET balance = ?, version = version + 1 WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransferBatchJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Reserves {@code count} ids from the transfer_record sequence in one round trip, so rows can be
+     * batch-inserted with known ids.
+     */
+    public List<Long> nextTransferRecordIds(int count) {
+        return jdbcTemplate.queryForList(NEXT_IDS_SQL, Long.class, count);
+    }
+
+    public void insertTransferRecords(List<TransferRecord> records) {
+        List<Object[]> batch = new ArrayList<>(records.size());
+        for (TransferRecord record : records) {
+            batch.add(new Object[]{
+                    record.getId(),
+                    record.getTransactionId(),
+                    record.getIdempotencyKey(),
+                    record.getFromAccountId(),
+                    record.getToAccountId(),
+                    record.getAmount().minorUnits(),
+                    record.getStatus().name(),
+                    Timestamp.valueOf(record.getCreatedAt()),
+                    record.getCompletedAt() != null ? Timestamp.valueOf(record.getCompletedAt()) : null
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_TRANSFER_SQL, batch);
+    }
+
+    public void updateBalances(Map<Long, Money> balances) {
+        List<Object[]> batch = new ArrayList<>(balances.size());
+        balances.forEach((id, balance) -> batch.add(new Object[]{balance.minorUnits(), id}));
+        jdbcTemplate.batchUpdate(UPDATE_BALANCE_SQL, batch);
+    }
+}
@@ -1,11 +1,12 @@
 package com.poalim.mybank.account;
 
+import com.poalim.mybank.money.Money;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Table(name = "transfer_record")
@@ -17,13 +18,18 @@ public class TransferRecord {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
+
+    /**
+     * The id the transfer's event and ledger rows carry.
+     */
+    private UUID transactionId;
     
     @Column(unique = true, nullable = false)
     private String idempotencyKey;
     
     private Long fromAccountId;
     private Long toAccountId;
-    private BigDecimal amount;
+    private Money amount;
     
     @Enumerated(EnumType.STRING)
     private TransferStatus status;
@@ -2,9 +2,13 @@ package com.poalim.mybank.account;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TransferRecordRepository extends JpaRepository<TransferRecord, Long> {
     Optional<TransferRecord> findByIdempotencyKey(String idempotencyKey);
+
+    List<TransferRecord> findByIdempotencyKeyIn(Collection<String> idempotencyKeys);
 }
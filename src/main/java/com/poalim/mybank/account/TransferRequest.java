@@ -1,17 +1,16 @@
 package com.poalim.mybank.account;
 
+import com.poalim.mybank.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
-
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class TransferRequest {
     private Long fromAccountId;
     private Long toAccountId;
-    private BigDecimal amount;
+    private Money amount;
     private String idempotencyKey;
 }
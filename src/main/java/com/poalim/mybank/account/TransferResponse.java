@@ -1,8 +1,8 @@
 package com.poalim.mybank.account;
 
+import com.poalim.mybank.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Data;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
@@ -11,7 +11,7 @@ public class TransferResponse {
     private String transferId;
     private Long fromAccountId;
     private Long toAccountId;
-    private BigDecimal amount;
+    private Money amount;
     private LocalDateTime timestamp;
     private String status;
 }
@@ -0,0 +1,116 @@
+package com.poalim.mybank.account.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.poalim.mybank.account.Account;
+import com.poalim.mybank.account.AccountResponse;
+import com.poalim.mybank.account.AccountStatus;
+import com.poalim.mybank.money.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of accounts, bounded by approximate size with Caffeine's W-TinyLFU eviction.
+ * <p>
+ * Writers update the cache only after their transaction commits. Every entry carries the row version, and an
+ * update never replaces a newer version, so late or reordered updates cannot bring back a stale balance.
+ * Misses load inside the cache's per-key computation, so an invalidation that arrives during a load waits for
+ * it and then removes what it loaded. Hit, miss and eviction counts are published as {@code cache.*} meters
+ * tagged {@code cache=accounts}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "mybank.account.cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(AccountCacheProperties.class)
+public class AccountCache {
+
+    private final Cache<Long, CachedAccount> cache;
+
+    @Autowired
+    public AccountCache(AccountCacheProperties properties, MeterRegistry meterRegistry) {
+        Caffeine<Long, CachedAccount> builder = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxWeightBytes())
+                .weigher((Long id, CachedAccount account) -> account.weight())
+                .recordStats();
+        if (properties.getExpireAfterWriteMs() > 0) {
+            builder.expireAfterWrite(Duration.ofMillis(properties.getExpireAfterWriteMs()));
+        }
+        this.cache = builder.build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "accounts");
+    }
+
+    /**
+     * @param loader reads the committed account, or returns empty if it does not exist
+     */
+    public Optional<AccountResponse> get(Long id, Function<Long, Optional<Account>> loader) {
+        CachedAccount cached = cache.get(id, key -> loader.apply(key).map(CachedAccount::of).orElse(null));
+        return Optional.ofNullable(cached).map(CachedAccount::toResponse);
+    }
+
+    /**
+     * Caches the account's state once the current transaction commits, or right away outside a transaction.
+     * Must be called after the change was saved, the version is read from the entity at commit time.
+     */
+    public void putAfterCommit(Account account) {
+        afterCommit(() -> put(CachedAccount.of(account)));
+    }
+
+    /**
+     * Drops the accounts once the current transaction commits, for writers that do not know the new versions.
+     */
+    public void invalidateAfterCommit(Collection<Long> ids) {
+        afterCommit(() -> cache.invalidateAll(ids));
+    }
+
+    void put(CachedAccount account) {
+        cache.asMap().merge(account.id(), account,
+                (current, candidate) -> candidate.version() >= current.version() ? candidate : current);
+    }
+
+    Optional<CachedAccount> peek(Long id) {
+        return Optional.ofNullable(cache.getIfPresent(id));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    record CachedAccount(Long id, String ownerName, Money balance,
+                         AccountStatus status, long version) {
+
+        static CachedAccount of(Account account) {
+            return new CachedAccount(account.getId(), account.getOwnerName(), account.getBalance(),
+                    account.getStatus(), account.getVersion() != null ? account.getVersion() : 0);
+        }
+
+        AccountResponse toResponse() {
+            return new AccountResponse(id, ownerName, balance, status);
+        }
+
+        /**
+         * Rough heap footprint in bytes: record, boxed id, Money and the owner name's characters.
+         */
+        int weight() {
+            return 96 + (ownerName != null ? ownerName.length() : 0);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.poalim.mybank.account.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "mybank.account.cache")
+public class AccountCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Approximate heap the cached accounts may use.
+     */
+    private long maxWeightBytes = 64L * 1024 * 1024;
+
+    /**
+     * Entries are dropped this long after they were written. Writes made on other nodes are only seen after
+     * this delay, so keep it short when several instances serve the same accounts.
+     */
+    private long expireAfterWriteMs = 10_000;
+}
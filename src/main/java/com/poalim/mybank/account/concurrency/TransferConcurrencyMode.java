@@ -0,0 +1,22 @@
+package com.poalim.mybank.account.concurrency;
+
+/**
+ * How JPA-mode transfers protect the two account rows against concurrent changes.
+ */
+public enum TransferConcurrencyMode {
+
+    /**
+     * Lock both rows with {@code SELECT ... FOR UPDATE} until the transaction ends.
+     */
+    PESSIMISTIC,
+
+    /**
+     * Read without locks and update only if the versions are unchanged, retrying on conflict.
+     */
+    OPTIMISTIC,
+
+    /**
+     * Optimistic, except for accounts that recently saw many conflicts, which are locked instead.
+     */
+    ADAPTIVE
+}
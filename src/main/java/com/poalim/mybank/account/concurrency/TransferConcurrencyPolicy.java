@@ -0,0 +1,112 @@
+package com.poalim.mybank.account.concurrency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a transfer runs optimistically and how long to back off after a conflict. Only present
+ * when {@code mybank.transfer.concurrency.mode} is not {@code pessimistic}.
+ * <p>
+ * In adaptive mode every optimistic attempt is counted against both accounts, in windows that start with an
+ * account's first attempt and last {@code conflict-window-ms}. Once an account's conflict rate in its window
+ * passes the threshold, transfers touching it lock the rows until the window expires and the account gets
+ * another optimistic try.
+ */
+@Component
+@ConditionalOnExpression("!'${mybank.transfer.concurrency.mode:pessimistic}'.equalsIgnoreCase('pessimistic')")
+@EnableConfigurationProperties(TransferConcurrencyProperties.class)
+public class TransferConcurrencyPolicy {
+
+    private final TransferConcurrencyProperties properties;
+    private final Cache<Long, ConflictWindow> windows;
+
+    @Autowired
+    public TransferConcurrencyPolicy(TransferConcurrencyProperties properties) {
+        this.properties = properties;
+        this.windows = properties.getMode() == TransferConcurrencyMode.ADAPTIVE
+                ? Caffeine.newBuilder()
+                        .maximumSize(properties.getTrackedAccounts())
+                        .expireAfterWrite(Duration.ofMillis(properties.getConflictWindowMs()))
+                        .build()
+                : null;
+    }
+
+    public boolean optimistic(Long fromAccountId, Long toAccountId) {
+        return switch (properties.getMode()) {
+            case PESSIMISTIC -> false;
+            case OPTIMISTIC -> true;
+            case ADAPTIVE -> !contended(fromAccountId) && !contended(toAccountId);
+        };
+    }
+
+    public int maxAttempts() {
+        return Math.max(1, properties.getMaxAttempts());
+    }
+
+    /**
+     * Counts an optimistic attempt on both accounts.
+     */
+    public void recordAttempt(Long fromAccountId, Long toAccountId, boolean conflict) {
+        if (windows == null) {
+            return;
+        }
+        windows.get(fromAccountId, id -> new ConflictWindow()).record(conflict);
+        windows.get(toAccountId, id -> new ConflictWindow()).record(conflict);
+    }
+
+    /**
+     * Sleeps before the next attempt, with full jitter so that the transfers that collided spread out.
+     *
+     * @param attempt the attempt that just failed, starting at 1
+     */
+    public void backoff(int attempt) {
+        long nanos = backoffNanos(attempt);
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long backoffNanos(int attempt) {
+        long ceilingMs = Math.min(properties.getBackoffMaxMs(),
+                properties.getBackoffBaseMs() << Math.min(attempt - 1, 20));
+        long ceiling = TimeUnit.MILLISECONDS.toNanos(ceilingMs);
+        return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+    }
+
+    boolean contended(Long accountId) {
+        ConflictWindow window = windows.getIfPresent(accountId);
+        return window != null && window.exceeds(properties.getMinSamples(), properties.getConflictRateThreshold());
+    }
+
+    private static final class ConflictWindow {
+
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+
+        void record(boolean conflict) {
+            attempts.increment();
+            if (conflict) {
+                conflicts.increment();
+            }
+        }
+
+        boolean exceeds(int minSamples, double threshold) {
+            long n = attempts.sum();
+            return n >= minSamples && conflicts.sum() > n * threshold;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.poalim.mybank.account.concurrency;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "mybank.transfer.concurrency")
+public class TransferConcurrencyProperties {
+
+    private TransferConcurrencyMode mode = TransferConcurrencyMode.PESSIMISTIC;
+
+    /**
+     * Optimistic attempts per transfer. After the last conflict the transfer locks the rows instead, so it
+     * always completes.
+     */
+    private int maxAttempts = 4;
+
+    /**
+     * Backoff before retry {@code n} is random between 0 and {@code min(backoffMaxMs, backoffBaseMs * 2^(n-1))}.
+     */
+    private long backoffBaseMs = 1;
+
+    private long backoffMaxMs = 20;
+
+    /**
+     * Adaptive mode: conflicts are counted per account over windows of this length.
+     */
+    private long conflictWindowMs = 10_000;
+
+    /**
+     * Adaptive mode: an account whose share of conflicting attempts in the current window exceeds this is
+     * locked pessimistically until the window ends.
+     */
+    private double conflictRateThreshold = 0.2;
+
+    /**
+     * Adaptive mode: attempts needed in a window before its conflict rate counts.
+     */
+    private int minSamples = 20;
+
+    /**
+     * Adaptive mode: upper bound for the accounts tracked at once.
+     */
+    private long trackedAccounts = 100_000;
+}
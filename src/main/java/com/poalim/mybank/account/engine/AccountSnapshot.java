@@ -0,0 +1,14 @@
+package com.poalim.mybank.account.engine;
+
+import com.poalim.mybank.account.AccountStatus;
+import com.poalim.mybank.money.Money;
+
+/**
+ * Immutable view of an account as held by its owning shard at the moment a command completed.
+ */
+public record AccountSnapshot(
+    Long id,
+    String ownerName,
+    Money balance,
+    AccountStatus status
+) {}
@@ -0,0 +1,21 @@
+package com.poalim.mybank.account.engine;
+
+import com.poalim.mybank.account.Account;
+import com.poalim.mybank.account.AccountStatus;
+import com.poalim.mybank.money.Money;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Durable backing store for the sharded balance engine.
+ * Balances are persisted as deltas so that writes made outside the engine are never clobbered.
+ */
+public interface AccountStateStore {
+
+    Optional<Account> load(Long accountId);
+
+    void applyBalanceDeltas(Map<Long, Money> deltas);
+
+    void updateStatus(Long accountId, AccountStatus status);
+}
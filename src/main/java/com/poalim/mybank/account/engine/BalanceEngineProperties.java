@@ -0,0 +1,24 @@
+package com.poalim.mybank.account.engine;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "mybank.engine")
+public class BalanceEngineProperties {
+
+    /**
+     * "jpa" keeps the row-locking path in AccountService, "sharded" routes balance changes through the in-memory engine.
+     */
+    private String mode = "jpa";
+
+    /**
+     * Number of single-writer shards. Defaults to the number of available processors.
+     */
+    private int shards = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * How often pending balance deltas are written back to the account table.
+     */
+    private long flushIntervalMs = 50;
+}
@@ -0,0 +1,277 @@
+package com.poalim.mybank.account.engine;
+
+import com.poalim.mybank.account.AccountNotFoundException;
+import com.poalim.mybank.account.AccountStatus;
+import com.poalim.mybank.account.ActionNotAllowedException;
+import com.poalim.mybank.money.Money;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A single-writer partition of the account space. Every method except {@link #submit} and
+ * {@link #shutdown} must run on the shard's own thread, which is what makes the plain collections safe.
+ * Balances are kept as {@code long} minor units, so commands do no allocation for the arithmetic.
+ * <p>
+ * Debits and reservations change spendable money at once. Credits are held as incoming until the
+ * transaction that recorded them commits ({@link #settleCredit}) or rolls back ({@link #cancelCredit}),
+ * so money that may still disappear can never be spent.
+ */
+class BalanceShard {
+
+    private final ExecutorService executor;
+    private final AccountStateStore store;
+    private final Map<Long, AccountState> accounts = new HashMap<>();
+    private final List<AccountState> unflushed = new ArrayList<>();
+
+    BalanceShard(int index, AccountStateStore store) {
+        this.store = store;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-shard-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<T> command) {
+        return CompletableFuture.supplyAsync(command, executor);
+    }
+
+    AccountSnapshot snapshot(Long id) {
+        return require(id).snapshot();
+    }
+
+    AccountStatus probeStatus(Long id) {
+        AccountState state = find(id);
+        return state != null ? state.status : null;
+    }
+
+    AccountSnapshot deposit(Long id, Money amount) {
+        AccountState state = require(id);
+        if (state.status != AccountStatus.ACTIVE) {
+            throw new ActionNotAllowedException(id, "Cannot deposit to a non-active account.");
+        }
+        holdIncoming(state, amount.minorUnits());
+        return state.snapshotWith(amount.minorUnits());
+    }
+
+    AccountSnapshot withdraw(Long id, Money amount) {
+        AccountState state = require(id);
+        if (state.status != AccountStatus.ACTIVE) {
+            throw new ActionNotAllowedException(id, "Cannot withdraw from a non-active account.");
+        }
+        if (state.available() < amount.minorUnits()) {
+            throw new ActionNotAllowedException(id, "Insufficient funds for withdrawal.");
+        }
+        credit(state, -amount.minorUnits());
+        return state.snapshot();
+    }
+
+    /**
+     * Validates a transfer in the same order as the JPA path and, if it passes, either applies it
+     * directly (both accounts on this shard, the credit held as incoming) or reserves the amount on the
+     * source account.
+     */
+    void reserveOrApply(Long fromId, Long toId, Money amount, AccountStatus remoteToStatus, boolean local) {
+        AccountState from = find(fromId);
+        AccountStatus toStatus = local ? probeStatus(toId) : remoteToStatus;
+        if (from == null || toStatus == null) {
+            throw new AccountNotFoundException(null);
+        }
+        if (from.status != AccountStatus.ACTIVE) {
+            throw new ActionNotAllowedException(fromId, "Source account is not active.");
+        }
+        if (toStatus != AccountStatus.ACTIVE) {
+            throw new ActionNotAllowedException(toId, "Destination account is not active.");
+        }
+        if (from.available() < amount.minorUnits()) {
+            throw new ActionNotAllowedException(fromId, "Insufficient funds for transfer.");
+        }
+
+        if (local) {
+            AccountState to = accounts.get(toId);
+            // Checked up front, so a credit that would overflow leaves the source untouched
+            Math.addExact(to.total(), amount.minorUnits());
+            credit(from, -amount.minorUnits());
+            holdIncoming(to, amount.minorUnits());
+        } else {
+            from.reserved = Math.addExact(from.reserved, amount.minorUnits());
+        }
+    }
+
+    void creditReserved(Long toId, Money amount) {
+        AccountState to = find(toId);
+        if (to == null) {
+            throw new AccountNotFoundException(toId);
+        }
+        if (to.status != AccountStatus.ACTIVE) {
+            throw new ActionNotAllowedException(toId, "Destination account is not active.");
+        }
+        holdIncoming(to, amount.minorUnits());
+    }
+
+    void commitReservation(Long fromId, Money amount) {
+        AccountState from = accounts.get(fromId);
+        from.reserved -= amount.minorUnits();
+        credit(from, -amount.minorUnits());
+    }
+
+    void releaseReservation(Long fromId, Money amount) {
+        AccountState from = accounts.get(fromId);
+        from.reserved -= amount.minorUnits();
+    }
+
+    /**
+     * Makes an incoming credit spendable once its transaction has committed.
+     */
+    void settleCredit(Long id, Money amount) {
+        AccountState state = accounts.get(id);
+        state.incoming -= amount.minorUnits();
+        credit(state, amount.minorUnits());
+    }
+
+    /**
+     * Drops an incoming credit whose transaction rolled back; nothing could have spent it.
+     */
+    void cancelCredit(Long id, Money amount) {
+        accounts.get(id).incoming -= amount.minorUnits();
+    }
+
+    /**
+     * Gives back a debit whose transaction rolled back. Only ever raises the balance.
+     */
+    void refund(Long id, Money amount) {
+        credit(require(id), amount.minorUnits());
+    }
+
+    /**
+     * Sets the status in memory only; the caller writes it in its own transaction.
+     *
+     * @return the previous status, to put back with {@link #restoreStatus} if that transaction rolls back
+     */
+    AccountStatus changeStatus(Long id, AccountStatus status) {
+        AccountState state = require(id);
+        if (status == AccountStatus.CLOSED && state.total() != 0) {
+            throw new ActionNotAllowedException(id, "Account balance must be 0 to close the account.");
+        }
+        AccountStatus previous = state.status;
+        state.status = status;
+        return previous;
+    }
+
+    void restoreStatus(Long id, AccountStatus status) {
+        accounts.get(id).status = status;
+    }
+
+    Map<Long, Money> drainPendingDeltas() {
+        if (unflushed.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Money> drained = new HashMap<>();
+        for (AccountState state : unflushed) {
+            if (state.pendingDelta != 0) {
+                drained.put(state.id, Money.ofMinor(state.pendingDelta));
+            }
+            state.pendingDelta = 0;
+            state.flushQueued = false;
+        }
+        unflushed.clear();
+        return drained;
+    }
+
+    void restorePendingDeltas(Map<Long, Money> deltas) {
+        deltas.forEach((id, delta) -> addPending(accounts.get(id), delta.minorUnits()));
+    }
+
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Fails with {@link ArithmeticException} before changing anything if the balance would overflow.
+     */
+    private void credit(AccountState state, long delta) {
+        state.balance = Math.addExact(state.balance, delta);
+        addPending(state, delta);
+    }
+
+    private void holdIncoming(AccountState state, long amount) {
+        Math.addExact(state.total(), amount);
+        state.incoming += amount;
+    }
+
+    private void addPending(AccountState state, long delta) {
+        state.pendingDelta += delta;
+        if (!state.flushQueued) {
+            state.flushQueued = true;
+            unflushed.add(state);
+        }
+    }
+
+    private AccountState require(Long id) {
+        AccountState state = find(id);
+        if (state == null) {
+            throw new AccountNotFoundException(id);
+        }
+        return state;
+    }
+
+    private AccountState find(Long id) {
+        AccountState state = accounts.get(id);
+        if (state == null) {
+            state = store.load(id)
+                    .map(account -> new AccountState(account.getId(), account.getOwnerName(),
+                            account.getBalance().minorUnits(), account.getStatus()))
+                    .orElse(null);
+            if (state != null) {
+                accounts.put(id, state);
+            }
+        }
+        return state;
+    }
+
+    private static final class AccountState {
+        private final Long id;
+        private final String ownerName;
+        private long balance;
+        private long reserved;
+        private long incoming;
+        private long pendingDelta;
+        private boolean flushQueued;
+        private AccountStatus status;
+
+        private AccountState(Long id, String ownerName, long balance, AccountStatus status) {
+            this.id = id;
+            this.ownerName = ownerName;
+            this.balance = balance;
+            this.status = status;
+        }
+
+        private long available() {
+            return balance - reserved;
+        }
+
+        private long total() {
+            return balance + incoming;
+        }
+
+        private AccountSnapshot snapshot() {
+            return snapshotWith(0);
+        }
+
+        /**
+         * The committed balance plus the caller's own uncommitted credit, as the JPA path would show it.
+         */
+        private AccountSnapshot snapshotWith(long ownCredit) {
+            return new AccountSnapshot(id, ownerName, Money.ofMinor(balance + ownCredit), status);
+        }
+    }
+}
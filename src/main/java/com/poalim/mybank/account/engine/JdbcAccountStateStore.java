@@ -0,0 +1,43 @@
+package com.poalim.mybank.account.engine;
+
+import com.poalim.mybank.account.Account;
+import com.poalim.mybank.account.AccountRepository;
+import com.poalim.mybank.account.AccountStatus;
+import com.poalim.mybank.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class JdbcAccountStateStore implements AccountStateStore {
+
+    private static final String APPLY_DELTA_SQL = "UPDATE account SET balance = balance + ?, version = version + 1 WHERE id = ?";
+    private static final String UPDATE_STATUS_SQL = "UPDATE account SET status = ?, version = version + 1 WHERE id = ?";
+
+    private final AccountRepository accountRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcAccountStateStore(AccountRepository accountRepository, JdbcTemplate jdbcTemplate) {
+        this.accountRepository = accountRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Optional<Account> load(Long accountId) {
+        return accountRepository.findById(accountId);
+    }
+
+    @Override
+    public void applyBalanceDeltas(Map<Long, Money> deltas) {
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        deltas.forEach((id, delta) -> batch.add(new Object[]{delta.minorUnits(), id}));
+        jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, batch);
+    }
+
+    @Override
+    public void updateStatus(Long accountId, AccountStatus status) {
+        jdbcTemplate.update(UPDATE_STATUS_SQL, status.name(), accountId);
+    }
+}
@@ -0,0 +1,236 @@
+package com.poalim.mybank.account.engine;
+
+import com.poalim.mybank.account.AccountStatus;
+import com.poalim.mybank.money.Money;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory balance engine. Accounts are hash-partitioned onto single-writer shards, so commands
+ * against one account are applied sequentially without database row locks.
+ * <p>
+ * Transfers between two shards use a reserve/commit protocol: the amount is reserved on the source,
+ * credited on the destination and only then committed on the source (or released if the credit fails).
+ * Balance changes are written back to the {@code account} table asynchronously, in batches of deltas.
+ * <p>
+ * Deposits and transfer credits are held as incoming, and cannot be spent, until the caller settles them
+ * after its transaction commits or cancels them after a rollback.
+ * <p>
+ * The shards hold the authoritative balances of every account they have loaded, for the life of the
+ * process, and deltas not yet flushed are lost if it crashes. Only one instance may run the engine
+ * against a database; see {@link ShardedBalanceEngineLock}.
+ */
+@Slf4j
+public class ShardedBalanceEngine implements AutoCloseable {
+
+    private final AccountStateStore store;
+    private final BalanceShard[] shards;
+    private final ScheduledExecutorService flusher;
+
+    public ShardedBalanceEngine(AccountStateStore store, int shardCount, long flushIntervalMs) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1.");
+        }
+        this.store = store;
+        this.shards = new BalanceShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new BalanceShard(i, store);
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-engine-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public AccountSnapshot getAccount(Long id) {
+        BalanceShard shard = shardFor(id);
+        return await(shard.submit(() -> shard.snapshot(id)));
+    }
+
+    /**
+     * Holds the amount as incoming; the snapshot shows it as the depositor would see it.
+     */
+    public AccountSnapshot deposit(Long id, Money amount) {
+        BalanceShard shard = shardFor(id);
+        return await(shard.submit(() -> shard.deposit(id, amount)));
+    }
+
+    public AccountSnapshot withdraw(Long id, Money amount) {
+        BalanceShard shard = shardFor(id);
+        return await(shard.submit(() -> shard.withdraw(id, amount)));
+    }
+
+    /**
+     * Sets the status in memory and writes it on the calling thread, so the write is part of the caller's
+     * transaction. If that transaction rolls back, the caller puts the returned status back with
+     * {@link #restoreStatus}.
+     *
+     * @return the previous status
+     */
+    public AccountStatus changeStatus(Long id, AccountStatus status) {
+        BalanceShard shard = shardFor(id);
+        AccountStatus previous = await(shard.submit(() -> shard.changeStatus(id, status)));
+        try {
+            store.updateStatus(id, status);
+        } catch (RuntimeException e) {
+            restoreStatus(id, previous);
+            throw e;
+        }
+        return previous;
+    }
+
+    public void restoreStatus(Long id, AccountStatus status) {
+        BalanceShard shard = shardFor(id);
+        await(shard.submit(() -> {
+            shard.restoreStatus(id, status);
+            return null;
+        }));
+    }
+
+    public void transfer(Long fromId, Long toId, Money amount) {
+        BalanceShard fromShard = shardFor(fromId);
+        BalanceShard toShard = shardFor(toId);
+
+        if (fromShard == toShard) {
+            await(fromShard.submit(() -> {
+                fromShard.reserveOrApply(fromId, toId, amount, null, true);
+                return null;
+            }));
+            return;
+        }
+
+        AccountStatus toStatus = await(toShard.submit(() -> toShard.probeStatus(toId)));
+        await(fromShard.submit(() -> {
+            fromShard.reserveOrApply(fromId, toId, amount, toStatus, false);
+            return null;
+        }));
+
+        try {
+            await(toShard.submit(() -> {
+                toShard.creditReserved(toId, amount);
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            await(fromShard.submit(() -> {
+                fromShard.releaseReservation(fromId, amount);
+                return null;
+            }));
+            throw e;
+        }
+
+        await(fromShard.submit(() -> {
+            fromShard.commitReservation(fromId, amount);
+            return null;
+        }));
+    }
+
+    /**
+     * Makes a deposit or transfer credit spendable, once the transaction that recorded it has committed.
+     */
+    public void settleCredit(Long id, Money amount) {
+        BalanceShard shard = shardFor(id);
+        await(shard.submit(() -> {
+            shard.settleCredit(id, amount);
+            return null;
+        }));
+    }
+
+    /**
+     * Drops a deposit or transfer credit whose transaction rolled back.
+     */
+    public void cancelCredit(Long id, Money amount) {
+        BalanceShard shard = shardFor(id);
+        await(shard.submit(() -> {
+            shard.cancelCredit(id, amount);
+            return null;
+        }));
+    }
+
+    /**
+     * Reverses a transfer whose transaction rolled back: the unsettled credit is dropped and the source
+     * refunded, so neither side can go negative.
+     */
+    public void compensateTransfer(Long fromId, Long toId, Money amount) {
+        cancelCredit(toId, amount);
+        compensateWithdrawal(fromId, amount);
+    }
+
+    /**
+     * Gives back a withdrawal the engine already applied, when the transaction that recorded it rolls back.
+     */
+    public void compensateWithdrawal(Long id, Money amount) {
+        BalanceShard shard = shardFor(id);
+        await(shard.submit(() -> {
+            shard.refund(id, amount);
+            return null;
+        }));
+    }
+
+    /**
+     * Writes every shard's pending deltas to the store. Deltas that fail to persist are put back
+     * and retried on the next flush.
+     */
+    public void flush() {
+        for (BalanceShard shard : shards) {
+            Map<Long, Money> deltas = await(shard.submit(shard::drainPendingDeltas));
+            if (deltas.isEmpty()) {
+                continue;
+            }
+            try {
+                store.applyBalanceDeltas(deltas);
+            } catch (RuntimeException e) {
+                shard.submit(() -> {
+                    shard.restorePendingDeltas(deltas);
+                    return null;
+                });
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flushQuietly();
+        for (BalanceShard shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    int shardIndex(Long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) shards.length);
+    }
+
+    private BalanceShard shardFor(Long id) {
+        return shards[shardIndex(id)];
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush balance deltas: {}", e.getMessage());
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
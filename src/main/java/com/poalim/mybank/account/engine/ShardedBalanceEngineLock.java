@@ -0,0 +1,57 @@
+package com.poalim.mybank.account.engine;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A session-level advisory lock held on its own connection for as long as the sharded engine runs. Two
+ * engines against one database would each approve debits against their own copy of the balances, so a
+ * second instance fails to start instead.
+ */
+public class ShardedBalanceEngineLock implements AutoCloseable {
+
+    private static final long ENGINE_LOCK_KEY = 0x42616c456e67696eL;
+
+    private final Connection connection;
+
+    private ShardedBalanceEngineLock(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @throws IllegalStateException if another instance holds the lock
+     */
+    public static ShardedBalanceEngineLock acquire(DataSource dataSource) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            connection.setAutoCommit(true);
+            statement.setLong(1, ENGINE_LOCK_KEY);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next() && resultSet.getBoolean(1)) {
+                    return new ShardedBalanceEngineLock(connection);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+        connection.close();
+        throw new IllegalStateException(
+                "Another instance is running the sharded balance engine; mybank.engine.mode=sharded needs exactly one.");
+    }
+
+    /**
+     * Unlocks explicitly: a pooled connection goes back to the pool rather than ending its session. A process
+     * that dies ends the session, and the lock with it.
+     */
+    @Override
+    public void close() throws SQLException {
+        try (connection; PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, ENGINE_LOCK_KEY);
+            statement.execute();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.poalim.mybank.account.hot;
+
+import com.poalim.mybank.account.Account;
+import com.poalim.mybank.account.AccountStatus;
+import com.poalim.mybank.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Balance buckets of hot accounts. Lock order is always the account row first, then its buckets; credits
+ * take only a share lock on the account row, so they do not block each other.
+ */
+@Repository
+public class AccountBucketJdbcRepository {
+
+    private static final String CREDIT_SQL =
+            "UPDATE account_balance_bucket SET balance = balance + ? " +
+            "WHERE account_id = ? AND bucket = ? " +
+            "AND EXISTS (SELECT 1 FROM account WHERE id = ? AND status = 'ACTIVE' FOR SHARE)";
+    private static final String LOCK_ACCOUNT_SQL = "SELECT id FROM account WHERE id = ? FOR UPDATE";
+    private static final String SHARE_LOCK_ACCOUNT_SQL = "SELECT id FROM account WHERE id = ? FOR SHARE";
+    private static final String LOCK_BUCKETS_SQL =
+            "SELECT balance FROM account_balance_bucket WHERE account_id = ? FOR UPDATE";
+    private static final String CLEAR_BUCKETS_SQL =
+            "UPDATE account_balance_bucket SET balance = 0 WHERE account_id = ? AND balance <> 0";
+    private static final String ADD_TO_ACCOUNT_SQL =
+            "UPDATE account SET balance = balance + ?, version = version + 1 WHERE id = ?";
+    private static final String FIND_WITH_BUCKETS_SQL =
+            "SELECT a.id, a.owner_name, a.status, a.version, a.balance + " +
+            "COALESCE((SELECT SUM(b.balance)::BIGINT FROM account_balance_bucket b WHERE b.account_id = a.id), 0) AS balance " +
+            "FROM account a WHERE a.id = ?";
+    private static final String SET_BUCKETS_SQL = "UPDATE account SET hot_buckets = ? WHERE id = ?";
+    private static final String CREATE_BUCKETS_SQL =
+            "INSERT INTO account_balance_bucket (account_id, bucket) " +
+            "SELECT ?, generate_series(0, ? - 1) ON CONFLICT DO NOTHING";
+    private static final String HOT_ACCOUNTS_SQL = "SELECT id, hot_buckets FROM account WHERE hot_buckets > 0";
+    private static final String FILLED_ACCOUNTS_SQL =
+            "SELECT DISTINCT account_id FROM account_balance_bucket WHERE balance <> 0";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountBucketJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return false if the account does not exist, is not active or has no such bucket
+     */
+    public boolean credit(Long accountId, int bucket, Money amount) {
+        return jdbcTemplate.update(CREDIT_SQL, amount.minorUnits(), accountId, bucket, accountId) == 1;
+    }
+
+    /**
+     * @return false if the account does not exist
+     */
+    public boolean lockAccount(Long accountId) {
+        return !jdbcTemplate.queryForList(LOCK_ACCOUNT_SQL, Long.class, accountId).isEmpty();
+    }
+
+    /**
+     * Takes the share lock a credit takes anyway, for callers that must take it before other row locks.
+     */
+    public void shareLockAccount(Long accountId) {
+        jdbcTemplate.queryForList(SHARE_LOCK_ACCOUNT_SQL, Long.class, accountId);
+    }
+
+    /**
+     * Empties the account's buckets. The caller must hold the account row lock and add the result to the
+     * account's balance in the same transaction. Every bucket row is locked first, so a credit committed in
+     * between cannot be cleared without being counted.
+     *
+     * @return the amount taken out of the buckets
+     */
+    public Money drain(Long accountId) {
+        long drained = 0;
+        for (Long balance : jdbcTemplate.queryForList(LOCK_BUCKETS_SQL, Long.class, accountId)) {
+            drained = Math.addExact(drained, balance);
+        }
+        if (drained != 0) {
+            jdbcTemplate.update(CLEAR_BUCKETS_SQL, accountId);
+        }
+        return Money.ofMinor(drained);
+    }
+
+    public void addToAccount(Long accountId, Money amount) {
+        jdbcTemplate.update(ADD_TO_ACCOUNT_SQL, amount.minorUnits(), accountId);
+    }
+
+    /**
+     * Reads the account with its buckets included in the balance, without locking.
+     */
+    public Optional<Account> findWithBuckets(Long accountId) {
+        List<Account> accounts = jdbcTemplate.query(FIND_WITH_BUCKETS_SQL, (rs, rowNum) -> new Account(
+                rs.getLong("id"),
+                rs.getString("owner_name"),
+                Money.ofMinor(rs.getLong("balance")),
+                AccountStatus.valueOf(rs.getString("status")),
+                rs.getLong("version")), accountId);
+        return accounts.isEmpty() ? Optional.empty() : Optional.of(accounts.get(0));
+    }
+
+    /**
+     * Sets the number of buckets new credits are spread over, creating missing bucket rows. Rows beyond
+     * {@code buckets} are kept and drained by consolidation.
+     *
+     * @return false if the account does not exist
+     */
+    public boolean setBuckets(Long accountId, int buckets) {
+        if (jdbcTemplate.update(SET_BUCKETS_SQL, buckets, accountId) == 0) {
+            return false;
+        }
+        if (buckets > 0) {
+            jdbcTemplate.update(CREATE_BUCKETS_SQL, accountId, buckets);
+        }
+        return true;
+    }
+
+    /**
+     * @return bucket counts by account id
+     */
+    public Map<Long, Integer> findHotAccounts() {
+        Map<Long, Integer> hot = new HashMap<>();
+        jdbcTemplate.query(HOT_ACCOUNTS_SQL, rs -> {
+            hot.put(rs.getLong("id"), rs.getInt("hot_buckets"));
+        });
+        return hot;
+    }
+
+    /**
+     * @return accounts with money in their buckets, flagged hot or not
+     */
+    public List<Long> findAccountsWithFilledBuckets() {
+        return jdbcTemplate.queryForList(FILLED_ACCOUNTS_SQL, Long.class);
+    }
+}
@@ -0,0 +1,212 @@
+package com.poalim.mybank.account.hot;
+
+import com.poalim.mybank.account.Account;
+import com.poalim.mybank.account.AccountNotFoundException;
+import com.poalim.mybank.money.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sub-balance buckets for hot accounts, such as merchant and settlement accounts that receive many credits
+ * at once. A hot account's credits go to one of its bucket rows at random, so they neither wait for each
+ * other nor for the account row lock. Debits still lock the account row and take from its own balance; when
+ * that is not enough, the buckets are drained into it first, so a debit is only refused if the account and
+ * all of its buckets together cannot cover it. A background job drains all buckets regularly.
+ * <p>
+ * Which accounts are hot is kept in memory and reloaded periodically. An instance that does not know yet
+ * credits the account row as before, which is correct too, just slower.
+ */
+@Component
+@Slf4j
+@ConditionalOnExpression("${mybank.account.hot.enabled:true} && !'${mybank.engine.mode:jpa}'.equals('sharded')")
+@EnableConfigurationProperties(HotAccountProperties.class)
+public class HotAccountBuckets implements SmartLifecycle {
+
+    private final AccountBucketJdbcRepository bucketRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final HotAccountProperties properties;
+    private final Map<Long, Integer> hotAccounts = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public HotAccountBuckets(AccountBucketJdbcRepository bucketRepository,
+                             PlatformTransactionManager transactionManager,
+                             HotAccountProperties properties) {
+        this.bucketRepository = bucketRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    @Override
+    public void start() {
+        refresh();
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hot-account-buckets");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::consolidateSafely, properties.getConsolidationIntervalMs(),
+                properties.getConsolidationIntervalMs(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::refreshSafely, properties.getRefreshIntervalMs(),
+                properties.getRefreshIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isHot(Long accountId) {
+        return hotAccounts.containsKey(accountId);
+    }
+
+    /**
+     * Credits a random bucket of a hot account, in the caller's transaction.
+     *
+     * @return false if the account is not hot, or does not exist or is not active; the caller then credits
+     * the account row, which reports those cases
+     */
+    public boolean credit(Long accountId, Money amount) {
+        Integer buckets = hotAccounts.get(accountId);
+        if (buckets == null) {
+            return false;
+        }
+        return bucketRepository.credit(accountId, ThreadLocalRandom.current().nextInt(buckets), amount);
+    }
+
+    /**
+     * Share-locks the account row, as {@link #credit} does, so a caller can take it in id order with its
+     * other row locks.
+     */
+    public void lockForCredit(Long accountId) {
+        bucketRepository.shareLockAccount(accountId);
+    }
+
+    /**
+     * Empties the account's buckets. The caller must hold the account row lock and add the result to the
+     * balance it writes back.
+     */
+    public Money drain(Long accountId) {
+        return bucketRepository.drain(accountId);
+    }
+
+    /**
+     * Moves the account's buckets into its balance, in the caller's transaction if there is one. The total
+     * balance does not change.
+     *
+     * @return the amount moved
+     */
+    public Money consolidate(Long accountId) {
+        return transactionTemplate.execute(status -> {
+            if (!bucketRepository.lockAccount(accountId)) {
+                return Money.ZERO;
+            }
+            Money drained = bucketRepository.drain(accountId);
+            if (drained.signum() != 0) {
+                bucketRepository.addToAccount(accountId, drained);
+            }
+            return drained;
+        });
+    }
+
+    /**
+     * Reads the account with its buckets, i.e. its full balance.
+     */
+    public Optional<Account> findWithBuckets(Long accountId) {
+        return bucketRepository.findWithBuckets(accountId);
+    }
+
+    /**
+     * Flags the account as hot with {@code buckets} buckets, or as a regular account with 0. Takes effect
+     * on this instance when the caller's transaction commits, on the others with their next refresh.
+     */
+    public void changeBuckets(Long accountId, int buckets) {
+        if (buckets < 0 || buckets > properties.getMaxBuckets()) {
+            throw new IllegalArgumentException("Buckets must be between 0 and " + properties.getMaxBuckets() + ".");
+        }
+        if (!bucketRepository.setBuckets(accountId, buckets)) {
+            throw new AccountNotFoundException(accountId);
+        }
+        Runnable apply = () -> {
+            if (buckets == 0) {
+                hotAccounts.remove(accountId);
+            } else {
+                hotAccounts.put(accountId, buckets);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    /**
+     * Drains the buckets of every account that has money in them, each in its own short transaction.
+     *
+     * @return number of accounts consolidated
+     */
+    int consolidateAll() {
+        int consolidated = 0;
+        for (Long accountId : bucketRepository.findAccountsWithFilledBuckets()) {
+            if (consolidate(accountId).signum() != 0) {
+                consolidated++;
+            }
+        }
+        return consolidated;
+    }
+
+    void refresh() {
+        Map<Long, Integer> current = bucketRepository.findHotAccounts();
+        hotAccounts.keySet().retainAll(current.keySet());
+        hotAccounts.putAll(current);
+    }
+
+    private void consolidateSafely() {
+        try {
+            consolidateAll();
+        } catch (Exception e) {
+            log.error("Hot account consolidation failed: {}", e.getMessage());
+        }
+    }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("Reloading hot accounts failed: {}", e.getMessage());
+        }
+    }
+}
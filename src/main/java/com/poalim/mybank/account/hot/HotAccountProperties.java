@@ -0,0 +1,29 @@
+package com.poalim.mybank.account.hot;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "mybank.account.hot")
+public class HotAccountProperties {
+
+    /**
+     * When disabled every credit goes to the account row. Bucketing is never used in sharded engine mode.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Upper bound for the buckets of one account.
+     */
+    private int maxBuckets = 64;
+
+    /**
+     * How often buckets are drained into their account rows.
+     */
+    private long consolidationIntervalMs = 1_000;
+
+    /**
+     * How often the set of hot accounts is reloaded, to pick up changes made on other instances.
+     */
+    private long refreshIntervalMs = 5_000;
+}
@@ -0,0 +1,36 @@
+package com.poalim.mybank.account.idempotency;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "mybank.idempotency.filter")
+public class IdempotencyFilterProperties {
+
+    /**
+     * When disabled every transfer looks its idempotency key up in transfer_record.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Keys the first Bloom filter stage is sized for. Each further stage doubles the capacity.
+     */
+    private long expectedKeys = 1_000_000;
+
+    /**
+     * Target false positive rate of the first stage. Later stages halve it, so the overall rate stays
+     * below twice this value.
+     */
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * Upper bound for the Bloom filter bits. Once reached the last stage keeps absorbing keys and the
+     * false positive rate rises instead of memory.
+     */
+    private long maxMemoryBytes = 64L * 1024 * 1024;
+
+    /**
+     * Recently seen transfers answered without a database round trip.
+     */
+    private int recentCapacity = 100_000;
+}
@@ -0,0 +1,163 @@
+package com.poalim.mybank.account.idempotency;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe Bloom filter that adds a larger, stricter stage whenever the current one is full, until
+ * the memory budget is spent. Bits are only ever set, so a key that was added is never reported absent.
+ */
+class ScalableBloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long maxBits;
+    private final ReentrantLock growLock = new ReentrantLock();
+    private volatile Stage[] stages;
+    private volatile boolean budgetExhausted;
+
+    ScalableBloomFilter(long expectedKeys, double falsePositiveRate, long maxMemoryBytes) {
+        if (expectedKeys <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected keys must be positive and the false positive rate in (0, 1)");
+        }
+        this.maxBits = Math.max(64, maxMemoryBytes * 8);
+        this.stages = new Stage[]{Stage.create(expectedKeys, falsePositiveRate, maxBits)};
+    }
+
+    void add(String key) {
+        long[] hashes = hash(key);
+        Stage[] current = stages;
+        Stage last = current[current.length - 1];
+        last.add(hashes[0], hashes[1]);
+        if (last.isFull() && !budgetExhausted) {
+            grow(last);
+        }
+    }
+
+    boolean mightContain(String key) {
+        long[] hashes = hash(key);
+        for (Stage stage : stages) {
+            if (stage.mightContain(hashes[0], hashes[1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    long memoryBytes() {
+        long bits = 0;
+        for (Stage stage : stages) {
+            bits += stage.bits;
+        }
+        return bits / 8;
+    }
+
+    int stageCount() {
+        return stages.length;
+    }
+
+    boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    private void grow(Stage full) {
+        growLock.lock();
+        try {
+            Stage[] current = stages;
+            if (current[current.length - 1] != full) {
+                return;
+            }
+            long usedBits = memoryBytes() * 8;
+            Stage next = Stage.create(full.capacity * 2, full.falsePositiveRate / 2, Long.MAX_VALUE);
+            if (usedBits + next.bits > maxBits) {
+                budgetExhausted = true;
+                return;
+            }
+            Stage[] grown = new Stage[current.length + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            grown[current.length] = next;
+            stages = grown;
+        } finally {
+            growLock.unlock();
+        }
+    }
+
+    /**
+     * Two independent 64-bit hashes for double hashing: FNV-1a over the UTF-8 bytes, and a
+     * murmur-style finalizer of it with a different seed.
+     */
+    private static long[] hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return new long[]{mix(h), mix(h ^ 0x9e3779b97f4a7c15L) | 1};
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Stage {
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long bits;
+        private final int hashFunctions;
+        private final AtomicLongArray words;
+        private final AtomicLong insertions = new AtomicLong();
+
+        private Stage(long capacity, double falsePositiveRate, long bits, int hashFunctions) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            this.bits = bits;
+            this.hashFunctions = hashFunctions;
+            this.words = new AtomicLongArray((int) (bits / 64));
+        }
+
+        static Stage create(long capacity, double falsePositiveRate, long maxBits) {
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (LN2 * LN2));
+            bits = Math.min(bits, Math.min(maxBits, (long) Integer.MAX_VALUE * 64));
+            bits = Math.max(64, bits - bits % 64);
+            int hashFunctions = Math.max(1, (int) Math.round((double) bits / capacity * LN2));
+            return new Stage(capacity, falsePositiveRate, bits, hashFunctions);
+        }
+
+        void add(long h1, long h2) {
+            for (int i = 0; i < hashFunctions; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value;
+                do {
+                    value = words.get(word);
+                    if ((value & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(word, value, value | mask));
+            }
+            insertions.incrementAndGet();
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashFunctions; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isFull() {
+            return insertions.get() >= capacity;
+        }
+    }
+}
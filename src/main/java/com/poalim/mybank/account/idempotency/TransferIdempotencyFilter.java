@@ -0,0 +1,225 @@
+package com.poalim.mybank.account.idempotency;
+
+import com.poalim.mybank.account.TransferRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Answers most idempotency key lookups without touching transfer_record. Recently seen transfers are
+ * served from a bounded cache, keys the Bloom filter has never seen skip the database, and only
+ * possible hits are looked up.
+ * <p>
+ * The filter is rebuilt from transfer_record at startup and lookups go to the database until that has
+ * finished. It only knows the keys written by this node since then, so a key first used on another node
+ * can still fail on the unique constraint; the transfer then looks the key up again, replays the original
+ * and calls {@link #record(String)} so later retries find it here.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "mybank.idempotency.filter", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(IdempotencyFilterProperties.class)
+public class TransferIdempotencyFilter implements SmartLifecycle {
+
+    private static final String LOAD_KEYS_SQL = "SELECT idempotency_key FROM transfer_record";
+    private static final int LOAD_FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final IdempotencyFilterProperties properties;
+    private final ScalableBloomFilter bloomFilter;
+    private final Map<String, TransferRecord> recent = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> recentOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong loadedKeys = new AtomicLong();
+    private final Counter recentHits;
+    private final Counter definiteMisses;
+    private final Counter possibleHits;
+    private final Counter bypassed;
+    private final Counter falsePositives;
+
+    private volatile boolean ready;
+    private volatile boolean running;
+    private Thread loader;
+
+    @Autowired
+    public TransferIdempotencyFilter(JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     IdempotencyFilterProperties properties,
+                                     MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.properties = properties;
+        this.bloomFilter = new ScalableBloomFilter(properties.getExpectedKeys(),
+                properties.getFalsePositiveRate(), properties.getMaxMemoryBytes());
+
+        this.recentHits = Counter.builder("idempotency.filter.lookups").tag("result", "recent").register(meterRegistry);
+        this.definiteMisses = Counter.builder("idempotency.filter.lookups").tag("result", "miss").register(meterRegistry);
+        this.possibleHits = Counter.builder("idempotency.filter.lookups").tag("result", "possible").register(meterRegistry);
+        this.bypassed = Counter.builder("idempotency.filter.lookups").tag("result", "bypassed").register(meterRegistry);
+        this.falsePositives = Counter.builder("idempotency.filter.false.positives")
+                .description("Possible hits the database did not confirm")
+                .register(meterRegistry);
+        Gauge.builder("idempotency.filter.memory", bloomFilter, ScalableBloomFilter::memoryBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("idempotency.filter.recent.size", recent, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * @param loader the database lookup, called only when the key may exist
+     */
+    public Optional<TransferRecord> find(String key, Function<String, Optional<TransferRecord>> loader) {
+        TransferRecord cached = recent.get(key);
+        if (cached != null) {
+            recentHits.increment();
+            return Optional.of(cached);
+        }
+        if (!ready) {
+            bypassed.increment();
+            return remember(loader.apply(key));
+        }
+        if (!bloomFilter.mightContain(key)) {
+            definiteMisses.increment();
+            return Optional.empty();
+        }
+        possibleHits.increment();
+        Optional<TransferRecord> found = loader.apply(key);
+        if (found.isEmpty()) {
+            falsePositives.increment();
+        }
+        return remember(found);
+    }
+
+    /**
+     * Batch variant of {@link #find}: the loader is called once, with only the keys that may exist.
+     */
+    public Map<String, TransferRecord> findAll(Collection<String> keys,
+                                               Function<Collection<String>, List<TransferRecord>> loader) {
+        Map<String, TransferRecord> found = new HashMap<>();
+        List<String> lookup = new ArrayList<>();
+        for (String key : keys) {
+            TransferRecord cached = recent.get(key);
+            if (cached != null) {
+                recentHits.increment();
+                found.put(key, cached);
+            } else if (!ready) {
+                bypassed.increment();
+                lookup.add(key);
+            } else if (bloomFilter.mightContain(key)) {
+                possibleHits.increment();
+                lookup.add(key);
+            } else {
+                definiteMisses.increment();
+            }
+        }
+        if (lookup.isEmpty()) {
+            return found;
+        }
+
+        int before = found.size();
+        for (TransferRecord record : loader.apply(lookup)) {
+            found.put(record.getIdempotencyKey(), record);
+            remember(Optional.of(record));
+        }
+        if (ready) {
+            falsePositives.increment(lookup.size() - (found.size() - before));
+        }
+        return found;
+    }
+
+    /**
+     * Registers a key that now exists in transfer_record. Called before commit; if the transaction rolls
+     * back the key just becomes a false positive.
+     */
+    public void record(String key) {
+        bloomFilter.add(key);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        loader = new Thread(this::rebuild, "idempotency-filter-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Streams every existing key into the Bloom filter. The read-only transaction lets the driver use a
+     * cursor, so the keys are never held in memory at once.
+     */
+    void rebuild() {
+        long started = System.currentTimeMillis();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(LOAD_KEYS_SQL);
+                statement.setFetchSize(LOAD_FETCH_SIZE);
+                return statement;
+            }, resultSet -> {
+                bloomFilter.add(resultSet.getString(1));
+                loadedKeys.incrementAndGet();
+            }));
+            ready = true;
+            log.info("Idempotency filter loaded {} keys in {} ms ({} bytes, {} stages)", loadedKeys.get(),
+                    System.currentTimeMillis() - started, bloomFilter.memoryBytes(), bloomFilter.stageCount());
+            if (bloomFilter.isBudgetExhausted()) {
+                log.warn("Idempotency filter reached its memory budget of {} bytes; false positives will rise",
+                        properties.getMaxMemoryBytes());
+            }
+        } catch (Exception e) {
+            log.error("Failed to load the idempotency filter, every key will be looked up in the database", e);
+        }
+    }
+
+    private Optional<TransferRecord> remember(Optional<TransferRecord> found) {
+        found.ifPresent(record -> {
+            bloomFilter.add(record.getIdempotencyKey());
+            if (recent.putIfAbsent(record.getIdempotencyKey(), record) == null) {
+                recentOrder.add(record.getIdempotencyKey());
+                while (recent.size() > properties.getRecentCapacity()) {
+                    String eldest = recentOrder.poll();
+                    if (eldest == null) {
+                        break;
+                    }
+                    recent.remove(eldest);
+                }
+            }
+        });
+        return found;
+    }
+}
@@ -1,6 +1,9 @@
 package com.poalim.mybank.audit;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -8,50 +11,82 @@ import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Writes an audit record for every {@link Auditable} call. Parameters and result are captured as JSON according
+ * to the operation's {@link AuditCaptureProperties capture policy}, within what the annotation allows.
+ */
 @Aspect
 @Component
+@EnableConfigurationProperties(AuditCaptureProperties.class)
 public class AuditAspect {
     
     private static final Logger logger = LoggerFactory.getLogger(AuditAspect.class);
     
     @Autowired
-    private AuditRepository auditRepository;
+    private AuditWriter auditWriter;
     
     @Autowired
     private ObjectMapper objectMapper;
     
+    private AuditCaptureProperties captureProperties = new AuditCaptureProperties();
+    
+    private Meter.MeterProvider<Timer> operationTimer;
+    
+    private final Map<Method, AuditedMethod> auditedMethods = new ConcurrentHashMap<>();
+    
+    /**
+     * Every audited operation is timed as {@code bank.operation}, tagged with its operation type and outcome.
+     */
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.operationTimer = Timer.builder("bank.operation")
+                .description("Audited account operations")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+    }
+    
+    @Autowired
+    public void setCaptureProperties(AuditCaptureProperties captureProperties) {
+        this.captureProperties = captureProperties;
+    }
+    
     @Around("@annotation(auditable)")
     public Object auditMethod(ProceedingJoinPoint joinPoint, Auditable auditable) throws Throwable {
-        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         LocalDateTime timestamp = LocalDateTime.now();
         
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        Method method = signature.getMethod();
-        String methodName = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        AuditedMethod auditedMethod = auditedMethod(signature, auditable);
+        String operationType = auditedMethod.getOperationType();
         
         Object[] args = joinPoint.getArgs();
-        String operationType = auditable.operationType().isEmpty() ? 
-            method.getName().toUpperCase() : auditable.operationType();
         
         Audit audit = new Audit();
         audit.setOperationType(operationType);
-        audit.setMethodName(methodName);
+        audit.setMethodName(auditedMethod.getMethodName());
         audit.setTimestamp(timestamp);
         
         // Extract account ID from parameters
-        Long accountId = extractAccountId(args, signature.getParameterNames());
-        audit.setAccountId(accountId);
+        audit.setAccountId(auditedMethod.accountId(args));
         
-        // Capture parameters if enabled
-        if (auditable.captureParameters()) {
-            audit.setParameters(serializeParameters(args, signature));
+        // Sampling is decided up front, so an unsampled call serializes nothing
+        AuditCapturePolicy capturePolicy = auditedMethod.getCapturePolicy();
+        boolean capture = capturePolicy.captureBeforeCall();
+        if (capture && auditable.captureParameters()) {
+            audit.setParameters(serializeParameters(auditedMethod, args));
         }
         
         // Set session and user info (you can enhance this based on your security context)
@@ -61,24 +96,32 @@ public class AuditAspect {
         Object result = null;
         try {
             result = joinPoint.proceed();
-            
-            // Capture result if enabled and successful
-            if (auditable.captureResult() && result != null) {
-                audit.setResult(objectMapper.writeValueAsString(result));
-            }
-            
             audit.setSuccess(true);
-            
         } catch (Exception e) {
             audit.setSuccess(false);
             audit.setErrorMessage(e.getMessage());
             throw e;
         } finally {
-            long executionTime = System.currentTimeMillis() - startTime;
-            audit.setExecutionTime(executionTime);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            audit.setExecutionTime(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            operationTimer.withTags(
+                    "operation", operationType,
+                    "outcome", Boolean.TRUE.equals(audit.getSuccess()) ? "success" : "error"
+            ).record(elapsedNanos, TimeUnit.NANOSECONDS);
+            
+            // Errors-only and slow-only capture can only be decided now
+            if (!capture && capturePolicy.captureAfterCall(Boolean.TRUE.equals(audit.getSuccess()), elapsedNanos)) {
+                capture = true;
+                if (auditable.captureParameters()) {
+                    audit.setParameters(serializeParameters(auditedMethod, args));
+                }
+            }
+            if (capture && auditable.captureResult() && result != null) {
+                audit.setResult(serializeResult(result));
+            }
             
             try {
-                auditRepository.save(audit);
+                auditWriter.write(audit);
             } catch (Exception e) {
                 logger.error("Failed to save audit record", e);
             }
@@ -87,70 +130,48 @@ public class AuditAspect {
         return result;
     }
     
-    private Long extractAccountId(Object[] args, String[] paramNames) {
-        for (int i = 0; i < args.length; i++) {
-            if (args[i] instanceof Long && 
-                (paramNames[i].contains("id") || paramNames[i].contains("accountId"))) {
-                return (Long) args[i];
-            }
-            
-            // Handle request objects that might contain account ID
-            if (args[i] != null) {
-                try {
-                    // Try to extract from request objects using reflection
-                    Object accountId = extractFromObject(args[i], "accountId", "fromAccountId", "toAccountId", "id");
-                    if (accountId instanceof Long) {
-                        return (Long) accountId;
-                    }
-                } catch (Exception e) {
-                    // Ignore reflection errors
-                }
-            }
+    private AuditedMethod auditedMethod(MethodSignature signature, Auditable auditable) {
+        AuditedMethod auditedMethod = auditedMethods.get(signature.getMethod());
+        if (auditedMethod == null) {
+            auditedMethod = auditedMethods.computeIfAbsent(signature.getMethod(),
+                    method -> AuditedMethod.of(method, signature.getParameterNames(), auditable, captureProperties));
         }
-        return null;
+        return auditedMethod;
     }
     
-    private Object extractFromObject(Object obj, String... fieldNames) {
-        Class<?> clazz = obj.getClass();
-        for (String fieldName : fieldNames) {
-            try {
-                java.lang.reflect.Field field = clazz.getDeclaredField(fieldName);
-                field.setAccessible(true);
-                Object value = field.get(obj);
-                if (value != null) {
-                    return value;
-                }
-            } catch (Exception e) {
-                // Try getter method
-                try {
-                    String getterName = "get" + fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
-                    java.lang.reflect.Method getter = clazz.getMethod(getterName);
-                    Object value = getter.invoke(obj);
-                    if (value != null) {
-                        return value;
-                    }
-                } catch (Exception ex) {
-                    // Continue to next field
-                }
-            }
+    private String serializeParameters(AuditedMethod auditedMethod, Object[] args) {
+        try {
+            return limit(objectMapper.writeValueAsString(auditedMethod.parameters(args)));
+        } catch (Exception e) {
+            return "Error serializing parameters: " + e.getMessage();
         }
-        return null;
     }
     
-    private String serializeParameters(Object[] args, MethodSignature signature) {
+    private String serializeResult(Object result) {
         try {
-            Map<String, Object> paramMap = new HashMap<>();
-            String[] paramNames = signature.getParameterNames();
-            
-            for (int i = 0; i < args.length; i++) {
-                String paramName = (paramNames != null && i < paramNames.length) ? 
-                    paramNames[i] : "param" + i;
-                paramMap.put(paramName, args[i]);
-            }
-            
-            return objectMapper.writeValueAsString(paramMap);
+            return limit(objectMapper.writeValueAsString(result));
         } catch (Exception e) {
-            return "Error serializing parameters: " + e.getMessage();
+            return "Error serializing result: " + e.getMessage();
+        }
+    }
+    
+    private String limit(String payload) {
+        int maxChars = captureProperties.getMaxPayloadChars();
+        if (payload.length() <= maxChars) {
+            return payload;
+        }
+        return switch (captureProperties.getOversizedPayload()) {
+            case TRUNCATE -> payload.substring(0, maxChars) + "...[truncated, " + payload.length() + " chars]";
+            case HASH -> "sha256:" + sha256(payload) + " (" + payload.length() + " chars)";
+        };
+    }
+    
+    private static String sha256(String payload) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
     }
 }
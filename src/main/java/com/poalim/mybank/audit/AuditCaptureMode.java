@@ -0,0 +1,16 @@
+package com.poalim.mybank.audit;
+
+/**
+ * When {@link AuditAspect} captures an operation's parameters and result. The audit record itself is always
+ * written.
+ */
+public enum AuditCaptureMode {
+    /** Every call. */
+    ALWAYS,
+    /** A random share of calls, decided before the call. */
+    SAMPLED,
+    /** Calls that throw. */
+    ERRORS,
+    /** Calls that take at least the slow threshold. */
+    SLOW
+}
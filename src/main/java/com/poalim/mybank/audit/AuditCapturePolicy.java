@@ -0,0 +1,43 @@
+package com.poalim.mybank.audit;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An operation's {@link AuditCaptureProperties.Policy}, resolved once per audited method. Sampling is decided
+ * before the call, so an unsampled call serializes nothing; errors-only and slow-only capture can only be
+ * decided after it, so their parameters are serialized after the call too.
+ */
+final class AuditCapturePolicy {
+
+    private final AuditCaptureMode mode;
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+
+    private AuditCapturePolicy(AuditCaptureMode mode, double sampleRate, long slowThresholdNanos) {
+        this.mode = mode;
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThresholdNanos;
+    }
+
+    static AuditCapturePolicy of(AuditCaptureProperties.Policy policy) {
+        return new AuditCapturePolicy(policy.getMode(), policy.getSamplePercent() / 100,
+                TimeUnit.MILLISECONDS.toNanos(policy.getSlowThresholdMs()));
+    }
+
+    boolean captureBeforeCall() {
+        return switch (mode) {
+            case ALWAYS -> true;
+            case SAMPLED -> sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+            case ERRORS, SLOW -> false;
+        };
+    }
+
+    boolean captureAfterCall(boolean success, long elapsedNanos) {
+        return switch (mode) {
+            case ALWAYS, SAMPLED -> false;
+            case ERRORS -> !success;
+            case SLOW -> elapsedNanos >= slowThresholdNanos;
+        };
+    }
+}
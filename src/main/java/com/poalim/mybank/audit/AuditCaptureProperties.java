@@ -0,0 +1,51 @@
+package com.poalim.mybank.audit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "mybank.audit.capture")
+public class AuditCaptureProperties {
+
+    /**
+     * Policy of operations without an entry in {@link #operations}.
+     */
+    private Policy defaults = new Policy();
+
+    /**
+     * Policies by operation type; use brackets to keep the key as is, e.g.
+     * {@code mybank.audit.capture.operations[GET_ACCOUNT].mode=SAMPLED}.
+     */
+    private Map<String, Policy> operations = new HashMap<>();
+
+    /**
+     * Captured parameters or results longer than this many characters are stored as set by
+     * {@link #oversizedPayload}.
+     */
+    private int maxPayloadChars = 8192;
+
+    private AuditPayloadLimit oversizedPayload = AuditPayloadLimit.TRUNCATE;
+
+    Policy policyFor(String operationType) {
+        return operations.getOrDefault(operationType, defaults);
+    }
+
+    @Data
+    public static class Policy {
+
+        private AuditCaptureMode mode = AuditCaptureMode.ALWAYS;
+
+        /**
+         * Share of calls captured in {@link AuditCaptureMode#SAMPLED} mode, in percent.
+         */
+        private double samplePercent = 100;
+
+        /**
+         * Calls at least this slow are captured in {@link AuditCaptureMode#SLOW} mode.
+         */
+        private long slowThresholdMs = 1_000;
+    }
+}
@@ -1,13 +1,20 @@
 package com.poalim.mybank.audit;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,19 +22,56 @@ import java.util.Optional;
 @RequestMapping("/api/audit")
 @Tag(name = "Audit", description = "Audit trail APIs")
 public class AuditController {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
     
     @Autowired
     private AuditService auditService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
     
     @GetMapping("/account/{accountId}")
-    @Operation(summary = "Get audit records by account ID", description = "Retrieve all audit records for a specific account")
+    @Operation(summary = "Get audit records by account ID",
+              description = "Retrieve a page of audit records for a specific account, newest first. " +
+                      "The cursor for the next page is returned in the " + NEXT_CURSOR_HEADER + " header.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved audit records"),
-            @ApiResponse(responseCode = "404", description = "No audit records found for the account")
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or limit")
     })
-    public ResponseEntity<List<Audit>> getAuditsByAccountId(@PathVariable Long accountId) {
-        List<Audit> audits = auditService.getAuditsByAccountId(accountId);
-        return ResponseEntity.ok(audits);
+    public ResponseEntity<List<Audit>> getAuditsByAccountId(
+            @PathVariable Long accountId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "true") boolean includePayload) {
+        return pageResponse(auditService.getAuditPage(accountId, null, cursor, limit, includePayload));
+    }
+
+    @GetMapping(value = "/account/{accountId}/stream", produces = "application/x-ndjson")
+    @Operation(summary = "Stream audit records by account ID",
+              description = "Stream every audit record of an account as newline-delimited JSON, newest first")
+    public ResponseEntity<StreamingResponseBody> streamAuditsByAccountId(
+            @PathVariable Long accountId,
+            @RequestParam(required = false) String operationType,
+            @RequestParam(defaultValue = "true") boolean includePayload) {
+        StreamingResponseBody body = outputStream -> {
+            BufferedOutputStream out = new BufferedOutputStream(outputStream, 64 * 1024);
+            try {
+                auditService.streamAudits(accountId, operationType, includePayload, audit -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(audit));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
     
     @GetMapping("/{auditId}")
@@ -47,8 +91,23 @@ public class AuditController {
               description = "Retrieve audit records for a specific account and operation type")
     public ResponseEntity<List<Audit>> getAuditsByAccountIdAndOperation(
             @PathVariable Long accountId, 
-            @PathVariable String operationType) {
-        List<Audit> audits = auditService.getAuditsByAccountIdAndOperation(accountId, operationType);
-        return ResponseEntity.ok(audits);
+            @PathVariable String operationType,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "true") boolean includePayload) {
+        return pageResponse(auditService.getAuditPage(accountId, operationType, cursor, limit, includePayload));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    private static ResponseEntity<List<Audit>> pageResponse(AuditPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.audits());
     }
 }
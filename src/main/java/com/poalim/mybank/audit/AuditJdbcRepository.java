@@ -0,0 +1,142 @@
+package com.poalim.mybank.audit;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+public class AuditJdbcRepository {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO audit (account_id, operation_type, method_name, parameters, result, execution_time, " +
+            "success, error_message, timestamp, user_id, session_id) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 11;
+
+    /**
+     * PostgreSQL takes at most 32767 bind parameters per statement.
+     */
+    static final int MAX_ROWS_PER_INSERT = 32767 / COLUMNS;
+
+    private static final String SELECT_WITH_PAYLOAD =
+            "SELECT id, account_id, operation_type, method_name, parameters, result, execution_time, " +
+            "success, error_message, timestamp, user_id, session_id FROM audit ";
+    private static final String SELECT_WITHOUT_PAYLOAD =
+            "SELECT id, account_id, operation_type, method_name, NULL AS parameters, NULL AS result, execution_time, " +
+            "success, error_message, timestamp, user_id, session_id FROM audit ";
+    private static final String ORDER = " ORDER BY timestamp DESC, id DESC";
+    private static final RowMapper<Audit> AUDIT_ROW_MAPPER = AuditJdbcRepository::mapAudit;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AuditJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts all records with a single multi-row INSERT statement, so at most {@link #MAX_ROWS_PER_INSERT}.
+     */
+    public void insertAll(List<Audit> audits) {
+        if (audits.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + audits.size() * (ROW_PLACEHOLDERS.length() + 1));
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[audits.size() * COLUMNS];
+        int i = 0;
+        for (Audit audit : audits) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(ROW_PLACEHOLDERS);
+            args[i++] = audit.getAccountId();
+            args[i++] = audit.getOperationType();
+            args[i++] = audit.getMethodName();
+            args[i++] = audit.getParameters();
+            args[i++] = audit.getResult();
+            args[i++] = audit.getExecutionTime();
+            args[i++] = audit.getSuccess();
+            args[i++] = audit.getErrorMessage();
+            args[i++] = Timestamp.valueOf(audit.getTimestamp());
+            args[i++] = audit.getUserId();
+            args[i++] = audit.getSessionId();
+        }
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    /**
+     * Keyset page of an account's audit records, newest first. Served by the
+     * {@code (account_id[, operation_type], timestamp DESC, id DESC)} indexes whatever the page depth.
+     *
+     * @param operationType optional filter
+     * @param after         position to continue after, or null for the first page
+     */
+    public List<Audit> findPage(Long accountId, String operationType, AuditCursor after, int limit,
+                                boolean includePayload) {
+        List<Object> args = new ArrayList<>(5);
+        StringBuilder sql = where(includePayload, accountId, operationType, args);
+        if (after != null) {
+            sql.append(" AND (timestamp, id) < (?, ?)");
+            args.add(Timestamp.valueOf(after.timestamp()));
+            args.add(after.id());
+        }
+        sql.append(ORDER).append(" LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), AUDIT_ROW_MAPPER, args.toArray());
+    }
+
+    /**
+     * Hands every matching record to the consumer, newest first, reading them through a server-side cursor.
+     * Must run inside a transaction, otherwise the driver fetches the whole result at once.
+     */
+    public void stream(Long accountId, String operationType, boolean includePayload, int fetchSize,
+                       Consumer<Audit> consumer) {
+        List<Object> args = new ArrayList<>(2);
+        String sql = where(includePayload, accountId, operationType, args).append(ORDER).toString();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, resultSet -> {
+            consumer.accept(mapAudit(resultSet, 0));
+        });
+    }
+
+    private static StringBuilder where(boolean includePayload, Long accountId, String operationType, List<Object> args) {
+        StringBuilder sql = new StringBuilder(includePayload ? SELECT_WITH_PAYLOAD : SELECT_WITHOUT_PAYLOAD);
+        sql.append("WHERE account_id = ?");
+        args.add(accountId);
+        if (operationType != null) {
+            sql.append(" AND operation_type = ?");
+            args.add(operationType);
+        }
+        return sql;
+    }
+
+    private static Audit mapAudit(ResultSet rs, int rowNum) throws SQLException {
+        return new Audit(
+                rs.getLong("id"),
+                rs.getObject("account_id", Long.class),
+                rs.getString("operation_type"),
+                rs.getString("method_name"),
+                rs.getString("parameters"),
+                rs.getString("result"),
+                rs.getObject("execution_time", Long.class),
+                rs.getBoolean("success"),
+                rs.getString("error_message"),
+                rs.getTimestamp("timestamp").toLocalDateTime(),
+                rs.getString("user_id"),
+                rs.getString("session_id"));
+    }
+}
@@ -0,0 +1,13 @@
+package com.poalim.mybank.audit;
+
+/**
+ * What the async audit writer does when its buffer is full.
+ */
+public enum AuditOverflowPolicy {
+    /** Wait for the drainer to free a slot. */
+    BLOCK,
+    /** Discard the record and count it. */
+    DROP,
+    /** Append the record to a local file that is replayed on the next start. */
+    SPILL
+}
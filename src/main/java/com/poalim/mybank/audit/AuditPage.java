@@ -0,0 +1,9 @@
+package com.poalim.mybank.audit;
+
+import java.util.List;
+
+/**
+ * @param nextCursor null on the last page
+ */
+public record AuditPage(List<Audit> audits, String nextCursor) {
+}
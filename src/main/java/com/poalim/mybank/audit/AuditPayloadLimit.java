@@ -0,0 +1,11 @@
+package com.poalim.mybank.audit;
+
+/**
+ * What {@link AuditAspect} stores instead of a captured payload longer than the size limit.
+ */
+public enum AuditPayloadLimit {
+    /** The first characters up to the limit, followed by a marker with the full length. */
+    TRUNCATE,
+    /** The payload's SHA-256 and length, enough to match it against a copy kept elsewhere. */
+    HASH
+}
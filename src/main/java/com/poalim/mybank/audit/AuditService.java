@@ -1,16 +1,31 @@
 package com.poalim.mybank.audit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class AuditService {
     
     @Autowired
     private AuditRepository auditRepository;
+
+    @Autowired
+    private AuditJdbcRepository auditJdbcRepository;
+
+    @Value("${mybank.audit.query.default-page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${mybank.audit.query.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${mybank.audit.query.stream-fetch-size:1000}")
+    private int streamFetchSize;
     
     public List<Audit> getAuditsByAccountId(Long accountId) {
         return auditRepository.findByAccountIdOrderByTimestampDesc(accountId);
@@ -27,4 +42,35 @@ public class AuditService {
     public List<Audit> getAllAudits() {
         return auditRepository.findAll();
     }
+
+    /**
+     * @param operationType optional filter
+     * @param cursor        {@link AuditPage#nextCursor()} of the previous page, or null for the first page
+     * @param limit         page size, capped at the configured maximum
+     */
+    public AuditPage getAuditPage(Long accountId, String operationType, String cursor, Integer limit,
+                                  boolean includePayload) {
+        int pageSize = limit == null ? defaultPageSize : limit;
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        pageSize = Math.min(pageSize, maxPageSize);
+        AuditCursor after = cursor == null ? null : AuditCursor.decode(cursor);
+
+        // One extra row tells whether another page follows
+        List<Audit> audits = auditJdbcRepository.findPage(accountId, operationType, after, pageSize + 1, includePayload);
+        if (audits.size() <= pageSize) {
+            return new AuditPage(audits, null);
+        }
+        List<Audit> page = audits.subList(0, pageSize);
+        return new AuditPage(page, AuditCursor.after(page.get(pageSize - 1)).encode());
+    }
+
+    /**
+     * Streams every matching record, newest first, without holding them in memory.
+     */
+    @Transactional(readOnly = true)
+    public void streamAudits(Long accountId, String operationType, boolean includePayload, Consumer<Audit> consumer) {
+        auditJdbcRepository.stream(accountId, operationType, includePayload, streamFetchSize, consumer);
+    }
 }
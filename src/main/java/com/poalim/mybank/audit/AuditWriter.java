@@ -0,0 +1,296 @@
+package com.poalim.mybank.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Takes audit records off the request path. Callers enqueue into a lock-free ring buffer and a single
+ * drainer thread bulk-inserts them with multi-row INSERTs. Remaining records are flushed on shutdown.
+ * <p>
+ * The audited operations have already committed, so a batch is not given up while the database is
+ * unavailable: it is retried with backoff and then appended to the spill file, which is replayed on start.
+ */
+@Component
+@EnableConfigurationProperties(AuditWriterProperties.class)
+public class AuditWriter implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditWriter.class);
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 500;
+
+    private final AuditWriterProperties properties;
+    private final AuditRepository auditRepository;
+    private final AuditJdbcRepository auditJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final BoundedRingBuffer<Audit> buffer;
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter spilled;
+    private final Counter failed;
+
+    private volatile boolean running;
+    private Thread drainer;
+
+    @Autowired
+    public AuditWriter(AuditWriterProperties properties,
+                       AuditRepository auditRepository,
+                       AuditJdbcRepository auditJdbcRepository,
+                       ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.auditRepository = auditRepository;
+        this.auditJdbcRepository = auditJdbcRepository;
+        this.objectMapper = objectMapper;
+        this.buffer = new BoundedRingBuffer<>(properties.getCapacity());
+
+        Gauge.builder("audit.writer.queue.depth", buffer, BoundedRingBuffer::size)
+                .description("Audit records waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("audit.writer.queue.capacity", buffer, BoundedRingBuffer::capacity)
+                .register(meterRegistry);
+        this.written = Counter.builder("audit.writer.records").tag("outcome", "written").register(meterRegistry);
+        this.dropped = Counter.builder("audit.writer.records").tag("outcome", "dropped").register(meterRegistry);
+        this.spilled = Counter.builder("audit.writer.records").tag("outcome", "spilled").register(meterRegistry);
+        this.failed = Counter.builder("audit.writer.records").tag("outcome", "failed").register(meterRegistry);
+    }
+
+    public void write(Audit audit) {
+        if (audit.getErrorMessage() != null && audit.getErrorMessage().length() > MAX_ERROR_MESSAGE_LENGTH) {
+            audit.setErrorMessage(audit.getErrorMessage().substring(0, MAX_ERROR_MESSAGE_LENGTH));
+        }
+
+        if (!properties.isAsync() || !running) {
+            auditRepository.save(audit);
+            return;
+        }
+
+        if (buffer.offer(audit)) {
+            return;
+        }
+
+        switch (properties.getOverflowPolicy()) {
+            case BLOCK -> {
+                while (!buffer.offer(audit)) {
+                    if (!running) {
+                        auditRepository.save(audit);
+                        return;
+                    }
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                }
+            }
+            case DROP -> dropped.increment();
+            case SPILL -> spill(List.of(audit));
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isAsync()) {
+            return;
+        }
+        replaySpillFile();
+        running = true;
+        drainer = new Thread(this::drainLoop, "audit-writer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (drainer != null) {
+            try {
+                drainer.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // Pick up records offered after the drainer saw the final empty buffer
+            if (!drainer.isAlive()) {
+                List<Audit> remaining = new ArrayList<>();
+                Audit audit;
+                while ((audit = buffer.poll()) != null) {
+                    remaining.add(audit);
+                }
+                insert(remaining);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stop after the web server has stopped accepting requests, so in-flight audits are still flushed.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drainLoop() {
+        List<Audit> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || buffer.size() > 0) {
+            Audit audit;
+            while (batch.size() < properties.getBatchSize() && (audit = buffer.poll()) != null) {
+                batch.add(audit);
+            }
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(properties.getIdleWaitMs()));
+                continue;
+            }
+            insert(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes the batch, spilling it if the database stays unavailable. A batch the database rejects is
+     * written one by one, so a single bad record costs only itself.
+     */
+    private void insert(List<Audit> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                auditJdbcRepository.insertAll(batch);
+                written.increment(batch.size());
+                return;
+            } catch (Exception e) {
+                if (!isUnavailable(e)) {
+                    insertOneByOne(batch, e);
+                    return;
+                }
+                if (attempt >= properties.getRetryAttempts()) {
+                    logger.warn("Audit database unavailable after {} attempts, spilling {} records: {}",
+                            attempt, batch.size(), e.getMessage());
+                    spill(batch);
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(properties.getRetryBackoffMs() << (attempt - 1)));
+            }
+        }
+    }
+
+    private void insertOneByOne(List<Audit> batch, Exception batchFailure) {
+        int rejected = 0;
+        String firstRejection = null;
+        for (Audit audit : batch) {
+            try {
+                auditJdbcRepository.insertAll(List.of(audit));
+                written.increment();
+            } catch (Exception e) {
+                if (isUnavailable(e)) {
+                    spill(List.of(audit));
+                    continue;
+                }
+                rejected++;
+                failed.increment();
+                if (firstRejection == null) {
+                    firstRejection = e.getMessage();
+                }
+            }
+        }
+        if (rejected > 0) {
+            logger.error("{} of {} audit records rejected by the database: {}", rejected, batch.size(), firstRejection);
+        } else {
+            logger.warn("Batch insert of {} audit records failed, wrote them one by one: {}", batch.size(),
+                    batchFailure.getMessage());
+        }
+    }
+
+    private static boolean isUnavailable(Exception e) {
+        return e instanceof DataAccessResourceFailureException
+                || e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException;
+    }
+
+    private void spill(List<Audit> audits) {
+        spillLock.lock();
+        try (BufferedWriter writer = Files.newBufferedWriter(spillPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Audit audit : audits) {
+                writer.write(objectMapper.writeValueAsString(audit));
+                writer.newLine();
+            }
+            spilled.increment(audits.size());
+        } catch (IOException e) {
+            dropped.increment(audits.size());
+            logger.error("Failed to spill {} audit records: {}", audits.size(), e.getMessage());
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * The file is moved aside first, so records that fail again are spilled to a new file instead of the one
+     * being read. A file left aside by a crash during replay is replayed on the next start.
+     */
+    private void replaySpillFile() {
+        Path path = spillPath();
+        Path replaying = path.resolveSibling(path.getFileName() + ".replaying");
+        List<Audit> batch = new ArrayList<>(properties.getBatchSize());
+        int replayed = 0;
+        try {
+            if (!Files.exists(replaying)) {
+                if (!Files.exists(path)) {
+                    return;
+                }
+                Files.move(path, replaying, StandardCopyOption.ATOMIC_MOVE);
+            }
+            try (BufferedReader reader = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    batch.add(objectMapper.readValue(line, Audit.class));
+                    if (batch.size() == properties.getBatchSize()) {
+                        insert(batch);
+                        replayed += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+            insert(batch);
+            replayed += batch.size();
+            Files.delete(replaying);
+            logger.info("Replayed {} spilled audit records from {}", replayed, path);
+        } catch (Exception e) {
+            logger.error("Failed to replay spilled audit records from {}", replaying, e);
+        }
+    }
+
+    private Path spillPath() {
+        return Paths.get(properties.getSpillFile());
+    }
+}
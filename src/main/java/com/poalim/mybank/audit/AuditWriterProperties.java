@@ -0,0 +1,55 @@
+package com.poalim.mybank.audit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "mybank.audit.writer")
+public class AuditWriterProperties {
+
+    /**
+     * When false, audit records are saved synchronously in the caller's transaction.
+     */
+    private boolean async = true;
+
+    /**
+     * Ring buffer capacity, rounded up to a power of two.
+     */
+    private int capacity = 65536;
+
+    /**
+     * Maximum number of rows per multi-row INSERT, at most 2978 since each row binds 11 parameters.
+     */
+    private int batchSize = 500;
+
+    private AuditOverflowPolicy overflowPolicy = AuditOverflowPolicy.BLOCK;
+
+    /**
+     * Target file for {@link AuditOverflowPolicy#SPILL}, and for batches the database is unavailable for.
+     * Replayed on start.
+     */
+    private String spillFile = "audit-spill.ndjson";
+
+    /**
+     * Attempts per batch while the database is unavailable, before the batch is spilled.
+     */
+    private int retryAttempts = 3;
+
+    /**
+     * Wait before the second attempt, doubled for each one after.
+     */
+    private long retryBackoffMs = 100;
+
+    /**
+     * How long the drainer sleeps when the buffer is empty.
+     */
+    private long idleWaitMs = 5;
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1 || batchSize > AuditJdbcRepository.MAX_ROWS_PER_INSERT) {
+            throw new IllegalArgumentException(
+                    "Audit batch size must be between 1 and " + AuditJdbcRepository.MAX_ROWS_PER_INSERT + ".");
+        }
+        this.batchSize = batchSize;
+    }
+}
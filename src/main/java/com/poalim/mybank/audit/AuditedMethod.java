@@ -0,0 +1,191 @@
+package com.poalim.mybank.audit;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What {@link AuditAspect} needs to know about an audited method, worked out once on its first call: the
+ * operation type, its capture policy, the parameter names and which parameters carry the account id.
+ * <p>
+ * An account id is taken from the first argument that is a {@code Long} parameter whose name contains
+ * {@code id}, or an object with a non-null {@code Long} {@code accountId}, {@code fromAccountId},
+ * {@code toAccountId} or {@code id}, read from its field or else its getter. The accessors are looked up
+ * once per argument class, so a call does no reflection lookups and throws no exceptions.
+ */
+final class AuditedMethod {
+
+    private static final String[] ACCOUNT_ID_PROPERTIES = {"accountId", "fromAccountId", "toAccountId", "id"};
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodHandle[] NO_ACCESSORS = new MethodHandle[0];
+
+    private static final ClassValue<MethodHandle[]> ACCOUNT_ID_ACCESSORS = new ClassValue<>() {
+        @Override
+        protected MethodHandle[] computeValue(Class<?> type) {
+            return accountIdAccessors(type);
+        }
+    };
+
+    private final String methodName;
+    private final String operationType;
+    private final AuditCapturePolicy capturePolicy;
+    private final String[] parameterNames;
+    private final boolean[] idParameters;
+
+    private AuditedMethod(String methodName, String operationType, AuditCapturePolicy capturePolicy,
+                          String[] parameterNames) {
+        this.methodName = methodName;
+        this.operationType = operationType;
+        this.capturePolicy = capturePolicy;
+        this.parameterNames = parameterNames;
+        this.idParameters = new boolean[parameterNames.length];
+        for (int i = 0; i < parameterNames.length; i++) {
+            idParameters[i] = parameterNames[i].contains("id") || parameterNames[i].contains("accountId");
+        }
+    }
+
+    /**
+     * @param parameterNames as discovered for the join point, or null if they are not available, in which
+     *                       case the parameters are called {@code param0}, {@code param1}, ...
+     */
+    static AuditedMethod of(Method method, String[] parameterNames, Auditable auditable,
+                            AuditCaptureProperties captureProperties) {
+        String[] names = new String[method.getParameterCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = parameterNames != null && i < parameterNames.length ? parameterNames[i] : "param" + i;
+        }
+        String operationType = auditable.operationType().isEmpty()
+                ? method.getName().toUpperCase() : auditable.operationType();
+        return new AuditedMethod(
+                method.getDeclaringClass().getSimpleName() + "." + method.getName(),
+                operationType,
+                AuditCapturePolicy.of(captureProperties.policyFor(operationType)),
+                names);
+    }
+
+    String getMethodName() {
+        return methodName;
+    }
+
+    String getOperationType() {
+        return operationType;
+    }
+
+    AuditCapturePolicy getCapturePolicy() {
+        return capturePolicy;
+    }
+
+    Long accountId(Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg == null) {
+                continue;
+            }
+            if (arg instanceof Long id && i < idParameters.length && idParameters[i]) {
+                return id;
+            }
+            if (accountIdOf(arg) instanceof Long id) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The arguments as a JSON object keyed by parameter name, for {@code ObjectMapper.writeValueAsString}.
+     */
+    JsonSerializable parameters(Object[] args) {
+        return new JsonSerializable.Base() {
+            @Override
+            public void serialize(JsonGenerator generator, SerializerProvider provider) throws IOException {
+                generator.writeStartObject();
+                for (int i = 0; i < args.length; i++) {
+                    provider.defaultSerializeField(i < parameterNames.length ? parameterNames[i] : "param" + i,
+                            args[i], generator);
+                }
+                generator.writeEndObject();
+            }
+
+            @Override
+            public void serializeWithType(JsonGenerator generator, SerializerProvider provider,
+                                          TypeSerializer typeSerializer) throws IOException {
+                serialize(generator, provider);
+            }
+        };
+    }
+
+    /**
+     * The first non-null account id property of {@code arg}, whatever its type; callers only use a
+     * {@code Long}.
+     */
+    private static Object accountIdOf(Object arg) {
+        for (MethodHandle accessor : ACCOUNT_ID_ACCESSORS.get(arg.getClass())) {
+            try {
+                Object value = (Object) accessor.invokeExact(arg);
+                if (value != null) {
+                    return value;
+                }
+            } catch (RuntimeException | ReflectiveOperationException e) {
+                // A failing getter counts as no value
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                // So does a checked exception from a getter that does not declare it
+            }
+        }
+        return null;
+    }
+
+    private static MethodHandle[] accountIdAccessors(Class<?> type) {
+        List<MethodHandle> accessors = new ArrayList<>(ACCOUNT_ID_PROPERTIES.length);
+        for (String property : ACCOUNT_ID_PROPERTIES) {
+            MethodHandle accessor = fieldAccessor(type, property);
+            if (accessor == null) {
+                accessor = getterAccessor(type, property);
+            }
+            if (accessor != null) {
+                accessors.add(accessor);
+            }
+        }
+        return accessors.isEmpty() ? NO_ACCESSORS : accessors.toArray(NO_ACCESSORS);
+    }
+
+    private static MethodHandle fieldAccessor(Class<?> type, String name) {
+        try {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            return getter.asType(ACCESSOR_TYPE);
+        } catch (NoSuchFieldException | IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle getterAccessor(Class<?> type, String property) {
+        String getterName = "get" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        try {
+            Method method = type.getMethod(getterName);
+            MethodHandle getter = MethodHandles.publicLookup().unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            return getter.asType(ACCESSOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.poalim.mybank.config;
+
+import com.poalim.mybank.account.AccountRepository;
+import com.poalim.mybank.account.engine.BalanceEngineProperties;
+import com.poalim.mybank.account.engine.JdbcAccountStateStore;
+import com.poalim.mybank.account.engine.ShardedBalanceEngine;
+import com.poalim.mybank.account.engine.ShardedBalanceEngineLock;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+@Configuration
+@EnableConfigurationProperties(BalanceEngineProperties.class)
+public class BalanceEngineConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "mybank.engine", name = "mode", havingValue = "sharded")
+    public ShardedBalanceEngineLock shardedBalanceEngineLock(DataSource dataSource) throws SQLException {
+        return ShardedBalanceEngineLock.acquire(dataSource);
+    }
+
+    /**
+     * Takes the lock as a parameter so it is held before any balance is loaded and released only after the
+     * engine's last flush.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "mybank.engine", name = "mode", havingValue = "sharded")
+    public ShardedBalanceEngine shardedBalanceEngine(BalanceEngineProperties properties,
+                                                     AccountRepository accountRepository,
+                                                     JdbcTemplate jdbcTemplate,
+                                                     ShardedBalanceEngineLock instanceLock) {
+        return new ShardedBalanceEngine(
+                new JdbcAccountStateStore(accountRepository, jdbcTemplate),
+                properties.getShards(),
+                properties.getFlushIntervalMs());
+    }
+}
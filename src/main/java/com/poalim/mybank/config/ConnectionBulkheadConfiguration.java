@@ -0,0 +1,50 @@
+package com.poalim.mybank.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Puts the application's data source behind a {@link BulkheadDataSource}. Meant for
+ * {@code spring.threads.virtual.enabled}, where requests are no longer limited by Tomcat's thread pool and
+ * would otherwise all line up inside the connection pool.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "mybank.db.bulkhead", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ConnectionBulkheadProperties.class)
+public class ConnectionBulkheadConfiguration {
+
+    @Bean
+    public static BeanPostProcessor connectionBulkheadPostProcessor(ObjectProvider<ConnectionBulkheadProperties> properties,
+                                                                    ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof BulkheadDataSource) {
+                    return bean;
+                }
+                ConnectionBulkheadProperties bulkhead = properties.getObject();
+                return new BulkheadDataSource(dataSource, permits(dataSource, bulkhead),
+                        bulkhead.getAcquireTimeoutMs(), meterRegistry.getObject());
+            }
+        };
+    }
+
+    static int permits(DataSource dataSource, ConnectionBulkheadProperties properties) {
+        if (properties.getPermits() > 0) {
+            return properties.getPermits();
+        }
+        if (dataSource instanceof HikariDataSource hikari) {
+            return hikari.getMaximumPoolSize();
+        }
+        throw new IllegalStateException("Set mybank.db.bulkhead.permits, the pool size of " +
+                dataSource.getClass().getName() + " is unknown");
+    }
+}
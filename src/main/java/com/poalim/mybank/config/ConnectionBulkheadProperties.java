@@ -0,0 +1,21 @@
+package com.poalim.mybank.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "mybank.db.bulkhead")
+public class ConnectionBulkheadProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Connections handed out at once; 0 means the connection pool's maximum size.
+     */
+    private int permits = 0;
+
+    /**
+     * How long a caller waits for a permit before its request is refused.
+     */
+    private long acquireTimeoutMs = 5_000;
+}
@@ -1,10 +1,16 @@
 package com.poalim.mybank.config;
 
 import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.TopicBuilder;
 
+/**
+ * Event topics are keyed by account id. Raising {@code mybank.kafka.topic.partitions} adds partitions to
+ * existing topics, which moves keys to other partitions: events of one account published before and after
+ * the change may then be consumed out of order.
+ */
 @Configuration
 public class KafkaTopicsConfiguration {
     
@@ -14,17 +20,17 @@ public class KafkaTopicsConfiguration {
     public static final String DEPOSIT_DLT = "bank-deposits-dlt";
     
     @Bean
-    public NewTopic transactionTopic() {
+    public NewTopic transactionTopic(@Value("${mybank.kafka.topic.partitions:3}") int partitions) {
         return TopicBuilder.name(TRANSACTION_TOPIC)
-                .partitions(3)
+                .partitions(partitions)
                 .replicas(1)
                 .build();
     }
     
     @Bean
-    public NewTopic depositTopic() {
+    public NewTopic depositTopic(@Value("${mybank.kafka.topic.partitions:3}") int partitions) {
         return TopicBuilder.name(DEPOSIT_TOPIC)
-                .partitions(3)
+                .partitions(partitions)
                 .replicas(1)
                 .build();
     }
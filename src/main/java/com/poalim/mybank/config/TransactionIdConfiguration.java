@@ -0,0 +1,29 @@
+package com.poalim.mybank.config;
+
+import com.poalim.mybank.id.TransactionIdGenerator;
+import com.poalim.mybank.id.UuidV7Generator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.UUID;
+
+@Configuration
+public class TransactionIdConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "mybank.transaction-id", name = "generator", havingValue = "uuid-v7",
+            matchIfMissing = true)
+    public TransactionIdGenerator uuidV7TransactionIdGenerator() {
+        return new UuidV7Generator();
+    }
+
+    /**
+     * Random version 4 UUIDs, as before ids were time-ordered.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "mybank.transaction-id", name = "generator", havingValue = "random")
+    public TransactionIdGenerator randomTransactionIdGenerator() {
+        return UUID::randomUUID;
+    }
+}
@@ -1,11 +1,12 @@
 package com.poalim.mybank.events;
 
-import java.math.BigDecimal;
+import com.poalim.mybank.money.Money;
+
 import java.time.LocalDateTime;
 
 public record DepositCompletedEvent(
     String transactionId,
     String accountId,
-    BigDecimal amount,
+    Money amount,
     LocalDateTime timestamp
 ) {}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.poalim.mybank.events;
 
-import java.math.BigDecimal;
+import com.poalim.mybank.money.Money;
+
 import java.time.LocalDateTime;
 
 
@@ -8,6 +9,6 @@ public record TransactionCompletedEvent(
     String transactionId,
     String sourceAccountId,
     String targetAccountId,
-    BigDecimal amount,
+    Money amount,
     LocalDateTime timestamp
 ) {}
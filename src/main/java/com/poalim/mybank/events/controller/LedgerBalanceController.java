@@ -0,0 +1,37 @@
+package com.poalim.mybank.events.controller;
+
+import com.poalim.mybank.events.service.LedgerBalanceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/accounts")
+@Tag(name = "Ledger", description = "Ledger balance and statement APIs")
+public class LedgerBalanceController {
+
+    private final LedgerBalanceService ledgerBalanceService;
+
+    @Autowired
+    public LedgerBalanceController(LedgerBalanceService ledgerBalanceService) {
+        this.ledgerBalanceService = ledgerBalanceService;
+    }
+
+    @GetMapping("/{id}/balance")
+    @Operation(summary = "Get ledger balance as of a point in time",
+              description = "Sum of the account's ledger entries up to asOf, which defaults to now")
+    public ResponseEntity<LedgerBalanceResponse> getBalanceAsOf(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
+        return ResponseEntity.ok(ledgerBalanceService.getBalanceAsOf(id, asOf != null ? asOf : LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,15 @@
+package com.poalim.mybank.events.controller;
+
+import com.poalim.mybank.money.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class LedgerBalanceResponse {
+    private Long accountId;
+    private LocalDateTime asOf;
+    private Money balance;
+}
@@ -0,0 +1,61 @@
+package com.poalim.mybank.events.controller;
+
+import com.poalim.mybank.events.service.LedgerStatementService;
+import com.poalim.mybank.events.service.StatementFormat;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/accounts")
+@Tag(name = "Ledger", description = "Ledger balance and statement APIs")
+public class LedgerStatementController {
+
+    private final LedgerStatementService ledgerStatementService;
+
+    @Autowired
+    public LedgerStatementController(LedgerStatementService ledgerStatementService) {
+        this.ledgerStatementService = ledgerStatementService;
+    }
+
+    @GetMapping("/{id}/statement")
+    @Operation(summary = "Export account statement",
+              description = "Stream the account's ledger entries in [from, to) as CSV or NDJSON, with opening, " +
+                      "running and closing balances; gzip=true compresses the file")
+    public ResponseEntity<StreamingResponseBody> exportStatement(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "CSV") StatementFormat format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Statement start must be before its end.");
+        }
+        String filename = "statement-" + id + "." + format.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> ledgerStatementService.export(id, from, to, format, gzip, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+}
@@ -1,10 +1,11 @@
 package com.poalim.mybank.events.entity;
 
+import com.poalim.mybank.money.Money;
 import jakarta.persistence.*;
 import lombok.Data;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Data
@@ -13,10 +14,10 @@ public class AuditLog {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    private String transactionId;
-    private String sourceAccountId;
-    private String targetAccountId;
-    private BigDecimal amount;
+    private UUID transactionId;
+    private Long sourceAccountId;
+    private Long targetAccountId;
+    private Money amount;
     private LocalDateTime timestamp;
     private String eventType = "TRANSFER";
 }
@@ -1,22 +1,24 @@
 package com.poalim.mybank.events.entity;
 
+import com.poalim.mybank.money.Money;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
-import jakarta.persistence.Version;
 import lombok.Data;
+import org.hibernate.annotations.Immutable;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
+/**
+ * Read-only view over daily_traffic_stats_stripe, summing every stripe of a date.
+ */
 @Entity
 @Data
+@Immutable
 @Table(name = "daily_traffic_stats")
 public class DailyTrafficStats {
     @Id
     private LocalDate date;
     private Long totalCount = 0L;
-    private BigDecimal totalVolume = BigDecimal.ZERO;
-    @Version
-    private Long version;
+    private Money totalVolume = Money.ZERO;
 }
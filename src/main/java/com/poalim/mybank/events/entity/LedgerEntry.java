@@ -1,10 +1,11 @@
 package com.poalim.mybank.events.entity;
 
+import com.poalim.mybank.money.Money;
 import jakarta.persistence.*;
 import lombok.Data;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Data
@@ -13,9 +14,9 @@ public class LedgerEntry {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    private String transactionId;
-    private String accountId;
-    private BigDecimal amount;
+    private UUID transactionId;
+    private Long accountId;
+    private Money amount;
     private LocalDateTime timestamp;
     private String entryType; // DEBIT or CREDIT
 }
@@ -4,13 +4,14 @@ import jakarta.persistence.*;
 import lombok.Data;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Data
 @Table(name = "processed_events")
 public class ProcessedEvent {
     @Id
-    private String transactionId;
+    private UUID transactionId;
     private LocalDateTime processedAt;
 }
 
@@ -6,10 +6,11 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @Repository
 public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
-    List<AuditLog> findByTransactionId(String transactionId);
+    List<AuditLog> findByTransactionId(UUID transactionId);
     List<AuditLog> findByTimestampBetween(LocalDateTime start, LocalDateTime end);
-    List<AuditLog> findBySourceAccountIdOrTargetAccountId(String sourceAccountId, String targetAccountId);
+    List<AuditLog> findBySourceAccountIdOrTargetAccountId(Long sourceAccountId, Long targetAccountId);
 }
@@ -0,0 +1,13 @@
+package com.poalim.mybank.events.repository;
+
+import com.poalim.mybank.money.Money;
+
+/**
+ * Aggregated change to one day's traffic stats.
+ */
+public record DailyStatsDelta(long count, Money volume) {
+
+    public DailyStatsDelta plus(Money amount) {
+        return new DailyStatsDelta(count + 1, volume.plus(amount));
+    }
+}
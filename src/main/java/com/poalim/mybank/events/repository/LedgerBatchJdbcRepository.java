@@ -0,0 +1,98 @@
+package com.poalim.mybank.events.repository;
+
+import com.poalim.mybank.events.entity.AuditLog;
+import com.poalim.mybank.events.entity.LedgerEntry;
+import com.poalim.mybank.id.TransactionIds;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Set-based writes for the batch ledger consumers: a whole poll is projected with a handful of statements
+ * instead of several statements per event.
+ */
+@Repository
+public class LedgerBatchJdbcRepository {
+
+    private static final String CLAIM_SQL =
+            "INSERT INTO processed_events (transaction_id, processed_at) " +
+            "SELECT id, ? FROM unnest(?::uuid[]) AS t(id) " +
+            "ON CONFLICT (transaction_id) DO NOTHING RETURNING transaction_id";
+    private static final String INSERT_AUDIT_LOG_SQL =
+            "INSERT INTO audit_log (transaction_id, source_account_id, target_account_id, amount, timestamp, event_type) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_LEDGER_ENTRY_SQL =
+            "INSERT INTO ledger_entries (transaction_id, account_id, amount, timestamp, entry_type) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPSERT_STATS_SQL =
+            "INSERT INTO daily_traffic_stats_stripe (date, stripe, total_count, total_volume) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (date, stripe) DO UPDATE SET " +
+            "total_count = daily_traffic_stats_stripe.total_count + EXCLUDED.total_count, " +
+            "total_volume = daily_traffic_stats_stripe.total_volume + EXCLUDED.total_volume";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerBatchJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Marks the given transactions as processed in one statement.
+     *
+     * @return the ids that were not processed before, i.e. the ones this caller now owns
+     * @throws IllegalArgumentException if an id is not a transaction id, see {@link TransactionIds#parse}
+     */
+    public Set<String> claimUnprocessed(Collection<String> transactionIds, LocalDateTime processedAt) {
+        // Lower-case UUID strings sort like the index, so the claim fills the primary key in one sweep
+        SortedMap<String, String> idsByUuid = new TreeMap<>();
+        for (String transactionId : transactionIds) {
+            idsByUuid.put(TransactionIds.parse(transactionId).toString(), transactionId);
+        }
+        List<String> claimed = jdbcTemplate.queryForList(CLAIM_SQL, String.class,
+                Timestamp.valueOf(processedAt), idsByUuid.keySet().toArray(new String[0]));
+        Set<String> claimedIds = new HashSet<>(claimed.size());
+        for (String uuid : claimed) {
+            claimedIds.add(idsByUuid.get(uuid));
+        }
+        return claimedIds;
+    }
+
+    public void insertAuditLogs(List<AuditLog> auditLogs) {
+        List<Object[]> batch = new ArrayList<>(auditLogs.size());
+        for (AuditLog auditLog : auditLogs) {
+            batch.add(new Object[]{auditLog.getTransactionId(), auditLog.getSourceAccountId(),
+                    auditLog.getTargetAccountId(), auditLog.getAmount().minorUnits(),
+                    Timestamp.valueOf(auditLog.getTimestamp()), auditLog.getEventType()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_AUDIT_LOG_SQL, batch);
+    }
+
+    public void insertLedgerEntries(List<LedgerEntry> entries) {
+        List<Object[]> batch = new ArrayList<>(entries.size());
+        for (LedgerEntry entry : entries) {
+            batch.add(new Object[]{entry.getTransactionId(), entry.getAccountId(), entry.getAmount().minorUnits(),
+                    Timestamp.valueOf(entry.getTimestamp()), entry.getEntryType()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_LEDGER_ENTRY_SQL, batch);
+    }
+
+    /**
+     * Adds one aggregated delta per date to the caller's stripe row. Each consumer thread owns a stripe,
+     * so consumers do not contend on the same row; dates are applied in ascending order regardless.
+     */
+    public void applyStatsDeltas(SortedMap<LocalDate, DailyStatsDelta> deltas, int stripe) {
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        deltas.forEach((date, delta) -> batch.add(new Object[]{Date.valueOf(date), stripe, delta.count(), delta.volume().minorUnits()}));
+        jdbcTemplate.batchUpdate(UPSERT_STATS_SQL, batch);
+    }
+}
@@ -0,0 +1,136 @@
+package com.poalim.mybank.events.repository;
+
+import com.poalim.mybank.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Balance checkpoints over ledger_entries. A checkpoint holds the sum of every entry of an account with
+ * {@code timestamp <= as_of}, so an as-of balance only has to add the entries after the nearest one.
+ * <p>
+ * Checkpoints stay exact when entries arrive late: the ledger consumers hold a shared advisory lock while
+ * they insert entries and delete any checkpoint at or after the earliest entry they wrote, and the
+ * compactor takes the same lock exclusively, so it never sums a snapshot that misses in-flight entries.
+ */
+@Repository
+public class LedgerCheckpointJdbcRepository {
+
+    private static final long CHECKPOINT_LOCK_KEY = 0x4c65646765724350L;
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String BALANCE_AS_OF_SQL =
+            "WITH cp AS (" +
+            "  SELECT as_of, balance FROM ledger_balance_checkpoint " +
+            "  WHERE account_id = ? AND as_of <= ? ORDER BY as_of DESC LIMIT 1) " +
+            "SELECT (SELECT balance FROM cp) AS checkpoint_balance, " +
+            "       (SELECT SUM(amount)::BIGINT FROM ledger_entries " +
+            "        WHERE account_id = ? AND timestamp <= ? " +
+            "          AND timestamp > COALESCE((SELECT as_of FROM cp), '-infinity'::timestamp)) AS delta";
+    private static final String COMPACT_SQL =
+            "INSERT INTO ledger_balance_checkpoint (account_id, as_of, balance, entry_count) " +
+            "SELECT a.account_id, ?, COALESCE(cp.balance, 0) + s.amount, COALESCE(cp.entry_count, 0) + s.entries " +
+            "FROM (SELECT DISTINCT account_id FROM ledger_entries WHERE timestamp > ? AND timestamp <= ?) a " +
+            "LEFT JOIN LATERAL (" +
+            "  SELECT as_of, balance, entry_count FROM ledger_balance_checkpoint c " +
+            "  WHERE c.account_id = a.account_id ORDER BY as_of DESC LIMIT 1) cp ON TRUE " +
+            "CROSS JOIN LATERAL (" +
+            "  SELECT SUM(amount)::BIGINT AS amount, COUNT(*) AS entries FROM ledger_entries e " +
+            "  WHERE e.account_id = a.account_id AND e.timestamp <= ? " +
+            "    AND e.timestamp > COALESCE(cp.as_of, '-infinity'::timestamp)) s " +
+            "WHERE s.entries >= ? " +
+            "ON CONFLICT (account_id, as_of) DO NOTHING";
+    private static final String INVALIDATE_SQL =
+            "DELETE FROM ledger_balance_checkpoint c " +
+            "USING unnest(?::bigint[], ?::timestamp[]) AS e(account_id, earliest) " +
+            "WHERE c.account_id = e.account_id AND c.as_of >= e.earliest";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerCheckpointJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the account's ledger balance as of the given time, or null if it has no entries up to then
+     */
+    public Money balanceAsOf(Long accountId, LocalDateTime asOf) {
+        Timestamp at = Timestamp.valueOf(asOf);
+        return jdbcTemplate.queryForObject(BALANCE_AS_OF_SQL, (rs, rowNum) -> {
+            long checkpoint = rs.getLong("checkpoint_balance");
+            boolean noCheckpoint = rs.wasNull();
+            long delta = rs.getLong("delta");
+            if (noCheckpoint && rs.wasNull()) {
+                return null;
+            }
+            return Money.ofMinor(Math.addExact(checkpoint, delta));
+        }, accountId, at, accountId, at);
+    }
+
+    /**
+     * Writes a checkpoint at {@code horizon} for every account that had entries in {@code (from, horizon]}
+     * and has at least {@code minEntries} entries since its previous checkpoint. Must run after
+     * {@link #lockForCompaction()} in the same transaction.
+     *
+     * @return number of checkpoints written
+     */
+    public int compact(LocalDateTime from, LocalDateTime horizon, int minEntries) {
+        Timestamp end = Timestamp.valueOf(horizon);
+        return jdbcTemplate.update(COMPACT_SQL, end, Timestamp.valueOf(from), end, end, minEntries);
+    }
+
+    /**
+     * @return the newest checkpoint time, or the start of the epoch if there is none yet
+     */
+    public LocalDateTime latestCheckpoint() {
+        Timestamp latest = jdbcTemplate.queryForObject(
+                "SELECT MAX(as_of) FROM ledger_balance_checkpoint", Timestamp.class);
+        return Optional.ofNullable(latest).map(Timestamp::toLocalDateTime).orElse(BEGINNING);
+    }
+
+    /**
+     * @return the time of the earliest entry after {@code from}, or null if there is none
+     */
+    public LocalDateTime earliestEntryAfter(LocalDateTime from) {
+        Timestamp earliest = jdbcTemplate.queryForObject(
+                "SELECT MIN(timestamp) FROM ledger_entries WHERE timestamp > ?", Timestamp.class,
+                Timestamp.valueOf(from));
+        return earliest != null ? earliest.toLocalDateTime() : null;
+    }
+
+    /**
+     * Drops checkpoints that no longer include every entry, given the earliest new entry per account.
+     */
+    public void invalidateFrom(Map<Long, LocalDateTime> earliestEntryByAccount) {
+        if (earliestEntryByAccount.isEmpty()) {
+            return;
+        }
+        Long[] accountIds = new Long[earliestEntryByAccount.size()];
+        Timestamp[] timestamps = new Timestamp[earliestEntryByAccount.size()];
+        int i = 0;
+        for (Map.Entry<Long, LocalDateTime> entry : earliestEntryByAccount.entrySet()) {
+            accountIds[i] = entry.getKey();
+            timestamps[i] = Timestamp.valueOf(entry.getValue());
+            i++;
+        }
+        jdbcTemplate.update(INVALIDATE_SQL, accountIds, timestamps);
+    }
+
+    /**
+     * Taken by ledger writers for the rest of their transaction; any number of writers may hold it at once.
+     */
+    public void lockAgainstCompaction() {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock_shared(?)", CHECKPOINT_LOCK_KEY);
+    }
+
+    /**
+     * Waits until no ledger writer is in flight and keeps them out until the transaction ends.
+     */
+    public void lockForCompaction() {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", CHECKPOINT_LOCK_KEY);
+    }
+}
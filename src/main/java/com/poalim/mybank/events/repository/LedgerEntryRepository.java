@@ -6,21 +6,26 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @Repository
 public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
-    List<LedgerEntry> findByTransactionId(String transactionId);
-    List<LedgerEntry> findByAccountId(String accountId);
+    List<LedgerEntry> findByTransactionId(UUID transactionId);
+    List<LedgerEntry> findByAccountId(Long accountId);
     
-    @Query("SELECT SUM(l.amount) FROM LedgerEntry l WHERE l.accountId = :accountId AND l.timestamp <= :asOf")
-    BigDecimal getAccountBalanceAsOf(@Param("accountId") String accountId, @Param("asOf") LocalDateTime asOf);
+    /**
+     * Sums the account's whole history, in minor units; see {@link LedgerCheckpointJdbcRepository#balanceAsOf}
+     * for the checkpointed version.
+     */
+    @Query(value = "SELECT CAST(SUM(amount) AS BIGINT) FROM ledger_entries WHERE account_id = :accountId AND timestamp <= :asOf",
+            nativeQuery = true)
+    Long getAccountBalanceAsOf(@Param("accountId") Long accountId, @Param("asOf") LocalDateTime asOf);
     
     @Query("SELECT l FROM LedgerEntry l WHERE l.accountId = :accountId AND l.timestamp BETWEEN :startDate AND :endDate")
     List<LedgerEntry> findAccountEntriesBetween(
-        @Param("accountId") String accountId,
+        @Param("accountId") Long accountId,
         @Param("startDate") LocalDateTime startDate,
         @Param("endDate") LocalDateTime endDate
     );
@@ -0,0 +1,39 @@
+package com.poalim.mybank.events.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Monthly partitions of the time-partitioned ledger tables, created by the ensure_monthly_partitions
+ * database function.
+ */
+@Repository
+public class LedgerPartitionJdbcRepository {
+
+    static final List<String> PARTITIONED_TABLES = List.of("ledger_entries", "audit_log");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerPartitionJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Makes sure every month from {@code from} to {@code to} has its own partition in each table, moving any
+     * rows of a new month out of the default partition.
+     *
+     * @return number of partitions created
+     */
+    public int ensureMonthlyPartitions(LocalDate from, LocalDate to) {
+        int created = 0;
+        for (String table : PARTITIONED_TABLES) {
+            Integer count = jdbcTemplate.queryForObject("SELECT ensure_monthly_partitions(?, ?, ?)",
+                    Integer.class, table, from, to);
+            created += count != null ? count : 0;
+        }
+        return created;
+    }
+}
@@ -0,0 +1,52 @@
+package com.poalim.mybank.events.repository;
+
+import com.poalim.mybank.events.entity.LedgerEntry;
+import com.poalim.mybank.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+@Repository
+public class LedgerStatementJdbcRepository {
+
+    private static final String ENTRIES_SQL =
+            "SELECT id, transaction_id, amount, timestamp, entry_type FROM ledger_entries " +
+            "WHERE account_id = ? AND timestamp >= ? AND timestamp < ? ORDER BY timestamp, id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerStatementJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Hands the account's entries in {@code [from, to)} to the consumer in ledger order, reading them through
+     * a server-side cursor. Must run inside a transaction, otherwise the driver fetches the whole result at once.
+     * The same entry instance is reused for every row.
+     */
+    public void streamEntries(Long accountId, LocalDateTime from, LocalDateTime to, int fetchSize,
+                              Consumer<LedgerEntry> consumer) {
+        LedgerEntry entry = new LedgerEntry();
+        entry.setAccountId(accountId);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ENTRIES_SQL);
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, accountId);
+            statement.setTimestamp(2, Timestamp.valueOf(from));
+            statement.setTimestamp(3, Timestamp.valueOf(to));
+            return statement;
+        }, resultSet -> {
+            entry.setId(resultSet.getLong(1));
+            entry.setTransactionId(resultSet.getObject(2, UUID.class));
+            entry.setAmount(Money.ofMinor(resultSet.getLong(3)));
+            entry.setTimestamp(resultSet.getTimestamp(4).toLocalDateTime());
+            entry.setEntryType(resultSet.getString(5));
+            consumer.accept(entry);
+        });
+    }
+}
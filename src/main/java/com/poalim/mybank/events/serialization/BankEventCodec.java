@@ -0,0 +1,303 @@
+package com.poalim.mybank.events.serialization;
+
+import com.poalim.mybank.events.DepositCompletedEvent;
+import com.poalim.mybank.events.TransactionCompletedEvent;
+import com.poalim.mybank.money.Money;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of the bank events. A payload starts with the schema version and the event type,
+ * followed by the event's fields in record order:
+ * <ul>
+ *     <li>ids (transaction and account ids): a kind byte, then an unsigned varint for a number written
+ *     without leading zeros, 16 bytes for a lower-case UUID, or a varint length and UTF-8 for anything else;
+ *     {@code null} is kind 0 alone</li>
+ *     <li>amounts: the scale and the unscaled value as zig-zag varints. Written as scale 2 and the
+ *     {@link Money} minor units; any other scale is read as long as it is a whole number of minor units</li>
+ *     <li>timestamps: microseconds since the epoch, reading the {@code LocalDateTime} as UTC, as a zig-zag
+ *     varint; anything finer than a microsecond is dropped, as in the database</li>
+ * </ul>
+ * Amounts and timestamps are required. A transfer event takes 37 bytes, against 223 as JSON with its type header.
+ * <p>
+ * Version 1 is the only version. Changing an event's fields needs a new version that this class can still
+ * decode version 1 next to, so that consumers can be upgraded before producers switch over.
+ */
+public final class BankEventCodec {
+
+    public static final byte VERSION = 1;
+
+    static final byte TRANSACTION_COMPLETED = 1;
+    static final byte DEPOSIT_COMPLETED = 2;
+
+    private static final byte NULL = 0;
+    private static final byte NUMBER = 1;
+    private static final byte UUID_BYTES = 2;
+    private static final byte TEXT = 3;
+
+    private BankEventCodec() {
+    }
+
+    public static byte[] encode(Object event) {
+        if (event instanceof TransactionCompletedEvent transaction) {
+            Output out = new Output(48);
+            out.writeByte(VERSION);
+            out.writeByte(TRANSACTION_COMPLETED);
+            out.writeId(transaction.transactionId());
+            out.writeId(transaction.sourceAccountId());
+            out.writeId(transaction.targetAccountId());
+            out.writeAmount(transaction.amount());
+            out.writeTimestamp(transaction.timestamp());
+            return out.toByteArray();
+        }
+        if (event instanceof DepositCompletedEvent deposit) {
+            Output out = new Output(40);
+            out.writeByte(VERSION);
+            out.writeByte(DEPOSIT_COMPLETED);
+            out.writeId(deposit.transactionId());
+            out.writeId(deposit.accountId());
+            out.writeAmount(deposit.amount());
+            out.writeTimestamp(deposit.timestamp());
+            return out.toByteArray();
+        }
+        throw new SerializationException("No binary encoding for " +
+                (event == null ? "null" : event.getClass().getName()));
+    }
+
+    public static Object decode(byte[] data) {
+        Input in = new Input(data);
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new SerializationException("Unsupported bank event schema version " + version +
+                    ", this consumer reads version " + VERSION);
+        }
+        byte type = in.readByte();
+        Object event = switch (type) {
+            case TRANSACTION_COMPLETED -> new TransactionCompletedEvent(in.readId(), in.readId(), in.readId(),
+                    in.readAmount(), in.readTimestamp());
+            case DEPOSIT_COMPLETED -> new DepositCompletedEvent(in.readId(), in.readId(), in.readAmount(),
+                    in.readTimestamp());
+            default -> throw new SerializationException("Unknown bank event type " + type);
+        };
+        if (!in.isFullyRead()) {
+            throw new SerializationException("Trailing bytes after bank event of type " + type);
+        }
+        return event;
+    }
+
+    /**
+     * @return the value of a non-negative decimal number without leading zeros, or -1 if {@code id} is not one
+     * or does not fit a {@code long}
+     */
+    static long numericId(String id) {
+        int length = id.length();
+        if (length == 0 || length > 19 || (id.charAt(0) == '0' && length > 1)) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = id.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return whether {@code id} is a UUID in the lower-case form {@link UUID#toString()} produces
+     */
+    static boolean isUuid(String id) {
+        if (id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            boolean valid = i == 8 || i == 13 || i == 18 || i == 23
+                    ? c == '-'
+                    : (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Output {
+
+        private byte[] buffer;
+        private int position;
+
+        Output(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeId(String id) {
+            if (id == null) {
+                writeByte(NULL);
+                return;
+            }
+            long number = numericId(id);
+            if (number >= 0) {
+                writeByte(NUMBER);
+                writeVarLong(number);
+            } else if (isUuid(id)) {
+                UUID uuid = UUID.fromString(id);
+                writeByte(UUID_BYTES);
+                writeLong(uuid.getMostSignificantBits());
+                writeLong(uuid.getLeastSignificantBits());
+            } else {
+                byte[] text = id.getBytes(StandardCharsets.UTF_8);
+                writeByte(TEXT);
+                writeVarLong(text.length);
+                ensure(text.length);
+                System.arraycopy(text, 0, buffer, position, text.length);
+                position += text.length;
+            }
+        }
+
+        void writeAmount(Money amount) {
+            if (amount == null) {
+                throw new SerializationException("Bank event amount is required");
+            }
+            writeZigZag(Money.SCALE);
+            writeZigZag(amount.minorUnits());
+        }
+
+        void writeTimestamp(LocalDateTime timestamp) {
+            if (timestamp == null) {
+                throw new SerializationException("Bank event timestamp is required");
+            }
+            writeZigZag(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] data;
+        private int position;
+
+        Input(byte[] data) {
+            this.data = data;
+        }
+
+        byte readByte() {
+            if (position >= data.length) {
+                throw new SerializationException("Bank event is truncated");
+            }
+            return data[position++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in bank event");
+        }
+
+        long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | (readByte() & 0xFF);
+            }
+            return value;
+        }
+
+        String readId() {
+            byte kind = readByte();
+            return switch (kind) {
+                case NULL -> null;
+                case NUMBER -> Long.toString(readVarLong());
+                case UUID_BYTES -> new UUID(readLong(), readLong()).toString();
+                case TEXT -> {
+                    long length = readVarLong();
+                    if (length < 0 || length > data.length - position) {
+                        throw new SerializationException("Bank event is truncated");
+                    }
+                    String text = new String(data, position, (int) length, StandardCharsets.UTF_8);
+                    position += (int) length;
+                    yield text;
+                }
+                default -> throw new SerializationException("Unknown id kind " + kind + " in bank event");
+            };
+        }
+
+        Money readAmount() {
+            long scale = readZigZag();
+            if (scale < Integer.MIN_VALUE || scale > Integer.MAX_VALUE) {
+                throw new SerializationException("Malformed amount scale in bank event");
+            }
+            long unscaled = readZigZag();
+            if (scale == Money.SCALE) {
+                return Money.ofMinor(unscaled);
+            }
+            try {
+                return Money.of(BigDecimal.valueOf(unscaled, (int) scale));
+            } catch (ArithmeticException e) {
+                throw new SerializationException(e.getMessage(), e);
+            }
+        }
+
+        LocalDateTime readTimestamp() {
+            long micros = readZigZag();
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                    (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+        }
+
+        boolean isFullyRead() {
+            return position == data.length;
+        }
+    }
+}
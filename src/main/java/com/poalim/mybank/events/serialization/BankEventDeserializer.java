@@ -0,0 +1,55 @@
+package com.poalim.mybank.events.serialization;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Map;
+
+/**
+ * Kafka value deserializer for topics that carry bank events in the {@link BankEventCodec} format. Records
+ * that are still JSON, written before the topic's producers were switched over, are handed to a
+ * {@link JsonDeserializer} configured like the default one, so a topic can move to the binary format without
+ * draining it first. A binary record of a schema version this consumer does not know fails to deserialize.
+ */
+public class BankEventDeserializer implements Deserializer<Object> {
+
+    private final JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonDeserializer.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        return isJson(data) ? jsonDeserializer.deserialize(topic, data) : BankEventCodec.decode(data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        return isJson(data) ? jsonDeserializer.deserialize(topic, headers, data) : BankEventCodec.decode(data);
+    }
+
+    @Override
+    public void close() {
+        jsonDeserializer.close();
+    }
+
+    /**
+     * A binary payload starts with its schema version, which is never {@code '{'} nor JSON whitespace.
+     */
+    static boolean isJson(byte[] data) {
+        if (data.length == 0) {
+            return false;
+        }
+        byte first = data[0];
+        return first == '{' || first == ' ' || first == '\t' || first == '\n' || first == '\r';
+    }
+}
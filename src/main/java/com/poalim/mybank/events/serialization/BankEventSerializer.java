@@ -0,0 +1,16 @@
+package com.poalim.mybank.events.serialization;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka value serializer writing bank events in the {@link BankEventCodec} format. Used per topic through
+ * {@code DelegatingByTopicSerializer}, see {@code application.properties}; switch a topic's producers over
+ * only once all of its consumers read the binary format with {@link BankEventDeserializer}.
+ */
+public class BankEventSerializer implements Serializer<Object> {
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return data == null ? null : BankEventCodec.encode(data);
+    }
+}
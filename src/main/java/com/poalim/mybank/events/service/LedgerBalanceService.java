@@ -0,0 +1,31 @@
+package com.poalim.mybank.events.service;
+
+import com.poalim.mybank.events.controller.LedgerBalanceResponse;
+import com.poalim.mybank.events.repository.LedgerCheckpointJdbcRepository;
+import com.poalim.mybank.money.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Service
+public class LedgerBalanceService {
+
+    private final LedgerCheckpointJdbcRepository ledgerCheckpointJdbcRepository;
+
+    @Autowired
+    public LedgerBalanceService(LedgerCheckpointJdbcRepository ledgerCheckpointJdbcRepository) {
+        this.ledgerCheckpointJdbcRepository = ledgerCheckpointJdbcRepository;
+    }
+
+    /**
+     * Balance according to the ledger, i.e. the sum of every entry of the account up to {@code asOf}.
+     * Accounts without entries have a zero balance.
+     */
+    @Transactional(readOnly = true)
+    public LedgerBalanceResponse getBalanceAsOf(Long accountId, LocalDateTime asOf) {
+        Money balance = ledgerCheckpointJdbcRepository.balanceAsOf(accountId, asOf);
+        return new LedgerBalanceResponse(accountId, asOf, balance != null ? balance : Money.ZERO);
+    }
+}
@@ -0,0 +1,72 @@
+package com.poalim.mybank.events.service;
+
+import com.poalim.mybank.events.entity.AuditLog;
+import com.poalim.mybank.events.entity.LedgerEntry;
+import com.poalim.mybank.events.repository.DailyStatsDelta;
+import com.poalim.mybank.id.TransactionIds;
+import com.poalim.mybank.money.Money;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Rows produced by projecting a batch of bank events, written together by {@link LedgerBatchProcessor}.
+ */
+public class LedgerBatch {
+
+    private final List<AuditLog> auditLogs = new ArrayList<>();
+    private final List<LedgerEntry> ledgerEntries = new ArrayList<>();
+    private final SortedMap<LocalDate, DailyStatsDelta> statsDeltas = new TreeMap<>();
+
+    public void addAuditLog(String transactionId, String sourceAccountId, String targetAccountId,
+                            Money amount, LocalDateTime timestamp, String eventType) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setTransactionId(TransactionIds.parse(transactionId));
+        auditLog.setSourceAccountId(accountId(sourceAccountId));
+        auditLog.setTargetAccountId(accountId(targetAccountId));
+        auditLog.setAmount(amount);
+        auditLog.setTimestamp(timestamp);
+        auditLog.setEventType(eventType);
+        auditLogs.add(auditLog);
+    }
+
+    public void addLedgerEntry(String transactionId, String accountId, Money amount,
+                               LocalDateTime timestamp, String entryType) {
+        LedgerEntry entry = new LedgerEntry();
+        entry.setTransactionId(TransactionIds.parse(transactionId));
+        entry.setAccountId(accountId(accountId));
+        entry.setAmount(amount);
+        entry.setTimestamp(timestamp);
+        entry.setEntryType(entryType);
+        ledgerEntries.add(entry);
+    }
+
+    public void addTraffic(LocalDate date, Money amount) {
+        statsDeltas.merge(date, new DailyStatsDelta(1, amount),
+                (current, ignored) -> current.plus(amount));
+    }
+
+    /**
+     * Account ids travel as strings in events but are stored as numbers; an event with an account id that is not
+     * a number fails its record.
+     */
+    private static Long accountId(String accountId) {
+        return accountId != null ? Long.valueOf(accountId) : null;
+    }
+
+    List<AuditLog> getAuditLogs() {
+        return auditLogs;
+    }
+
+    List<LedgerEntry> getLedgerEntries() {
+        return ledgerEntries;
+    }
+
+    SortedMap<LocalDate, DailyStatsDelta> getStatsDeltas() {
+        return statsDeltas;
+    }
+}
@@ -0,0 +1,300 @@
+package com.poalim.mybank.events.service;
+
+import com.poalim.mybank.events.entity.LedgerEntry;
+import com.poalim.mybank.events.repository.LedgerBatchJdbcRepository;
+import com.poalim.mybank.events.repository.LedgerCheckpointJdbcRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Projects a poll's worth of bank events into the ledger tables in one transaction:
+ * dedupe and mark-as-processed in a single statement, batch inserts for audit and ledger rows,
+ * and one aggregated stats delta per date, added to the consumer thread's own stats stripe.
+ * Balance checkpoints that a late entry falls before are dropped in the same transaction.
+ * <p>
+ * If the batch fails, each record is retried in its own transaction. The first record that still fails
+ * is reported with a {@link BatchListenerFailedException}, so the container's error handler commits the
+ * records before it and routes it to the dead letter topic once its retries are exhausted.
+ * <p>
+ * With {@code mybank.ledger.workers} above 1, a poll is split into lanes by record key, i.e. by account, and
+ * the lanes are written in parallel on a worker pool, each in its own transaction and in record order. One
+ * account's events therefore stay in order while a partition is processed by several threads. The listener
+ * returns once every lane is done; if lanes failed, the lowest failing record is reported, so only the records
+ * before it are committed and everything from it on is redelivered. Records of other lanes that were already
+ * written are skipped on redelivery by the dedupe claim.
+ * <p>
+ * Each poll is timed as {@code ledger.batch} and each step of the projection as {@code ledger.batch.stage},
+ * both tagged with the topic.
+ */
+@Service
+@Slf4j
+public class LedgerBatchProcessor implements SmartLifecycle {
+
+    private final LedgerBatchJdbcRepository ledgerBatchJdbcRepository;
+    private final LedgerCheckpointJdbcRepository ledgerCheckpointJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicInteger nextStripe = new AtomicInteger();
+    private final ThreadLocal<Integer> stripe;
+    private final Meter.MeterProvider<Timer> batchTimer;
+    private final Meter.MeterProvider<Timer> stageTimer;
+    private final Meter.MeterProvider<DistributionSummary> batchSize;
+    private final int workers;
+
+    private volatile ExecutorService workerPool;
+
+    @Autowired
+    public LedgerBatchProcessor(LedgerBatchJdbcRepository ledgerBatchJdbcRepository,
+                                LedgerCheckpointJdbcRepository ledgerCheckpointJdbcRepository,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${mybank.stats.stripes:16}") int stripes,
+                                @Value("${mybank.ledger.workers:1}") int workers) {
+        this.ledgerBatchJdbcRepository = ledgerBatchJdbcRepository;
+        this.ledgerCheckpointJdbcRepository = ledgerCheckpointJdbcRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stripe = ThreadLocal.withInitial(() -> nextStripe.getAndIncrement() % stripes);
+        this.workers = workers;
+
+        this.batchTimer = Timer.builder("ledger.batch")
+                .description("Processing time of one poll, by whether it committed as a batch or per record")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+        this.stageTimer = Timer.builder("ledger.batch.stage")
+                .description("Time spent in each step of projecting a batch")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+        this.batchSize = DistributionSummary.builder("ledger.batch.size")
+                .description("Records per poll")
+                .baseUnit("records")
+                .withRegistry(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        if (workers > 1) {
+            AtomicInteger index = new AtomicInteger();
+            workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "ledger-worker-" + index.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public void stop() {
+        ExecutorService pool = workerPool;
+        workerPool = null;
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return workerPool != null;
+    }
+
+    /**
+     * Start before and stop after the listener containers, so no poll finds the worker pool missing.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    public <E> void process(List<ConsumerRecord<String, E>> records,
+                            Function<E, String> transactionIdOf,
+                            BiConsumer<E, LedgerBatch> projector) {
+        if (records.isEmpty()) {
+            return;
+        }
+        String topic = records.get(0).topic();
+        batchSize.withTags("topic", topic).record(records.size());
+        long start = System.nanoTime();
+        String outcome = "batch";
+        try {
+            LaneResult failed = null;
+            for (LaneResult result : processLanes(topic, records, transactionIdOf, projector)) {
+                if (result.failure() != null) {
+                    if (failed == null || result.failedIndex() < failed.failedIndex()) {
+                        failed = result;
+                    }
+                } else if (result.perRecord()) {
+                    outcome = "per_record";
+                }
+            }
+            if (failed != null) {
+                outcome = "failed";
+                throw new BatchListenerFailedException("Failed to process record", failed.failure(),
+                        failed.failedIndex());
+            }
+        } finally {
+            batchTimer.withTags("topic", topic, "outcome", outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <E> List<LaneResult> processLanes(String topic, List<ConsumerRecord<String, E>> records,
+                                              Function<E, String> transactionIdOf,
+                                              BiConsumer<E, LedgerBatch> projector) {
+        ExecutorService pool = workerPool;
+        List<List<Integer>> lanes = lanes(records, transactionIdOf, pool == null ? 1 : workers);
+        if (lanes.size() == 1) {
+            return List.of(processLane(topic, records, lanes.get(0), transactionIdOf, projector));
+        }
+        List<CompletableFuture<LaneResult>> running = new ArrayList<>(lanes.size());
+        for (List<Integer> lane : lanes) {
+            Supplier<LaneResult> task = () -> processLane(topic, records, lane, transactionIdOf, projector);
+            try {
+                running.add(CompletableFuture.supplyAsync(task, pool));
+            } catch (RejectedExecutionException e) {
+                // shutting down: write the lane on the listener thread
+                running.add(CompletableFuture.completedFuture(task.get()));
+            }
+        }
+        List<LaneResult> results = new ArrayList<>(lanes.size());
+        for (CompletableFuture<LaneResult> lane : running) {
+            results.add(lane.join());
+        }
+        return results;
+    }
+
+    /**
+     * Writes the lane's records in one transaction, or one by one if that fails, stopping at the first record
+     * that fails on its own.
+     */
+    private <E> LaneResult processLane(String topic, List<ConsumerRecord<String, E>> records, List<Integer> lane,
+                                       Function<E, String> transactionIdOf, BiConsumer<E, LedgerBatch> projector) {
+        List<E> events = new ArrayList<>(lane.size());
+        for (int index : lane) {
+            events.add(records.get(index).value());
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(topic, events, transactionIdOf, projector));
+            return LaneResult.BATCH;
+        } catch (Exception batchFailure) {
+            log.warn("Batch of {} records failed, falling back to per-record processing: {}",
+                    events.size(), batchFailure.getMessage());
+        }
+        for (int index : lane) {
+            E event = records.get(index).value();
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(topic, List.of(event), transactionIdOf, projector));
+            } catch (Exception recordFailure) {
+                return new LaneResult(true, index, recordFailure);
+            }
+        }
+        return LaneResult.PER_RECORD;
+    }
+
+    /**
+     * Splits the poll into at most {@code count} lanes of record indexes by key, keeping the poll's order in
+     * each lane. Records without a key, published before events were keyed by account, go by transaction id.
+     */
+    static <E> List<List<Integer>> lanes(List<ConsumerRecord<String, E>> records, Function<E, String> transactionIdOf,
+                                         int count) {
+        int laneCount = Math.max(1, Math.min(count, records.size()));
+        List<List<Integer>> lanes = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            lanes.add(new ArrayList<>(records.size() / laneCount + 1));
+        }
+        for (int i = 0; i < records.size(); i++) {
+            if (laneCount == 1) {
+                lanes.get(0).add(i);
+                continue;
+            }
+            ConsumerRecord<String, E> record = records.get(i);
+            String key = record.key() != null ? record.key() : transactionIdOf.apply(record.value());
+            lanes.get(Math.floorMod(key.hashCode(), laneCount)).add(i);
+        }
+        lanes.removeIf(List::isEmpty);
+        return lanes;
+    }
+
+    private <E> void write(String topic, List<E> events, Function<E, String> transactionIdOf,
+                           BiConsumer<E, LedgerBatch> projector) {
+        // Later duplicates inside the same poll are dropped here, earlier deliveries by the claim
+        Map<String, E> byTransactionId = new LinkedHashMap<>();
+        for (E event : events) {
+            byTransactionId.putIfAbsent(transactionIdOf.apply(event), event);
+        }
+
+        Set<String> claimed = stage(topic, "claim").record(
+                () -> ledgerBatchJdbcRepository.claimUnprocessed(byTransactionId.keySet(), LocalDateTime.now()));
+        if (claimed.size() < byTransactionId.size()) {
+            log.info("Skipping {} already processed events", byTransactionId.size() - claimed.size());
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        LedgerBatch batch = new LedgerBatch();
+        stage(topic, "project").record(() -> byTransactionId.forEach((transactionId, event) -> {
+            if (claimed.contains(transactionId)) {
+                projector.accept(event, batch);
+            }
+        }));
+
+        stage(topic, "audit_log").record(() -> ledgerBatchJdbcRepository.insertAuditLogs(batch.getAuditLogs()));
+        if (!batch.getLedgerEntries().isEmpty()) {
+            stage(topic, "ledger_entries").record(() -> {
+                ledgerCheckpointJdbcRepository.lockAgainstCompaction();
+                ledgerBatchJdbcRepository.insertLedgerEntries(batch.getLedgerEntries());
+                ledgerCheckpointJdbcRepository.invalidateFrom(earliestEntryByAccount(batch.getLedgerEntries()));
+            });
+        }
+        stage(topic, "stats").record(() -> ledgerBatchJdbcRepository.applyStatsDeltas(batch.getStatsDeltas(), stripe.get()));
+    }
+
+    private Timer stage(String topic, String stage) {
+        return stageTimer.withTags("topic", topic, "stage", stage);
+    }
+
+    private static Map<Long, LocalDateTime> earliestEntryByAccount(List<LedgerEntry> entries) {
+        Map<Long, LocalDateTime> earliest = new HashMap<>();
+        for (LedgerEntry entry : entries) {
+            earliest.merge(entry.getAccountId(), entry.getTimestamp(),
+                    (current, candidate) -> candidate.isBefore(current) ? candidate : current);
+        }
+        return earliest;
+    }
+
+    private record LaneResult(boolean perRecord, int failedIndex, Exception failure) {
+
+        static final LaneResult BATCH = new LaneResult(false, -1, null);
+        static final LaneResult PER_RECORD = new LaneResult(true, -1, null);
+    }
+}
@@ -0,0 +1,132 @@
+package com.poalim.mybank.events.service;
+
+import com.poalim.mybank.events.repository.LedgerCheckpointJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes balance checkpoints for busy accounts. Each run only looks at accounts with entries
+ * since the previous run's horizon, and sums each of them from its own latest checkpoint. A run covers at most
+ * {@code maxWindowMs} of ledger time, so the exclusive lock is short even when there is a backlog; the
+ * scheduled task repeats runs until it has caught up.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(LedgerCheckpointProperties.class)
+public class LedgerCheckpointCompactor implements SmartLifecycle {
+
+    private final LedgerCheckpointJdbcRepository ledgerCheckpointJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerCheckpointProperties properties;
+    private final Counter checkpoints;
+
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+    private LocalDateTime lastHorizon;
+
+    @Autowired
+    public LedgerCheckpointCompactor(LedgerCheckpointJdbcRepository ledgerCheckpointJdbcRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     LedgerCheckpointProperties properties,
+                                     MeterRegistry meterRegistry) {
+        this.ledgerCheckpointJdbcRepository = ledgerCheckpointJdbcRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.checkpoints = Counter.builder("ledger.checkpoint.created").register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-checkpoint-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::compactSafely, properties.getIntervalMs(),
+                properties.getIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Covers the next window of ledger time up to the settle-lag horizon.
+     *
+     * @return number of checkpoints written
+     */
+    int compact(LocalDateTime now) {
+        LocalDateTime horizon = horizon(now);
+        LocalDateTime from = lastHorizon != null ? lastHorizon : ledgerCheckpointJdbcRepository.latestCheckpoint();
+        if (!horizon.isAfter(from)) {
+            lastHorizon = from;
+            return 0;
+        }
+        LocalDateTime earliest = ledgerCheckpointJdbcRepository.earliestEntryAfter(from);
+        if (earliest == null || earliest.isAfter(horizon)) {
+            lastHorizon = horizon;
+            return 0;
+        }
+        LocalDateTime end = earliest.plusNanos(TimeUnit.MILLISECONDS.toNanos(properties.getMaxWindowMs()));
+        LocalDateTime to = end.isBefore(horizon) ? end : horizon;
+        Integer written = transactionTemplate.execute(status -> {
+            ledgerCheckpointJdbcRepository.lockForCompaction();
+            return ledgerCheckpointJdbcRepository.compact(from, to, properties.getMinEntries());
+        });
+        lastHorizon = to;
+        int count = written != null ? written : 0;
+        checkpoints.increment(count);
+        return count;
+    }
+
+    /**
+     * @return whether the last run reached the horizon for {@code now}
+     */
+    boolean caughtUp(LocalDateTime now) {
+        return lastHorizon != null && !lastHorizon.isBefore(horizon(now));
+    }
+
+    private LocalDateTime horizon(LocalDateTime now) {
+        return now.minusNanos(TimeUnit.MILLISECONDS.toNanos(properties.getSettleLagMs()));
+    }
+
+    private void compactSafely() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int written = 0;
+            do {
+                written += compact(now);
+            } while (running && !caughtUp(now));
+            if (written > 0) {
+                log.info("Wrote {} ledger balance checkpoints", written);
+            }
+        } catch (Exception e) {
+            log.error("Ledger checkpoint compaction failed: {}", e.getMessage());
+        }
+    }
+}
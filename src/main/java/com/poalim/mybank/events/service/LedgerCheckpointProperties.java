@@ -0,0 +1,34 @@
+package com.poalim.mybank.events.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "mybank.ledger.checkpoint")
+public class LedgerCheckpointProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Time between compaction runs.
+     */
+    private long intervalMs = 60_000;
+
+    /**
+     * Checkpoints are only written this far behind the current time, so that entries still in flight
+     * rarely land before a checkpoint and invalidate it.
+     */
+    private long settleLagMs = 300_000;
+
+    /**
+     * Entries an account needs since its previous checkpoint before a new one is worth writing.
+     */
+    private int minEntries = 1_000;
+
+    /**
+     * Longest stretch of ledger time one run covers, starting at its earliest uncovered entry. Ledger writers
+     * wait for the whole run, so a backlog (the first run, or one after a long pause) is worked off in several
+     * short runs rather than one long one.
+     */
+    private long maxWindowMs = 3_600_000;
+}
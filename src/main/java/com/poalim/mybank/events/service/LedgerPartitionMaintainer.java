@@ -0,0 +1,90 @@
+package com.poalim.mybank.events.service;
+
+import com.poalim.mybank.events.repository.LedgerPartitionJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the monthly partitions of ledger_entries and audit_log ahead of time. Entries for a month without
+ * a partition still go to the default partition, but queries can no longer prune them by time.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(LedgerPartitionProperties.class)
+public class LedgerPartitionMaintainer implements SmartLifecycle {
+
+    private final LedgerPartitionJdbcRepository ledgerPartitionJdbcRepository;
+    private final LedgerPartitionProperties properties;
+    private final Counter partitions;
+
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public LedgerPartitionMaintainer(LedgerPartitionJdbcRepository ledgerPartitionJdbcRepository,
+                                     LedgerPartitionProperties properties,
+                                     MeterRegistry meterRegistry) {
+        this.ledgerPartitionJdbcRepository = ledgerPartitionJdbcRepository;
+        this.properties = properties;
+        this.partitions = Counter.builder("ledger.partition.created").register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-partition-maintainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::maintainSafely, 0, properties.getIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return number of partitions created
+     */
+    int maintain(LocalDate today) {
+        LocalDate thisMonth = today.withDayOfMonth(1);
+        int created = ledgerPartitionJdbcRepository.ensureMonthlyPartitions(thisMonth,
+                thisMonth.plusMonths(properties.getMonthsAhead()));
+        partitions.increment(created);
+        return created;
+    }
+
+    private void maintainSafely() {
+        try {
+            int created = maintain(LocalDate.now());
+            if (created > 0) {
+                log.info("Created {} ledger partitions", created);
+            }
+        } catch (Exception e) {
+            log.error("Ledger partition maintenance failed: {}", e.getMessage());
+        }
+    }
+}
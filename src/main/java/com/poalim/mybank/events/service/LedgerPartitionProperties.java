@@ -0,0 +1,22 @@
+package com.poalim.mybank.events.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "mybank.ledger.partitions")
+public class LedgerPartitionProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Time between runs; the first run is at startup.
+     */
+    private long intervalMs = 21_600_000;
+
+    /**
+     * Months after the current one that should already have their partitions, so that entries never fall
+     * into the default partition because a run was missed.
+     */
+    private int monthsAhead = 3;
+}
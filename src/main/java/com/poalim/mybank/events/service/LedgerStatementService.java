@@ -0,0 +1,87 @@
+package com.poalim.mybank.events.service;
+
+import com.poalim.mybank.events.repository.LedgerCheckpointJdbcRepository;
+import com.poalim.mybank.events.repository.LedgerStatementJdbcRepository;
+import com.poalim.mybank.money.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports an account statement from ledger_entries in constant memory: entries are read through a cursor
+ * and written as they arrive, with the running balance computed from the opening balance.
+ */
+@Service
+public class LedgerStatementService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final LedgerCheckpointJdbcRepository ledgerCheckpointJdbcRepository;
+    private final LedgerStatementJdbcRepository ledgerStatementJdbcRepository;
+    private final int fetchSize;
+
+    @Autowired
+    public LedgerStatementService(LedgerCheckpointJdbcRepository ledgerCheckpointJdbcRepository,
+                                  LedgerStatementJdbcRepository ledgerStatementJdbcRepository,
+                                  @Value("${mybank.ledger.statement.fetch-size:5000}") int fetchSize) {
+        this.ledgerCheckpointJdbcRepository = ledgerCheckpointJdbcRepository;
+        this.ledgerStatementJdbcRepository = ledgerStatementJdbcRepository;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Writes the statement for {@code [from, to)}. The opening balance covers every entry before {@code from}.
+     *
+     * @return number of entries written
+     */
+    @Transactional(readOnly = true)
+    public long export(Long accountId, LocalDateTime from, LocalDateTime to, StatementFormat format,
+                       boolean gzip, OutputStream outputStream) throws IOException {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Statement start must be before its end.");
+        }
+        // Timestamps are stored with microsecond precision, so this is "strictly before from"
+        Money opening = ledgerCheckpointJdbcRepository.balanceAsOf(accountId, from.minusNanos(1000));
+        if (opening == null) {
+            opening = Money.ZERO;
+        }
+
+        OutputStream target = gzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : outputStream;
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+        StatementWriter writer = StatementWriter.of(format, out);
+        writer.opening(from, opening);
+
+        Money[] balance = {opening};
+        long[] entries = {0};
+        try {
+            ledgerStatementJdbcRepository.streamEntries(accountId, from, to, fetchSize, entry -> {
+                balance[0] = balance[0].plus(entry.getAmount());
+                entries[0]++;
+                try {
+                    writer.entry(entry, balance[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.closing(to, balance[0], entries[0]);
+        out.flush();
+        if (gzip) {
+            ((GZIPOutputStream) target).finish();
+        }
+        return entries[0];
+    }
+}
@@ -0,0 +1,114 @@
+package com.poalim.mybank.events.service;
+
+import com.poalim.mybank.events.entity.LedgerEntry;
+import com.poalim.mybank.money.Money;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+
+/**
+ * Writes statement lines straight to the output without building intermediate objects.
+ * The opening and closing balances are written as their own lines.
+ */
+abstract class StatementWriter {
+
+    protected final Writer out;
+
+    protected StatementWriter(Writer out) {
+        this.out = out;
+    }
+
+    static StatementWriter of(StatementFormat format, Writer out) {
+        return switch (format) {
+            case CSV -> new Csv(out);
+            case NDJSON -> new Ndjson(out);
+        };
+    }
+
+    abstract void opening(LocalDateTime from, Money balance) throws IOException;
+
+    abstract void entry(LedgerEntry entry, Money balance) throws IOException;
+
+    abstract void closing(LocalDateTime to, Money balance, long entries) throws IOException;
+
+    private static final class Csv extends StatementWriter {
+
+        Csv(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void opening(LocalDateTime from, Money balance) throws IOException {
+            out.write("timestamp,transaction_id,entry_type,amount,balance\n");
+            row(from, "", "OPENING", "", balance);
+        }
+
+        @Override
+        void entry(LedgerEntry entry, Money balance) throws IOException {
+            row(entry.getTimestamp(), entry.getTransactionId().toString(), entry.getEntryType(),
+                    entry.getAmount().toString(), balance);
+        }
+
+        @Override
+        void closing(LocalDateTime to, Money balance, long entries) throws IOException {
+            row(to, "", "CLOSING", "", balance);
+        }
+
+        private void row(LocalDateTime timestamp, String transactionId, String type, String amount,
+                         Money balance) throws IOException {
+            out.write(timestamp.toString());
+            out.write(',');
+            out.write(transactionId);
+            out.write(',');
+            out.write(type);
+            out.write(',');
+            out.write(amount);
+            out.write(',');
+            out.write(balance.toString());
+            out.write('\n');
+        }
+    }
+
+    private static final class Ndjson extends StatementWriter {
+
+        Ndjson(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void opening(LocalDateTime from, Money balance) throws IOException {
+            out.write("{\"type\":\"OPENING\",\"timestamp\":\"");
+            out.write(from.toString());
+            out.write("\",\"balance\":");
+            out.write(balance.toString());
+            out.write("}\n");
+        }
+
+        @Override
+        void entry(LedgerEntry entry, Money balance) throws IOException {
+            out.write("{\"type\":\"");
+            out.write(entry.getEntryType());
+            out.write("\",\"timestamp\":\"");
+            out.write(entry.getTimestamp().toString());
+            out.write("\",\"transactionId\":\"");
+            out.write(entry.getTransactionId().toString());
+            out.write("\",\"amount\":");
+            out.write(entry.getAmount().toString());
+            out.write(",\"balance\":");
+            out.write(balance.toString());
+            out.write("}\n");
+        }
+
+        @Override
+        void closing(LocalDateTime to, Money balance, long entries) throws IOException {
+            out.write("{\"type\":\"CLOSING\",\"timestamp\":\"");
+            out.write(to.toString());
+            out.write("\",\"balance\":");
+            out.write(balance.toString());
+            out.write(",\"entries\":");
+            out.write(Long.toString(entries));
+            out.write("}\n");
+        }
+    }
+}
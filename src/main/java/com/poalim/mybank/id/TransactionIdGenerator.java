@@ -0,0 +1,13 @@
+package com.poalim.mybank.id;
+
+import java.util.UUID;
+
+/**
+ * Source of the ids that identify deposits and transfers in events and the ledger tables.
+ * Chosen with {@code mybank.transaction-id.generator}, see {@code TransactionIdConfiguration}.
+ */
+@FunctionalInterface
+public interface TransactionIdGenerator {
+
+    UUID nextId();
+}
@@ -0,0 +1,42 @@
+package com.poalim.mybank.id;
+
+import java.util.UUID;
+
+/**
+ * Reads the transaction id of an event into the UUID it is stored as.
+ * <p>
+ * Before transfers had generated ids, a transfer event carried its transfer_record id. Such a plain number
+ * maps to the UUID holding it in the low 64 bits, {@code 00000000-0000-0000-0000-00000000007b} for 123,
+ * which is also how V12 converted the stored ids, so redelivered old events are still recognised.
+ */
+public final class TransactionIds {
+
+    private static final int MAX_LEGACY_DIGITS = 18;
+
+    private TransactionIds() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code id} is neither a UUID nor a number without leading zeros
+     */
+    public static UUID parse(String id) {
+        long legacy = legacyNumber(id);
+        return legacy >= 0 ? new UUID(0, legacy) : UUID.fromString(id);
+    }
+
+    private static long legacyNumber(String id) {
+        int length = id.length();
+        if (length == 0 || length > MAX_LEGACY_DIGITS || (id.charAt(0) == '0' && length > 1)) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = id.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,107 @@
+package com.poalim.mybank.money;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.math.BigDecimal;
+
+/**
+ * An amount of money as a whole number of minor units, i.e. cents of the two decimal places balances have
+ * always been kept in. Arithmetic is plain {@code long} arithmetic that throws {@link ArithmeticException}
+ * instead of overflowing; unlike {@code BigDecimal} it allocates nothing but the result.
+ * <p>
+ * Columns hold the minor units as BIGINT, see {@link MoneyConverter} for JPA. JSON carries the decimal
+ * amount, e.g. {@code 12.50}, as it did when amounts were {@code BigDecimal}s.
+ */
+@JsonSerialize(using = MoneyJsonSerializer.class)
+@JsonDeserialize(using = MoneyJsonDeserializer.class)
+public record Money(long minorUnits) implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    private static final long MINOR_PER_MAJOR = 100;
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    public static Money ofMajor(long majorUnits) {
+        return ofMinor(Math.multiplyExact(majorUnits, MINOR_PER_MAJOR));
+    }
+
+    /**
+     * @throws ArithmeticException if {@code amount} has more than {@value #SCALE} decimal places or does not
+     *                             fit a {@code long} of minor units
+     */
+    public static Money of(BigDecimal amount) {
+        try {
+            return ofMinor(amount.movePointRight(SCALE).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Amount " + amount.toPlainString() + " has more than " + SCALE +
+                    " decimal places or is out of range");
+        }
+    }
+
+    /**
+     * Parses a decimal amount such as {@code 12.5} or {@code 12.50}; also what Spring uses to bind request
+     * parameters.
+     *
+     * @throws NumberFormatException if {@code amount} is not a number
+     * @throws ArithmeticException   as {@link #of(BigDecimal)}
+     */
+    public static Money valueOf(String amount) {
+        return of(new BigDecimal(amount.trim()));
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money negate() {
+        return ofMinor(Math.negateExact(minorUnits));
+    }
+
+    public Money times(long factor) {
+        return ofMinor(Math.multiplyExact(minorUnits, factor));
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    /**
+     * The plain decimal amount with both decimal places, e.g. {@code -0.50}.
+     */
+    @Override
+    public String toString() {
+        long major = minorUnits / MINOR_PER_MAJOR;
+        int minor = (int) Math.abs(minorUnits % MINOR_PER_MAJOR);
+        StringBuilder text = new StringBuilder(24);
+        if (minorUnits < 0 && major == 0) {
+            text.append('-');
+        }
+        text.append(major).append('.');
+        if (minor < 10) {
+            text.append('0');
+        }
+        return text.append(minor).toString();
+    }
+}
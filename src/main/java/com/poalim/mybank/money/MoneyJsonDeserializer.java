@@ -0,0 +1,42 @@
+package com.poalim.mybank.money;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Reads {@link Money} from a JSON number or numeric string. Amounts with more than two decimal places are
+ * rejected rather than rounded.
+ */
+public class MoneyJsonDeserializer extends StdScalarDeserializer<Money> {
+
+    public MoneyJsonDeserializer() {
+        super(Money.class);
+    }
+
+    @Override
+    public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> {
+                BigDecimal amount = parser.getDecimalValue();
+                try {
+                    yield Money.of(amount);
+                } catch (ArithmeticException e) {
+                    throw context.weirdNumberException(amount, Money.class, e.getMessage());
+                }
+            }
+            case VALUE_STRING -> {
+                String amount = parser.getText();
+                try {
+                    yield Money.valueOf(amount);
+                } catch (ArithmeticException | NumberFormatException e) {
+                    throw context.weirdStringException(amount, Money.class, e.getMessage());
+                }
+            }
+            default -> (Money) context.handleUnexpectedToken(Money.class, parser);
+        };
+    }
+}
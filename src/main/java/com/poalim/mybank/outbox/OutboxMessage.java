@@ -0,0 +1,12 @@
+package com.poalim.mybank.outbox;
+
+import java.time.LocalDateTime;
+
+public record OutboxMessage(
+    Long id,
+    String topic,
+    String messageKey,
+    String eventType,
+    String payload,
+    LocalDateTime createdAt
+) {}
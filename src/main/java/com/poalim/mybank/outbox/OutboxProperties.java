@@ -0,0 +1,32 @@
+package com.poalim.mybank.outbox;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "mybank.outbox.relay")
+public class OutboxProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Number of relay workers in this node, one per lane. Each lane publishes the messages whose key hashes
+     * to it, so an account's events keep their order; every node must use the same value.
+     */
+    private int instances = 2;
+
+    /**
+     * Maximum rows locked and published per poll.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Sleep between polls when the last poll did not fill a batch.
+     */
+    private long pollIntervalMs = 100;
+
+    /**
+     * How long a poll waits for broker acknowledgements before leaving the rows for the next poll.
+     */
+    private long sendTimeoutMs = 10_000;
+}
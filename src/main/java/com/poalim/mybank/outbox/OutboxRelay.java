@@ -0,0 +1,240 @@
+package com.poalim.mybank.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes committed outbox rows to Kafka. Each worker owns a lane of message keys, locks a batch of its
+ * lane's oldest rows, hands the batch to the producer, waits for the acknowledgements and deletes the rows
+ * that were delivered, all in one transaction. Rows whose send failed stay in the table and are picked up
+ * again on a later poll, so delivery is at-least-once.
+ * <p>
+ * Messages with the same key are published in id order. The whole batch is handed to the producer at once,
+ * which keeps that order within a partition since it is idempotent. When a send fails, the key's later
+ * rows are kept too, even if they were acknowledged, and are sent again after the failed one on the next poll.
+ * Consumers may then see such a message twice, but its last copy always comes after the failed one.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(OutboxProperties.class)
+public class OutboxRelay implements SmartLifecycle {
+
+    private static final String EVENT_PACKAGE = "com.poalim.mybank.events.";
+
+    private final OutboxRepository outboxRepository;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxProperties properties;
+    private final Map<String, Class<?>> eventTypes = new ConcurrentHashMap<>();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final Counter published;
+    private final Counter failed;
+    private final Meter.MeterProvider<Timer> sendTimer;
+
+    private volatile boolean running;
+    private ExecutorService workers;
+
+    @Autowired
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       KafkaTemplate<String, Object> kafkaTemplate,
+                       ObjectMapper objectMapper,
+                       PlatformTransactionManager transactionManager,
+                       OutboxProperties properties,
+                       MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+
+        Gauge.builder("outbox.relay.lag", lagMillis, lag -> lag.get() / 1000.0)
+                .description("Age of the oldest outbox row seen by the last poll")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.published = Counter.builder("outbox.relay.messages").tag("outcome", "published").register(meterRegistry);
+        this.failed = Counter.builder("outbox.relay.messages").tag("outcome", "failed").register(meterRegistry);
+        this.sendTimer = Timer.builder("kafka.send")
+                .description("Time from handing a record to the producer until the broker acknowledged or rejected it")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        AtomicInteger index = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(properties.getInstances(), runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < properties.getInstances(); i++) {
+            int lane = i;
+            workers.submit(() -> pollLoop(lane));
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (workers != null) {
+            workers.shutdown();
+            try {
+                workers.awaitTermination(properties.getSendTimeoutMs() + 1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pollLoop(int lane) {
+        while (running) {
+            int relayed;
+            try {
+                relayed = relayBatch(lane);
+            } catch (Exception e) {
+                log.error("Outbox relay poll failed: {}", e.getMessage());
+                relayed = 0;
+            }
+            if (relayed < properties.getBatchSize()) {
+                sleep(properties.getPollIntervalMs());
+            }
+        }
+    }
+
+    /**
+     * @return number of rows locked by this poll
+     */
+    int relayBatch(int lane) {
+        Integer locked = transactionTemplate.execute(status -> {
+            List<OutboxMessage> batch = outboxRepository.lockNextBatch(properties.getBatchSize(), lane,
+                    properties.getInstances());
+            if (batch.isEmpty()) {
+                lagMillis.set(0);
+                return 0;
+            }
+            lagMillis.set(Duration.between(batch.get(0).createdAt(), LocalDateTime.now()).toMillis());
+
+            List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>(batch.size());
+            for (OutboxMessage message : batch) {
+                sends.add(send(message));
+            }
+
+            try {
+                CompletableFuture.allOf(sends.toArray(new CompletableFuture[0]))
+                        .get(properties.getSendTimeoutMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // individual outcomes are inspected below
+            }
+
+            List<Long> delivered = new ArrayList<>(batch.size());
+            Set<String> failedKeys = new HashSet<>();
+            int acknowledged = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                CompletableFuture<SendResult<String, Object>> send = sends.get(i);
+                String key = batch.get(i).messageKey();
+                boolean ok = send.isDone() && !send.isCompletedExceptionally();
+                if (ok) {
+                    acknowledged++;
+                }
+                if (key != null && (!ok || failedKeys.contains(key))) {
+                    failedKeys.add(key);
+                } else if (ok) {
+                    delivered.add(batch.get(i).id());
+                }
+            }
+            outboxRepository.deleteAll(delivered);
+            published.increment(acknowledged);
+            if (delivered.size() < batch.size()) {
+                failed.increment(batch.size() - acknowledged);
+                log.warn("{} of {} outbox messages were not acknowledged, keeping {} for retry",
+                        batch.size() - acknowledged, batch.size(), batch.size() - delivered.size());
+            }
+            return batch.size();
+        });
+        return locked != null ? locked : 0;
+    }
+
+    private CompletableFuture<SendResult<String, Object>> send(OutboxMessage message) {
+        try {
+            Object event = objectMapper.readValue(message.payload(), eventType(message.eventType()));
+            long start = System.nanoTime();
+            return kafkaTemplate.send(message.topic(), message.messageKey(), event)
+                    .whenComplete((result, failure) -> sendTimer.withTags(
+                            "topic", message.topic(),
+                            "outcome", failure == null ? "success" : "failure",
+                            "exception", failure == null ? "none" : rootCause(failure).getClass().getSimpleName()
+                    ).record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private Class<?> eventType(String name) {
+        if (!name.startsWith(EVENT_PACKAGE)) {
+            throw new IllegalArgumentException("Unexpected outbox event type: " + name);
+        }
+        return eventTypes.computeIfAbsent(name, type -> {
+            try {
+                return Class.forName(type);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Unknown outbox event type: " + type, e);
+            }
+        });
+    }
+
+    private static Throwable rootCause(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
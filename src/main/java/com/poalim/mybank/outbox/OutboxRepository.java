@@ -0,0 +1,72 @@
+package com.poalim.mybank.outbox;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+public class OutboxRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO outbox (topic, message_key, event_type, payload, created_at) VALUES (?, ?, ?, ?, ?)";
+    private static final int LANE_LOCK_CLASS = 0x4f555442;
+    private static final String LOCK_LANE_SQL = "SELECT pg_try_advisory_xact_lock(?, ?)";
+    private static final String LOCK_BATCH_SQL =
+            "SELECT id, topic, message_key, event_type, payload, created_at FROM outbox " +
+            "WHERE mod(hashtext(COALESCE(message_key, '')) & 2147483647, ?) = ? " +
+            "ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String DELETE_SQL = "DELETE FROM outbox WHERE id = ANY (?)";
+
+    private static final RowMapper<OutboxMessage> ROW_MAPPER = (rs, rowNum) -> new OutboxMessage(
+            rs.getLong("id"),
+            rs.getString("topic"),
+            rs.getString("message_key"),
+            rs.getString("event_type"),
+            rs.getString("payload"),
+            rs.getTimestamp("created_at").toLocalDateTime()
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OutboxRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insert(OutboxMessage message) {
+        jdbcTemplate.update(INSERT_SQL, message.topic(), message.messageKey(), message.eventType(),
+                message.payload(), Timestamp.valueOf(message.createdAt()));
+    }
+
+    public void insertAll(List<OutboxMessage> messages) {
+        List<Object[]> batch = new ArrayList<>(messages.size());
+        for (OutboxMessage message : messages) {
+            batch.add(new Object[]{message.topic(), message.messageKey(), message.eventType(),
+                    message.payload(), Timestamp.valueOf(message.createdAt())});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+    }
+
+    /**
+     * Locks the oldest unpublished messages of one lane, i.e. whose key hashes to {@code lane} out of
+     * {@code lanes}. Only one relay in the cluster works a lane at a time, so each key's messages are
+     * published in order; returns nothing while another relay holds the lane. Must run inside a transaction.
+     */
+    public List<OutboxMessage> lockNextBatch(int limit, int lane, int lanes) {
+        Boolean acquired = jdbcTemplate.queryForObject(LOCK_LANE_SQL, Boolean.class, LANE_LOCK_CLASS, lane);
+        if (!Boolean.TRUE.equals(acquired)) {
+            return List.of();
+        }
+        return jdbcTemplate.query(LOCK_BATCH_SQL, ROW_MAPPER, lanes, lane, limit);
+    }
+
+    public void deleteAll(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(DELETE_SQL, (Object) ids.toArray(new Long[0]));
+    }
+}
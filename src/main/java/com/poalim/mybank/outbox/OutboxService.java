@@ -0,0 +1,57 @@
+package com.poalim.mybank.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records events in the outbox table as part of the caller's transaction. Nothing is sent to Kafka
+ * here; {@link OutboxRelay} publishes committed rows.
+ */
+@Service
+public class OutboxService {
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public OutboxService(OutboxRepository outboxRepository, ObjectMapper objectMapper) {
+        this.outboxRepository = outboxRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String topic, String key, Object event) {
+        outboxRepository.insert(toMessage(topic, key, event));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(String topic, List<? extends KeyedEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<OutboxMessage> messages = new ArrayList<>(events.size());
+        for (KeyedEvent event : events) {
+            messages.add(toMessage(topic, event.key(), event.event()));
+        }
+        outboxRepository.insertAll(messages);
+    }
+
+    private OutboxMessage toMessage(String topic, String key, Object event) {
+        try {
+            return new OutboxMessage(null, topic, key, event.getClass().getName(),
+                    objectMapper.writeValueAsString(event), LocalDateTime.now());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize event " + event.getClass().getSimpleName(), e);
+        }
+    }
+
+    public record KeyedEvent(String key, Object event) {}
+}
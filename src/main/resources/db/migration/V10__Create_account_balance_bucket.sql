@@ -0,0 +1,12 @@
+-- Hot accounts spread incoming credits over hot_buckets rows of account_balance_bucket instead of
+-- serializing on the account row. An account's balance is account.balance plus its buckets; buckets only
+-- grow from credits and are drained into account.balance under the account row lock.
+ALTER TABLE account ADD COLUMN hot_buckets SMALLINT NOT NULL DEFAULT 0;
+
+CREATE TABLE IF NOT EXISTS account_balance_bucket (
+    account_id BIGINT NOT NULL REFERENCES account(id),
+    bucket SMALLINT NOT NULL,
+    balance NUMERIC(38,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (account_id, bucket),
+    CONSTRAINT check_bucket_balance CHECK (balance >= 0)
+);
@@ -0,0 +1,38 @@
+-- Amounts become BIGINT minor units (cents) instead of NUMERIC(38,2) and DECIMAL(19,2): a fixed 8 bytes per
+-- value, integer sums and smaller indexes. Every stored amount has two decimal places, so the conversion is
+-- exact; one beyond the BIGINT range fails the migration rather than being cut off.
+-- Each ALTER rewrites its table under an exclusive lock.
+DROP VIEW daily_traffic_stats;
+
+ALTER TABLE account
+    ALTER COLUMN balance TYPE BIGINT USING (balance * 100)::BIGINT;
+
+ALTER TABLE account_balance_bucket
+    ALTER COLUMN balance DROP DEFAULT,
+    ALTER COLUMN balance TYPE BIGINT USING (balance * 100)::BIGINT,
+    ALTER COLUMN balance SET DEFAULT 0;
+
+ALTER TABLE transfer_record
+    ALTER COLUMN amount TYPE BIGINT USING (amount * 100)::BIGINT;
+
+ALTER TABLE audit_log
+    ALTER COLUMN amount TYPE BIGINT USING (amount * 100)::BIGINT;
+
+ALTER TABLE ledger_entries
+    ALTER COLUMN amount TYPE BIGINT USING (amount * 100)::BIGINT;
+
+ALTER TABLE ledger_balance_checkpoint
+    ALTER COLUMN balance TYPE BIGINT USING (balance * 100)::BIGINT;
+
+ALTER TABLE daily_traffic_stats_stripe
+    ALTER COLUMN total_volume DROP DEFAULT,
+    ALTER COLUMN total_volume TYPE BIGINT USING (total_volume * 100)::BIGINT,
+    ALTER COLUMN total_volume SET DEFAULT 0;
+
+-- SUM over BIGINT is NUMERIC in PostgreSQL
+CREATE VIEW daily_traffic_stats AS
+SELECT date,
+       SUM(total_count)::BIGINT AS total_count,
+       SUM(total_volume)::BIGINT AS total_volume
+FROM daily_traffic_stats_stripe
+GROUP BY date;
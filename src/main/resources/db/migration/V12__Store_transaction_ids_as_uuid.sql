@@ -0,0 +1,26 @@
+-- Transaction ids become native UUIDs instead of VARCHAR(255): 16 bytes per key, and with time-ordered
+-- version 7 ids new keys go to the end of the processed_events primary key and the transaction_id indexes.
+-- Transfers used to be identified by their transfer_record id. Those plain numbers map to the UUID holding
+-- them in the low 64 bits, as TransactionIds.parse maps them in redelivered events, and transfer records get
+-- the same UUID so they stay linked to their ledger rows.
+-- Each ALTER rewrites its table and its indexes under an exclusive lock.
+CREATE FUNCTION legacy_transaction_uuid(id TEXT) RETURNS UUID
+    LANGUAGE SQL IMMUTABLE STRICT AS $$
+        SELECT CASE WHEN id ~ '^(0|[1-9][0-9]{0,17})$' THEN lpad(to_hex(id::BIGINT), 32, '0')::UUID
+                    ELSE id::UUID END
+    $$;
+
+ALTER TABLE processed_events
+    ALTER COLUMN transaction_id TYPE UUID USING legacy_transaction_uuid(transaction_id);
+
+ALTER TABLE audit_log
+    ALTER COLUMN transaction_id TYPE UUID USING legacy_transaction_uuid(transaction_id);
+
+ALTER TABLE ledger_entries
+    ALTER COLUMN transaction_id TYPE UUID USING legacy_transaction_uuid(transaction_id);
+
+ALTER TABLE transfer_record ADD COLUMN transaction_id UUID;
+UPDATE transfer_record SET transaction_id = lpad(to_hex(id), 32, '0')::UUID;
+ALTER TABLE transfer_record ALTER COLUMN transaction_id SET NOT NULL;
+
+DROP FUNCTION legacy_transaction_uuid(TEXT);
@@ -0,0 +1,106 @@
+-- ledger_entries and audit_log only grow, and every read is bounded in time, so both become range partitioned
+-- by month on timestamp: a time-bounded query skips whole months, and old months can later be detached or
+-- archived without a long DELETE. Account ids become BIGINT like account.id instead of VARCHAR(255).
+-- Time ranges are served by BRIN indexes, which stay a few pages per partition since rows arrive in time
+-- order; 16 pages per range instead of 128 keeps a one-day scan from reading ten times the rows it needs.
+-- Per-account reads go through (account_id, timestamp). The primary keys include timestamp, as
+-- PostgreSQL requires of unique constraints on a partitioned table; ids still come from the same sequences.
+
+-- Creates the monthly partitions of parent from from_month to to_month inclusive, named parent_yyyy_mm, and
+-- returns how many it created. Rows that already landed in the DEFAULT partition for a new month are moved
+-- into it. Run by this migration and by LedgerPartitionMaintainer ahead of time.
+CREATE FUNCTION ensure_monthly_partitions(parent TEXT, from_month DATE, to_month DATE) RETURNS INTEGER
+    LANGUAGE plpgsql AS $$
+DECLARE
+    first_day DATE := date_trunc('month', from_month);
+    next_month DATE;
+    partition_name TEXT;
+    created INTEGER := 0;
+BEGIN
+    -- Concurrent callers would race between the existence check and CREATE TABLE
+    PERFORM pg_advisory_xact_lock(hashtext('ensure_monthly_partitions'));
+    WHILE first_day <= to_month LOOP
+        next_month := first_day + INTERVAL '1 month';
+        partition_name := parent || '_' || to_char(first_day, 'YYYY_MM');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format('CREATE TEMP TABLE misplaced ON COMMIT DROP AS SELECT * FROM %I WHERE false',
+                           parent || '_default');
+            EXECUTE format('WITH moved AS (DELETE FROM %I WHERE timestamp >= %L AND timestamp < %L RETURNING *) '
+                           'INSERT INTO misplaced SELECT * FROM moved', parent || '_default', first_day, next_month);
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, parent, first_day, next_month);
+            EXECUTE format('INSERT INTO %I SELECT * FROM misplaced', parent);
+            DROP TABLE misplaced;
+            created := created + 1;
+        END IF;
+        first_day := next_month;
+    END LOOP;
+    RETURN created;
+END
+$$;
+
+ALTER TABLE ledger_entries RENAME TO ledger_entries_flat;
+ALTER SEQUENCE ledger_entries_id_seq OWNED BY NONE;
+
+CREATE TABLE ledger_entries (
+    id BIGINT NOT NULL DEFAULT nextval('ledger_entries_id_seq'),
+    transaction_id UUID NOT NULL,
+    account_id BIGINT NOT NULL,
+    amount BIGINT NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    entry_type VARCHAR(10) NOT NULL,
+    CONSTRAINT chk_entry_type CHECK (entry_type IN ('DEBIT', 'CREDIT'))
+) PARTITION BY RANGE (timestamp);
+
+-- Catches rows outside the created months rather than failing their batch
+CREATE TABLE ledger_entries_default PARTITION OF ledger_entries DEFAULT;
+
+SELECT ensure_monthly_partitions('ledger_entries',
+                                 COALESCE((SELECT MIN(timestamp) FROM ledger_entries_flat), now())::DATE,
+                                 (now() + INTERVAL '3 months')::DATE);
+
+INSERT INTO ledger_entries (id, transaction_id, account_id, amount, timestamp, entry_type)
+SELECT id, transaction_id, account_id::BIGINT, amount, timestamp, entry_type FROM ledger_entries_flat;
+
+DROP TABLE ledger_entries_flat;
+ALTER SEQUENCE ledger_entries_id_seq OWNED BY ledger_entries.id;
+
+ALTER TABLE ledger_entries ADD PRIMARY KEY (id, timestamp);
+CREATE INDEX idx_ledger_entries_transaction_id ON ledger_entries(transaction_id);
+CREATE INDEX idx_ledger_entries_account_timestamp ON ledger_entries(account_id, timestamp) INCLUDE (amount);
+CREATE INDEX idx_ledger_entries_timestamp ON ledger_entries USING BRIN (timestamp) WITH (pages_per_range = 16);
+
+ALTER TABLE audit_log RENAME TO audit_log_flat;
+ALTER SEQUENCE audit_log_id_seq OWNED BY NONE;
+
+CREATE TABLE audit_log (
+    id BIGINT NOT NULL DEFAULT nextval('audit_log_id_seq'),
+    transaction_id UUID NOT NULL,
+    source_account_id BIGINT NULL,
+    target_account_id BIGINT NOT NULL,
+    amount BIGINT NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    event_type VARCHAR(50) NOT NULL DEFAULT 'TRANSFER'
+) PARTITION BY RANGE (timestamp);
+
+CREATE TABLE audit_log_default PARTITION OF audit_log DEFAULT;
+
+SELECT ensure_monthly_partitions('audit_log',
+                                 COALESCE((SELECT MIN(timestamp) FROM audit_log_flat), now())::DATE,
+                                 (now() + INTERVAL '3 months')::DATE);
+
+INSERT INTO audit_log (id, transaction_id, source_account_id, target_account_id, amount, timestamp, event_type)
+SELECT id, transaction_id, source_account_id::BIGINT, target_account_id::BIGINT, amount, timestamp, event_type
+FROM audit_log_flat;
+
+DROP TABLE audit_log_flat;
+ALTER SEQUENCE audit_log_id_seq OWNED BY audit_log.id;
+
+ALTER TABLE audit_log ADD PRIMARY KEY (id, timestamp);
+CREATE INDEX idx_audit_log_transaction_id ON audit_log(transaction_id);
+CREATE INDEX idx_audit_log_timestamp ON audit_log USING BRIN (timestamp) WITH (pages_per_range = 16);
+
+ALTER TABLE ledger_balance_checkpoint ALTER COLUMN account_id TYPE BIGINT USING account_id::BIGINT;
+
+ANALYZE ledger_entries;
+ANALYZE audit_log;
@@ -0,0 +1,11 @@
+-- Events written in the same transaction as the change they describe, published to Kafka by OutboxRelay
+CREATE TABLE outbox (
+    id BIGSERIAL PRIMARY KEY,
+    topic VARCHAR(255) NOT NULL,
+    message_key VARCHAR(255),
+    event_type VARCHAR(255) NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_outbox_created_at ON outbox(created_at);
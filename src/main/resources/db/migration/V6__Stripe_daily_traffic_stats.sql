@@ -0,0 +1,21 @@
+-- Every consumed event used to update the single daily_traffic_stats row for its date.
+-- Consumers now add to their own stripe row and readers sum the stripes through a view.
+CREATE TABLE daily_traffic_stats_stripe (
+    date DATE NOT NULL,
+    stripe SMALLINT NOT NULL,
+    total_count BIGINT NOT NULL DEFAULT 0,
+    total_volume NUMERIC(38,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (date, stripe)
+);
+
+INSERT INTO daily_traffic_stats_stripe (date, stripe, total_count, total_volume)
+SELECT date, 0, total_count, total_volume FROM daily_traffic_stats;
+
+DROP TABLE daily_traffic_stats;
+
+CREATE VIEW daily_traffic_stats AS
+SELECT date,
+       SUM(total_count)::BIGINT AS total_count,
+       SUM(total_volume) AS total_volume
+FROM daily_traffic_stats_stripe
+GROUP BY date;
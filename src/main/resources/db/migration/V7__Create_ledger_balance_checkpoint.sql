@@ -0,0 +1,14 @@
+-- Per-account balance as of a point in time: the sum of every ledger entry with timestamp <= as_of.
+-- As-of queries start from the nearest checkpoint and only sum the entries after it.
+CREATE TABLE ledger_balance_checkpoint (
+    account_id VARCHAR(255) NOT NULL,
+    as_of TIMESTAMP NOT NULL,
+    balance NUMERIC(38,2) NOT NULL,
+    entry_count BIGINT NOT NULL,
+    PRIMARY KEY (account_id, as_of)
+);
+
+CREATE INDEX idx_ledger_balance_checkpoint_as_of ON ledger_balance_checkpoint(as_of);
+
+-- Serves the range sums after a checkpoint and the compactor's per-account sums
+CREATE INDEX idx_ledger_entries_account_timestamp ON ledger_entries(account_id, timestamp) INCLUDE (amount);
@@ -0,0 +1,7 @@
+-- Keyset pagination reads audit rows by account, newest first, with (timestamp, id) as the tie-breaker.
+-- The new indexes have the old ones as prefixes, so those are dropped to keep audit inserts cheap.
+CREATE INDEX idx_audit_account_timestamp_id ON audit(account_id, timestamp DESC, id DESC);
+CREATE INDEX idx_audit_account_operation_timestamp_id ON audit(account_id, operation_type, timestamp DESC, id DESC);
+
+DROP INDEX idx_audit_account_id;
+DROP INDEX idx_audit_account_operation;
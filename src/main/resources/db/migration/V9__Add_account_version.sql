@@ -0,0 +1,2 @@
+-- Row version, incremented by every change to an account. The account cache uses it to keep the newest copy.
+ALTER TABLE account ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
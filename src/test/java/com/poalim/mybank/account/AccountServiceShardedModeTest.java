@@ -0,0 +1,240 @@
+package com.poalim.mybank.account;
+
+import com.poalim.mybank.account.engine.AccountStateStore;
+import com.poalim.mybank.account.engine.ShardedBalanceEngine;
+import com.poalim.mybank.id.TransactionIdGenerator;
+import com.poalim.mybank.id.UuidV7Generator;
+import com.poalim.mybank.money.Money;
+import com.poalim.mybank.outbox.OutboxService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Runs the AccountServiceTest scenarios with {@code mybank.engine.mode=sharded} and expects the same answers.
+ */
+@ExtendWith(MockitoExtension.class)
+class AccountServiceShardedModeTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransferRecordRepository transferRecordRepository;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Spy
+    private TransactionIdGenerator transactionIds = new UuidV7Generator();
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private AccountService accountService;
+
+    private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+    private ShardedBalanceEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        accounts.put(1L, new Account(1L, "John Doe", Money.ofMajor(1000), AccountStatus.ACTIVE));
+        accounts.put(2L, new Account(2L, "Jane Doe", Money.ofMajor(500), AccountStatus.ACTIVE));
+        engine = new ShardedBalanceEngine(new AccountStateStore() {
+            @Override
+            public Optional<Account> load(Long accountId) {
+                return Optional.ofNullable(accounts.get(accountId));
+            }
+
+            @Override
+            public void applyBalanceDeltas(Map<Long, Money> deltas) {
+            }
+
+            @Override
+            public void updateStatus(Long accountId, AccountStatus status) {
+            }
+        }, 2, 60_000);
+        accountService.setBalanceEngine(engine);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        engine.close();
+    }
+
+    private static void rollBack() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+
+    @Test
+    void getAccount_WhenAccountDoesNotExist_ShouldThrowException() {
+        assertThatThrownBy(() -> accountService.getAccount(999L))
+                .isInstanceOf(AccountNotFoundException.class);
+    }
+
+    @Test
+    void deposit_WithValidAmount_ShouldIncreaseBalance() {
+        // Act
+        AccountResponse response = accountService.deposit(1L, Money.ofMajor(500));
+
+        // Assert
+        assertThat(response.getBalance()).isEqualTo(Money.ofMajor(1500));
+        verify(accountRepository, never()).save(any(Account.class));
+    }
+
+    @Test
+    void deposit_WhenOutboxInsertFailsAndTransactionRollsBack_ShouldUndoTheEngineCredit() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        doThrow(new IllegalStateException("outbox insert failed"))
+                .when(outboxService).enqueue(anyString(), anyString(), any());
+
+        // Act
+        assertThatThrownBy(() -> accountService.deposit(1L, Money.ofMajor(500)))
+                .isInstanceOf(IllegalStateException.class);
+        rollBack();
+
+        // Assert
+        assertThat(accountService.getAccount(1L).getBalance()).isEqualTo(Money.ofMajor(1000));
+    }
+
+    @Test
+    void deposit_WhenSpentBeforeItsTransactionRollsBack_ShouldNotLeaveANegativeBalance() {
+        // Arrange: the deposit's transaction is still open
+        TransactionSynchronizationManager.initSynchronization();
+        accountService.deposit(2L, Money.ofMajor(100));
+        List<TransactionSynchronization> depositTransaction = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        // Act: a concurrent withdrawal cannot spend the uncommitted deposit, then the deposit rolls back
+        assertThatThrownBy(() -> accountService.withdrawal(2L, Money.ofMajor(600)))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Insufficient funds");
+        accountService.withdrawal(2L, Money.ofMajor(500));
+        depositTransaction.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        // Assert
+        assertThat(accountService.getAccount(2L).getBalance()).isEqualTo(Money.ofMajor(0));
+    }
+
+    @Test
+    void deposit_WhenTransactionCommits_ShouldBecomeSpendable() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        accountService.deposit(2L, Money.ofMajor(100));
+
+        // Act
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        // Assert
+        assertThat(accountService.withdrawal(2L, Money.ofMajor(600)).getBalance()).isEqualTo(Money.ofMajor(0));
+    }
+
+    @Test
+    void changeAccountStatus_WhenTransactionRollsBack_ShouldRestoreThePreviousStatus() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        accountService.changeAccountStatus(1L, AccountStatus.SUSPENDED);
+
+        // Act
+        rollBack();
+
+        // Assert
+        assertThat(accountService.getAccount(1L).getStatus()).isEqualTo(AccountStatus.ACTIVE);
+    }
+
+    @Test
+    void withdrawal_WhenTransactionRollsBack_ShouldUndoTheEngineDebit() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        accountService.withdrawal(1L, Money.ofMajor(300));
+
+        // Act: the commit fails
+        rollBack();
+
+        // Assert
+        assertThat(accountService.getAccount(1L).getBalance()).isEqualTo(Money.ofMajor(1000));
+    }
+
+    @Test
+    void withdrawal_WithSufficientFunds_ShouldDecreaseBalance() {
+        // Act
+        AccountResponse response = accountService.withdrawal(1L, Money.ofMajor(500));
+
+        // Assert
+        assertThat(response.getBalance()).isEqualTo(Money.ofMajor(500));
+    }
+
+    @Test
+    void withdrawal_WithInsufficientFunds_ShouldThrowException() {
+        assertThatThrownBy(() -> accountService.withdrawal(1L, Money.ofMajor(2000)))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Insufficient funds");
+    }
+
+    @Test
+    void transfer_WithValidRequest_ShouldTransferFunds() {
+        // Arrange
+        TransferRequest request = new TransferRequest(1L, 2L, Money.ofMajor(500), UUID.randomUUID().toString());
+        TransferRecord transferRecord = new TransferRecord();
+        transferRecord.setId(1L);
+        when(transferRecordRepository.findByIdempotencyKey(any())).thenReturn(Optional.empty());
+        when(transferRecordRepository.save(any(TransferRecord.class))).thenReturn(transferRecord);
+
+        // Act
+        TransferResponse response = accountService.transfer(request);
+
+        // Assert
+        assertThat(response.getTransferId()).isEqualTo("1");
+        assertThat(accountService.getAccount(1L).getBalance()).isEqualTo(Money.ofMajor(500));
+        assertThat(accountService.getAccount(2L).getBalance()).isEqualTo(Money.ofMajor(1000));
+        verify(accountRepository, never()).findByIdsForUpdate(any());
+    }
+
+    @Test
+    void transfer_WithInsufficientFunds_ShouldThrowException() {
+        // Arrange
+        TransferRequest request = new TransferRequest(1L, 2L, Money.ofMajor(5000), UUID.randomUUID().toString());
+        when(transferRecordRepository.findByIdempotencyKey(any())).thenReturn(Optional.empty());
+        when(transferRecordRepository.save(any())).thenReturn(new TransferRecord());
+
+        // Act & Assert
+        assertThatThrownBy(() -> accountService.transfer(request))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Insufficient funds");
+    }
+
+    @Test
+    void changeAccountStatus_ToClosedWithNonZeroBalance_ShouldThrowException() {
+        assertThatThrownBy(() -> accountService.changeAccountStatus(1L, AccountStatus.CLOSED))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Account balance must be 0 to close the account");
+    }
+}
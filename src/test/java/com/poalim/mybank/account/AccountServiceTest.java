@@ -1,26 +1,39 @@
 package com.poalim.mybank.account;
 
+import com.poalim.mybank.account.concurrency.TransferConcurrencyMode;
+import com.poalim.mybank.account.concurrency.TransferConcurrencyPolicy;
+import com.poalim.mybank.account.concurrency.TransferConcurrencyProperties;
+import com.poalim.mybank.account.hot.HotAccountBuckets;
 import com.poalim.mybank.config.KafkaTopicsConfiguration;
 import com.poalim.mybank.events.TransactionCompletedEvent;
+import com.poalim.mybank.id.TransactionIdGenerator;
+import com.poalim.mybank.id.UuidV7Generator;
+import com.poalim.mybank.money.Money;
+import com.poalim.mybank.outbox.OutboxService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.SendResult;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 import static org.assertj.core.api.Assertions.*;
 
@@ -30,11 +43,23 @@ class AccountServiceTest {
     @Mock
     private AccountRepository accountRepository;
 
+    @Mock
+    private AccountBalanceJdbcRepository accountBalanceRepository;
+
     @Mock
     private TransferRecordRepository transferRecordRepository;
 
     @Mock
-    private KafkaTemplate<String, TransactionCompletedEvent> kafkaTemplate;
+    private OutboxService outboxService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private TransactionIdGenerator transactionIds = new UuidV7Generator();
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks
     private AccountService accountService;
@@ -44,8 +69,8 @@ class AccountServiceTest {
 
     @BeforeEach
     void setUp() {
-        testAccount = new Account(1L, "John Doe", BigDecimal.valueOf(1000), AccountStatus.ACTIVE);
-        createAccountRequest = new CreateAccountRequest("John Doe", BigDecimal.valueOf(1000));
+        testAccount = new Account(1L, "John Doe", Money.ofMajor(1000), AccountStatus.ACTIVE);
+        createAccountRequest = new CreateAccountRequest("John Doe", Money.ofMajor(1000));
     }
 
     @Test
@@ -67,7 +92,7 @@ class AccountServiceTest {
     @Test
     void createAccount_WithInvalidOwnerName_ShouldThrowException() {
         // Arrange
-        CreateAccountRequest invalidRequest = new CreateAccountRequest("", BigDecimal.valueOf(1000));
+        CreateAccountRequest invalidRequest = new CreateAccountRequest("", Money.ofMajor(1000));
 
         // Act & Assert
         assertThatThrownBy(() -> accountService.createAccount(invalidRequest))
@@ -78,7 +103,7 @@ class AccountServiceTest {
     @Test
     void createAccount_WithNegativeBalance_ShouldThrowException() {
         // Arrange
-        CreateAccountRequest invalidRequest = new CreateAccountRequest("John Doe", BigDecimal.valueOf(-100));
+        CreateAccountRequest invalidRequest = new CreateAccountRequest("John Doe", Money.ofMajor(-100));
 
         // Act & Assert
         assertThatThrownBy(() -> accountService.createAccount(invalidRequest))
@@ -113,15 +138,14 @@ class AccountServiceTest {
     @Test
     void deposit_WithValidAmount_ShouldIncreaseBalance() {
         // Arrange
-        BigDecimal depositAmount = BigDecimal.valueOf(500);
+        Money depositAmount = Money.ofMajor(500);
         Account updatedAccount = new Account(
                 testAccount.getId(),
                 testAccount.getOwnerName(),
-                testAccount.getBalance().add(depositAmount),
+                testAccount.getBalance().plus(depositAmount),
                 testAccount.getStatus()
         );
-        when(accountRepository.findById(1L)).thenReturn(Optional.of(testAccount));
-        when(accountRepository.save(any(Account.class))).thenReturn(updatedAccount);
+        when(accountBalanceRepository.credit(1L, depositAmount)).thenReturn(Optional.of(updatedAccount));
 
         // Act
         AccountResponse response = accountService.deposit(1L, depositAmount);
@@ -129,22 +153,47 @@ class AccountServiceTest {
         // Assert
         assertThat(response.getBalance())
                 .isEqualTo(updatedAccount.getBalance()); // Fix: use updatedAccount instead of calculation
-        verify(accountRepository).save(any(Account.class));
+        verify(accountRepository, never()).save(any(Account.class));
+        verify(outboxService).enqueue(eq(KafkaTopicsConfiguration.DEPOSIT_TOPIC), eq("1"), any());
     }
 
+    @Test
+    void deposit_WhenAccountDoesNotExist_ShouldThrowException() {
+        // Arrange
+        when(accountBalanceRepository.credit(999L, Money.ofMajor(10))).thenReturn(Optional.empty());
+        when(accountBalanceRepository.find(999L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThatThrownBy(() -> accountService.deposit(999L, Money.ofMajor(10)))
+                .isInstanceOf(AccountNotFoundException.class);
+        verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    void deposit_ToNonActiveAccount_ShouldThrowException() {
+        // Arrange
+        testAccount.setStatus(AccountStatus.INACTIVE);
+        when(accountBalanceRepository.credit(1L, Money.ofMajor(10))).thenReturn(Optional.empty());
+        when(accountBalanceRepository.find(1L)).thenReturn(Optional.of(testAccount));
+
+        // Act & Assert
+        assertThatThrownBy(() -> accountService.deposit(1L, Money.ofMajor(10)))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Cannot deposit to a non-active account");
+        verifyNoInteractions(outboxService);
+    }
 
     @Test
     void withdrawal_WithSufficientFunds_ShouldDecreaseBalance() {
         // Arrange
-        BigDecimal withdrawalAmount = BigDecimal.valueOf(500);
+        Money withdrawalAmount = Money.ofMajor(500);
         Account updatedAccount = new Account(
                 testAccount.getId(),
                 testAccount.getOwnerName(),
-                testAccount.getBalance().subtract(withdrawalAmount),
+                testAccount.getBalance().minus(withdrawalAmount),
                 testAccount.getStatus()
         );
-        when(accountRepository.findById(1L)).thenReturn(Optional.of(testAccount));
-        when(accountRepository.save(any(Account.class))).thenReturn(updatedAccount);
+        when(accountBalanceRepository.debit(1L, withdrawalAmount)).thenReturn(Optional.of(updatedAccount));
 
         // Act
         AccountResponse response = accountService.withdrawal(1L, withdrawalAmount);
@@ -152,15 +201,15 @@ class AccountServiceTest {
         // Assert
         assertThat(response.getBalance())
                 .isEqualTo(updatedAccount.getBalance()); // Fix: use updatedAccount instead of calculation
-        verify(accountRepository).save(any(Account.class));
+        verify(accountRepository, never()).save(any(Account.class));
     }
 
-
     @Test
     void withdrawal_WithInsufficientFunds_ShouldThrowException() {
         // Arrange
-        BigDecimal withdrawalAmount = BigDecimal.valueOf(2000);
-        when(accountRepository.findById(1L)).thenReturn(Optional.of(testAccount));
+        Money withdrawalAmount = Money.ofMajor(2000);
+        when(accountBalanceRepository.debit(1L, withdrawalAmount)).thenReturn(Optional.empty());
+        when(accountBalanceRepository.find(1L)).thenReturn(Optional.of(testAccount));
 
         // Act & Assert
         assertThatThrownBy(() -> accountService.withdrawal(1L, withdrawalAmount))
@@ -168,12 +217,36 @@ class AccountServiceTest {
                 .hasMessageContaining("Insufficient funds");
     }
 
+    @Test
+    void withdrawal_FromNonActiveAccount_ShouldThrowException() {
+        // Arrange
+        testAccount.setStatus(AccountStatus.INACTIVE);
+        when(accountBalanceRepository.debit(1L, Money.ofMajor(10))).thenReturn(Optional.empty());
+        when(accountBalanceRepository.find(1L)).thenReturn(Optional.of(testAccount));
+
+        // Act & Assert
+        assertThatThrownBy(() -> accountService.withdrawal(1L, Money.ofMajor(10)))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Cannot withdraw from a non-active account");
+    }
+
+    @Test
+    void withdrawal_WhenAccountDoesNotExist_ShouldThrowException() {
+        // Arrange
+        when(accountBalanceRepository.debit(999L, Money.ofMajor(10))).thenReturn(Optional.empty());
+        when(accountBalanceRepository.find(999L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThatThrownBy(() -> accountService.withdrawal(999L, Money.ofMajor(10)))
+                .isInstanceOf(AccountNotFoundException.class);
+    }
+
     @Test
     void transfer_WithValidRequest_ShouldTransferFunds() {
         // Arrange
-        Account fromAccount = new Account(1L, "John Doe", BigDecimal.valueOf(1000), AccountStatus.ACTIVE);
-        Account toAccount = new Account(2L, "Jane Doe", BigDecimal.valueOf(500), AccountStatus.ACTIVE);
-        TransferRequest request = new TransferRequest(1L, 2L, BigDecimal.valueOf(500), UUID.randomUUID().toString());
+        Account fromAccount = new Account(1L, "John Doe", Money.ofMajor(1000), AccountStatus.ACTIVE);
+        Account toAccount = new Account(2L, "Jane Doe", Money.ofMajor(500), AccountStatus.ACTIVE);
+        TransferRequest request = new TransferRequest(1L, 2L, Money.ofMajor(500), UUID.randomUUID().toString());
 
         // Create a transfer record with an ID for the mock response
         TransferRecord transferRecord = new TransferRecord();
@@ -189,13 +262,6 @@ class AccountServiceTest {
         when(transferRecordRepository.save(any(TransferRecord.class))).thenReturn(transferRecord);
         when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-
-        // Mock Kafka send operation
-        CompletableFuture<SendResult<String, TransactionCompletedEvent>> future = new CompletableFuture<>();
-        future.complete(new SendResult<>(null, null));
-        when(kafkaTemplate.send(anyString(), anyString(), any(TransactionCompletedEvent.class)))
-                .thenReturn(future);
-
         // Act
         TransferResponse response = accountService.transfer(request);
 
@@ -204,19 +270,60 @@ class AccountServiceTest {
         assertThat(response.getTransferId()).isEqualTo(transferRecord.getId().toString());
         verify(accountRepository, times(2)).save(any(Account.class));
         verify(transferRecordRepository, times(2)).save(any(TransferRecord.class));
-        verify(kafkaTemplate).send(
+        ArgumentCaptor<TransactionCompletedEvent> event = ArgumentCaptor.forClass(TransactionCompletedEvent.class);
+        verify(outboxService).enqueue(
                 eq(KafkaTopicsConfiguration.TRANSACTION_TOPIC),
-                any(String.class),
-                any(TransactionCompletedEvent.class)
+                eq(request.getFromAccountId().toString()),
+                event.capture()
         );
+        assertThat(UUID.fromString(event.getValue().transactionId()).version()).isEqualTo(7);
+        assertThat(meterRegistry.get("account.lock.wait").tag("operation", "transfer").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("transfer.idempotency").tag("result", "new").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void transfer_WhenTheKeyWasTakenOnAnotherNode_ShouldReplayThatTransfer() {
+        // Arrange: the lookup missed, then the other node's insert won the unique constraint
+        TransferRequest request = new TransferRequest(1L, 2L, Money.ofMajor(500), "retried-key");
+        TransferRecord original = new TransferRecord(7L, UUID.randomUUID(), "retried-key", 1L, 2L,
+                Money.ofMajor(500), TransferStatus.COMPLETED, LocalDateTime.now(), LocalDateTime.now());
+        when(transferRecordRepository.findByIdempotencyKey("retried-key"))
+                .thenReturn(Optional.empty(), Optional.of(original));
+        when(transferRecordRepository.save(any(TransferRecord.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint"));
+
+        // Act
+        TransferResponse response = accountService.transfer(request);
+
+        // Assert
+        assertThat(response.getTransferId()).isEqualTo("7");
+        assertThat(response.getStatus()).isEqualTo(TransferStatus.COMPLETED.toString());
+        verify(transactionManager).getTransaction(argThat(definition -> definition.isReadOnly()
+                && definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        verifyNoInteractions(accountRepository, outboxService);
+        assertThat(meterRegistry.get("transfer.idempotency").tag("result", "replayed").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void transfer_WhenTheInsertFailsForAnotherReason_ShouldRethrow() {
+        // Arrange
+        TransferRequest request = new TransferRequest(1L, 2L, Money.ofMajor(500), "new-key");
+        when(transferRecordRepository.findByIdempotencyKey("new-key")).thenReturn(Optional.empty());
+        when(transferRecordRepository.save(any(TransferRecord.class)))
+                .thenThrow(new DataIntegrityViolationException("value too long"));
+
+        // Act & Assert
+        assertThatThrownBy(() -> accountService.transfer(request))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        verifyNoInteractions(accountRepository, outboxService);
     }
 
     @Test
     void transfer_WithInsufficientFunds_ShouldThrowException() {
         // Arrange
-        Account fromAccount = new Account(1L, "John Doe", BigDecimal.valueOf(100), AccountStatus.ACTIVE);
-        Account toAccount = new Account(2L, "Jane Doe", BigDecimal.valueOf(500), AccountStatus.ACTIVE);
-        TransferRequest request = new TransferRequest(1L, 2L, BigDecimal.valueOf(500), UUID.randomUUID().toString());
+        Account fromAccount = new Account(1L, "John Doe", Money.ofMajor(100), AccountStatus.ACTIVE);
+        Account toAccount = new Account(2L, "Jane Doe", Money.ofMajor(500), AccountStatus.ACTIVE);
+        TransferRequest request = new TransferRequest(1L, 2L, Money.ofMajor(500), UUID.randomUUID().toString());
 
         when(accountRepository.findByIdsForUpdate(any())).thenReturn(Arrays.asList(fromAccount, toAccount));
         when(transferRecordRepository.findByIdempotencyKey(any())).thenReturn(Optional.empty());
@@ -228,10 +335,206 @@ class AccountServiceTest {
                 .hasMessageContaining("Insufficient funds");
     }
 
+    @Test
+    void transfer_InOptimisticMode_ShouldRetryConflictsWithoutLocking() {
+        // Arrange
+        accountService.setConcurrencyPolicy(optimisticPolicy());
+        TransferRequest request = new TransferRequest(1L, 2L, Money.ofMajor(300), UUID.randomUUID().toString());
+        TransferRecord transferRecord = new TransferRecord();
+        transferRecord.setId(1L);
+
+        when(transferRecordRepository.findByIdempotencyKey(any())).thenReturn(Optional.empty());
+        when(transferRecordRepository.save(any(TransferRecord.class))).thenReturn(transferRecord);
+        when(accountBalanceRepository.findAll(1L, 2L)).thenAnswer(invocation -> List.of(
+                new Account(1L, "John Doe", Money.ofMajor(1000), AccountStatus.ACTIVE, 3L),
+                new Account(2L, "Jane Doe", Money.ofMajor(500), AccountStatus.ACTIVE, 7L)));
+        when(accountBalanceRepository.updateIfUnchanged(anyList()))
+                .thenReturn(Optional.empty())
+                .thenAnswer(invocation -> Optional.of(invocation.getArgument(0)));
+
+        // Act
+        TransferResponse response = accountService.transfer(request);
+
+        // Assert
+        assertThat(response.getStatus()).isEqualTo(TransferStatus.COMPLETED.toString());
+        verify(accountBalanceRepository, times(2)).updateIfUnchanged(argThat(accounts -> accounts.size() == 2
+                && accounts.get(0).getBalance().compareTo(Money.ofMajor(700)) == 0
+                && accounts.get(0).getVersion() == 3L
+                && accounts.get(1).getBalance().compareTo(Money.ofMajor(800)) == 0
+                && accounts.get(1).getVersion() == 7L));
+        verify(accountRepository, never()).findByIdsForUpdate(any());
+        assertThat(meterRegistry.get("transfer.optimistic").tag("result", "conflict").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("transfer.optimistic").tag("result", "committed").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void transfer_InOptimisticMode_ShouldLockAfterTheLastConflict() {
+        // Arrange
+        accountService.setConcurrencyPolicy(optimisticPolicy());
+        TransferRequest request = new TransferRequest(1L, 2L, Money.ofMajor(300), UUID.randomUUID().toString());
+        TransferRecord transferRecord = new TransferRecord();
+        transferRecord.setId(1L);
+
+        when(transferRecordRepository.findByIdempotencyKey(any())).thenReturn(Optional.empty());
+        when(transferRecordRepository.save(any(TransferRecord.class))).thenReturn(transferRecord);
+        when(accountBalanceRepository.findAll(1L, 2L)).thenAnswer(invocation -> List.of(
+                new Account(1L, "John Doe", Money.ofMajor(1000), AccountStatus.ACTIVE, 3L),
+                new Account(2L, "Jane Doe", Money.ofMajor(500), AccountStatus.ACTIVE, 7L)));
+        when(accountBalanceRepository.updateIfUnchanged(anyList())).thenReturn(Optional.empty());
+        when(accountRepository.findByIdsForUpdate(any())).thenReturn(Arrays.asList(
+                new Account(1L, "John Doe", Money.ofMajor(1000), AccountStatus.ACTIVE),
+                new Account(2L, "Jane Doe", Money.ofMajor(500), AccountStatus.ACTIVE)));
+
+        // Act
+        TransferResponse response = accountService.transfer(request);
+
+        // Assert
+        assertThat(response.getStatus()).isEqualTo(TransferStatus.COMPLETED.toString());
+        verify(accountBalanceRepository, times(3)).updateIfUnchanged(anyList());
+        verify(accountRepository, times(2)).save(any(Account.class));
+        assertThat(meterRegistry.get("transfer.optimistic").tag("result", "conflict").counter().count()).isEqualTo(3.0);
+        assertThat(meterRegistry.get("transfer.optimistic").tag("result", "fallback").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void transfer_InOptimisticMode_WithInsufficientFunds_ShouldThrowException() {
+        // Arrange
+        accountService.setConcurrencyPolicy(optimisticPolicy());
+        TransferRequest request = new TransferRequest(1L, 2L, Money.ofMajor(5000), UUID.randomUUID().toString());
+
+        when(transferRecordRepository.findByIdempotencyKey(any())).thenReturn(Optional.empty());
+        when(transferRecordRepository.save(any())).thenReturn(new TransferRecord());
+        when(accountBalanceRepository.findAll(1L, 2L)).thenReturn(List.of(
+                new Account(1L, "John Doe", Money.ofMajor(1000), AccountStatus.ACTIVE, 3L),
+                new Account(2L, "Jane Doe", Money.ofMajor(500), AccountStatus.ACTIVE, 7L)));
+
+        // Act & Assert
+        assertThatThrownBy(() -> accountService.transfer(request))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Insufficient funds");
+        verify(accountBalanceRepository, never()).updateIfUnchanged(anyList());
+    }
+
+    private static TransferConcurrencyPolicy optimisticPolicy() {
+        TransferConcurrencyProperties properties = new TransferConcurrencyProperties();
+        properties.setMode(TransferConcurrencyMode.OPTIMISTIC);
+        properties.setMaxAttempts(3);
+        properties.setBackoffBaseMs(0);
+        return new TransferConcurrencyPolicy(properties);
+    }
+
+    @Test
+    void deposit_ToHotAccount_ShouldCreditABucket() {
+        // Arrange
+        HotAccountBuckets hotAccounts = mock(HotAccountBuckets.class);
+        accountService.setHotAccounts(hotAccounts);
+        when(hotAccounts.credit(1L, Money.ofMajor(10))).thenReturn(true);
+        when(hotAccounts.findWithBuckets(1L)).thenReturn(Optional.of(
+                new Account(1L, "John Doe", Money.ofMajor(1010), AccountStatus.ACTIVE, 4L)));
+
+        // Act
+        AccountResponse response = accountService.deposit(1L, Money.ofMajor(10));
+
+        // Assert
+        assertThat(response.getBalance()).isEqualTo(Money.ofMajor(1010));
+        verifyNoInteractions(accountBalanceRepository);
+        verify(outboxService).enqueue(eq(KafkaTopicsConfiguration.DEPOSIT_TOPIC), any(), any());
+    }
+
+    @Test
+    void withdrawal_FromHotAccount_ShouldDrawOnBucketsWhenShort() {
+        // Arrange
+        HotAccountBuckets hotAccounts = mock(HotAccountBuckets.class);
+        accountService.setHotAccounts(hotAccounts);
+        Account debited = new Account(1L, "John Doe", Money.ofMajor(100), AccountStatus.ACTIVE, 5L);
+        when(accountBalanceRepository.debit(1L, Money.ofMajor(1500)))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(debited));
+        when(hotAccounts.consolidate(1L)).thenReturn(Money.ofMajor(600));
+
+        // Act
+        AccountResponse response = accountService.withdrawal(1L, Money.ofMajor(1500));
+
+        // Assert
+        assertThat(response.getBalance()).isEqualTo(Money.ofMajor(100));
+        verify(accountBalanceRepository, times(2)).debit(1L, Money.ofMajor(1500));
+    }
+
+    @Test
+    void withdrawal_FromHotAccount_WithEmptyBuckets_ShouldThrowInsufficientFunds() {
+        // Arrange
+        HotAccountBuckets hotAccounts = mock(HotAccountBuckets.class);
+        accountService.setHotAccounts(hotAccounts);
+        when(accountBalanceRepository.debit(1L, Money.ofMajor(1500))).thenReturn(Optional.empty());
+        when(hotAccounts.consolidate(1L)).thenReturn(Money.ZERO);
+        when(accountBalanceRepository.find(1L)).thenReturn(Optional.of(testAccount));
+
+        // Act & Assert
+        assertThatThrownBy(() -> accountService.withdrawal(1L, Money.ofMajor(1500)))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Insufficient funds");
+        verify(accountBalanceRepository, times(1)).debit(1L, Money.ofMajor(1500));
+    }
+
+    @Test
+    void transfer_ToHotAccount_ShouldLockOnlyTheSource() {
+        // Arrange
+        HotAccountBuckets hotAccounts = mock(HotAccountBuckets.class);
+        accountService.setHotAccounts(hotAccounts);
+        Account fromAccount = new Account(1L, "John Doe", Money.ofMajor(100), AccountStatus.ACTIVE);
+        TransferRequest request = new TransferRequest(1L, 2L, Money.ofMajor(300), UUID.randomUUID().toString());
+        TransferRecord transferRecord = new TransferRecord();
+        transferRecord.setId(1L);
+
+        when(transferRecordRepository.findByIdempotencyKey(any())).thenReturn(Optional.empty());
+        when(transferRecordRepository.save(any(TransferRecord.class))).thenReturn(transferRecord);
+        when(hotAccounts.isHot(2L)).thenReturn(true);
+        when(accountRepository.findByIdsForUpdate(List.of(1L))).thenReturn(List.of(fromAccount));
+        when(hotAccounts.drain(1L)).thenReturn(Money.ofMajor(250));
+        when(hotAccounts.credit(2L, Money.ofMajor(300))).thenReturn(true);
+
+        // Act
+        TransferResponse response = accountService.transfer(request);
+
+        // Assert
+        assertThat(response.getStatus()).isEqualTo(TransferStatus.COMPLETED.toString());
+        assertThat(fromAccount.getBalance()).isEqualTo(Money.ofMajor(50));
+        verify(accountRepository).save(fromAccount);
+        verifyNoInteractions(accountBalanceRepository);
+        verify(hotAccounts, never()).lockForCredit(any());
+    }
+
+    @Test
+    void transfer_ToHotAccountWithALowerId_ShouldLockTheDestinationFirst() {
+        // Arrange: a pessimistic transfer from 1 to 2 locks 1 first, so this one must too
+        HotAccountBuckets hotAccounts = mock(HotAccountBuckets.class);
+        accountService.setHotAccounts(hotAccounts);
+        Account fromAccount = new Account(2L, "Jane Doe", Money.ofMajor(500), AccountStatus.ACTIVE);
+        TransferRequest request = new TransferRequest(2L, 1L, Money.ofMajor(300), UUID.randomUUID().toString());
+        TransferRecord transferRecord = new TransferRecord();
+        transferRecord.setId(1L);
+
+        when(transferRecordRepository.findByIdempotencyKey(any())).thenReturn(Optional.empty());
+        when(transferRecordRepository.save(any(TransferRecord.class))).thenReturn(transferRecord);
+        when(hotAccounts.isHot(1L)).thenReturn(true);
+        when(accountRepository.findByIdsForUpdate(List.of(2L))).thenReturn(List.of(fromAccount));
+        when(hotAccounts.credit(1L, Money.ofMajor(300))).thenReturn(true);
+
+        // Act
+        TransferResponse response = accountService.transfer(request);
+
+        // Assert
+        assertThat(response.getStatus()).isEqualTo(TransferStatus.COMPLETED.toString());
+        InOrder lockOrder = inOrder(hotAccounts, accountRepository);
+        lockOrder.verify(hotAccounts).lockForCredit(1L);
+        lockOrder.verify(accountRepository).findByIdsForUpdate(List.of(2L));
+        lockOrder.verify(hotAccounts).credit(1L, Money.ofMajor(300));
+    }
+
     @Test
     void changeAccountStatus_ToClosedWithZeroBalance_ShouldSucceed() {
         // Arrange
-        Account account = new Account(1L, "John Doe", BigDecimal.ZERO, AccountStatus.ACTIVE);
+        Account account = new Account(1L, "John Doe", Money.ZERO, AccountStatus.ACTIVE);
         when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
         when(accountRepository.save(any(Account.class))).thenReturn(account);
 
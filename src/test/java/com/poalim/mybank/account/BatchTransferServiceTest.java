@@ -0,0 +1,161 @@
+package com.poalim.mybank.account;
+
+import com.poalim.mybank.account.hot.HotAccountBuckets;
+import com.poalim.mybank.config.KafkaTopicsConfiguration;
+import com.poalim.mybank.id.UuidV7Generator;
+import com.poalim.mybank.money.Money;
+import com.poalim.mybank.outbox.OutboxService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.assertj.core.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchTransferServiceTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransferRecordRepository transferRecordRepository;
+
+    @Mock
+    private TransferBatchJdbcRepository transferBatchJdbcRepository;
+
+    @Mock
+    private OutboxService outboxService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private BatchTransferService batchTransferService() {
+        return new BatchTransferService(accountRepository, transferRecordRepository,
+                transferBatchJdbcRepository, outboxService, new UuidV7Generator(), meterRegistry, 100);
+    }
+
+    @Test
+    void transferBatch_ShouldLockOnceAndApplyLegsAgainstRunningBalances() {
+        // Arrange
+        Account a = new Account(1L, "John Doe", Money.ofMajor(100), AccountStatus.ACTIVE);
+        Account b = new Account(2L, "Jane Doe", Money.ZERO, AccountStatus.ACTIVE);
+        Account c = new Account(3L, "Jim Doe", Money.ZERO, AccountStatus.ACTIVE);
+        when(transferRecordRepository.findByIdempotencyKeyIn(any())).thenReturn(List.of());
+        when(accountRepository.findByIdsForUpdate(List.of(1L, 2L, 3L))).thenReturn(List.of(a, b, c));
+        when(transferBatchJdbcRepository.nextTransferRecordIds(anyInt())).thenReturn(List.of(10L, 11L));
+
+        BatchTransferRequest request = new BatchTransferRequest(List.of(
+                new TransferRequest(1L, 2L, Money.ofMajor(60), "k1"),
+                new TransferRequest(1L, 3L, Money.ofMajor(60), "k2"),
+                new TransferRequest(2L, 3L, Money.ofMajor(50), "k3")
+        ));
+
+        // Act
+        BatchTransferResponse response = batchTransferService().transferBatch(request);
+
+        // Assert
+        assertThat(response.getCompleted()).isEqualTo(2);
+        assertThat(response.getFailed()).isEqualTo(1);
+        assertThat(response.getResults().get(1).getMessage()).contains("Insufficient funds");
+        assertThat(response.getResults().get(2).getTransferId()).isEqualTo("11");
+        verify(accountRepository, times(1)).findByIdsForUpdate(any());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Long, Money>> balances = ArgumentCaptor.forClass(Map.class);
+        verify(transferBatchJdbcRepository).updateBalances(balances.capture());
+        assertThat(balances.getValue().get(1L)).isEqualTo(Money.ofMajor(40));
+        assertThat(balances.getValue().get(2L)).isEqualTo(Money.ofMajor(10));
+        assertThat(balances.getValue().get(3L)).isEqualTo(Money.ofMajor(50));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<OutboxService.KeyedEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(outboxService).enqueueAll(eq(KafkaTopicsConfiguration.TRANSACTION_TOPIC), events.capture());
+        assertThat(events.getValue()).extracting(OutboxService.KeyedEvent::key).containsExactly("1", "2");
+    }
+
+    @Test
+    void transferBatch_ShouldDrainHotSourceBucketsOnceWhenShort() {
+        // Arrange
+        HotAccountBuckets hotAccounts = mock(HotAccountBuckets.class);
+        BatchTransferService service = batchTransferService();
+        service.setHotAccounts(hotAccounts);
+        Account a = new Account(1L, "Merchant", Money.ofMajor(10), AccountStatus.ACTIVE);
+        Account b = new Account(2L, "Jane Doe", Money.ZERO, AccountStatus.ACTIVE);
+        when(transferRecordRepository.findByIdempotencyKeyIn(any())).thenReturn(List.of());
+        when(accountRepository.findByIdsForUpdate(List.of(1L, 2L))).thenReturn(List.of(a, b));
+        when(hotAccounts.drain(1L)).thenReturn(Money.ofMajor(90));
+        when(transferBatchJdbcRepository.nextTransferRecordIds(anyInt())).thenReturn(List.of(10L));
+
+        BatchTransferRequest request = new BatchTransferRequest(List.of(
+                new TransferRequest(1L, 2L, Money.ofMajor(60), "k1"),
+                new TransferRequest(1L, 2L, Money.ofMajor(60), "k2")
+        ));
+
+        // Act
+        BatchTransferResponse response = service.transferBatch(request);
+
+        // Assert
+        assertThat(response.getCompleted()).isEqualTo(1);
+        assertThat(response.getResults().get(1).getMessage()).contains("Insufficient funds");
+        verify(hotAccounts, times(1)).drain(1L);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Long, Money>> balances = ArgumentCaptor.forClass(Map.class);
+        verify(transferBatchJdbcRepository).updateBalances(balances.capture());
+        assertThat(balances.getValue().get(1L)).isEqualTo(Money.ofMajor(40));
+        assertThat(balances.getValue().get(2L)).isEqualTo(Money.ofMajor(60));
+    }
+
+    @Test
+    void transferBatch_ShouldReplayExistingAndRepeatedIdempotencyKeys() {
+        // Arrange
+        TransferRecord existing = new TransferRecord(7L, UUID.randomUUID(), "k1", 1L, 2L, Money.ofMajor(10),
+                TransferStatus.COMPLETED, LocalDateTime.now(), LocalDateTime.now());
+        when(transferRecordRepository.findByIdempotencyKeyIn(any())).thenReturn(List.of(existing));
+
+        BatchTransferRequest request = new BatchTransferRequest(List.of(
+                new TransferRequest(1L, 2L, Money.ofMajor(10), "k1"),
+                new TransferRequest(1L, 1L, Money.ofMajor(10), "k2"),
+                new TransferRequest(1L, 1L, Money.ofMajor(10), "k2")
+        ));
+
+        // Act
+        BatchTransferResponse response = batchTransferService().transferBatch(request);
+
+        // Assert
+        assertThat(response.getResults().get(0).isReplayed()).isTrue();
+        assertThat(response.getResults().get(0).getTransferId()).isEqualTo("7");
+        assertThat(response.getResults().get(2).isReplayed()).isTrue();
+        assertThat(response.getResults().get(2).getStatus()).isEqualTo("FAILED");
+        assertThat(response.getFailed()).isEqualTo(1);
+        verify(accountRepository, never()).findByIdsForUpdate(any());
+        verify(transferBatchJdbcRepository, never()).insertTransferRecords(any());
+    }
+
+    @Test
+    void transferBatch_WithTooManyLegs_ShouldThrowException() {
+        // Arrange
+        BatchTransferService service = new BatchTransferService(accountRepository, transferRecordRepository,
+                transferBatchJdbcRepository, outboxService, new UuidV7Generator(), meterRegistry, 1);
+        BatchTransferRequest request = new BatchTransferRequest(List.of(
+                new TransferRequest(1L, 2L, Money.ofMajor(10), "k1"),
+                new TransferRequest(1L, 2L, Money.ofMajor(10), "k2")
+        ));
+
+        // Act & Assert
+        assertThatThrownBy(() -> service.transferBatch(request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("must not contain more than 1");
+    }
+}
@@ -0,0 +1,117 @@
+package com.poalim.mybank.account.cache;
+
+import com.poalim.mybank.account.Account;
+import com.poalim.mybank.account.AccountResponse;
+import com.poalim.mybank.account.AccountStatus;
+import com.poalim.mybank.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AccountCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AccountCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new AccountCache(new AccountCacheProperties(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Account account(long id, String balance, long version) {
+        return new Account(id, "John Doe", Money.valueOf(balance), AccountStatus.ACTIVE, version);
+    }
+
+    @Test
+    void get_ShouldLoadOnceAndCountHitsAndMisses() {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        Optional<AccountResponse> first = cache.get(1L, id -> {
+            loads.incrementAndGet();
+            return Optional.of(account(id, "100.00", 0));
+        });
+        Optional<AccountResponse> second = cache.get(1L, id -> Optional.empty());
+
+        // Assert
+        assertThat(first).get().extracting(AccountResponse::getBalance).isEqualTo(Money.valueOf("100.00"));
+        assertThat(second).get().extracting(AccountResponse::getBalance).isEqualTo(Money.valueOf("100.00"));
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "accounts").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "accounts").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void get_WhenAccountDoesNotExist_ShouldNotCacheAbsence() {
+        // Act
+        Optional<AccountResponse> missing = cache.get(1L, id -> Optional.empty());
+        Optional<AccountResponse> created = cache.get(1L, id -> Optional.of(account(id, "5.00", 0)));
+
+        // Assert
+        assertThat(missing).isEmpty();
+        assertThat(created).isPresent();
+    }
+
+    @Test
+    void putAfterCommit_ShouldNeverReplaceNewerVersion() {
+        // Act: the update for version 3 arrives before the one for version 2
+        cache.putAfterCommit(account(1L, "300.00", 3));
+        cache.putAfterCommit(account(1L, "200.00", 2));
+
+        // Assert
+        assertThat(cache.peek(1L)).get().extracting(AccountCache.CachedAccount::version).isEqualTo(3L);
+        assertThat(cache.get(1L, id -> Optional.empty())).get()
+                .extracting(AccountResponse::getBalance).isEqualTo(Money.valueOf("300.00"));
+    }
+
+    @Test
+    void putAfterCommit_InTransaction_ShouldApplyOnlyAfterCommit() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        cache.putAfterCommit(account(1L, "100.00", 1));
+
+        // Assert: nothing visible before commit
+        assertThat(cache.peek(1L)).isEmpty();
+
+        // Act
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        // Assert
+        assertThat(cache.peek(1L)).isPresent();
+    }
+
+    @Test
+    void invalidateAfterCommit_ShouldDropEntries() {
+        // Arrange
+        cache.putAfterCommit(account(1L, "100.00", 1));
+        cache.putAfterCommit(account(2L, "100.00", 1));
+
+        // Act
+        cache.invalidateAfterCommit(List.of(1L));
+
+        // Assert
+        assertThat(cache.peek(1L)).isEmpty();
+        assertThat(cache.peek(2L)).isPresent();
+    }
+}
@@ -0,0 +1,89 @@
+package com.poalim.mybank.account.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class TransferConcurrencyPolicyTest {
+
+    private static TransferConcurrencyPolicy policy(TransferConcurrencyMode mode) {
+        TransferConcurrencyProperties properties = new TransferConcurrencyProperties();
+        properties.setMode(mode);
+        properties.setMinSamples(10);
+        properties.setConflictRateThreshold(0.2);
+        return new TransferConcurrencyPolicy(properties);
+    }
+
+    @Test
+    void optimistic_InOptimisticMode_ShouldIgnoreConflicts() {
+        // Arrange
+        TransferConcurrencyPolicy policy = policy(TransferConcurrencyMode.OPTIMISTIC);
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            policy.recordAttempt(1L, 2L, true);
+        }
+
+        // Assert
+        assertThat(policy.optimistic(1L, 2L)).isTrue();
+    }
+
+    @Test
+    void optimistic_InAdaptiveMode_ShouldLockAccountsWithFrequentConflicts() {
+        // Arrange
+        TransferConcurrencyPolicy policy = policy(TransferConcurrencyMode.ADAPTIVE);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            policy.recordAttempt(1L, 2L, i < 3);
+        }
+
+        // Assert
+        assertThat(policy.optimistic(1L, 2L)).isFalse();
+        assertThat(policy.optimistic(2L, 3L)).isFalse();
+        assertThat(policy.optimistic(3L, 4L)).isTrue();
+    }
+
+    @Test
+    void optimistic_InAdaptiveMode_ShouldWaitForEnoughSamples() {
+        // Arrange
+        TransferConcurrencyPolicy policy = policy(TransferConcurrencyMode.ADAPTIVE);
+
+        // Act
+        for (int i = 0; i < 9; i++) {
+            policy.recordAttempt(1L, 2L, true);
+        }
+
+        // Assert
+        assertThat(policy.optimistic(1L, 2L)).isTrue();
+    }
+
+    @Test
+    void optimistic_InAdaptiveMode_ShouldStayOptimisticBelowThreshold() {
+        // Arrange
+        TransferConcurrencyPolicy policy = policy(TransferConcurrencyMode.ADAPTIVE);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            policy.recordAttempt(1L, 2L, i < 2);
+        }
+
+        // Assert
+        assertThat(policy.optimistic(1L, 2L)).isTrue();
+    }
+
+    @Test
+    void backoffNanos_ShouldStayBelowTheExponentialCeiling() {
+        // Arrange
+        TransferConcurrencyPolicy policy = policy(TransferConcurrencyMode.OPTIMISTIC);
+
+        // Act & Assert
+        for (int i = 0; i < 100; i++) {
+            assertThat(policy.backoffNanos(1)).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(1));
+            assertThat(policy.backoffNanos(3)).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(4));
+            assertThat(policy.backoffNanos(30)).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(20));
+        }
+    }
+}
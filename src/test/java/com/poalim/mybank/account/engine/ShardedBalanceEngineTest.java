@@ -0,0 +1,232 @@
+package com.poalim.mybank.account.engine;
+
+import com.poalim.mybank.account.Account;
+import com.poalim.mybank.account.AccountNotFoundException;
+import com.poalim.mybank.account.AccountStatus;
+import com.poalim.mybank.account.ActionNotAllowedException;
+import com.poalim.mybank.money.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ShardedBalanceEngineTest {
+
+    private InMemoryAccountStateStore store;
+    private ShardedBalanceEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryAccountStateStore();
+        store.put(new Account(1L, "John Doe", Money.ofMajor(1000), AccountStatus.ACTIVE));
+        store.put(new Account(2L, "Jane Doe", Money.ofMajor(500), AccountStatus.ACTIVE));
+        store.put(new Account(3L, "Jim Doe", Money.ofMajor(100), AccountStatus.SUSPENDED));
+        engine = new ShardedBalanceEngine(store, 4, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        engine.close();
+    }
+
+    @Test
+    void deposit_ShouldIncreaseBalanceAndPersistDeltaOnFlush() {
+        // Act
+        AccountSnapshot snapshot = engine.deposit(1L, Money.ofMajor(500));
+        engine.settleCredit(1L, Money.ofMajor(500));
+        engine.flush();
+
+        // Assert
+        assertThat(snapshot.balance()).isEqualTo(Money.ofMajor(1500));
+        assertThat(store.balanceOf(1L)).isEqualTo(Money.ofMajor(1500));
+    }
+
+    @Test
+    void deposit_BeforeItIsSettled_ShouldNotBeSpendable() {
+        // Arrange
+        engine.deposit(2L, Money.ofMajor(100));
+
+        // Act & Assert
+        assertThatThrownBy(() -> engine.withdraw(2L, Money.ofMajor(600)))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Insufficient funds for withdrawal");
+        assertThat(engine.getAccount(2L).balance()).isEqualTo(Money.ofMajor(500));
+    }
+
+    @Test
+    void cancelCredit_AfterTheRestWasSpent_ShouldNotLeaveANegativeBalance() {
+        // Arrange: a deposit whose transaction will roll back, and a withdrawal of everything spendable
+        engine.deposit(2L, Money.ofMajor(100));
+        engine.withdraw(2L, Money.ofMajor(500));
+
+        // Act
+        engine.cancelCredit(2L, Money.ofMajor(100));
+        engine.flush();
+
+        // Assert
+        assertThat(engine.getAccount(2L).balance()).isEqualTo(Money.ofMajor(0));
+        assertThat(store.balanceOf(2L)).isEqualTo(Money.ofMajor(0));
+    }
+
+    @Test
+    void withdraw_WithInsufficientFunds_ShouldThrowException() {
+        // Act & Assert
+        assertThatThrownBy(() -> engine.withdraw(1L, Money.ofMajor(2000)))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Insufficient funds for withdrawal");
+    }
+
+    @Test
+    void getAccount_WhenAccountDoesNotExist_ShouldThrowException() {
+        // Act & Assert
+        assertThatThrownBy(() -> engine.getAccount(999L))
+                .isInstanceOf(AccountNotFoundException.class);
+    }
+
+    @Test
+    void transfer_ShouldMoveFundsBetweenAccounts() {
+        // Act
+        engine.transfer(1L, 2L, Money.ofMajor(500));
+        engine.settleCredit(2L, Money.ofMajor(500));
+        engine.flush();
+
+        // Assert
+        assertThat(engine.getAccount(1L).balance()).isEqualTo(Money.ofMajor(500));
+        assertThat(engine.getAccount(2L).balance()).isEqualTo(Money.ofMajor(1000));
+        assertThat(store.balanceOf(1L)).isEqualTo(Money.ofMajor(500));
+        assertThat(store.balanceOf(2L)).isEqualTo(Money.ofMajor(1000));
+    }
+
+    @Test
+    void transfer_ToInactiveAccount_ShouldLeaveSourceUntouched() {
+        // Act & Assert
+        assertThatThrownBy(() -> engine.transfer(1L, 3L, Money.ofMajor(100)))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Destination account is not active");
+        assertThat(engine.getAccount(1L).balance()).isEqualTo(Money.ofMajor(1000));
+        assertThat(engine.withdraw(1L, Money.ofMajor(1000)).balance()).isEqualTo(Money.ofMajor(0));
+    }
+
+    @Test
+    void transfer_WithMissingAccount_ShouldThrowException() {
+        // Act & Assert
+        assertThatThrownBy(() -> engine.transfer(1L, 999L, Money.ofMajor(100)))
+                .isInstanceOf(AccountNotFoundException.class);
+    }
+
+    @Test
+    void changeStatus_ToClosedWithNonZeroBalance_ShouldThrowException() {
+        // Act & Assert
+        assertThatThrownBy(() -> engine.changeStatus(1L, AccountStatus.CLOSED))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Account balance must be 0 to close the account");
+    }
+
+    @Test
+    void changeStatus_WithAnUnsettledCredit_ShouldNotCloseTheAccount() {
+        // Arrange
+        engine.withdraw(2L, Money.ofMajor(500));
+        engine.deposit(2L, Money.ofMajor(10));
+
+        // Act & Assert
+        assertThatThrownBy(() -> engine.changeStatus(2L, AccountStatus.CLOSED))
+                .isInstanceOf(ActionNotAllowedException.class)
+                .hasMessageContaining("Account balance must be 0 to close the account");
+    }
+
+    @Test
+    void changeStatus_ShouldWriteTheStatusAndReturnThePreviousOne() {
+        // Act
+        AccountStatus previous = engine.changeStatus(1L, AccountStatus.SUSPENDED);
+
+        // Assert
+        assertThat(previous).isEqualTo(AccountStatus.ACTIVE);
+        assertThat(store.load(1L)).get().extracting(Account::getStatus).isEqualTo(AccountStatus.SUSPENDED);
+        assertThat(engine.getAccount(1L).status()).isEqualTo(AccountStatus.SUSPENDED);
+    }
+
+    @Test
+    void compensateTransfer_ShouldRestoreBothBalances() {
+        // Act
+        engine.transfer(1L, 2L, Money.ofMajor(300));
+        engine.compensateTransfer(1L, 2L, Money.ofMajor(300));
+
+        // Assert
+        assertThat(engine.getAccount(1L).balance()).isEqualTo(Money.ofMajor(1000));
+        assertThat(engine.getAccount(2L).balance()).isEqualTo(Money.ofMajor(500));
+    }
+
+    @Test
+    void concurrentTransfers_ShouldConserveTotalBalance() throws InterruptedException {
+        // Arrange
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            boolean forward = i % 2 == 0;
+            pool.submit(() -> {
+                try {
+                    if (forward) {
+                        engine.transfer(1L, 2L, Money.ofMajor(7));
+                        engine.settleCredit(2L, Money.ofMajor(7));
+                    } else {
+                        engine.transfer(2L, 1L, Money.ofMajor(5));
+                        engine.settleCredit(1L, Money.ofMajor(5));
+                    }
+                } catch (ActionNotAllowedException ignored) {
+                    // insufficient funds is a legitimate outcome under contention
+                }
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        engine.flush();
+
+        // Assert
+        Money total = engine.getAccount(1L).balance().plus(engine.getAccount(2L).balance());
+        assertThat(total).isEqualTo(Money.ofMajor(1500));
+        assertThat(store.balanceOf(1L).plus(store.balanceOf(2L))).isEqualTo(Money.ofMajor(1500));
+        assertThat(engine.getAccount(1L).balance().signum()).isNotNegative();
+        assertThat(engine.getAccount(2L).balance().signum()).isNotNegative();
+    }
+
+    static class InMemoryAccountStateStore implements AccountStateStore {
+
+        private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+
+        void put(Account account) {
+            accounts.put(account.getId(), account);
+        }
+
+        Money balanceOf(Long id) {
+            return accounts.get(id).getBalance();
+        }
+
+        @Override
+        public Optional<Account> load(Long accountId) {
+            return Optional.ofNullable(accounts.get(accountId))
+                    .map(a -> new Account(a.getId(), a.getOwnerName(), a.getBalance(), a.getStatus()));
+        }
+
+        @Override
+        public void applyBalanceDeltas(Map<Long, Money> deltas) {
+            deltas.forEach((id, delta) -> {
+                Account account = accounts.get(id);
+                account.setBalance(account.getBalance().plus(delta));
+            });
+        }
+
+        @Override
+        public void updateStatus(Long accountId, AccountStatus status) {
+            accounts.get(accountId).setStatus(status);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.poalim.mybank.account.hot;
+
+import com.poalim.mybank.account.AccountNotFoundException;
+import com.poalim.mybank.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.assertj.core.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class HotAccountBucketsTest {
+
+    @Mock
+    private AccountBucketJdbcRepository bucketRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private HotAccountBuckets hotAccounts;
+
+    @BeforeEach
+    void setUp() {
+        HotAccountProperties properties = new HotAccountProperties();
+        properties.setMaxBuckets(16);
+        hotAccounts = new HotAccountBuckets(bucketRepository, transactionManager, properties);
+    }
+
+    @Test
+    void credit_ShouldOnlyUseBucketsOfHotAccounts() {
+        // Arrange
+        when(bucketRepository.setBuckets(1L, 4)).thenReturn(true);
+        when(bucketRepository.credit(eq(1L), anyInt(), any())).thenReturn(true);
+        hotAccounts.changeBuckets(1L, 4);
+
+        // Act
+        boolean hot = hotAccounts.credit(1L, Money.ofMajor(10));
+        boolean regular = hotAccounts.credit(2L, Money.ofMajor(10));
+
+        // Assert
+        assertThat(hot).isTrue();
+        assertThat(regular).isFalse();
+        verify(bucketRepository).credit(eq(1L), intThat(bucket -> bucket >= 0 && bucket < 4), eq(Money.ofMajor(10)));
+        verify(bucketRepository, never()).credit(eq(2L), anyInt(), any());
+    }
+
+    @Test
+    void changeBuckets_ToZero_ShouldStopBucketing() {
+        // Arrange
+        when(bucketRepository.setBuckets(eq(1L), anyInt())).thenReturn(true);
+        hotAccounts.changeBuckets(1L, 4);
+
+        // Act
+        hotAccounts.changeBuckets(1L, 0);
+
+        // Assert
+        assertThat(hotAccounts.isHot(1L)).isFalse();
+    }
+
+    @Test
+    void changeBuckets_ShouldRejectInvalidCountsAndMissingAccounts() {
+        // Arrange
+        when(bucketRepository.setBuckets(9L, 2)).thenReturn(false);
+
+        // Act & Assert
+        assertThatThrownBy(() -> hotAccounts.changeBuckets(1L, 17))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> hotAccounts.changeBuckets(9L, 2))
+                .isInstanceOf(AccountNotFoundException.class);
+        assertThat(hotAccounts.isHot(9L)).isFalse();
+    }
+
+    @Test
+    void refresh_ShouldReplaceTheHotAccounts() {
+        // Arrange
+        when(bucketRepository.setBuckets(1L, 4)).thenReturn(true);
+        hotAccounts.changeBuckets(1L, 4);
+        when(bucketRepository.findHotAccounts()).thenReturn(Map.of(2L, 8));
+
+        // Act
+        hotAccounts.refresh();
+
+        // Assert
+        assertThat(hotAccounts.isHot(1L)).isFalse();
+        assertThat(hotAccounts.isHot(2L)).isTrue();
+    }
+
+    @Test
+    void consolidateAll_ShouldMoveBucketsIntoTheirAccounts() {
+        // Arrange
+        when(bucketRepository.findAccountsWithFilledBuckets()).thenReturn(List.of(1L, 2L));
+        when(bucketRepository.lockAccount(any())).thenReturn(true);
+        when(bucketRepository.drain(1L)).thenReturn(Money.ofMajor(30));
+        when(bucketRepository.drain(2L)).thenReturn(Money.ZERO);
+
+        // Act
+        int consolidated = hotAccounts.consolidateAll();
+
+        // Assert
+        assertThat(consolidated).isEqualTo(1);
+        verify(bucketRepository).addToAccount(1L, Money.ofMajor(30));
+        verify(bucketRepository, never()).addToAccount(eq(2L), any());
+    }
+}
@@ -0,0 +1,48 @@
+package com.poalim.mybank.account.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void mightContain_ShouldNeverMissAddedKeysAcrossStages() {
+        // Arrange
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01, 1024 * 1024);
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("key-" + i);
+        }
+
+        // Assert
+        assertThat(filter.stageCount()).isGreaterThan(1);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("key-" + i)).isTrue();
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    @Test
+    void add_WhenBudgetIsSpent_ShouldStopGrowing() {
+        // Arrange
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01, 4 * 1024);
+
+        // Act
+        for (int i = 0; i < 20_000; i++) {
+            filter.add("key-" + i);
+        }
+
+        // Assert
+        assertThat(filter.isBudgetExhausted()).isTrue();
+        assertThat(filter.memoryBytes()).isLessThanOrEqualTo(4 * 1024);
+        assertThat(filter.mightContain("key-19999")).isTrue();
+    }
+}
@@ -0,0 +1,145 @@
+package com.poalim.mybank.account.idempotency;
+
+import com.poalim.mybank.account.TransferRecord;
+import com.poalim.mybank.account.TransferStatus;
+import com.poalim.mybank.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferIdempotencyFilterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private Function<String, Optional<TransferRecord>> loader;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransferIdempotencyFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        IdempotencyFilterProperties properties = new IdempotencyFilterProperties();
+        properties.setExpectedKeys(1000);
+        properties.setRecentCapacity(2);
+        filter = new TransferIdempotencyFilter(jdbcTemplate, transactionManager, properties, meterRegistry);
+    }
+
+    private static TransferRecord record(long id, String key) {
+        LocalDateTime now = LocalDateTime.now();
+        return new TransferRecord(id, UUID.randomUUID(), key, 1L, 2L, Money.ofMajor(10), TransferStatus.COMPLETED, now, now);
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("idempotency.filter.lookups").tag("result", result).counter().count();
+    }
+
+    @Test
+    void find_BeforeRebuild_ShouldAlwaysQueryDatabase() {
+        // Arrange
+        when(loader.apply("key-1")).thenReturn(Optional.empty());
+
+        // Act
+        Optional<TransferRecord> found = filter.find("key-1", loader);
+
+        // Assert
+        assertThat(found).isEmpty();
+        verify(loader).apply("key-1");
+        assertThat(lookups("bypassed")).isEqualTo(1.0);
+    }
+
+    @Test
+    void find_WithUnknownKey_ShouldSkipDatabase() {
+        // Arrange
+        filter.rebuild();
+
+        // Act
+        Optional<TransferRecord> found = filter.find("key-1", loader);
+
+        // Assert
+        assertThat(filter.isReady()).isTrue();
+        assertThat(found).isEmpty();
+        verifyNoInteractions(loader);
+        assertThat(lookups("miss")).isEqualTo(1.0);
+    }
+
+    @Test
+    void find_WithRecordedKey_ShouldQueryDatabaseOnceThenServeFromRecentCache() {
+        // Arrange
+        filter.rebuild();
+        filter.record("key-1");
+        when(loader.apply("key-1")).thenReturn(Optional.of(record(7L, "key-1")));
+
+        // Act
+        Optional<TransferRecord> first = filter.find("key-1", loader);
+        Optional<TransferRecord> second = filter.find("key-1", loader);
+
+        // Assert
+        assertThat(first).get().extracting(TransferRecord::getId).isEqualTo(7L);
+        assertThat(second).get().extracting(TransferRecord::getId).isEqualTo(7L);
+        verify(loader, times(1)).apply("key-1");
+        assertThat(lookups("possible")).isEqualTo(1.0);
+        assertThat(lookups("recent")).isEqualTo(1.0);
+    }
+
+    @Test
+    void find_WhenDatabaseDoesNotConfirmPossibleHit_ShouldCountFalsePositive() {
+        // Arrange
+        filter.rebuild();
+        filter.record("rolled-back");
+        when(loader.apply("rolled-back")).thenReturn(Optional.empty());
+
+        // Act
+        Optional<TransferRecord> found = filter.find("rolled-back", loader);
+
+        // Assert
+        assertThat(found).isEmpty();
+        assertThat(meterRegistry.get("idempotency.filter.false.positives").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void findAll_ShouldLookUpOnlyPossibleHitsAndEvictOldestRecent() {
+        // Arrange
+        filter.rebuild();
+        filter.record("key-1");
+        filter.record("key-2");
+        filter.record("key-3");
+        List<TransferRecord> stored = List.of(record(1L, "key-1"), record(2L, "key-2"), record(3L, "key-3"));
+
+        // Act
+        Map<String, TransferRecord> found = filter.findAll(List.of("key-1", "key-2", "key-3", "new-key"), keys -> {
+            assertThat(keys).containsExactly("key-1", "key-2", "key-3");
+            return stored;
+        });
+        Map<String, TransferRecord> again = filter.findAll(List.of("key-1", "key-3"), keys -> {
+            assertThat(keys).containsExactly("key-1");
+            return List.of(stored.get(0));
+        });
+
+        // Assert
+        assertThat(found).containsOnlyKeys("key-1", "key-2", "key-3");
+        assertThat(again).containsOnlyKeys("key-1", "key-3");
+        assertThat(lookups("miss")).isEqualTo(1.0);
+    }
+}
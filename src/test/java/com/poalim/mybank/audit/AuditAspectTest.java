@@ -0,0 +1,238 @@
+package com.poalim.mybank.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.poalim.mybank.account.TransferRequest;
+import com.poalim.mybank.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.assertj.core.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditAspectTest {
+
+    @Mock
+    private AuditWriter auditWriter;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private final AuditCaptureProperties captureProperties = new AuditCaptureProperties();
+
+    private Operations operations;
+
+    public static class Operations {
+
+        @Auditable(operationType = "DEPOSIT", captureResult = false)
+        public String deposit(Long accountId, Money amount) {
+            return "deposited";
+        }
+
+        @Auditable
+        public String transfer(TransferRequest request) {
+            return "transferred";
+        }
+
+        @Auditable(captureParameters = false)
+        public String adjust(String reason, Long amountCents) {
+            return "adjusted";
+        }
+
+        @Auditable
+        public String fail(Long accountId) {
+            throw new IllegalStateException("Account " + accountId + " is closed");
+        }
+
+        @Auditable
+        public String open(Object request) {
+            return "opened";
+        }
+    }
+
+    public static class FailingGetterRequest {
+
+        public Long getAccountId() {
+            throw new IllegalStateException("Not loaded");
+        }
+    }
+
+    public static class ErrorGetterRequest {
+
+        public Long getAccountId() {
+            throw new StackOverflowError();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        AuditAspect aspect = new AuditAspect();
+        ReflectionTestUtils.setField(aspect, "auditWriter", auditWriter);
+        ReflectionTestUtils.setField(aspect, "objectMapper", objectMapper);
+        aspect.setMeterRegistry(new SimpleMeterRegistry());
+        aspect.setCaptureProperties(captureProperties);
+
+        AspectJProxyFactory factory = new AspectJProxyFactory(new Operations());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        operations = factory.getProxy();
+    }
+
+    private List<Audit> written(int times) {
+        ArgumentCaptor<Audit> captor = ArgumentCaptor.forClass(Audit.class);
+        verify(auditWriter, times(times)).write(captor.capture());
+        return captor.getAllValues();
+    }
+
+    @Test
+    void auditMethod_WithAccountIdParameter_ShouldRecordAccountIdAndParameters() throws Exception {
+        // Act
+        operations.deposit(7L, Money.valueOf("12.50"));
+
+        // Assert
+        Audit audit = written(1).get(0);
+        assertThat(audit.getAccountId()).isEqualTo(7L);
+        assertThat(audit.getOperationType()).isEqualTo("DEPOSIT");
+        assertThat(audit.getMethodName()).isEqualTo("Operations.deposit");
+        assertThat(audit.getSuccess()).isTrue();
+        assertThat(audit.getResult()).isNull();
+        assertThat(objectMapper.readTree(audit.getParameters()))
+                .isEqualTo(objectMapper.readTree("{\"accountId\":7,\"amount\":12.50}"));
+    }
+
+    @Test
+    void auditMethod_WithRequestObject_ShouldTakeAccountIdFromIt() {
+        // Act
+        operations.transfer(new TransferRequest(3L, 4L, Money.ofMajor(1), "key-1"));
+        operations.transfer(new TransferRequest(null, 5L, Money.ofMajor(1), "key-2"));
+
+        // Assert
+        List<Audit> audits = written(2);
+        assertThat(audits).extracting(Audit::getAccountId).containsExactly(3L, 5L);
+        assertThat(audits.get(0).getOperationType()).isEqualTo("TRANSFER");
+        assertThat(audits.get(0).getResult()).isEqualTo("\"transferred\"");
+    }
+
+    @Test
+    void auditMethod_WhenAccountIdGetterThrows_ShouldRecordNoAccountId() {
+        // Act
+        String result = operations.open(new FailingGetterRequest());
+
+        // Assert
+        assertThat(result).isEqualTo("opened");
+        assertThat(written(1).get(0).getAccountId()).isNull();
+    }
+
+    @Test
+    void auditMethod_WhenAccountIdGetterThrowsError_ShouldRethrowIt() {
+        // Act & Assert
+        assertThatThrownBy(() -> operations.open(new ErrorGetterRequest()))
+                .isInstanceOf(StackOverflowError.class);
+        verifyNoInteractions(auditWriter);
+    }
+
+    @Test
+    void auditMethod_WithoutAccountId_ShouldRecordNoAccountId() {
+        // Act
+        operations.adjust("fee", 250L);
+        operations.adjust(null, null);
+
+        // Assert
+        List<Audit> audits = written(2);
+        assertThat(audits).extracting(Audit::getAccountId).containsOnlyNulls();
+        assertThat(audits).extracting(Audit::getParameters).containsOnlyNulls();
+    }
+
+    @Test
+    void auditMethod_WhenMethodThrows_ShouldRecordFailureAndRethrow() {
+        // Act & Assert
+        assertThatThrownBy(() -> operations.fail(9L))
+                .isInstanceOf(IllegalStateException.class);
+
+        Audit audit = written(1).get(0);
+        assertThat(audit.getAccountId()).isEqualTo(9L);
+        assertThat(audit.getSuccess()).isFalse();
+        assertThat(audit.getErrorMessage()).isEqualTo("Account 9 is closed");
+    }
+
+    @Test
+    void auditMethod_WhenNotSampled_ShouldWriteRecordWithoutPayloads() {
+        // Arrange
+        captureProperties.getOperations().put("TRANSFER", policy(AuditCaptureMode.SAMPLED));
+        captureProperties.getOperations().get("TRANSFER").setSamplePercent(0);
+
+        // Act
+        operations.transfer(new TransferRequest(3L, 4L, Money.ofMajor(1), "key-1"));
+
+        // Assert
+        Audit audit = written(1).get(0);
+        assertThat(audit.getAccountId()).isEqualTo(3L);
+        assertThat(audit.getSuccess()).isTrue();
+        assertThat(audit.getParameters()).isNull();
+        assertThat(audit.getResult()).isNull();
+    }
+
+    @Test
+    void auditMethod_WithErrorsOnlyPolicy_ShouldCaptureFailedCallsOnly() {
+        // Arrange
+        captureProperties.setDefaults(policy(AuditCaptureMode.ERRORS));
+
+        // Act
+        operations.transfer(new TransferRequest(3L, 4L, Money.ofMajor(1), "key-1"));
+        assertThatThrownBy(() -> operations.fail(9L)).isInstanceOf(IllegalStateException.class);
+
+        // Assert
+        List<Audit> audits = written(2);
+        assertThat(audits.get(0).getParameters()).isNull();
+        assertThat(audits.get(0).getResult()).isNull();
+        assertThat(audits.get(1).getParameters()).isEqualTo("{\"accountId\":9}");
+    }
+
+    @Test
+    void auditMethod_WithSlowOnlyPolicy_ShouldCaptureCallsOverTheThreshold() {
+        // Arrange
+        AuditCaptureProperties.Policy slow = policy(AuditCaptureMode.SLOW);
+        slow.setSlowThresholdMs(0);
+        captureProperties.getOperations().put("TRANSFER", slow);
+
+        // Act
+        operations.transfer(new TransferRequest(3L, 4L, Money.ofMajor(1), "key-1"));
+
+        // Assert
+        Audit audit = written(1).get(0);
+        assertThat(audit.getParameters()).contains("\"idempotencyKey\":\"key-1\"");
+        assertThat(audit.getResult()).isEqualTo("\"transferred\"");
+    }
+
+    @Test
+    void auditMethod_WithOversizedPayload_ShouldTruncateOrHashIt() {
+        // Arrange
+        captureProperties.setMaxPayloadChars(20);
+
+        // Act
+        operations.transfer(new TransferRequest(3L, 4L, Money.ofMajor(1), "key-1"));
+        captureProperties.setOversizedPayload(AuditPayloadLimit.HASH);
+        operations.transfer(new TransferRequest(3L, 4L, Money.ofMajor(1), "key-1"));
+
+        // Assert
+        List<Audit> audits = written(2);
+        assertThat(audits.get(0).getParameters()).startsWith("{\"request\":").contains("...[truncated, ");
+        assertThat(audits.get(0).getResult()).isEqualTo("\"transferred\"");
+        assertThat(audits.get(1).getParameters()).matches("sha256:[0-9a-f]{64} \\(\\d+ chars\\)");
+    }
+
+    private static AuditCaptureProperties.Policy policy(AuditCaptureMode mode) {
+        AuditCaptureProperties.Policy policy = new AuditCaptureProperties.Policy();
+        policy.setMode(mode);
+        return policy;
+    }
+}
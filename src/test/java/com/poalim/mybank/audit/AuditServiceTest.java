@@ -6,6 +6,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -21,6 +22,9 @@ class AuditServiceTest {
     @Mock
     private AuditRepository auditRepository;
 
+    @Mock
+    private AuditJdbcRepository auditJdbcRepository;
+
     @InjectMocks
     private AuditService auditService;
 
@@ -40,6 +44,9 @@ class AuditServiceTest {
         sampleAudit2.setAccountId(100L);
         sampleAudit2.setOperationType("WITHDRAWAL");
         sampleAudit2.setTimestamp(LocalDateTime.now().plusHours(1));
+
+        ReflectionTestUtils.setField(auditService, "defaultPageSize", 100);
+        ReflectionTestUtils.setField(auditService, "maxPageSize", 2);
     }
 
     @Test
@@ -100,6 +107,45 @@ class AuditServiceTest {
         verify(auditRepository).findByAccountIdAndOperationTypeOrderByTimestampDesc(100L, "DEPOSIT");
     }
 
+    @Test
+    void getAuditPage_WhenMoreRowsExist_ShouldCapPageAndReturnCursorAfterLastRow() {
+        // Arrange
+        Audit sampleAudit3 = new Audit();
+        sampleAudit3.setId(3L);
+        sampleAudit3.setTimestamp(LocalDateTime.now().minusHours(1));
+        when(auditJdbcRepository.findPage(100L, null, null, 3, false))
+                .thenReturn(List.of(sampleAudit2, sampleAudit1, sampleAudit3));
+
+        // Act
+        AuditPage page = auditService.getAuditPage(100L, null, null, 50, false);
+
+        // Assert
+        assertThat(page.audits()).containsExactly(sampleAudit2, sampleAudit1);
+        assertThat(AuditCursor.decode(page.nextCursor())).isEqualTo(AuditCursor.after(sampleAudit1));
+    }
+
+    @Test
+    void getAuditPage_WithCursor_ShouldContinueAfterItAndEndOnShortPage() {
+        // Arrange
+        AuditCursor cursor = AuditCursor.after(sampleAudit2);
+        when(auditJdbcRepository.findPage(100L, "DEPOSIT", cursor, 3, true)).thenReturn(List.of(sampleAudit1));
+
+        // Act
+        AuditPage page = auditService.getAuditPage(100L, "DEPOSIT", cursor.encode(), null, true);
+
+        // Assert
+        assertThat(page.audits()).containsExactly(sampleAudit1);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void getAuditPage_WithInvalidCursor_ShouldThrowException() {
+        // Act & Assert
+        assertThatThrownBy(() -> auditService.getAuditPage(100L, null, "not-a-cursor", null, true))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid cursor");
+    }
+
     @Test
     void getAllAudits_ShouldReturnAllAudits() {
         // Arrange
@@ -0,0 +1,192 @@
+package com.poalim.mybank.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+import static org.assertj.core.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditWriterTest {
+
+    @Mock
+    private AuditRepository auditRepository;
+
+    @Mock
+    private AuditJdbcRepository auditJdbcRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private AuditWriter writer(AuditOverflowPolicy policy, int capacity) {
+        AuditWriterProperties properties = new AuditWriterProperties();
+        properties.setOverflowPolicy(policy);
+        properties.setCapacity(capacity);
+        properties.setBatchSize(100);
+        properties.setSpillFile(tempDir.resolve("spill.ndjson").toString());
+        properties.setRetryBackoffMs(1);
+        return new AuditWriter(properties, auditRepository, auditJdbcRepository, objectMapper, meterRegistry);
+    }
+
+    private static Audit audit() {
+        Audit audit = new Audit();
+        audit.setAccountId(1L);
+        audit.setOperationType("DEPOSIT");
+        audit.setMethodName("AccountService.deposit");
+        audit.setSuccess(true);
+        audit.setTimestamp(LocalDateTime.now());
+        return audit;
+    }
+
+    @Test
+    void write_BeforeStart_ShouldSaveSynchronously() {
+        // Act
+        writer(AuditOverflowPolicy.BLOCK, 16).write(audit());
+
+        // Assert
+        verify(auditRepository).save(any(Audit.class));
+        verifyNoInteractions(auditJdbcRepository);
+    }
+
+    @Test
+    void stop_ShouldFlushEveryQueuedRecordInBatches() {
+        // Arrange
+        AtomicInteger inserted = new AtomicInteger();
+        doAnswer(invocation -> {
+            inserted.addAndGet(invocation.<List<Audit>>getArgument(0).size());
+            return null;
+        }).when(auditJdbcRepository).insertAll(anyList());
+        AuditWriter writer = writer(AuditOverflowPolicy.BLOCK, 64);
+        writer.start();
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            writer.write(audit());
+        }
+        writer.stop();
+
+        // Assert
+        assertThat(inserted.get()).isEqualTo(1000);
+        verify(auditRepository, never()).save(any(Audit.class));
+    }
+
+    @Test
+    void write_WhenFull_ShouldApplyOverflowPolicy() throws Exception {
+        // Arrange: hold the drainer inside its first insert so the buffer fills up
+        CountDownLatch insertStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            insertStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(auditJdbcRepository).insertAll(anyList());
+        AuditWriter writer = writer(AuditOverflowPolicy.SPILL, 2);
+        writer.start();
+        writer.write(audit());
+        assertThat(insertStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Act
+        writer.write(audit());
+        writer.write(audit());
+        writer.write(audit());
+        release.countDown();
+        writer.stop();
+
+        // Assert
+        assertThat(Files.readAllLines(tempDir.resolve("spill.ndjson"))).hasSize(1);
+        assertThat(meterRegistry.get("audit.writer.records").tag("outcome", "spilled").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void insert_WhileTheDatabaseIsDown_ShouldSpillAndReplayOnTheNextStart() {
+        // Arrange
+        doThrow(new CannotGetJdbcConnectionException("Connection is not available"))
+                .when(auditJdbcRepository).insertAll(anyList());
+        AuditWriter writer = writer(AuditOverflowPolicy.BLOCK, 64);
+        writer.start();
+
+        // Act: every attempt fails, then the database comes back before the restart
+        for (int i = 0; i < 10; i++) {
+            writer.write(audit());
+        }
+        writer.stop();
+        AtomicInteger replayed = new AtomicInteger();
+        doAnswer(invocation -> {
+            replayed.addAndGet(invocation.<List<Audit>>getArgument(0).size());
+            return null;
+        }).when(auditJdbcRepository).insertAll(anyList());
+        writer(AuditOverflowPolicy.BLOCK, 64).start();
+
+        // Assert
+        assertThat(meterRegistry.get("audit.writer.records").tag("outcome", "spilled").counter().count())
+                .isEqualTo(10.0);
+        assertThat(meterRegistry.get("audit.writer.records").tag("outcome", "failed").counter().count())
+                .isZero();
+        assertThat(replayed.get()).isEqualTo(10);
+        assertThat(tempDir.resolve("spill.ndjson")).doesNotExist();
+        assertThat(tempDir.resolve("spill.ndjson.replaying")).doesNotExist();
+    }
+
+    @Test
+    void insert_WhenTheDatabaseRejectsOneRecord_ShouldWriteTheOthers() {
+        // Arrange
+        Audit rejected = audit();
+        rejected.setOperationType("REJECTED");
+        AtomicInteger inserted = new AtomicInteger();
+        doAnswer(invocation -> {
+            List<Audit> audits = invocation.getArgument(0);
+            if (audits.contains(rejected)) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            inserted.addAndGet(audits.size());
+            return null;
+        }).when(auditJdbcRepository).insertAll(anyList());
+        AuditWriter writer = writer(AuditOverflowPolicy.BLOCK, 64);
+        writer.start();
+
+        // Act
+        writer.write(audit());
+        writer.write(rejected);
+        writer.write(audit());
+        writer.stop();
+
+        // Assert
+        assertThat(inserted.get()).isEqualTo(2);
+        assertThat(meterRegistry.get("audit.writer.records").tag("outcome", "failed").counter().count())
+                .isEqualTo(1.0);
+        assertThat(tempDir.resolve("spill.ndjson")).doesNotExist();
+    }
+
+    @Test
+    void setBatchSize_AbovePostgresBindParameterLimit_ShouldBeRejected() {
+        // Arrange
+        AuditWriterProperties properties = new AuditWriterProperties();
+
+        // Act & Assert
+        assertThatThrownBy(() -> properties.setBatchSize(3000))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("2978");
+    }
+}
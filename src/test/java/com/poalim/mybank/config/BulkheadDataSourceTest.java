@@ -0,0 +1,73 @@
+package com.poalim.mybank.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.mockito.Mockito.*;
+import static org.assertj.core.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkheadDataSourceTest {
+
+    @Mock
+    private DataSource target;
+
+    @Mock
+    private Connection connection;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void getConnection_ShouldHoldPermitUntilConnectionIsClosed() throws Exception {
+        // Arrange
+        BulkheadDataSource dataSource = new BulkheadDataSource(target, 2, 10, meterRegistry);
+        when(target.getConnection()).thenReturn(connection);
+
+        // Act
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        int whileOpen = dataSource.availablePermits();
+        first.close();
+        first.close();
+
+        // Assert
+        assertThat(whileOpen).isZero();
+        assertThat(dataSource.availablePermits()).isEqualTo(1);
+        assertThat(second).isNotEqualTo(first);
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    void getConnection_WhenAllPermitsAreTaken_ShouldRefuseAfterTimeout() throws Exception {
+        // Arrange
+        BulkheadDataSource dataSource = new BulkheadDataSource(target, 1, 10, meterRegistry);
+        when(target.getConnection()).thenReturn(connection);
+        dataSource.getConnection();
+
+        // Act & Assert
+        assertThatThrownBy(dataSource::getConnection)
+                .isInstanceOf(SQLTransientConnectionException.class)
+                .hasMessageContaining("all 1 are in use");
+        assertThat(meterRegistry.get("db.bulkhead.rejected").counter().count()).isEqualTo(1.0);
+        verify(target, times(1)).getConnection();
+    }
+
+    @Test
+    void getConnection_WhenPoolFails_ShouldReturnPermit() throws Exception {
+        // Arrange
+        BulkheadDataSource dataSource = new BulkheadDataSource(target, 1, 10, meterRegistry);
+        when(target.getConnection()).thenThrow(new SQLException("pool exhausted"));
+
+        // Act & Assert
+        assertThatThrownBy(dataSource::getConnection).hasMessage("pool exhausted");
+        assertThat(dataSource.availablePermits()).isEqualTo(1);
+    }
+}
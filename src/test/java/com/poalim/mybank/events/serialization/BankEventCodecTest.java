@@ -0,0 +1,148 @@
+package com.poalim.mybank.events.serialization;
+
+import com.poalim.mybank.config.KafkaTopicsConfiguration;
+import com.poalim.mybank.events.DepositCompletedEvent;
+import com.poalim.mybank.events.TransactionCompletedEvent;
+import com.poalim.mybank.money.Money;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.DelegatingByTopicSerialization;
+import org.springframework.kafka.support.serializer.DelegatingByTopicSerializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class BankEventCodecTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_456_000);
+
+    @Test
+    void encode_TransactionEvent_ShouldRoundTripAndBeSmallerThanJson() {
+        // Arrange
+        TransactionCompletedEvent event = new TransactionCompletedEvent("3f1c2a9e-7b4d-4e8a-9c01-52d6f0e8b7a4",
+                "1001", "1002", Money.valueOf("1250.75"), TIMESTAMP);
+
+        // Act
+        byte[] encoded = BankEventCodec.encode(event);
+
+        // Assert
+        assertThat(BankEventCodec.decode(encoded)).isEqualTo(event);
+        assertThat(encoded.length).isLessThan(new JsonSerializer<>().serialize("topic", event).length / 4);
+    }
+
+    @Test
+    void encode_IdsThatAreNotNumbersOrUuids_ShouldKeepThemAsText() {
+        // Arrange
+        DepositCompletedEvent event = new DepositCompletedEvent("TX-42", "007", Money.valueOf("-0.5"),
+                LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_000));
+        DepositCompletedEvent upperCaseUuid = new DepositCompletedEvent("3F1C2A9E-7B4D-4E8A-9C01-52D6F0E8B7A4",
+                null, Money.valueOf("1E+3"), TIMESTAMP);
+
+        // Act & Assert
+        assertThat(BankEventCodec.decode(BankEventCodec.encode(event))).isEqualTo(event);
+        assertThat(BankEventCodec.decode(BankEventCodec.encode(upperCaseUuid))).isEqualTo(upperCaseUuid);
+    }
+
+    @Test
+    void decode_Version1Bytes_ShouldStayReadable() {
+        // Arrange: a deposit of 500.00 to account 1001 as written by version 1
+        byte[] encoded = HexFormat.of().parseHex("0102011e01e90704a08d0680c9f5f0a3f88606");
+
+        // Act
+        Object event = BankEventCodec.decode(encoded);
+
+        // Assert
+        assertThat(event).isEqualTo(new DepositCompletedEvent("30", "1001", Money.valueOf("500.00"), TIMESTAMP));
+        assertThat(BankEventCodec.encode(event)).isEqualTo(encoded);
+    }
+
+    @Test
+    void decode_UnknownVersionOrTruncatedPayload_ShouldFail() {
+        // Arrange
+        byte[] encoded = BankEventCodec.encode(new DepositCompletedEvent("30", "1001", Money.ofMajor(10), TIMESTAMP));
+        byte[] nextVersion = encoded.clone();
+        nextVersion[0] = 2;
+
+        // Act & Assert
+        assertThatThrownBy(() -> BankEventCodec.decode(nextVersion))
+                .isInstanceOf(SerializationException.class)
+                .hasMessageContaining("version 2");
+        assertThatThrownBy(() -> BankEventCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void decode_AmountInAnotherScale_ShouldBeReadOnlyIfWholeCents() {
+        // Arrange: the deposit above with its amount as 500.000 and 500.001
+        byte[] wholeCents = HexFormat.of().parseHex("0102011e01e90706c0843d80c9f5f0a3f88606");
+        byte[] fractionOfCent = HexFormat.of().parseHex("0102011e01e90706c2843d80c9f5f0a3f88606");
+
+        // Act & Assert
+        assertThat(BankEventCodec.decode(wholeCents))
+                .isEqualTo(new DepositCompletedEvent("30", "1001", Money.valueOf("500.00"), TIMESTAMP));
+        assertThatThrownBy(() -> BankEventCodec.decode(fractionOfCent))
+                .isInstanceOf(SerializationException.class)
+                .hasMessageContaining("500.001");
+    }
+
+    /**
+     * The codec writes the event fields by hand. When an event record changes, this fails until the codec
+     * gets a new schema version for it.
+     */
+    @Test
+    void eventRecords_ShouldMatchVersion1Schema() {
+        assertThat(components(TransactionCompletedEvent.class)).containsExactly(
+                "String transactionId", "String sourceAccountId", "String targetAccountId",
+                "Money amount", "LocalDateTime timestamp");
+        assertThat(components(DepositCompletedEvent.class)).containsExactly(
+                "String transactionId", "String accountId", "Money amount", "LocalDateTime timestamp");
+    }
+
+    @Test
+    void deserializer_ShouldReadJsonWrittenBeforeTheSwitch() {
+        // Arrange
+        TransactionCompletedEvent event = new TransactionCompletedEvent("t-1", "1", "2", Money.ofMajor(1), TIMESTAMP);
+        RecordHeaders headers = new RecordHeaders();
+        byte[] json = new JsonSerializer<>().serialize(KafkaTopicsConfiguration.TRANSACTION_TOPIC, headers, event);
+        BankEventDeserializer deserializer = new BankEventDeserializer();
+        deserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "com.poalim.mybank.events"), false);
+
+        // Act & Assert
+        assertThat(deserializer.deserialize(KafkaTopicsConfiguration.TRANSACTION_TOPIC, headers, json)).isEqualTo(event);
+        assertThat(deserializer.deserialize(KafkaTopicsConfiguration.TRANSACTION_TOPIC, new RecordHeaders(),
+                BankEventCodec.encode(event))).isEqualTo(event);
+    }
+
+    @Test
+    void delegatingSerializer_ShouldPickTheFormatByTopic() {
+        // Arrange
+        DelegatingByTopicSerializer serializer = new DelegatingByTopicSerializer();
+        serializer.configure(Map.of(
+                DelegatingByTopicSerialization.VALUE_SERIALIZATION_TOPIC_CONFIG,
+                KafkaTopicsConfiguration.TRANSACTION_TOPIC + ":" + BankEventSerializer.class.getName(),
+                DelegatingByTopicSerialization.VALUE_SERIALIZATION_TOPIC_DEFAULT, JsonSerializer.class.getName()
+        ), false);
+        TransactionCompletedEvent event = new TransactionCompletedEvent("t-1", "1", "2", Money.ofMajor(1), TIMESTAMP);
+
+        // Act
+        byte[] binary = serializer.serialize(KafkaTopicsConfiguration.TRANSACTION_TOPIC, new RecordHeaders(), event);
+        byte[] json = serializer.serialize(KafkaTopicsConfiguration.TRANSACTION_DLT, new RecordHeaders(), event);
+
+        // Assert
+        assertThat(binary).isEqualTo(BankEventCodec.encode(event));
+        assertThat(BankEventDeserializer.isJson(json)).isTrue();
+    }
+
+    private static String[] components(Class<? extends Record> type) {
+        return Arrays.stream(type.getRecordComponents())
+                .map(component -> component.getType().getSimpleName() + " " + component.getName())
+                .toArray(String[]::new);
+    }
+}
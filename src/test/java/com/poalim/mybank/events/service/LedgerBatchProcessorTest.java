@@ -0,0 +1,192 @@
+package com.poalim.mybank.events.service;
+
+import com.poalim.mybank.config.KafkaTopicsConfiguration;
+import com.poalim.mybank.events.TransactionCompletedEvent;
+import com.poalim.mybank.events.entity.LedgerEntry;
+import com.poalim.mybank.events.repository.DailyStatsDelta;
+import com.poalim.mybank.events.repository.LedgerBatchJdbcRepository;
+import com.poalim.mybank.events.repository.LedgerCheckpointJdbcRepository;
+import com.poalim.mybank.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+import static org.assertj.core.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerBatchProcessorTest {
+
+    @Mock
+    private LedgerBatchJdbcRepository ledgerBatchJdbcRepository;
+
+    @Mock
+    private LedgerCheckpointJdbcRepository ledgerCheckpointJdbcRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LedgerBatchProcessor processor;
+    private final TransactionEventListener listener = new TransactionEventListener(null);
+
+    private static String tx(int n) {
+        return "0190f3a0-0000-7000-8000-00000000000" + n;
+    }
+
+    @BeforeEach
+    void setUp() {
+        processor = new LedgerBatchProcessor(ledgerBatchJdbcRepository, ledgerCheckpointJdbcRepository,
+                transactionManager, meterRegistry, 4, 1);
+    }
+
+    private static ConsumerRecord<String, TransactionCompletedEvent> record(String transactionId, long amount) {
+        return record(transactionId, amount, LocalDateTime.of(2024, 5, 1, 10, 0));
+    }
+
+    private static ConsumerRecord<String, TransactionCompletedEvent> record(String transactionId, long amount,
+                                                                           LocalDateTime timestamp) {
+        TransactionCompletedEvent event = new TransactionCompletedEvent(transactionId, "1", "2",
+                Money.ofMajor(amount), timestamp);
+        return new ConsumerRecord<>(KafkaTopicsConfiguration.TRANSACTION_TOPIC, 0, 0, transactionId, event);
+    }
+
+    private static ConsumerRecord<String, TransactionCompletedEvent> record(String accountId, String transactionId) {
+        TransactionCompletedEvent event = new TransactionCompletedEvent(transactionId, accountId, "99",
+                Money.ofMajor(10), LocalDateTime.of(2024, 5, 1, 10, 0));
+        return new ConsumerRecord<>(KafkaTopicsConfiguration.TRANSACTION_TOPIC, 0, 0, accountId, event);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void process_ShouldSkipProcessedEventsAndAggregateStatsPerDate() {
+        // Arrange: tx(2) was processed by an earlier delivery, tx(1) is repeated within the poll
+        when(ledgerBatchJdbcRepository.claimUnprocessed(anyCollection(), any())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            assertThat(ids).containsExactly(tx(1), tx(2), tx(3));
+            return Set.of(tx(1), tx(3));
+        });
+
+        // Act
+        processor.process(List.of(record(tx(1), 10), record(tx(2), 20), record(tx(1), 10), record(tx(3), 30)),
+                TransactionCompletedEvent::transactionId, listener::project);
+
+        // Assert
+        ArgumentCaptor<List<LedgerEntry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(ledgerBatchJdbcRepository).insertLedgerEntries(entries.capture());
+        assertThat(entries.getValue()).hasSize(4);
+
+        ArgumentCaptor<SortedMap<LocalDate, DailyStatsDelta>> stats = ArgumentCaptor.forClass(SortedMap.class);
+        verify(ledgerBatchJdbcRepository).applyStatsDeltas(stats.capture(), anyInt());
+        DailyStatsDelta delta = stats.getValue().get(LocalDate.of(2024, 5, 1));
+        assertThat(delta.count()).isEqualTo(2);
+        assertThat(delta.volume()).isEqualTo(Money.ofMajor(40));
+
+        assertThat(meterRegistry.get("ledger.batch").tag("topic", KafkaTopicsConfiguration.TRANSACTION_TOPIC)
+                .tag("outcome", "batch").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("ledger.batch.stage").tag("stage", "ledger_entries").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void process_ShouldInvalidateCheckpointsFromEarliestEntryPerAccount() {
+        // Arrange
+        LocalDateTime early = LocalDateTime.of(2024, 5, 1, 9, 0);
+        when(ledgerBatchJdbcRepository.claimUnprocessed(anyCollection(), any())).thenReturn(Set.of(tx(1), tx(2)));
+
+        // Act
+        processor.process(List.of(record(tx(1), 10), record(tx(2), 20, early)),
+                TransactionCompletedEvent::transactionId, listener::project);
+
+        // Assert
+        var inOrder = inOrder(ledgerCheckpointJdbcRepository, ledgerBatchJdbcRepository);
+        inOrder.verify(ledgerCheckpointJdbcRepository).lockAgainstCompaction();
+        inOrder.verify(ledgerBatchJdbcRepository).insertLedgerEntries(any());
+        inOrder.verify(ledgerCheckpointJdbcRepository).invalidateFrom(Map.of(1L, early, 2L, early));
+    }
+
+    @Test
+    void process_WhenBatchFails_ShouldReportFirstFailingRecord() {
+        // Arrange: the batch fails, then only tx(2) keeps failing on its own
+        when(ledgerBatchJdbcRepository.claimUnprocessed(anyCollection(), any())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            if (ids.size() > 1 || ids.contains(tx(2))) {
+                throw new IllegalStateException("constraint violation");
+            }
+            return Set.copyOf(ids);
+        });
+
+        // Act & Assert
+        assertThatThrownBy(() -> processor.process(List.of(record(tx(1), 10), record(tx(2), 20), record(tx(3), 30)),
+                TransactionCompletedEvent::transactionId, listener::project))
+                .isInstanceOfSatisfying(BatchListenerFailedException.class,
+                        e -> assertThat(e.getIndex()).isEqualTo(1));
+        verify(ledgerBatchJdbcRepository, times(1)).insertLedgerEntries(any());
+        assertThat(meterRegistry.get("ledger.batch").tag("outcome", "failed").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void lanes_ShouldKeepEachKeyInOneLaneInPollOrder() {
+        // Arrange
+        List<ConsumerRecord<String, TransactionCompletedEvent>> records = List.of(record("1", tx(1)),
+                record("2", tx(2)), record("1", tx(3)), record("3", tx(4)), record("2", tx(5)));
+
+        // Act
+        List<List<Integer>> lanes = LedgerBatchProcessor.lanes(records, TransactionCompletedEvent::transactionId, 4);
+
+        // Assert
+        assertThat(lanes).containsExactlyInAnyOrder(List.of(0, 2), List.of(1, 4), List.of(3));
+        assertThat(LedgerBatchProcessor.lanes(records, TransactionCompletedEvent::transactionId, 1))
+                .containsExactly(List.of(0, 1, 2, 3, 4));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void process_WithWorkers_ShouldWriteLanesSeparatelyAndReportLowestFailingRecord() {
+        // Arrange: accounts 2 and 3 each have a record that keeps failing, account 1's lane is fine
+        LedgerBatchProcessor parallel = new LedgerBatchProcessor(ledgerBatchJdbcRepository,
+                ledgerCheckpointJdbcRepository, transactionManager, meterRegistry, 4, 4);
+        when(ledgerBatchJdbcRepository.claimUnprocessed(anyCollection(), any())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            if (ids.contains(tx(2)) || ids.contains(tx(4))) {
+                throw new IllegalStateException("constraint violation");
+            }
+            return Set.copyOf(ids);
+        });
+        parallel.start();
+
+        // Act & Assert
+        try {
+            assertThatThrownBy(() -> parallel.process(List.of(record("1", tx(1)), record("3", tx(4)),
+                            record("1", tx(3)), record("2", tx(2))),
+                    TransactionCompletedEvent::transactionId, listener::project))
+                    .isInstanceOfSatisfying(BatchListenerFailedException.class,
+                            e -> assertThat(e.getIndex()).isEqualTo(1));
+        } finally {
+            parallel.stop();
+        }
+        ArgumentCaptor<List<LedgerEntry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(ledgerBatchJdbcRepository).insertLedgerEntries(entries.capture());
+        assertThat(entries.getValue()).extracting(LedgerEntry::getTransactionId)
+                .containsExactly(UUID.fromString(tx(1)), UUID.fromString(tx(1)), UUID.fromString(tx(3)),
+                        UUID.fromString(tx(3)));
+        assertThat(parallel.isRunning()).isFalse();
+    }
+}
@@ -0,0 +1,123 @@
+package com.poalim.mybank.events.service;
+
+import com.poalim.mybank.events.repository.LedgerCheckpointJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerCheckpointCompactorTest {
+
+    @Mock
+    private LedgerCheckpointJdbcRepository ledgerCheckpointJdbcRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private LedgerCheckpointCompactor compactor;
+
+    @BeforeEach
+    void setUp() {
+        LedgerCheckpointProperties properties = new LedgerCheckpointProperties();
+        properties.setSettleLagMs(60_000);
+        properties.setMinEntries(100);
+        properties.setMaxWindowMs(3_600_000);
+        compactor = new LedgerCheckpointCompactor(ledgerCheckpointJdbcRepository, transactionManager,
+                properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void compact_ShouldStartFromLatestCheckpointThenFromPreviousHorizon() {
+        // Arrange
+        LocalDateTime latest = LocalDateTime.of(2024, 5, 1, 11, 0);
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(ledgerCheckpointJdbcRepository.latestCheckpoint()).thenReturn(latest);
+        when(ledgerCheckpointJdbcRepository.earliestEntryAfter(any()))
+                .thenReturn(latest.plusMinutes(5), now.minusSeconds(30));
+        when(ledgerCheckpointJdbcRepository.compact(any(), any(), anyInt())).thenReturn(3, 1);
+
+        // Act
+        int first = compactor.compact(now);
+        int second = compactor.compact(now.plusMinutes(10));
+
+        // Assert
+        assertThat(first).isEqualTo(3);
+        assertThat(second).isEqualTo(1);
+        InOrder inOrder = inOrder(ledgerCheckpointJdbcRepository);
+        inOrder.verify(ledgerCheckpointJdbcRepository).lockForCompaction();
+        inOrder.verify(ledgerCheckpointJdbcRepository).compact(latest, now.minusMinutes(1), 100);
+        inOrder.verify(ledgerCheckpointJdbcRepository).lockForCompaction();
+        inOrder.verify(ledgerCheckpointJdbcRepository).compact(now.minusMinutes(1), now.plusMinutes(9), 100);
+        verify(ledgerCheckpointJdbcRepository, times(1)).latestCheckpoint();
+    }
+
+    @Test
+    void compact_WhenHorizonIsNotPastLatestCheckpoint_ShouldDoNothing() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(ledgerCheckpointJdbcRepository.latestCheckpoint()).thenReturn(now);
+
+        // Act
+        int written = compactor.compact(now);
+
+        // Assert
+        assertThat(written).isZero();
+        verify(ledgerCheckpointJdbcRepository, never()).compact(any(), any(), anyInt());
+    }
+
+    @Test
+    void compact_WhenFarBehind_ShouldCoverOneWindowPerRunFromTheEarliestEntry() {
+        // Arrange
+        LocalDateTime beginning = LocalDateTime.of(1970, 1, 1, 0, 0);
+        LocalDateTime firstEntry = LocalDateTime.of(2024, 5, 1, 0, 10);
+        LocalDateTime nextEntry = LocalDateTime.of(2024, 5, 1, 5, 0);
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(ledgerCheckpointJdbcRepository.latestCheckpoint()).thenReturn(beginning);
+        when(ledgerCheckpointJdbcRepository.earliestEntryAfter(beginning)).thenReturn(firstEntry);
+        when(ledgerCheckpointJdbcRepository.earliestEntryAfter(firstEntry.plusHours(1))).thenReturn(nextEntry);
+
+        // Act
+        compactor.compact(now);
+        boolean caughtUpAfterFirst = compactor.caughtUp(now);
+        compactor.compact(now);
+
+        // Assert
+        assertThat(caughtUpAfterFirst).isFalse();
+        assertThat(compactor.caughtUp(now)).isFalse();
+        InOrder inOrder = inOrder(ledgerCheckpointJdbcRepository);
+        inOrder.verify(ledgerCheckpointJdbcRepository).lockForCompaction();
+        inOrder.verify(ledgerCheckpointJdbcRepository).compact(beginning, firstEntry.plusHours(1), 100);
+        inOrder.verify(ledgerCheckpointJdbcRepository).lockForCompaction();
+        inOrder.verify(ledgerCheckpointJdbcRepository).compact(firstEntry.plusHours(1), nextEntry.plusHours(1), 100);
+    }
+
+    @Test
+    void compact_WhenNoEntriesUpToTheHorizon_ShouldSkipToItWithoutLocking() {
+        // Arrange
+        LocalDateTime latest = LocalDateTime.of(2024, 5, 1, 0, 0);
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(ledgerCheckpointJdbcRepository.latestCheckpoint()).thenReturn(latest);
+        when(ledgerCheckpointJdbcRepository.earliestEntryAfter(latest)).thenReturn(null);
+
+        // Act
+        int written = compactor.compact(now);
+
+        // Assert
+        assertThat(written).isZero();
+        assertThat(compactor.caughtUp(now)).isTrue();
+        verify(ledgerCheckpointJdbcRepository, never()).lockForCompaction();
+        verify(ledgerCheckpointJdbcRepository, never()).compact(any(), any(), anyInt());
+    }
+}
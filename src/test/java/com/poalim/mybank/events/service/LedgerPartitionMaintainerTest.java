@@ -0,0 +1,46 @@
+package com.poalim.mybank.events.service;
+
+import com.poalim.mybank.events.repository.LedgerPartitionJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerPartitionMaintainerTest {
+
+    @Mock
+    private LedgerPartitionJdbcRepository ledgerPartitionJdbcRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private LedgerPartitionMaintainer maintainer;
+
+    @BeforeEach
+    void setUp() {
+        LedgerPartitionProperties properties = new LedgerPartitionProperties();
+        properties.setMonthsAhead(2);
+        meterRegistry = new SimpleMeterRegistry();
+        maintainer = new LedgerPartitionMaintainer(ledgerPartitionJdbcRepository, properties, meterRegistry);
+    }
+
+    @Test
+    void maintain_ShouldEnsurePartitionsFromThisMonthToMonthsAhead() {
+        // Arrange
+        when(ledgerPartitionJdbcRepository.ensureMonthlyPartitions(LocalDate.of(2024, 11, 1), LocalDate.of(2025, 1, 1)))
+                .thenReturn(2);
+
+        // Act
+        int created = maintainer.maintain(LocalDate.of(2024, 11, 20));
+
+        // Assert
+        assertThat(created).isEqualTo(2);
+        assertThat(meterRegistry.counter("ledger.partition.created").count()).isEqualTo(2.0);
+    }
+}
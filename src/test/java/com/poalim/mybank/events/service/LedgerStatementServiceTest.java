@@ -0,0 +1,107 @@
+package com.poalim.mybank.events.service;
+
+import com.poalim.mybank.events.entity.LedgerEntry;
+import com.poalim.mybank.events.repository.LedgerCheckpointJdbcRepository;
+import com.poalim.mybank.events.repository.LedgerStatementJdbcRepository;
+import com.poalim.mybank.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerStatementServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2024, 2, 1, 0, 0);
+
+    @Mock
+    private LedgerCheckpointJdbcRepository ledgerCheckpointJdbcRepository;
+
+    @Mock
+    private LedgerStatementJdbcRepository ledgerStatementJdbcRepository;
+
+    private LedgerStatementService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new LedgerStatementService(ledgerCheckpointJdbcRepository, ledgerStatementJdbcRepository, 100);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenEntries(String... amounts) {
+        doAnswer(invocation -> {
+            Consumer<LedgerEntry> consumer = invocation.getArgument(4);
+            LedgerEntry entry = new LedgerEntry();
+            for (int i = 0; i < amounts.length; i++) {
+                entry.setTransactionId(new UUID(0, i + 1));
+                entry.setAmount(Money.valueOf(amounts[i]));
+                entry.setTimestamp(FROM.plusDays(i));
+                entry.setEntryType(amounts[i].startsWith("-") ? "DEBIT" : "CREDIT");
+                consumer.accept(entry);
+            }
+            return null;
+        }).when(ledgerStatementJdbcRepository).streamEntries(eq(7L), eq(FROM), eq(TO), anyInt(), any(Consumer.class));
+    }
+
+    @Test
+    void export_AsCsv_ShouldWriteRunningBalanceFromOpeningBalance() throws Exception {
+        // Arrange
+        when(ledgerCheckpointJdbcRepository.balanceAsOf(7L, FROM.minusNanos(1000))).thenReturn(Money.valueOf("100.00"));
+        givenEntries("50.00", "-30.00");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long entries = service.export(7L, FROM, TO, StatementFormat.CSV, false, out);
+
+        // Assert
+        assertThat(entries).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "timestamp,transaction_id,entry_type,amount,balance\n" +
+                "2024-01-01T00:00,,OPENING,,100.00\n" +
+                "2024-01-01T00:00,00000000-0000-0000-0000-000000000001,CREDIT,50.00,150.00\n" +
+                "2024-01-02T00:00,00000000-0000-0000-0000-000000000002,DEBIT,-30.00,120.00\n" +
+                "2024-02-01T00:00,,CLOSING,,120.00\n");
+    }
+
+    @Test
+    void export_AsGzippedNdjson_WithoutHistory_ShouldStartFromZero() throws Exception {
+        // Arrange
+        givenEntries("5.00");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        service.export(7L, FROM, TO, StatementFormat.NDJSON, true, out);
+
+        // Assert
+        String content = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(),
+                StandardCharsets.UTF_8);
+        assertThat(content.split("\n")).containsExactly(
+                "{\"type\":\"OPENING\",\"timestamp\":\"2024-01-01T00:00\",\"balance\":0.00}",
+                "{\"type\":\"CREDIT\",\"timestamp\":\"2024-01-01T00:00\",\"transactionId\":\"00000000-0000-0000-0000-000000000001\",\"amount\":5.00,\"balance\":5.00}",
+                "{\"type\":\"CLOSING\",\"timestamp\":\"2024-02-01T00:00\",\"balance\":5.00,\"entries\":1}");
+    }
+
+    @Test
+    void export_WithEmptyRange_ShouldThrowException() {
+        // Act & Assert
+        assertThatThrownBy(() -> service.export(7L, TO, FROM, StatementFormat.CSV, false, new ByteArrayOutputStream()))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(ledgerStatementJdbcRepository);
+    }
+}
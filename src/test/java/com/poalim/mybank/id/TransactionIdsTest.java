@@ -0,0 +1,35 @@
+package com.poalim.mybank.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+class TransactionIdsTest {
+
+    @Test
+    void parse_LegacyTransferRecordId_ShouldMapToItsUuid() {
+        // Act & Assert
+        assertThat(TransactionIds.parse("123")).hasToString("00000000-0000-0000-0000-00000000007b");
+        assertThat(TransactionIds.parse("0")).isEqualTo(new UUID(0, 0));
+    }
+
+    @Test
+    void parse_Uuid_ShouldReadItRegardlessOfCase() {
+        // Arrange
+        UUID id = UUID.fromString("0190f3a0-1c2d-7e4f-8a5b-6c7d8e9fa0b1");
+
+        // Act & Assert
+        assertThat(TransactionIds.parse(id.toString())).isEqualTo(id);
+        assertThat(TransactionIds.parse(id.toString().toUpperCase())).isEqualTo(id);
+    }
+
+    @Test
+    void parse_AnythingElse_ShouldFail() {
+        // Act & Assert
+        assertThatThrownBy(() -> TransactionIds.parse("tx-1")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TransactionIds.parse("007")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TransactionIds.parse("")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
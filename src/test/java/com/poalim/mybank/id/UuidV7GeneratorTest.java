@@ -0,0 +1,49 @@
+package com.poalim.mybank.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class UuidV7GeneratorTest {
+
+    private static final long NOW = 1_717_200_000_000L;
+
+    @Test
+    void nextId_ShouldCarryTheTimestampVersionAndVariant() {
+        // Arrange
+        UuidV7Generator generator = new UuidV7Generator(() -> NOW);
+
+        // Act
+        UUID id = generator.nextId();
+
+        // Assert
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(id.getMostSignificantBits() >>> 16).isEqualTo(NOW);
+        assertThat(id.toString()).startsWith("018fd118-9400-7");
+    }
+
+    @Test
+    void nextId_WithinAMillisecondAndWhenTheClockStepsBack_ShouldKeepIncreasing() {
+        // Arrange
+        AtomicLong clock = new AtomicLong(NOW);
+        UuidV7Generator generator = new UuidV7Generator(clock::get);
+        List<String> ids = new ArrayList<>();
+
+        // Act: the 12-bit counter overflows within the millisecond, then the clock goes back a second
+        for (int i = 0; i < 5000; i++) {
+            ids.add(generator.nextId().toString());
+        }
+        clock.addAndGet(-1000);
+        ids.add(generator.nextId().toString());
+
+        // Assert: strings of lower-case hex sort like the bytes in a uuid index
+        assertThat(ids).isSorted().doesNotHaveDuplicates();
+        assertThat(UUID.fromString(ids.get(ids.size() - 1)).getMostSignificantBits() >>> 16).isEqualTo(NOW + 1);
+    }
+}
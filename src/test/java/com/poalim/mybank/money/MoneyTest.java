@@ -0,0 +1,104 @@
+package com.poalim.mybank.money;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.poalim.mybank.account.TransferRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.convert.support.DefaultConversionService;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void of_AmountWithUpToTwoDecimals_ShouldKeepItExactly() {
+        // Act & Assert
+        assertThat(Money.of(new BigDecimal("12.5")).minorUnits()).isEqualTo(1250);
+        assertThat(Money.valueOf("-0.05").minorUnits()).isEqualTo(-5);
+        assertThat(Money.valueOf("1E+3")).isEqualTo(Money.ofMajor(1000));
+        assertThat(Money.valueOf("7.000")).isEqualTo(Money.ofMinor(700));
+        assertThat(Money.valueOf("92233720368547758.07").minorUnits()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void of_FractionOfMinorUnitOrOutOfRange_ShouldFail() {
+        // Act & Assert
+        assertThatThrownBy(() -> Money.valueOf("1.005"))
+                .isInstanceOf(ArithmeticException.class)
+                .hasMessageContaining("1.005");
+        assertThatThrownBy(() -> Money.valueOf("92233720368547758.08"))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.valueOf("ten"))
+                .isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void arithmetic_ThatOverflows_ShouldFail() {
+        // Arrange
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+
+        // Act & Assert
+        assertThat(max.minus(Money.ofMinor(1)).plus(Money.ofMinor(1))).isEqualTo(max);
+        assertThatThrownBy(() -> max.plus(Money.ofMinor(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MIN_VALUE).negate()).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> max.times(2)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void toString_ShouldWriteBothDecimalPlaces() {
+        // Act & Assert
+        assertThat(Money.ofMinor(1250)).hasToString("12.50");
+        assertThat(Money.ofMinor(-5)).hasToString("-0.05");
+        assertThat(Money.ofMinor(-105)).hasToString("-1.05");
+        assertThat(Money.ZERO).hasToString("0.00");
+        assertThat(Money.ofMinor(Long.MIN_VALUE)).hasToString("-92233720368547758.08");
+        assertThat(Money.ofMinor(-1250).toBigDecimal()).isEqualTo(new BigDecimal("-12.50"));
+    }
+
+    @Test
+    void json_ShouldReadAndWriteDecimalNumbers() throws Exception {
+        // Act
+        TransferRequest request = objectMapper.readValue(
+                "{\"fromAccountId\":1,\"toAccountId\":2,\"amount\":12.5,\"idempotencyKey\":\"k\"}", TransferRequest.class);
+        TransferRequest quoted = objectMapper.readValue("{\"amount\":\"3\"}", TransferRequest.class);
+        TransferRequest missing = objectMapper.readValue("{\"amount\":null}", TransferRequest.class);
+
+        // Assert
+        assertThat(request.getAmount()).isEqualTo(Money.ofMinor(1250));
+        assertThat(quoted.getAmount()).isEqualTo(Money.ofMajor(3));
+        assertThat(missing.getAmount()).isNull();
+        assertThat(objectMapper.writeValueAsString(request))
+                .isEqualTo("{\"fromAccountId\":1,\"toAccountId\":2,\"amount\":12.50,\"idempotencyKey\":\"k\"}");
+    }
+
+    @Test
+    void json_FractionOfMinorUnit_ShouldBeRejected() {
+        // Act & Assert
+        assertThatThrownBy(() -> objectMapper.readValue("{\"amount\":0.001}", TransferRequest.class))
+                .isInstanceOf(InvalidFormatException.class);
+        assertThatThrownBy(() -> objectMapper.readValue("{\"amount\":\"1.001\"}", TransferRequest.class))
+                .isInstanceOf(InvalidFormatException.class);
+    }
+
+    @Test
+    void conversionService_ShouldBindRequestParameters() {
+        // Act & Assert
+        assertThat(DefaultConversionService.getSharedInstance().convert("250.10", Money.class))
+                .isEqualTo(Money.ofMinor(25010));
+    }
+
+    @Test
+    void converter_ShouldStoreMinorUnits() {
+        // Arrange
+        MoneyConverter converter = new MoneyConverter();
+
+        // Act & Assert
+        assertThat(converter.convertToDatabaseColumn(Money.valueOf("-3.10"))).isEqualTo(-310L);
+        assertThat(converter.convertToEntityAttribute(310L)).isEqualTo(Money.valueOf("3.10"));
+        assertThat(converter.convertToDatabaseColumn(null)).isNull();
+    }
+}
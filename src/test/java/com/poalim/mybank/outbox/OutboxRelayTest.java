@@ -0,0 +1,129 @@
+package com.poalim.mybank.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.poalim.mybank.config.KafkaTopicsConfiguration;
+import com.poalim.mybank.events.DepositCompletedEvent;
+import com.poalim.mybank.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.assertj.core.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private OutboxMessage message(long id, String key) throws Exception {
+        DepositCompletedEvent event = new DepositCompletedEvent(key, "1", Money.ofMajor(10), LocalDateTime.now());
+        return new OutboxMessage(id, KafkaTopicsConfiguration.DEPOSIT_TOPIC, key, DepositCompletedEvent.class.getName(),
+                objectMapper.writeValueAsString(event), LocalDateTime.now().minusSeconds(3));
+    }
+
+    @Test
+    void relayBatch_ShouldDeleteOnlyAcknowledgedMessages() throws Exception {
+        // Arrange
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OutboxRelay relay = new OutboxRelay(outboxRepository, kafkaTemplate, objectMapper, transactionManager,
+                new OutboxProperties(), meterRegistry);
+        when(outboxRepository.lockNextBatch(anyInt(), anyInt(), anyInt())).thenReturn(List.of(message(1, "tx-1"), message(2, "tx-2")));
+        CompletableFuture<SendResult<String, Object>> acked = CompletableFuture.completedFuture(null);
+        CompletableFuture<SendResult<String, Object>> rejected = CompletableFuture.failedFuture(new RuntimeException("broker down"));
+        when(kafkaTemplate.send(eq(KafkaTopicsConfiguration.DEPOSIT_TOPIC), eq("tx-1"), any(DepositCompletedEvent.class))).thenReturn(acked);
+        when(kafkaTemplate.send(eq(KafkaTopicsConfiguration.DEPOSIT_TOPIC), eq("tx-2"), any(DepositCompletedEvent.class))).thenReturn(rejected);
+
+        // Act
+        int locked = relay.relayBatch(0);
+
+        // Assert
+        assertThat(locked).isEqualTo(2);
+        verify(outboxRepository).deleteAll(List.of(1L));
+        assertThat(meterRegistry.get("outbox.relay.lag").gauge().value()).isGreaterThanOrEqualTo(3.0);
+        assertThat(meterRegistry.get("outbox.relay.messages").tag("outcome", "failed").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("kafka.send").tag("topic", KafkaTopicsConfiguration.DEPOSIT_TOPIC)
+                .tag("outcome", "failure").tag("exception", "RuntimeException").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("kafka.send").tag("outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void relayBatch_WithUnknownEventType_ShouldKeepMessage() {
+        // Arrange
+        OutboxRelay relay = new OutboxRelay(outboxRepository, kafkaTemplate, objectMapper, transactionManager,
+                new OutboxProperties(), new SimpleMeterRegistry());
+        when(outboxRepository.lockNextBatch(anyInt(), anyInt(), anyInt())).thenReturn(List.of(
+                new OutboxMessage(1L, "t", "k", "java.lang.Runtime", "{}", LocalDateTime.now())));
+
+        // Act
+        relay.relayBatch(0);
+
+        // Assert
+        verify(outboxRepository).deleteAll(List.of());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void relayBatch_WhenASendFails_ShouldKeepLaterMessagesWithTheSameKey() throws Exception {
+        // Arrange
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OutboxRelay relay = new OutboxRelay(outboxRepository, kafkaTemplate, objectMapper, transactionManager,
+                new OutboxProperties(), meterRegistry);
+        when(outboxRepository.lockNextBatch(anyInt(), anyInt(), anyInt()))
+                .thenReturn(List.of(message(1, "7"), message(2, "8"), message(3, "7")));
+        CompletableFuture<SendResult<String, Object>> acked = CompletableFuture.completedFuture(null);
+        CompletableFuture<SendResult<String, Object>> rejected = CompletableFuture.failedFuture(new RuntimeException("broker down"));
+        when(kafkaTemplate.send(eq(KafkaTopicsConfiguration.DEPOSIT_TOPIC), eq("7"), any(DepositCompletedEvent.class)))
+                .thenReturn(rejected, acked);
+        when(kafkaTemplate.send(eq(KafkaTopicsConfiguration.DEPOSIT_TOPIC), eq("8"), any(DepositCompletedEvent.class))).thenReturn(acked);
+
+        // Act
+        relay.relayBatch(0);
+
+        // Assert: message 3 was acknowledged, but stays in the table to be sent again after message 1
+        verify(outboxRepository).deleteAll(List.of(2L));
+        assertThat(meterRegistry.get("outbox.relay.messages").tag("outcome", "published").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("outbox.relay.messages").tag("outcome", "failed").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void relayBatch_ShouldNotWaitForAnAcknowledgementBeforeSendingTheNextMessageWithTheSameKey() throws Exception {
+        // Arrange: the first send is never acknowledged
+        OutboxProperties properties = new OutboxProperties();
+        properties.setSendTimeoutMs(50);
+        OutboxRelay relay = new OutboxRelay(outboxRepository, kafkaTemplate, objectMapper, transactionManager,
+                properties, new SimpleMeterRegistry());
+        when(outboxRepository.lockNextBatch(anyInt(), anyInt(), anyInt()))
+                .thenReturn(List.of(message(1, "7"), message(2, "7")));
+        when(kafkaTemplate.send(eq(KafkaTopicsConfiguration.DEPOSIT_TOPIC), eq("7"), any(DepositCompletedEvent.class)))
+                .thenReturn(new CompletableFuture<>(), CompletableFuture.completedFuture(null));
+
+        // Act
+        relay.relayBatch(0);
+
+        // Assert
+        verify(kafkaTemplate, times(2)).send(eq(KafkaTopicsConfiguration.DEPOSIT_TOPIC), eq("7"), any(DepositCompletedEvent.class));
+        verify(outboxRepository).deleteAll(List.of());
+    }
+}